@@ -8,12 +8,13 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.simple.database.Builder;
+import com.simple.database.generated.GeneratedDaoFactory;
 import com.simple.database.listeners.DbListener;
-import com.simple.simpledatabase.dao.BookDao;
-import com.simple.simpledatabase.dao.BorrowDao;
 import com.simple.simpledatabase.dao.UserDao;
 import com.simple.simpledatabase.domain.Book;
+import com.simple.simpledatabase.domain.Book_Dao;
 import com.simple.simpledatabase.domain.BorrowRecord;
+import com.simple.simpledatabase.domain.BorrowRecord_Dao;
 import com.simple.simpledatabase.domain.User;
 
 import java.util.ArrayList;
@@ -46,7 +47,7 @@ public class MainActivity extends AppCompatActivity {
 
         // 插入数据, 用户和数据
         insertInto(UserDao.class).withItems(mAllUsers).execute();
-        insertInto(BookDao.class).withItems(mAllBooks).execute();
+        insertInto(Book_Dao.class).withItems(mAllBooks).execute();
     }
 
     /**
@@ -58,6 +59,7 @@ public class MainActivity extends AppCompatActivity {
                 .setDbVersion(1)                            // 数据库版本号为1
                 .setCreateSqlFile("db/create.sql")          // 创建数据库表的sql文件在 asserts/db/create.sql文件中
                 .setUpgradePath("db/migrations")            // 数据库升级文件在 asserts/db/migrations 目录中
+                .addDaoFactory(new GeneratedDaoFactory())   // 注解处理器生成的DAO工厂, 创建DAO时不使用反射
                 .create();
     }
 
@@ -74,8 +76,8 @@ public class MainActivity extends AppCompatActivity {
         findViewById(R.id.borrow_record_btn).setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                // 从 BorrowDao 中查询所有借阅记录
-                selectFrom(BorrowDao.class).listener(new DbListener<List<BorrowRecord>>() {
+                // 从 BorrowRecord_Dao 中查询所有借阅记录
+                selectFrom(BorrowRecord_Dao.class).listener(new DbListener<List<BorrowRecord>>() {
                     @Override
                     public void onComplete(List<BorrowRecord> result) {
                         showBorrowRecord(result);
@@ -114,7 +116,7 @@ public class MainActivity extends AppCompatActivity {
         record.userId = mAllUsers.get(0).id;
         record.bookId = mAllBooks.get(mBorrowedIndex).id;
         // 插入数据
-        insertInto(BorrowDao.class).withItem(record).execute();
+        insertInto(BorrowRecord_Dao.class).withItem(record).execute();
         // 借了一本书之后索引加1
         mBorrowedIndex++;
     }
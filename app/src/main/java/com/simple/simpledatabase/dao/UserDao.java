@@ -1,27 +1,89 @@
 package com.simple.simpledatabase.dao;
 
-import android.content.ContentValues;
-import android.database.Cursor;
-
-import com.simple.database.dao.AbsDAO;
+import com.simple.database.dao.KeyExtractor;
+import com.simple.database.dao.Relations;
 import com.simple.simpledatabase.domain.Book;
+import com.simple.simpledatabase.domain.Book_Dao;
 import com.simple.simpledatabase.domain.BorrowRecord;
+import com.simple.simpledatabase.domain.BorrowRecord_Dao;
 import com.simple.simpledatabase.domain.User;
+import com.simple.simpledatabase.domain.User_Dao;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
- * users表的DAO对象。
+ * users表的DAO对象, 在生成的 {@link User_Dao} 的基础上加载用户借阅的书籍.
  *
  * Created by mrsimple on 13/8/16.
  */
-public class UserDao extends AbsDAO<User> {
+public class UserDao extends User_Dao {
+
+    private static final KeyExtractor<User> USER_ID = new KeyExtractor<User>() {
+        @Override
+        public Object keyOf(User item) {
+            return item.id;
+        }
+    };
+
+    private static final KeyExtractor<BorrowRecord> RECORD_USER_ID = new KeyExtractor<BorrowRecord>() {
+        @Override
+        public Object keyOf(BorrowRecord item) {
+            return item.userId;
+        }
+    };
+
+    private static final KeyExtractor<BorrowRecord> RECORD_BOOK_ID = new KeyExtractor<BorrowRecord>() {
+        @Override
+        public Object keyOf(BorrowRecord item) {
+            return item.bookId;
+        }
+    };
+
+    private static final KeyExtractor<Book> BOOK_ID = new KeyExtractor<Book>() {
+        @Override
+        public Object keyOf(Book item) {
+            return item.id;
+        }
+    };
 
-    private BorrowDao mBorrowDao = new BorrowDao();
+    private BorrowRecord_Dao mBorrowDao = new BorrowRecord_Dao();
+    private Book_Dao mBookDao = new Book_Dao();
 
     public UserDao() {
-        super("users");
+        super();
+        // 书籍信息会被反复查询, 按主键缓存
+        mBookDao.enableEntityCache(100);
+    }
+
+    @Override
+    public Set<String> getObservedTables() {
+        // 用户数据中包含借阅记录和书籍信息
+        final Set<String> tables = new HashSet<>();
+        tables.add(getTableName());
+        tables.add(mBorrowDao.getTableName());
+        tables.add(mBookDao.getTableName());
+        return tables;
+    }
+
+    @Override
+    protected boolean areContentsTheSame(User oldItem, User newItem) {
+        // 借阅的书籍不在 users 表中, 需要单独比较
+        return super.areContentsTheSame(oldItem, newItem)
+                && bookIdsOf(oldItem).equals(bookIdsOf(newItem));
+    }
+
+    private static List<Object> bookIdsOf(User user) {
+        List<Object> ids = new ArrayList<>();
+        if (user.borrowedBooks != null) {
+            for (Book book : user.borrowedBooks) {
+                ids.add(book.id);
+            }
+        }
+        return ids;
     }
 
     @Override
@@ -31,6 +93,29 @@ public class UserDao extends AbsDAO<User> {
         insertBorrowedBooks(item);
     }
 
+    @Override
+    public void insert(List<User> items) {
+        // 覆写了 insert(User), super.insert(items) 会逐条插入, 这里直接批量插入用户之后再批量插入借阅表
+        bulkInsert(items);
+        if (items == null) {
+            return;
+        }
+        // 批量插入借阅表
+        List<BorrowRecord> records = new ArrayList<>();
+        for (User item : items) {
+            if (item == null || item.borrowedBooks == null) {
+                continue;
+            }
+            for (Book aBook : item.borrowedBooks) {
+                BorrowRecord record = new BorrowRecord();
+                record.userId = item.id;
+                record.bookId = aBook.id;
+                records.add(record);
+            }
+        }
+        mBorrowDao.insert(records);
+    }
+
     private void insertBorrowedBooks(User item) {
         if (item.borrowedBooks != null) {
             BorrowRecord record = new BorrowRecord();
@@ -42,37 +127,34 @@ public class UserDao extends AbsDAO<User> {
         }
     }
 
+    /**
+     * 批量查询这一批用户借阅的书, 无论多少用户都只需要查询 borrow 表和 books 表各一次 ( 参数过多时分批 )
+     *
+     * @param users 解析出的用户
+     */
     @Override
-    protected ContentValues convert(User item) {
-        ContentValues newValues = new ContentValues();
-        newValues.put("id", item.id);
-        newValues.put("name", item.name);
-        newValues.put("gender", item.gender);
-        return newValues;
-    }
-
-    @Override
-    protected User parseOneItem(Cursor cursor) {
-        User user = new User();
-        user.id = cursor.getString(0);
-        user.name = cursor.getString(1);
-        user.gender = cursor.getInt(2);
-        // 查询该用户借阅的书
-        queryBorrowedBooks(user);
-        return user;
-    }
-
-    private void queryBorrowedBooks(User user) {
-        List<BorrowRecord> records = mBorrowDao.query("user_id=?", new String[]{user.id});
+    protected void onItemsLoaded(List<User> users) {
+        Set<Object> userIds = Relations.collectKeys(users, USER_ID);
+        List<BorrowRecord> records = mBorrowDao.queryIn("user_id", userIds);
         if (records.size() == 0) {
             return;
         }
-        // 查询到该用户借阅的书籍
-        user.borrowedBooks = new ArrayList<>();
-        final BookDao bookDao = new BookDao();
-        for (BorrowRecord aRecord : records) {
-            Book aBook = bookDao.queryOne("id=?", new String[]{aRecord.bookId});
-            user.borrowedBooks.add(aBook);
+        // 查询到这些用户借阅的书籍
+        Map<Object, Book> books = Relations.indexBy(
+                mBookDao.queryIn("id", Relations.collectKeys(records, RECORD_BOOK_ID)), BOOK_ID);
+        Map<Object, List<BorrowRecord>> recordsOfUser = Relations.groupBy(records, RECORD_USER_ID);
+        for (User user : users) {
+            List<BorrowRecord> userRecords = recordsOfUser.get(user.id);
+            if (userRecords == null) {
+                continue;
+            }
+            user.borrowedBooks = new ArrayList<>();
+            for (BorrowRecord aRecord : userRecords) {
+                Book aBook = books.get(aRecord.bookId);
+                if (aBook != null) {
+                    user.borrowedBooks.add(aBook);
+                }
+            }
         }
     }
 }
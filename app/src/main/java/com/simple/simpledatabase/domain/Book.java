@@ -1,9 +1,14 @@
 package com.simple.simpledatabase.domain;
 
+import com.simple.database.annotations.Entity;
+import com.simple.database.annotations.PrimaryKey;
+
 /**
  * Created by mrsimple on 13/8/16.
  */
+@Entity(table = "books")
 public class Book {
+    @PrimaryKey
     public String id ;
     public String name ;
 }
@@ -1,10 +1,16 @@
 package com.simple.simpledatabase.domain;
 
+import com.simple.database.annotations.Column;
+import com.simple.database.annotations.Entity;
+
 /**
  * 关键映射对象
  * Created by mrsimple on 13/8/16.
  */
+@Entity(table = "borrow")
 public class BorrowRecord {
+    @Column("user_id")
     public String userId ;
+    @Column("book_id")
     public String bookId ;
 }
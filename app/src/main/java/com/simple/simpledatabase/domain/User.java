@@ -1,13 +1,23 @@
 package com.simple.simpledatabase.domain;
 
+import com.simple.database.annotations.Entity;
+import com.simple.database.annotations.Ignore;
+import com.simple.database.annotations.PrimaryKey;
+
 import java.util.List;
 
 /**
  * Created by mrsimple on 13/8/16.
  */
+@Entity(table = "users")
 public class User {
+    @PrimaryKey
     public String id ;
     public String name ;
     public int gender ;
+    /**
+     * 借阅的书籍, 由 UserDao 从 borrow 表中加载
+     */
+    @Ignore
     public List<Book> borrowedBooks ;
 }
@@ -1,8 +1,8 @@
 package com.simple.simpledatabase.model;
 
 import com.simple.database.listeners.DbListener;
-import com.simple.simpledatabase.dao.BookDao;
 import com.simple.simpledatabase.domain.Book;
+import com.simple.simpledatabase.domain.Book_Dao;
 
 import java.util.List;
 
@@ -22,7 +22,7 @@ public class BookModel {
      * @param aBook
      */
     public void insertBook(Book aBook) {
-        insertInto(BookDao.class).withItem(aBook).execute();
+        insertInto(Book_Dao.class).withItem(aBook).execute();
     }
 
     /**
@@ -32,13 +32,13 @@ public class BookModel {
      */
     public void deleteBook(Book aBook) {
         // 根据Id 删除图书
-        deleteFrom(BookDao.class).where("id=?", new String[]{aBook.id}).execute();
+        deleteFrom(Book_Dao.class).where("id=?", new String[]{aBook.id}).execute();
     }
 
 
     public void updateBook(Book aBook) {
         // 更新数据
-        updateFrom(BookDao.class).withItem(aBook).where("id=?", new String[]{aBook.id});
+        updateFrom(Book_Dao.class).withItem(aBook).where("id=?", new String[]{aBook.id});
     }
 
     /**
@@ -47,7 +47,7 @@ public class BookModel {
      * @param listener
      */
     public void queryAllBook(DbListener<List<Book>> listener) {
-        selectFrom(BookDao.class).listener(listener).execute();
+        selectFrom(Book_Dao.class).listener(listener).execute();
     }
 
     /**
@@ -58,6 +58,6 @@ public class BookModel {
      * @param listener
      */
     public void queryBook(String selection, String[] args, DbListener<List<Book>> listener) {
-        selectFrom(BookDao.class).where(selection, args).listener(listener).execute();
+        selectFrom(Book_Dao.class).where(selection, args).listener(listener).execute();
     }
 }
@@ -0,0 +1,18 @@
+package com.simple.database.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 指定字段对应的列名, 没有该注解时列名与字段名相同
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface Column {
+    /**
+     * @return 列名
+     */
+    String value();
+}
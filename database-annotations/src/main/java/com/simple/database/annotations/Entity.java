@@ -0,0 +1,27 @@
+package com.simple.database.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记数据库实体, 编译时会在实体所在的包中生成名为 "实体类名_Dao" 的DAO类, 例如 :
+ * <pre>
+ * &#64;Entity(table = "books")
+ * public class Book {
+ *     &#64;PrimaryKey
+ *     public String id;
+ *     public String name;
+ * }
+ * </pre>
+ * 会生成 Book_Dao. 实体需要有无参的构造函数, 字段不能是 private 的; static 和 transient 字段会被忽略.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface Entity {
+    /**
+     * @return 表名
+     */
+    String table();
+}
@@ -0,0 +1,14 @@
+package com.simple.database.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 该字段不存储到数据库中, 例如通过关联查询加载的数据
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface Ignore {
+}
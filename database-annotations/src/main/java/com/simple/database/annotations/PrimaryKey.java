@@ -0,0 +1,14 @@
+package com.simple.database.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记主键字段, 用于实体缓存、差异计算等按主键进行的操作. 每个实体最多一个.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface PrimaryKey {
+}
@@ -0,0 +1,29 @@
+package com.simple.database.compiler;
+
+/**
+ * 实体中的一个字段
+ */
+final class ColumnInfo {
+    /**
+     * 字段名
+     */
+    final String fieldName;
+    /**
+     * 列名
+     */
+    final String columnName;
+    final ColumnType type;
+    /**
+     * 是否是基本类型, 基本类型不会为 null
+     */
+    final boolean primitive;
+    final boolean primaryKey;
+
+    ColumnInfo(String fieldName, String columnName, ColumnType type, boolean primitive, boolean primaryKey) {
+        this.fieldName = fieldName;
+        this.columnName = columnName;
+        this.type = type;
+        this.primitive = primitive;
+        this.primaryKey = primaryKey;
+    }
+}
@@ -0,0 +1,35 @@
+package com.simple.database.compiler;
+
+/**
+ * 支持的字段类型, 以及每种类型绑定参数、读取 Cursor 所使用的函数
+ */
+enum ColumnType {
+    STRING("bindString", "cursor.getString(%s)", false),
+    BLOB("bindBlob", "cursor.getBlob(%s)", false),
+    INT("bindLong", "cursor.getInt(%s)", true),
+    LONG("bindLong", "cursor.getLong(%s)", true),
+    SHORT("bindLong", "cursor.getShort(%s)", true),
+    BYTE("bindLong", "(byte) cursor.getInt(%s)", true),
+    BOOLEAN("bindLong", "cursor.getInt(%s) != 0", true),
+    FLOAT("bindDouble", "cursor.getFloat(%s)", true),
+    DOUBLE("bindDouble", "cursor.getDouble(%s)", true);
+
+    /**
+     * SqlStatement 中绑定参数的函数名
+     */
+    final String bindMethod;
+    /**
+     * 从 Cursor 中读取数据的表达式, %s 为字段索引
+     */
+    final String readExpression;
+    /**
+     * 是否是数值类型, 数值类型的包装类需要单独处理 null
+     */
+    final boolean numeric;
+
+    ColumnType(String bindMethod, String readExpression, boolean numeric) {
+        this.bindMethod = bindMethod;
+        this.readExpression = readExpression;
+        this.numeric = numeric;
+    }
+}
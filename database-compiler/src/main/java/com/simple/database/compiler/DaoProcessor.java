@@ -0,0 +1,265 @@
+package com.simple.database.compiler;
+
+import com.simple.database.annotations.Column;
+import com.simple.database.annotations.Entity;
+import com.simple.database.annotations.Ignore;
+import com.simple.database.annotations.PrimaryKey;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * 为 {@link Entity} 标记的实体生成DAO类, 并生成一个创建所有DAO的 DaoFactory.
+ * <p>
+ * DaoFactory 的全限定类名可以通过注解处理器参数 simpledb.daoFactory 指定, 默认为
+ * {@value #DEFAULT_FACTORY_NAME}.
+ */
+public class DaoProcessor extends AbstractProcessor {
+    static final String OPTION_FACTORY_NAME = "simpledb.daoFactory";
+    static final String DEFAULT_FACTORY_NAME = "com.simple.database.generated.GeneratedDaoFactory";
+
+    /**
+     * 所有轮次中处理过的实体, 在没有新实体的下一轮中生成 DaoFactory
+     */
+    private final List<EntityInfo> mEntities = new ArrayList<>();
+    private boolean mFactoryWritten;
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(Entity.class.getCanonicalName());
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(OPTION_FACTORY_NAME);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        final Set<? extends Element> elements = roundEnv.getElementsAnnotatedWith(Entity.class);
+        for (Element element : elements) {
+            final EntityInfo entity = parseEntity((TypeElement) element);
+            if (entity != null) {
+                mEntities.add(entity);
+                writeSource(entity.qualifiedDaoName(), DaoWriter.writeDao(entity), element);
+            }
+        }
+        // 生成的DAO会触发下一轮处理, 在这一轮中生成工厂, 避免在最后一轮生成源码
+        if (elements.isEmpty() && !mEntities.isEmpty() && !mFactoryWritten) {
+            mFactoryWritten = true;
+            String factoryName = processingEnv.getOptions().get(OPTION_FACTORY_NAME);
+            if (factoryName == null || factoryName.isEmpty()) {
+                factoryName = DEFAULT_FACTORY_NAME;
+            }
+            final int dot = factoryName.lastIndexOf('.');
+            writeSource(factoryName, DaoWriter.writeFactory(dot > 0 ? factoryName.substring(0, dot) : "",
+                    factoryName.substring(dot + 1), mEntities), null);
+        }
+        return true;
+    }
+
+    /**
+     * 解析实体, 有错误时报告错误并返回null
+     */
+    private EntityInfo parseEntity(TypeElement type) {
+        if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(type, "@Entity can only be used on a concrete class");
+            return null;
+        }
+        if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC)) {
+            error(type, "@Entity nested class must be static");
+            return null;
+        }
+        if (type.getModifiers().contains(Modifier.PRIVATE) || !hasDefaultConstructor(type)) {
+            error(type, "@Entity class must be non-private and have a non-private no-arg constructor");
+            return null;
+        }
+        final String packageName = getPackage(type).getQualifiedName().toString();
+        final List<ColumnInfo> columns = new ArrayList<>();
+        final Set<String> columnNames = new HashSet<>();
+        ColumnInfo primaryKey = null;
+        for (VariableElement field : collectFields(type)) {
+            final ColumnInfo column = parseColumn(field, packageName);
+            if (column == null) {
+                return null;
+            }
+            if (!columnNames.add(column.columnName)) {
+                error(field, "duplicate column name " + column.columnName);
+                return null;
+            }
+            if (column.primaryKey) {
+                if (primaryKey != null) {
+                    error(field, "@Entity can only have one @PrimaryKey");
+                    return null;
+                }
+                primaryKey = column;
+            }
+            columns.add(column);
+        }
+        if (columns.isEmpty()) {
+            error(type, "@Entity class has no column");
+            return null;
+        }
+        final String qualifiedName = type.getQualifiedName().toString();
+        final String entityName = packageName.isEmpty() ? qualifiedName : qualifiedName.substring(packageName.length() + 1);
+        return new EntityInfo(packageName, entityName, type.getAnnotation(Entity.class).table(), columns, primaryKey);
+    }
+
+    /**
+     * 收集实体及其父类中需要存储的字段, 父类的字段在前
+     */
+    private List<VariableElement> collectFields(TypeElement type) {
+        final List<VariableElement> fields = new ArrayList<>();
+        final TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() == TypeKind.DECLARED) {
+            final TypeElement superType = (TypeElement) ((DeclaredType) superclass).asElement();
+            if (!Object.class.getName().equals(superType.getQualifiedName().toString())) {
+                fields.addAll(collectFields(superType));
+            }
+        }
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.FIELD) {
+                continue;
+            }
+            final Set<Modifier> modifiers = member.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)
+                    || member.getAnnotation(Ignore.class) != null) {
+                continue;
+            }
+            fields.add((VariableElement) member);
+        }
+        return fields;
+    }
+
+    private ColumnInfo parseColumn(VariableElement field, String packageName) {
+        final Set<Modifier> modifiers = field.getModifiers();
+        final boolean samePackage = getPackage(field).getQualifiedName().contentEquals(packageName);
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)
+                || (!samePackage && !modifiers.contains(Modifier.PUBLIC))) {
+            error(field, "column field must be accessible from the generated dao and not final, "
+                    + "or be marked with @Ignore");
+            return null;
+        }
+        final TypeMirror fieldType = field.asType();
+        final boolean primitive = fieldType.getKind().isPrimitive();
+        final ColumnType type = columnTypeOf(fieldType);
+        if (type == null) {
+            error(field, "unsupported column type " + fieldType + ", mark the field with @Ignore");
+            return null;
+        }
+        final Column column = field.getAnnotation(Column.class);
+        final String fieldName = field.getSimpleName().toString();
+        return new ColumnInfo(fieldName, column != null ? column.value() : fieldName, type, primitive,
+                field.getAnnotation(PrimaryKey.class) != null);
+    }
+
+    private static ColumnType columnTypeOf(TypeMirror type) {
+        switch (type.getKind()) {
+            case INT:
+                return ColumnType.INT;
+            case LONG:
+                return ColumnType.LONG;
+            case SHORT:
+                return ColumnType.SHORT;
+            case BYTE:
+                return ColumnType.BYTE;
+            case BOOLEAN:
+                return ColumnType.BOOLEAN;
+            case FLOAT:
+                return ColumnType.FLOAT;
+            case DOUBLE:
+                return ColumnType.DOUBLE;
+            case ARRAY:
+                return ((ArrayType) type).getComponentType().getKind() == TypeKind.BYTE ? ColumnType.BLOB : null;
+            case DECLARED:
+                break;
+            default:
+                return null;
+        }
+        final String name = ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+        switch (name) {
+            case "java.lang.String":
+                return ColumnType.STRING;
+            case "java.lang.Integer":
+                return ColumnType.INT;
+            case "java.lang.Long":
+                return ColumnType.LONG;
+            case "java.lang.Short":
+                return ColumnType.SHORT;
+            case "java.lang.Byte":
+                return ColumnType.BYTE;
+            case "java.lang.Boolean":
+                return ColumnType.BOOLEAN;
+            case "java.lang.Float":
+                return ColumnType.FLOAT;
+            case "java.lang.Double":
+                return ColumnType.DOUBLE;
+            default:
+                return null;
+        }
+    }
+
+    private static boolean hasDefaultConstructor(TypeElement type) {
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.CONSTRUCTOR
+                    && ((ExecutableElement) member).getParameters().isEmpty()
+                    && !member.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static PackageElement getPackage(Element element) {
+        while (element.getKind() != ElementKind.PACKAGE) {
+            element = element.getEnclosingElement();
+        }
+        return (PackageElement) element;
+    }
+
+    private void writeSource(String qualifiedName, String source, Element originating) {
+        try {
+            final Writer writer = (originating != null
+                    ? processingEnv.getFiler().createSourceFile(qualifiedName, originating)
+                    : processingEnv.getFiler().createSourceFile(qualifiedName)).openWriter();
+            try {
+                writer.write(source);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "failed to write " + qualifiedName + " : " + e.getMessage(), originating);
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
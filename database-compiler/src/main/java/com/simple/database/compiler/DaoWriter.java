@@ -0,0 +1,199 @@
+package com.simple.database.compiler;
+
+import java.util.List;
+
+/**
+ * 生成DAO类以及DAO工厂的源码. 生成的DAO直接绑定 insert 语句的参数, 按照缓存的字段索引读取 Cursor, 运行时不使用反射.
+ */
+final class DaoWriter {
+    private static final String HEADER = "// 由 " + DaoProcessor.class.getName() + " 生成, 不要修改\n";
+
+    private DaoWriter() {
+    }
+
+    /**
+     * 生成实体的DAO类
+     *
+     * @param entity 实体
+     * @return DAO类的源码
+     */
+    static String writeDao(EntityInfo entity) {
+        final String type = entity.entityName;
+        final List<ColumnInfo> columns = entity.columns;
+        final StringBuilder out = new StringBuilder(4096);
+        out.append(HEADER);
+        if (!entity.packageName.isEmpty()) {
+            out.append("package ").append(entity.packageName).append(";\n\n");
+        }
+        out.append("import android.content.ContentValues;\n")
+                .append("import android.database.Cursor;\n\n")
+                .append("import com.simple.database.dao.AbsDAO;\n")
+                .append("import com.simple.database.storage.SqlStatement;\n\n");
+
+        out.append("/**\n * ").append(entity.tableName).append(" 表的DAO对象, 根据 {@link ").append(type)
+                .append("} 生成.\n */\n");
+        out.append("public class ").append(entity.daoName).append(" extends AbsDAO<").append(type).append("> {\n");
+        out.append("    public static final String TABLE_NAME = ").append(literal(entity.tableName)).append(";\n");
+        out.append("    private static final String[] COLUMNS = {");
+        for (int i = 0; i < columns.size(); i++) {
+            out.append(i > 0 ? ", " : "").append(literal(columns.get(i).columnName));
+        }
+        out.append("};\n\n");
+
+        // 构造函数
+        out.append("    public ").append(entity.daoName).append("() {\n")
+                .append("        super(TABLE_NAME);\n")
+                .append("    }\n\n");
+        out.append("    public ").append(entity.daoName).append("(String table) {\n")
+                .append("        super(table);\n")
+                .append("    }\n\n");
+
+        // 主键
+        final ColumnInfo primaryKey = entity.primaryKey;
+        if (primaryKey != null) {
+            out.append("    @Override\n")
+                    .append("    protected String getPrimaryKeyColumn() {\n")
+                    .append("        return ").append(literal(primaryKey.columnName)).append(";\n")
+                    .append("    }\n\n");
+            out.append("    @Override\n")
+                    .append("    protected Object getPrimaryKey(").append(type).append(" item) {\n")
+                    .append("        return item.").append(primaryKey.fieldName).append(";\n")
+                    .append("    }\n\n");
+        }
+
+        // convert
+        out.append("    @Override\n")
+                .append("    protected ContentValues convert(").append(type).append(" item) {\n")
+                .append("        ContentValues values = new ContentValues(").append(columns.size()).append(");\n");
+        for (ColumnInfo column : columns) {
+            out.append("        values.put(").append(literal(column.columnName)).append(", item.")
+                    .append(column.fieldName).append(");\n");
+        }
+        out.append("        return values;\n")
+                .append("    }\n\n");
+
+        // 直接绑定 insert 参数
+        out.append("    @Override\n")
+                .append("    protected String[] getInsertColumns() {\n")
+                .append("        return COLUMNS;\n")
+                .append("    }\n\n");
+        out.append("    @Override\n")
+                .append("    protected void bindInsertValues(SqlStatement statement, ").append(type).append(" item) {\n");
+        for (int i = 0; i < columns.size(); i++) {
+            final ColumnInfo column = columns.get(i);
+            final String value = "item." + column.fieldName;
+            final int index = i + 1;
+            final String bind = "statement." + column.type.bindMethod + "(" + index + ", "
+                    + (column.type == ColumnType.BOOLEAN ? value + " ? 1 : 0" : value) + ");";
+            if (column.primitive) {
+                out.append("        ").append(bind).append('\n');
+            } else {
+                out.append("        if (").append(value).append(" == null) {\n")
+                        .append("            statement.bindNull(").append(index).append(");\n")
+                        .append("        } else {\n")
+                        .append("            ").append(bind).append('\n')
+                        .append("        }\n");
+            }
+        }
+        out.append("    }\n\n");
+
+        // 按照字段名读取 Cursor
+        out.append("    @Override\n")
+                .append("    protected ").append(type).append(" parseOneItem(Cursor cursor) {\n")
+                .append("        final int[] indexes = getColumnIndexes(cursor, COLUMNS);\n")
+                .append("        ").append(type).append(" item = new ").append(type).append("();\n");
+        for (int i = 0; i < columns.size(); i++) {
+            final ColumnInfo column = columns.get(i);
+            final String index = "indexes[" + i + "]";
+            final String read = String.format(column.type.readExpression, index);
+            out.append("        if (").append(index).append(" >= 0) {\n")
+                    .append("            item.").append(column.fieldName).append(" = ");
+            if (!column.primitive && column.type.numeric) {
+                out.append("cursor.isNull(").append(index).append(") ? null : ");
+            }
+            out.append(read).append(";\n")
+                    .append("        }\n");
+        }
+        out.append("        return item;\n")
+                .append("    }\n\n");
+
+        // 比较内容, 避免转换成 ContentValues
+        out.append("    @Override\n")
+                .append("    protected boolean areContentsTheSame(").append(type).append(" oldItem, ")
+                .append(type).append(" newItem) {\n");
+        for (ColumnInfo column : columns) {
+            final String a = "oldItem." + column.fieldName;
+            final String b = "newItem." + column.fieldName;
+            out.append("        if (");
+            if (column.type == ColumnType.BLOB) {
+                out.append("!java.util.Arrays.equals(").append(a).append(", ").append(b).append(")");
+            } else if (!column.primitive) {
+                out.append("!equal(").append(a).append(", ").append(b).append(")");
+            } else if (column.type == ColumnType.FLOAT) {
+                out.append("Float.compare(").append(a).append(", ").append(b).append(") != 0");
+            } else if (column.type == ColumnType.DOUBLE) {
+                out.append("Double.compare(").append(a).append(", ").append(b).append(") != 0");
+            } else {
+                out.append(a).append(" != ").append(b);
+            }
+            out.append(") {\n")
+                    .append("            return false;\n")
+                    .append("        }\n");
+        }
+        out.append("        return true;\n")
+                .append("    }\n\n");
+        out.append("    private static boolean equal(Object a, Object b) {\n")
+                .append("        return a == null ? b == null : a.equals(b);\n")
+                .append("    }\n");
+        out.append("}\n");
+        return out.toString();
+    }
+
+    /**
+     * 生成创建所有DAO的工厂
+     *
+     * @param packageName 工厂的包名
+     * @param className   工厂的类名
+     * @param entities    所有实体
+     * @return 工厂的源码
+     */
+    static String writeFactory(String packageName, String className, List<EntityInfo> entities) {
+        final StringBuilder out = new StringBuilder(1024);
+        out.append(HEADER);
+        if (!packageName.isEmpty()) {
+            out.append("package ").append(packageName).append(";\n\n");
+        }
+        out.append("import com.simple.database.dao.AbsDAO;\n")
+                .append("import com.simple.database.dao.DaoFactory;\n\n");
+        out.append("/**\n * 创建所有生成的DAO, 通过 {@link com.simple.database.Builder#addDaoFactory(DaoFactory)} 注册.\n */\n");
+        out.append("public final class ").append(className).append(" implements DaoFactory {\n\n");
+        out.append("    @Override\n")
+                .append("    public AbsDAO<?> create(Class<?> daoClass, String tableName) {\n");
+        for (EntityInfo entity : entities) {
+            final String dao = entity.qualifiedDaoName();
+            out.append("        if (daoClass == ").append(dao).append(".class) {\n")
+                    .append("            return tableName != null ? new ").append(dao).append("(tableName) : new ")
+                    .append(dao).append("();\n")
+                    .append("        }\n");
+        }
+        out.append("        return null;\n")
+                .append("    }\n")
+                .append("}\n");
+        return out.toString();
+    }
+
+    /**
+     * @return 字符串的 java 字面量
+     */
+    private static String literal(String value) {
+        final StringBuilder out = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\');
+            }
+            out.append(c);
+        }
+        return out.append('"').toString();
+    }
+}
@@ -0,0 +1,40 @@
+package com.simple.database.compiler;
+
+import java.util.List;
+
+/**
+ * 被 {@code @Entity} 标记的实体
+ */
+final class EntityInfo {
+    final String packageName;
+    /**
+     * 实体的类名, 嵌套类包含外部类名, 例如 Outer.Inner
+     */
+    final String entityName;
+    /**
+     * 生成的DAO类名
+     */
+    final String daoName;
+    final String tableName;
+    final List<ColumnInfo> columns;
+    /**
+     * 主键字段, 没有主键时为null
+     */
+    final ColumnInfo primaryKey;
+
+    EntityInfo(String packageName, String entityName, String tableName, List<ColumnInfo> columns, ColumnInfo primaryKey) {
+        this.packageName = packageName;
+        this.entityName = entityName;
+        this.daoName = entityName.replace('.', '_') + "_Dao";
+        this.tableName = tableName;
+        this.columns = columns;
+        this.primaryKey = primaryKey;
+    }
+
+    /**
+     * @return DAO的全限定类名
+     */
+    String qualifiedDaoName() {
+        return packageName.isEmpty() ? daoName : packageName + "." + daoName;
+    }
+}
@@ -0,0 +1,458 @@
+package com.simple.database.compiler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 通过 javac 运行 {@link DaoProcessor} 编译示例实体, 检查报告的错误, 并加载生成的DAO检查绑定参数与读取 Cursor 的行为.
+ * 生成的DAO依赖的 database 模块以及 Android 类使用下面的最小实现代替.
+ */
+public class DaoProcessorTest {
+    private static final String[][] STUBS = {
+            {"android.content.ContentValues", ""
+                    + "package android.content;\n"
+                    + "public final class ContentValues {\n"
+                    + "    public final java.util.Map<String, Object> values = new java.util.LinkedHashMap<>();\n"
+                    + "    public ContentValues(int size) {}\n"
+                    + "    public void put(String key, String value) { values.put(key, value); }\n"
+                    + "    public void put(String key, Byte value) { values.put(key, value); }\n"
+                    + "    public void put(String key, Short value) { values.put(key, value); }\n"
+                    + "    public void put(String key, Integer value) { values.put(key, value); }\n"
+                    + "    public void put(String key, Long value) { values.put(key, value); }\n"
+                    + "    public void put(String key, Float value) { values.put(key, value); }\n"
+                    + "    public void put(String key, Double value) { values.put(key, value); }\n"
+                    + "    public void put(String key, Boolean value) { values.put(key, value); }\n"
+                    + "    public void put(String key, byte[] value) { values.put(key, value); }\n"
+                    + "}\n"},
+            {"android.database.Cursor", ""
+                    + "package android.database;\n"
+                    + "public interface Cursor {\n"
+                    + "    int getColumnIndex(String name);\n"
+                    + "    boolean isNull(int index);\n"
+                    + "    byte[] getBlob(int index);\n"
+                    + "    String getString(int index);\n"
+                    + "    short getShort(int index);\n"
+                    + "    int getInt(int index);\n"
+                    + "    long getLong(int index);\n"
+                    + "    float getFloat(int index);\n"
+                    + "    double getDouble(int index);\n"
+                    + "}\n"},
+            {"com.simple.database.storage.SqlStatement", ""
+                    + "package com.simple.database.storage;\n"
+                    + "public interface SqlStatement {\n"
+                    + "    void bindNull(int index);\n"
+                    + "    void bindLong(int index, long value);\n"
+                    + "    void bindDouble(int index, double value);\n"
+                    + "    void bindString(int index, String value);\n"
+                    + "    void bindBlob(int index, byte[] value);\n"
+                    + "}\n"},
+            {"com.simple.database.dao.AbsDAO", ""
+                    + "package com.simple.database.dao;\n"
+                    + "import android.content.ContentValues;\n"
+                    + "import android.database.Cursor;\n"
+                    + "import com.simple.database.storage.SqlStatement;\n"
+                    + "public abstract class AbsDAO<T> {\n"
+                    + "    public AbsDAO(String table) {}\n"
+                    + "    protected String getPrimaryKeyColumn() { return null; }\n"
+                    + "    protected Object getPrimaryKey(T item) { return null; }\n"
+                    + "    protected abstract ContentValues convert(T item);\n"
+                    + "    protected String[] getInsertColumns() { return null; }\n"
+                    + "    protected void bindInsertValues(SqlStatement statement, T item) {}\n"
+                    + "    protected abstract T parseOneItem(Cursor cursor);\n"
+                    + "    protected boolean areContentsTheSame(T oldItem, T newItem) { return false; }\n"
+                    + "    protected final int[] getColumnIndexes(Cursor cursor, String[] columns) {\n"
+                    + "        final int[] indexes = new int[columns.length];\n"
+                    + "        for (int i = 0; i < columns.length; i++) {\n"
+                    + "            indexes[i] = cursor.getColumnIndex(columns[i]);\n"
+                    + "        }\n"
+                    + "        return indexes;\n"
+                    + "    }\n"
+                    + "}\n"},
+            {"com.simple.database.dao.DaoFactory", ""
+                    + "package com.simple.database.dao;\n"
+                    + "public interface DaoFactory {\n"
+                    + "    AbsDAO<?> create(Class<?> daoClass, String tableName);\n"
+                    + "}\n"},
+    };
+
+    private File mGeneratedDir;
+    private File mClassesDir;
+    private URLClassLoader mClassLoader;
+    private final List<String> mErrors = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        mGeneratedDir = Files.createTempDirectory("dao-processor-source").toFile();
+        mClassesDir = Files.createTempDirectory("dao-processor-classes").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (mClassLoader != null) {
+            mClassLoader.close();
+        }
+        delete(mGeneratedDir);
+        delete(mClassesDir);
+    }
+
+    private static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * 内存中的源文件
+     */
+    private static final class Source extends SimpleJavaFileObject {
+        private final String mCode;
+
+        Source(String className, String code) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            mCode = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return mCode;
+        }
+    }
+
+    /**
+     * 编译示例源码以及生成的源码, 错误信息保存在 mErrors 中
+     *
+     * @param className 类的全限定名
+     * @param code      源码
+     * @return 是否没有错误
+     */
+    private boolean compile(String className, String code) throws IOException {
+        final List<Source> sources = new ArrayList<>();
+        for (String[] stub : STUBS) {
+            sources.add(new Source(stub[0], stub[1]));
+        }
+        sources.add(new Source(className, code));
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, Locale.US, null);
+        try {
+            final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                    Arrays.asList("-s", mGeneratedDir.getPath(), "-d", mClassesDir.getPath(),
+                            "-classpath", System.getProperty("java.class.path")),
+                    null, sources);
+            task.setProcessors(Collections.singletonList(new DaoProcessor()));
+            final boolean success = task.call();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    mErrors.add(diagnostic.getMessage(Locale.US));
+                }
+            }
+            return success;
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    private void assertCompiled(String className, String code) throws IOException {
+        final boolean success = compile(className, code);
+        assertTrue(mErrors.toString(), success);
+        mClassLoader = new URLClassLoader(new URL[]{mClassesDir.toURI().toURL()}, getClass().getClassLoader());
+    }
+
+    /**
+     * @return 生成的源码
+     */
+    private String generated(String className) throws IOException {
+        final File file = new File(mGeneratedDir, className.replace('.', File.separatorChar) + ".java");
+        assertTrue("missing generated " + className, file.isFile());
+        return new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+    }
+
+    private Object newInstance(String className) throws Exception {
+        return newInstance(mClassLoader.loadClass(className));
+    }
+
+    private static Object newInstance(Class<?> type) throws Exception {
+        final Constructor<?> constructor = type.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return constructor.newInstance();
+    }
+
+    /**
+     * @return 实体的字段, 实体类可以不是 public 的
+     */
+    private static Field field(Class<?> type, String name) throws NoSuchFieldException {
+        final Field field = type.getField(name);
+        field.setAccessible(true);
+        return field;
+    }
+
+    /**
+     * 调用DAO的 protected 函数
+     */
+    private static Object call(Object dao, String name, Object... args) throws Exception {
+        for (Class<?> type = dao.getClass(); type != null; type = type.getSuperclass()) {
+            for (Method method : type.getDeclaredMethods()) {
+                if (method.getName().equals(name) && method.getParameterTypes().length == args.length
+                        && !method.isBridge()) {
+                    method.setAccessible(true);
+                    return method.invoke(dao, args);
+                }
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+
+    /**
+     * @return 记录所有绑定操作的 SqlStatement
+     */
+    private Object recordingStatement(final List<String> calls) throws ClassNotFoundException {
+        final Class<?> type = mClassLoader.loadClass("com.simple.database.storage.SqlStatement");
+        return Proxy.newProxyInstance(mClassLoader, new Class<?>[]{type}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                final Object value = args.length > 1 ? args[1] : null;
+                calls.add(method.getName() + "(" + args[0]
+                        + (args.length > 1 ? ", " + (value instanceof byte[] ? Arrays.toString((byte[]) value) : value) : "")
+                        + ")");
+                return null;
+            }
+        });
+    }
+
+    /**
+     * @param row 列名以及对应的值, 列的顺序与 getInsertColumns 无关
+     * @return 只有一行数据的 Cursor
+     */
+    private Object cursor(final Map<String, Object> row) throws ClassNotFoundException {
+        final List<String> columns = new ArrayList<>(row.keySet());
+        final Class<?> type = mClassLoader.loadClass("android.database.Cursor");
+        return Proxy.newProxyInstance(mClassLoader, new Class<?>[]{type}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getColumnIndex")) {
+                    return columns.indexOf(args[0]);
+                }
+                final Object value = row.get(columns.get((Integer) args[0]));
+                switch (method.getName()) {
+                    case "isNull":
+                        return value == null;
+                    case "getInt":
+                        return value == null ? 0 : ((Number) value).intValue();
+                    case "getLong":
+                        return value == null ? 0L : ((Number) value).longValue();
+                    case "getShort":
+                        return value == null ? (short) 0 : ((Number) value).shortValue();
+                    case "getFloat":
+                        return value == null ? 0f : ((Number) value).floatValue();
+                    case "getDouble":
+                        return value == null ? 0d : ((Number) value).doubleValue();
+                    default:
+                        return value;
+                }
+            }
+        });
+    }
+
+    @Test
+    public void entityWithoutPrimaryKey() throws Exception {
+        assertCompiled("sample.Log", ""
+                + "package sample;\n"
+                + "import com.simple.database.annotations.Entity;\n"
+                + "@Entity(table = \"logs\")\n"
+                + "public class Log {\n"
+                + "    public long time;\n"
+                + "    public String message;\n"
+                + "}\n");
+        // 没有主键时不覆写, 使用 AbsDAO 的默认实现
+        assertFalse(generated("sample.Log_Dao").contains("getPrimaryKeyColumn"));
+        final Object dao = newInstance("sample.Log_Dao");
+        assertNull(call(dao, "getPrimaryKeyColumn"));
+        assertArrayEquals(new String[]{"time", "message"}, (String[]) call(dao, "getInsertColumns"));
+
+        final Object factory = newInstance(DaoProcessor.DEFAULT_FACTORY_NAME);
+        final Object created = factory.getClass().getMethod("create", Class.class, String.class)
+                .invoke(factory, dao.getClass(), null);
+        assertEquals(dao.getClass(), created.getClass());
+    }
+
+    @Test
+    public void twoPrimaryKeysAreRejected() throws Exception {
+        assertFalse(compile("sample.Pair", ""
+                + "package sample;\n"
+                + "import com.simple.database.annotations.Entity;\n"
+                + "import com.simple.database.annotations.PrimaryKey;\n"
+                + "@Entity(table = \"pairs\")\n"
+                + "public class Pair {\n"
+                + "    @PrimaryKey public long first;\n"
+                + "    @PrimaryKey public long second;\n"
+                + "}\n"));
+        assertEquals(Collections.singletonList("@Entity can only have one @PrimaryKey"), mErrors);
+    }
+
+    @Test
+    public void inaccessibleFieldIsRejected() throws Exception {
+        assertFalse(compile("sample.Secret", ""
+                + "package sample;\n"
+                + "import com.simple.database.annotations.Entity;\n"
+                + "@Entity(table = \"secrets\")\n"
+                + "public class Secret {\n"
+                + "    private String value;\n"
+                + "}\n"));
+        assertEquals(1, mErrors.size());
+        assertTrue(mErrors.get(0), mErrors.get(0).startsWith("column field must be accessible"));
+    }
+
+    @Test
+    public void nullableBoxedFields() throws Exception {
+        assertCompiled("sample.Score", ""
+                + "package sample;\n"
+                + "import com.simple.database.annotations.Entity;\n"
+                + "import com.simple.database.annotations.PrimaryKey;\n"
+                + "@Entity(table = \"scores\")\n"
+                + "public class Score {\n"
+                + "    @PrimaryKey public long id;\n"
+                + "    public Integer points;\n"
+                + "    public Boolean passed;\n"
+                + "    public Double ratio;\n"
+                + "    public String comment;\n"
+                + "}\n");
+        final Object dao = newInstance("sample.Score_Dao");
+        final Class<?> type = mClassLoader.loadClass("sample.Score");
+
+        // 包装类以及 String 为 null 时绑定 null
+        final Object score = newInstance(type);
+        field(type, "id").set(score, 7L);
+        field(type, "passed").set(score, Boolean.TRUE);
+        final List<String> calls = new ArrayList<>();
+        call(dao, "bindInsertValues", recordingStatement(calls), score);
+        assertEquals(Arrays.asList("bindLong(1, 7)", "bindNull(2)", "bindLong(3, 1)", "bindNull(4)", "bindNull(5)"),
+                calls);
+
+        field(type, "points").set(score, 5);
+        field(type, "passed").set(score, null);
+        field(type, "ratio").set(score, 0.5);
+        field(type, "comment").set(score, "ok");
+        calls.clear();
+        call(dao, "bindInsertValues", recordingStatement(calls), score);
+        assertEquals(Arrays.asList("bindLong(1, 7)", "bindLong(2, 5)", "bindNull(3)", "bindDouble(4, 0.5)",
+                "bindString(5, ok)"), calls);
+
+        // 数值包装类读取到 null 时不会变成 0 或者 false
+        final Map<String, Object> row = new HashMap<>();
+        row.put("id", 9L);
+        row.put("points", null);
+        row.put("passed", null);
+        row.put("ratio", null);
+        row.put("comment", null);
+        final Object parsed = call(dao, "parseOneItem", cursor(row));
+        assertEquals(9L, field(type, "id").get(parsed));
+        assertNull(field(type, "points").get(parsed));
+        assertNull(field(type, "passed").get(parsed));
+        assertNull(field(type, "ratio").get(parsed));
+        assertNull(field(type, "comment").get(parsed));
+
+        row.put("points", 3);
+        row.put("passed", 0);
+        final Object parsedValues = call(dao, "parseOneItem", cursor(row));
+        assertEquals(3, field(type, "points").get(parsedValues));
+        assertEquals(Boolean.FALSE, field(type, "passed").get(parsedValues));
+        assertTrue((Boolean) call(dao, "areContentsTheSame", parsedValues, parsedValues));
+        assertFalse((Boolean) call(dao, "areContentsTheSame", parsed, parsedValues));
+    }
+
+    @Test
+    public void insertColumnsMatchBindOrder() throws Exception {
+        assertCompiled("sample.Book", ""
+                + "package sample;\n"
+                + "import com.simple.database.annotations.Column;\n"
+                + "import com.simple.database.annotations.Entity;\n"
+                + "import com.simple.database.annotations.Ignore;\n"
+                + "import com.simple.database.annotations.PrimaryKey;\n"
+                + "public class Book extends Base {\n"
+                + "    @Column(\"book_title\") public String title;\n"
+                + "    @Ignore public Object cover;\n"
+                + "    public static int sCount;\n"
+                + "    public transient int mHash;\n"
+                + "    public double price;\n"
+                + "    public byte[] thumbnail;\n"
+                + "}\n"
+                + "class Base {\n"
+                + "    @PrimaryKey @Column(\"_id\") public String id;\n"
+                + "}\n"
+                + "@Entity(table = \"novels\")\n"
+                + "class Novel extends Book {\n"
+                + "    @Column(\"author_name\") public String author;\n"
+                + "}\n");
+        final Object dao = newInstance("sample.Novel_Dao");
+        final Class<?> type = mClassLoader.loadClass("sample.Novel");
+        final Object novel = newInstance(type);
+        field(type, "id").set(novel, "b1");
+        field(type, "title").set(novel, "Title");
+        field(type, "price").set(novel, 9.5);
+        field(type, "thumbnail").set(novel, new byte[]{1, 2});
+        field(type, "author").set(novel, "Author");
+
+        // 父类的字段在前, 忽略 @Ignore, static 以及 transient 字段
+        final String[] columns = (String[]) call(dao, "getInsertColumns");
+        assertArrayEquals(new String[]{"_id", "book_title", "price", "thumbnail", "author_name"}, columns);
+        assertEquals("_id", call(dao, "getPrimaryKeyColumn"));
+        assertEquals("b1", call(dao, "getPrimaryKey", novel));
+
+        // 第 i 个参数绑定的是第 i 列对应的字段, 与 convert 的结果一致
+        final List<String> calls = new ArrayList<>();
+        call(dao, "bindInsertValues", recordingStatement(calls), novel);
+        assertEquals(Arrays.asList("bindString(1, b1)", "bindString(2, Title)", "bindDouble(3, 9.5)",
+                "bindBlob(4, [1, 2])", "bindString(5, Author)"), calls);
+        final Object values = call(dao, "convert", novel);
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> converted = (Map<String, Object>) values.getClass().getField("values").get(values);
+        assertEquals(Arrays.asList(columns), new ArrayList<>(converted.keySet()));
+
+        // 查询结果中列的顺序与 getInsertColumns 不同时按照列名读取
+        final Map<String, Object> row = new HashMap<>();
+        for (String column : new String[]{"author_name", "thumbnail", "price", "book_title", "_id"}) {
+            row.put(column, converted.get(column));
+        }
+        final Object parsed = call(dao, "parseOneItem", cursor(row));
+        assertTrue((Boolean) call(dao, "areContentsTheSame", novel, parsed));
+    }
+}
@@ -1,8 +1,20 @@
 package com.simple.database;
 
 import android.content.Context;
+import android.os.Process;
 import android.text.TextUtils;
 
+import com.simple.database.dao.DaoFactory;
+import com.simple.database.metrics.DbMetrics;
+import com.simple.database.metrics.MetricsReporter;
+import com.simple.database.metrics.SlowQueryLog;
+import com.simple.database.task.CallbackDispatcher;
+import com.simple.database.task.DbScheduler;
+import com.simple.database.task.DefaultDbScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 创建数据库的参数 Builder 类， 设置数据库名、版本、创建数据库的sql文件、数据库更新sql目录等
  */
@@ -43,6 +55,90 @@ public class Builder {
      * 升级数据库的sql文件存储目录,默认为 db/migrations
      */
     String upgradePath = SQL_PATH;
+    /**
+     * 查询结果缓存的最大数量, 为0时不开启查询缓存
+     */
+    int queryCacheSize = 0;
+    /**
+     * 查询结果缓存的最大字节数 ( 估算值 ), 为0时不限制
+     */
+    long queryCacheMaxBytes = 0;
+    /**
+     * 查询结果缓存的有效期, 单位为毫秒, 为0时不过期
+     */
+    long queryCacheTtl = 0;
+    /**
+     * 组提交时每个事务最多包含的任务数量, 小于等于1时不开启组提交
+     */
+    int groupCommitBatchSize = 0;
+    /**
+     * 组提交时等待后续任务的最长时间, 单位为毫秒
+     */
+    long groupCommitWindow = 0;
+    /**
+     * 并发通道 ( 读操作 ) 的线程数
+     */
+    int readPoolSize = DefaultDbScheduler.DEFAULT_READ_POOL_SIZE;
+    /**
+     * 数据库线程的优先级
+     */
+    int threadPriority = Process.THREAD_PRIORITY_DEFAULT;
+    /**
+     * 数据库线程名的前缀
+     */
+    String threadName = "simpledb";
+    /**
+     * 每个通道的任务队列容量, 为0时不限制
+     */
+    int queueCapacity = 0;
+    /**
+     * 低优先级任务每等待多长时间提升一级优先级, 单位为毫秒
+     */
+    long priorityAgingMillis = DefaultDbScheduler.DEFAULT_AGING_MILLIS;
+    /**
+     * 自定义的任务调度器, 设置之后上面几个线程相关的配置不再生效
+     */
+    DbScheduler scheduler;
+    /**
+     * 回调线程的调度器, 为null时在UI线程中回调
+     */
+    CallbackDispatcher callbackDispatcher;
+    /**
+     * 创建DAO对象的工厂, 例如注解处理器生成的工厂
+     */
+    final List<DaoFactory> daoFactories = new ArrayList<>();
+    /**
+     * 是否统计每个DAO的操作耗时
+     */
+    boolean metricsEnabled = false;
+    /**
+     * 定期上报统计数据的 reporter
+     */
+    MetricsReporter metricsReporter;
+    /**
+     * 上报统计数据的间隔, 单位为毫秒
+     */
+    long metricsReportInterval = 0;
+    /**
+     * 慢查询的阈值, 单位为毫秒, 为0时不记录慢查询
+     */
+    long slowQueryThreshold = 0;
+    /**
+     * 最多保存的慢查询数量
+     */
+    int slowQueryCapacity = 0;
+    /**
+     * 慢查询日志中是否不记录查询参数
+     */
+    boolean slowQueryRedactArgs = false;
+    /**
+     * 是否在后台线程中打开数据库
+     */
+    boolean openInBackground = false;
+    /**
+     * 数据库打开之后预热的 sql 语句
+     */
+    final List<String> warmUpSqls = new ArrayList<>();
 
     public Builder(Context context) {
         this.context = context;
@@ -91,6 +187,208 @@ public class Builder {
         return this;
     }
 
+    /**
+     * 开启 AsyncDAO 的查询结果缓存, 表中数据发生变化时该表的缓存会失效
+     *
+     * @param maxEntries 最多缓存的查询数量, 为0时关闭缓存
+     * @return
+     */
+    public Builder setQueryCacheSize(int maxEntries) {
+        this.queryCacheSize = maxEntries;
+        return this;
+    }
+
+    /**
+     * 设置查询结果缓存的最大字节数, 大小通过 {@link com.simple.database.dao.AbsDAO#estimateSize(Object)} 估算
+     *
+     * @param maxBytes 最大字节数, 为0时不限制
+     * @return
+     */
+    public Builder setQueryCacheMaxBytes(long maxBytes) {
+        this.queryCacheMaxBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * 设置查询结果缓存的有效期
+     *
+     * @param ttlMillis 有效期, 单位为毫秒, 为0时不过期
+     * @return
+     */
+    public Builder setQueryCacheTtl(long ttlMillis) {
+        this.queryCacheTtl = ttlMillis;
+        return this;
+    }
+
+    /**
+     * 开启串行线程池的组提交 : 将排队中的写任务合并到一个事务中执行, 每个任务使用单独的 SAVEPOINT 隔离错误.
+     * 频繁的小量写操作 ( 例如日志 ) 可以大幅减少事务提交的次数. 串行通道中的任务 ( 包括只读任务 ) 仍然按照提交顺序执行.
+     *
+     * @param maxBatchSize 每个事务最多包含的任务数量, 小于等于1时关闭组提交
+     * @param windowMillis 取到第一个任务之后最多等待后续任务的时间, 单位为毫秒, 为0时只合并已经在排队的任务
+     * @return
+     */
+    public Builder setGroupCommit(int maxBatchSize, long windowMillis) {
+        this.groupCommitBatchSize = maxBatchSize;
+        this.groupCommitWindow = Math.max(windowMillis, 0);
+        return this;
+    }
+
+    /**
+     * 设置并发通道 ( 开启WAL之后的读操作 ) 的线程数, 一般不超过 SQLite 连接池中读连接的数量
+     *
+     * @param readPoolSize 线程数, 默认为2
+     * @return
+     */
+    public Builder setReadPoolSize(int readPoolSize) {
+        this.readPoolSize = readPoolSize;
+        return this;
+    }
+
+    /**
+     * 设置数据库线程的优先级
+     *
+     * @param threadPriority 取值为 {@link Process#THREAD_PRIORITY_BACKGROUND} 等
+     * @return
+     */
+    public Builder setThreadPriority(int threadPriority) {
+        this.threadPriority = threadPriority;
+        return this;
+    }
+
+    /**
+     * 设置数据库线程名的前缀, 线程名为 前缀-serial-n 或者 前缀-read-n
+     *
+     * @param threadName 线程名前缀
+     * @return
+     */
+    public Builder setThreadName(String threadName) {
+        this.threadName = threadName;
+        return this;
+    }
+
+    /**
+     * 设置每个通道的任务队列容量, 队列满了之后提交的任务会以 {@link java.util.concurrent.RejectedExecutionException} 失败,
+     * 异常传递给任务的 {@link com.simple.database.task.DbFuture}
+     *
+     * @param queueCapacity 队列容量, 为0时不限制
+     * @return
+     */
+    public Builder setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * 设置任务优先级的提升间隔 : 并发通道中低优先级的任务每等待 agingMillis 毫秒提升一级优先级, 避免后台任务被饿死.
+     * 串行通道按照提交顺序执行, 不受该配置影响. 没有开启 WAL 时查询也在串行通道中执行, 此时优先级与该配置都不生效
+     *
+     * @param agingMillis 提升间隔, 单位为毫秒, 为0时不提升
+     * @return
+     */
+    public Builder setPriorityAging(long agingMillis) {
+        this.priorityAgingMillis = agingMillis;
+        return this;
+    }
+
+    /**
+     * 设置自定义的任务调度器
+     *
+     * @param scheduler 任务调度器
+     * @return
+     */
+    public Builder setScheduler(DbScheduler scheduler) {
+        this.scheduler = scheduler;
+        return this;
+    }
+
+    /**
+     * 设置回调线程的调度器, 任务结果以及 {@link com.simple.database.task.DbFuture} 的回调都在这里执行, 默认在UI线程中回调
+     *
+     * @param dispatcher 回调线程的调度器
+     * @return
+     */
+    public Builder setCallbackDispatcher(CallbackDispatcher dispatcher) {
+        this.callbackDispatcher = dispatcher;
+        return this;
+    }
+
+    /**
+     * 添加创建DAO对象的工厂, 通常是注解处理器生成的 GeneratedDaoFactory. 没有对应工厂的DAO仍然通过反射创建.
+     *
+     * @param factory DAO工厂
+     * @return
+     */
+    public Builder addDaoFactory(DaoFactory factory) {
+        this.daoFactories.add(factory);
+        return this;
+    }
+
+    /**
+     * 开启操作统计 : 按照DAO类型和操作类型记录排队时间、执行时间、回调延迟、读写行数以及失败次数,
+     * 通过 {@link DbMetrics#snapshot(boolean)} 获取
+     *
+     * @param enabled 是否开启, 默认关闭
+     * @return
+     */
+    public Builder setMetricsEnabled(boolean enabled) {
+        this.metricsEnabled = enabled;
+        return this;
+    }
+
+    /**
+     * 设置定期上报统计数据的 reporter, 同时开启操作统计
+     *
+     * @param reporter       上报接口
+     * @param intervalMillis 上报间隔, 单位为毫秒
+     * @return
+     */
+    public Builder setMetricsReporter(MetricsReporter reporter, long intervalMillis) {
+        this.metricsEnabled = reporter != null || metricsEnabled;
+        this.metricsReporter = reporter;
+        this.metricsReportInterval = intervalMillis;
+        return this;
+    }
+
+    /**
+     * 开启慢查询日志, 耗时超过阈值的查询会记录 sql、参数、耗时以及查询计划, 参考 {@link SlowQueryLog}
+     *
+     * @param thresholdMillis 慢查询的阈值, 单位为毫秒, 为0时关闭
+     * @param capacity        最多保存的记录数量, 超过之后覆盖最早的记录
+     * @param redactArgs      是否不记录查询参数
+     * @return
+     */
+    public Builder setSlowQueryLog(long thresholdMillis, int capacity, boolean redactArgs) {
+        this.slowQueryThreshold = thresholdMillis;
+        this.slowQueryCapacity = capacity;
+        this.slowQueryRedactArgs = redactArgs;
+        return this;
+    }
+
+    /**
+     * 在后台线程中打开数据库 ( 包括创建、升级数据库以及开启 WAL ), {@link #create()} 会立即返回. 数据库打开之前提交的任务会先排队,
+     * 打开之后按照提交顺序执行; 这期间创建的 DAO 在第一次执行 sql 时才等待数据库打开.
+     *
+     * @param openInBackground 是否在后台打开, 默认在调用 {@link #create()} 的线程中打开
+     * @return
+     */
+    public Builder setOpenInBackground(boolean openInBackground) {
+        this.openInBackground = openInBackground;
+        return this;
+    }
+
+    /**
+     * 添加数据库打开之后预热的 sql 语句, 例如首屏的查询. 查询语句会执行一次并读取全部结果, 将用到的数据页加载到缓存中;
+     * 其他语句只会预编译. 预热以后台优先级的任务执行, 后台打开时在数据库打开之前排队的任务之后执行, 不会推迟首屏查询.
+     *
+     * @param sql 不带参数的 sql 语句
+     * @return
+     */
+    public Builder addWarmUpSql(String sql) {
+        this.warmUpSqls.add(sql);
+        return this;
+    }
+
     public Context getContext() {
         return context;
     }
@@ -115,6 +413,57 @@ public class Builder {
         return upgradePath;
     }
 
+    /**
+     * @return 自定义的任务调度器, 没有设置时根据线程相关的配置创建默认的调度器
+     */
+    public DbScheduler getScheduler() {
+        if (scheduler == null) {
+            scheduler = new DefaultDbScheduler(readPoolSize, threadPriority, threadName, queueCapacity,
+                    priorityAgingMillis);
+        }
+        return scheduler;
+    }
+
+    public CallbackDispatcher getCallbackDispatcher() {
+        return callbackDispatcher;
+    }
+
+    public List<DaoFactory> getDaoFactories() {
+        return daoFactories;
+    }
+
+    public int getGroupCommitBatchSize() {
+        return groupCommitBatchSize;
+    }
+
+    public long getGroupCommitWindow() {
+        return groupCommitWindow;
+    }
+
+    public int getQueryCacheSize() {
+        return queryCacheSize;
+    }
+
+    public long getQueryCacheMaxBytes() {
+        return queryCacheMaxBytes;
+    }
+
+    public long getQueryCacheTtl() {
+        return queryCacheTtl;
+    }
+
+    public boolean isOpenInBackground() {
+        return openInBackground;
+    }
+
+    public List<String> getWarmUpSqls() {
+        return warmUpSqls;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
     private void checkConfig() {
         if (TextUtils.isEmpty(dbName)) {
             throw new IllegalArgumentException("你没有设置数据库名称 !!! ");
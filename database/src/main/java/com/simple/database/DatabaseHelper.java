@@ -25,9 +25,11 @@
 package com.simple.database;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
+import com.simple.database.cache.QueryCache;
 import com.simple.database.crud.CountBuilder;
 import com.simple.database.crud.DeleteBuilder;
 import com.simple.database.crud.InsertBuilder;
@@ -35,35 +37,199 @@ import com.simple.database.crud.QueryBuilder;
 import com.simple.database.crud.UpdateBuilder;
 import com.simple.database.cursor.CloseCursorFactory;
 import com.simple.database.dao.AbsDAO;
+import com.simple.database.dao.async.AsyncDAO;
+import com.simple.database.metrics.DbMetrics;
+import com.simple.database.metrics.SlowQueryLog;
+import com.simple.database.storage.AndroidSqlConnection;
+import com.simple.database.storage.DbStorage;
+import com.simple.database.storage.DeferredSqlConnection;
+import com.simple.database.storage.SqlConnection;
+import com.simple.database.storage.SqlStorage;
+import com.simple.database.task.DbTask;
+import com.simple.database.task.Priority;
+import com.simple.database.task.ReadTask;
 import com.simple.database.upgrade.DbUpgradeHelper;
 import com.simple.database.upgrade.SqlParser;
 import com.simple.database.utils.IOUtils;
+import com.simple.database.utils.Platform;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
 
 /**
- * 数据库 Helper 类, 控制 数据库的创建、升级以及获取 SQLiteDatabase对象
+ * 数据库 Helper 类, 控制 数据库的创建、升级以及获取 SQLiteDatabase对象. 同时也是 Android 上的存储后端 ( {@link SqlStorage} ),
+ * 创建时会安装到 {@link DbStorage} 中.
+ * <p>
+ * 通过 {@link Builder#setOpenInBackground(boolean)} 可以在后台线程中打开数据库, 打开完成之前提交的任务会先排队.
  *
  * @author mrsimple
  */
-public class DatabaseHelper extends SQLiteOpenHelper {
+public class DatabaseHelper extends SQLiteOpenHelper implements SqlStorage {
+    private static final String TAG = DatabaseHelper.class.getSimpleName();
     private volatile SQLiteDatabase mWritableDb;
     private volatile SQLiteDatabase mReadableDb;
+    private volatile SqlConnection mWritableConnection;
+    private volatile SqlConnection mReadableConnection;
     private static DatabaseHelper sDatabaseHelper;
     private DbUpgradeHelper mUpgradeHelper;
     private Builder mBuilder;
     private volatile boolean isWALEnable = false;
+    /**
+     * 数据库打开完成 ( 成功或者失败 ) 之后 countDown
+     */
+    private final CountDownLatch mOpenLatch = new CountDownLatch(1);
+    /**
+     * 打开数据库时抛出的异常
+     */
+    private volatile RuntimeException mOpenError;
 
     DatabaseHelper(Builder builder) {
         // 指定了 CursorFactory, 用于确保 Cursor对象被正确关闭
         super(builder.context, builder.dbName, new CloseCursorFactory(), builder.dbVersion);
         mBuilder = builder;
         sDatabaseHelper = this;
-        mWritableDb = getWritableDatabase();
-        mReadableDb = getReadableDatabase();
-        isWALEnable = mWritableDb.enableWriteAheadLogging();
+        QueryCache.getInstance().configure(builder.queryCacheSize, builder.queryCacheMaxBytes, builder.queryCacheTtl);
+        DbTask.setScheduler(builder.getScheduler());
+        if (builder.getCallbackDispatcher() != null) {
+            DbTask.setCallbackDispatcher(builder.getCallbackDispatcher());
+        }
+        DbTask.setGroupCommit(builder.getGroupCommitBatchSize(), builder.getGroupCommitWindow());
+        AsyncDAO.setDaoFactories(builder.getDaoFactories());
+        DbMetrics.getInstance().setEnabled(builder.metricsEnabled);
+        DbMetrics.getInstance().setReporter(builder.metricsReporter, builder.metricsReportInterval);
+        SlowQueryLog.getInstance().configure(builder.slowQueryThreshold, builder.slowQueryCapacity,
+                builder.slowQueryRedactArgs);
+        if (builder.isOpenInBackground()) {
+            openInBackground();
+        } else {
+            openDatabase();
+            DbStorage.install(this);
+            submitWarmUp();
+        }
+    }
+
+    /**
+     * 在后台线程中打开数据库, 完成之前提交的任务先排队. 打开之后立即恢复提交任务, 预热在排队的任务之后以后台优先级执行,
+     * 不会推迟首屏查询.
+     */
+    private void openInBackground() {
+        DbTask.pauseDispatch();
+        DbStorage.install(this);
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                boolean opened = false;
+                try {
+                    openDatabase();
+                    opened = true;
+                } catch (RuntimeException e) {
+                    Platform.e(TAG, "### open database failed : " + mBuilder.getDbName(), e);
+                    mOpenError = e;
+                } finally {
+                    if (!opened && mOpenError == null) {
+                        // 抛出了 Error, 同样结束等待, 避免 awaitReady 永远阻塞
+                        mOpenError = new IllegalStateException("open database aborted : " + mBuilder.getDbName());
+                    }
+                    mOpenLatch.countDown();
+                    // 打开失败时排队的任务会在执行时收到异常
+                    DbTask.resumeDispatch();
+                }
+                if (opened) {
+                    submitWarmUp();
+                }
+            }
+        }, mBuilder.threadName + "-open");
+        thread.start();
+    }
+
+    /**
+     * 以后台优先级的只读任务执行预热语句
+     */
+    private void submitWarmUp() {
+        if (mBuilder.getWarmUpSqls().isEmpty()) {
+            return;
+        }
+        new ReadTask<Void>() {
+            @Override
+            protected Void doInBackground() {
+                warmUp();
+                return null;
+            }
+        }.setPriority(Priority.BACKGROUND).executeConcurrent();
+    }
+
+    /**
+     * 打开数据库、开启 WAL 并且创建连接, 完成之后数据库可用
+     */
+    private void openDatabase() {
+        final SQLiteDatabase writableDb = super.getWritableDatabase();
+        final boolean walEnabled = writableDb.enableWriteAheadLogging();
+        final SQLiteDatabase readableDb = super.getReadableDatabase();
+        mWritableDb = writableDb;
+        mReadableDb = readableDb;
+        isWALEnable = walEnabled;
+        mWritableConnection = new AndroidSqlConnection(writableDb, walEnabled);
+        mReadableConnection = new AndroidSqlConnection(readableDb, walEnabled);
+        mOpenLatch.countDown();
+    }
+
+    /**
+     * 执行 {@link Builder#addWarmUpSql(String)} 添加的语句 : 查询语句读取全部结果, 将数据页加载到缓存中; 其他语句只预编译,
+     * 编译好的语句会进入连接的语句缓存. 预热失败只记录日志.
+     */
+    private void warmUp() {
+        final List<String> sqls = mBuilder.getWarmUpSqls();
+        for (String sql : sqls) {
+            final long startTime = System.nanoTime();
+            try {
+                if (isQuery(sql)) {
+                    final Cursor cursor = mReadableConnection.query(sql, null, null);
+                    try {
+                        cursor.moveToLast();
+                    } finally {
+                        cursor.close();
+                    }
+                } else {
+                    mWritableConnection.compileStatement(sql).close();
+                }
+                Platform.d(TAG, "warm up " + (System.nanoTime() - startTime) / 1000000 + " ms : " + sql);
+            } catch (RuntimeException e) {
+                Platform.w(TAG, "### warm up failed : " + sql, e);
+            }
+        }
+    }
+
+    private static boolean isQuery(String sql) {
+        final String prefix = sql.trim().toUpperCase(Locale.US);
+        return prefix.startsWith("SELECT") || prefix.startsWith("WITH") || prefix.startsWith("PRAGMA");
+    }
+
+    /**
+     * @return 数据库是否已经打开完成
+     */
+    public boolean isReady() {
+        return mOpenLatch.getCount() == 0;
+    }
+
+    /**
+     * 等待数据库打开完成, 数据库在后台打开时会阻塞调用线程
+     *
+     * @throws IllegalStateException 打开数据库失败或者等待时线程被中断
+     */
+    public void awaitReady() {
+        try {
+            mOpenLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for database open", e);
+        }
+        final RuntimeException error = mOpenError;
+        if (error != null) {
+            throw new IllegalStateException("open database failed", error);
+        }
     }
 
     /**
@@ -89,9 +255,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     @Override
     public SQLiteDatabase getWritableDatabase() {
-        if (mWritableDb == null) {
-            mWritableDb = super.getWritableDatabase();
-        }
+        awaitReady();
         return mWritableDb;
     }
 
@@ -102,9 +266,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     @Override
     public SQLiteDatabase getReadableDatabase() {
-        if (mReadableDb == null) {
-            mReadableDb = super.getReadableDatabase();
-        }
+        awaitReady();
         return mReadableDb;
     }
 
@@ -138,6 +300,50 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return isWALEnable;
     }
 
+    /**
+     * 数据库还在后台打开时返回第一次使用才等待打开完成的连接, 不会阻塞调用线程
+     */
+    @Override
+    public SqlConnection getWritableConnection() {
+        final SqlConnection connection = mWritableConnection;
+        if (connection != null) {
+            return connection;
+        }
+        return new DeferredSqlConnection() {
+            @Override
+            protected SqlConnection open() {
+                awaitReady();
+                return mWritableConnection;
+            }
+        };
+    }
+
+    /**
+     * 参考 {@link #getWritableConnection()}
+     */
+    @Override
+    public SqlConnection getReadableConnection() {
+        final SqlConnection connection = mReadableConnection;
+        if (connection != null) {
+            return connection;
+        }
+        return new DeferredSqlConnection() {
+            @Override
+            protected SqlConnection open() {
+                awaitReady();
+                return mReadableConnection;
+            }
+        };
+    }
+
+    /**
+     * @return 是否开启了 WAL 模式, 数据库打开之前返回 false
+     */
+    @Override
+    public boolean isWriteAheadLoggingEnabled() {
+        return isWALEnable;
+    }
+
     public void shutdown() {
         close();
     }
@@ -175,11 +381,14 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @param stream
      * @throws IOException
      */
-    private static void executeDelimitedSqlScript(SQLiteDatabase db, InputStream stream) throws IOException {
-        List<String> commands = SqlParser.parse(stream);
-        for (String command : commands) {
-            db.execSQL(command);
-        }
+    private static void executeDelimitedSqlScript(final SQLiteDatabase db, InputStream stream) throws IOException {
+        // 每解析出一条语句就立即执行
+        SqlParser.parse(stream, new SqlParser.StatementHandler() {
+            @Override
+            public void onStatement(String statement) {
+                db.execSQL(statement);
+            }
+        });
     }
 
 
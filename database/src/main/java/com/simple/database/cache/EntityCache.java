@@ -0,0 +1,133 @@
+package com.simple.database.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按照主键缓存实体对象的 LRU 缓存, 线程安全. 同一张表的所有 DAO 对象共享一个缓存.
+ * <p>
+ * 注意 : 缓存中的对象会被多个调用者共享, 获取后不要修改对象的字段.
+ *
+ * @param <V> 实体类型
+ */
+public final class EntityCache<V> {
+    private final LinkedHashMap<String, V> mMap = new LinkedHashMap<>(16, 0.75f, true);
+    private int mMaxSize;
+    /**
+     * 每次失效时递增, 用于丢弃失效之前开始的查询结果
+     */
+    private long mVersion;
+    private long mHitCount;
+    private long mMissCount;
+    private long mPutCount;
+    private long mEvictionCount;
+
+    public EntityCache(int maxSize) {
+        setMaxSize(maxSize);
+    }
+
+    /**
+     * 获取缓存的实体
+     *
+     * @param key 主键
+     * @return 缓存的实体, 没有缓存时返回null
+     */
+    public synchronized V get(Object key) {
+        final V value = mMap.get(String.valueOf(key));
+        if (value != null) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+        return value;
+    }
+
+    /**
+     * @return 当前的版本号, 作为 {@link #put(Object, Object, long)} 的参数
+     */
+    public synchronized long version() {
+        return mVersion;
+    }
+
+    /**
+     * 缓存实体, 如果在 version 之后缓存被失效过则放弃本次缓存, 避免缓存旧数据
+     *
+     * @param key     主键
+     * @param value   实体
+     * @param version 开始查询之前通过 {@link #version()} 获取的版本号
+     */
+    public synchronized void put(Object key, V value, long version) {
+        if (key == null || value == null || version != mVersion) {
+            return;
+        }
+        mPutCount++;
+        mMap.put(String.valueOf(key), value);
+        trimToSize(mMaxSize);
+    }
+
+    /**
+     * 使某个主键对应的缓存失效
+     *
+     * @param key 主键
+     */
+    public synchronized void remove(Object key) {
+        mVersion++;
+        mMap.remove(String.valueOf(key));
+    }
+
+    /**
+     * 使所有缓存失效
+     */
+    public synchronized void clear() {
+        mVersion++;
+        mMap.clear();
+    }
+
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be greater than 0");
+        }
+        mMaxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    private void trimToSize(int maxSize) {
+        while (mMap.size() > maxSize) {
+            final Map.Entry<String, V> eldest = mMap.entrySet().iterator().next();
+            mMap.remove(eldest.getKey());
+            mEvictionCount++;
+        }
+    }
+
+    public synchronized int size() {
+        return mMap.size();
+    }
+
+    public synchronized int maxSize() {
+        return mMaxSize;
+    }
+
+    public synchronized long hitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long missCount() {
+        return mMissCount;
+    }
+
+    public synchronized long putCount() {
+        return mPutCount;
+    }
+
+    public synchronized long evictionCount() {
+        return mEvictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        final long accesses = mHitCount + mMissCount;
+        final int hitPercent = accesses != 0 ? (int) (100 * mHitCount / accesses) : 0;
+        return "EntityCache[size=" + mMap.size() + ",maxSize=" + mMaxSize + ",hits=" + mHitCount
+                + ",misses=" + mMissCount + ",evictions=" + mEvictionCount + ",hitRate=" + hitPercent + "%]";
+    }
+}
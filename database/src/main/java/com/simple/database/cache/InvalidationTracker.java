@@ -0,0 +1,95 @@
+package com.simple.database.cache;
+
+import com.simple.database.storage.SqlConnection;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 记录数据表的变化. 所有的写操作都会通知到这里, 在事务中的修改会等到最外层事务结束之后再通知观察者,
+ * 避免观察者在事务提交之前读取到旧的数据.
+ */
+public final class InvalidationTracker {
+    private static final InvalidationTracker sInstance = new InvalidationTracker();
+
+    /**
+     * 当前线程的事务中被修改的表
+     */
+    private final ThreadLocal<Set<String>> mPendingTables = new ThreadLocal<Set<String>>() {
+        @Override
+        protected Set<String> initialValue() {
+            return new HashSet<>();
+        }
+    };
+    private final CopyOnWriteArrayList<Observer> mObservers = new CopyOnWriteArrayList<>();
+
+    private InvalidationTracker() {
+    }
+
+    public static InvalidationTracker getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * 数据表变化的观察者
+     */
+    public interface Observer {
+        /**
+         * 数据表发生了变化, 在执行写操作的线程中调用
+         *
+         * @param tables 发生变化的表
+         */
+        void onTablesChanged(Set<String> tables);
+    }
+
+    public void addObserver(Observer observer) {
+        mObservers.addIfAbsent(observer);
+    }
+
+    public void removeObserver(Observer observer) {
+        mObservers.remove(observer);
+    }
+
+    /**
+     * 某张表的数据被修改了. 查询缓存会立即失效, 保证同一事务中后续的查询不会读到缓存的旧数据;
+     * 如果当前处于事务中, 观察者会在事务结束之后 ( 参考 {@link #flushPending(SqlConnection)} ) 才收到通知.
+     *
+     * @param db    执行修改的连接
+     * @param table 表名
+     */
+    public void notifyTableChanged(SqlConnection db, String table) {
+        QueryCache.getInstance().invalidate(table);
+        if (db.inTransaction()) {
+            mPendingTables.get().add(table);
+        } else {
+            dispatch(Collections.singleton(table));
+        }
+    }
+
+    /**
+     * 事务结束之后调用, 如果最外层事务已经结束则通知观察者事务中修改的表
+     *
+     * @param db 执行修改的连接
+     */
+    public void flushPending(SqlConnection db) {
+        final Set<String> pending = mPendingTables.get();
+        if (pending.isEmpty() || db.inTransaction()) {
+            return;
+        }
+        final Set<String> tables = new HashSet<>(pending);
+        pending.clear();
+        dispatch(tables);
+    }
+
+    private void dispatch(Set<String> tables) {
+        // 事务提交之后再次失效, 丢弃其他线程在事务提交之前读取到的旧数据
+        for (String table : tables) {
+            QueryCache.getInstance().invalidate(table);
+        }
+        for (Observer observer : mObservers) {
+            observer.onTablesChanged(tables);
+        }
+    }
+}
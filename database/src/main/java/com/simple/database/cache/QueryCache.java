@@ -0,0 +1,275 @@
+package com.simple.database.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 查询结果缓存, 以 DAO 的作用域 ( DAO 类型以及 distinct、去重等设置 )、表名、where 语句、参数、order by、limit 作为 key. 表中的数据发生变化时 ( 参考 {@link InvalidationTracker} ),
+ * 依赖该表的所有缓存都会失效. 缓存的数量、占用的内存大小 ( 估算值 ) 以及有效期可以通过 {@link com.simple.database.Builder} 配置,
+ * 默认不开启.
+ */
+public final class QueryCache {
+    private static final QueryCache sInstance = new QueryCache();
+
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * 每张表的版本号, 表中数据变化时递增, 用于丢弃在失效之前开始的查询结果
+     */
+    private final Map<String, Long> mTableVersions = new HashMap<>();
+    /**
+     * 清空所有缓存时递增, 与表的版本号一起组成查询时的版本号
+     */
+    private long mClearVersion;
+    private int mMaxEntries = 0;
+    private long mMaxBytes = Long.MAX_VALUE;
+    private long mTtlMillis = 0;
+    private long mTotalBytes;
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    private QueryCache() {
+    }
+
+    public static QueryCache getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * 配置缓存
+     *
+     * @param maxEntries 最多缓存的查询数量, 为0时关闭缓存
+     * @param maxBytes   所有缓存结果的估算大小上限, 单位为字节
+     * @param ttlMillis  缓存的有效期, 为0时表示不过期
+     */
+    public synchronized void configure(int maxEntries, long maxBytes, long ttlMillis) {
+        mMaxEntries = Math.max(maxEntries, 0);
+        mMaxBytes = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+        mTtlMillis = Math.max(ttlMillis, 0);
+        trim();
+    }
+
+    public synchronized boolean isEnabled() {
+        return mMaxEntries > 0;
+    }
+
+    /**
+     * 生成缓存的 key
+     *
+     * @param scope   DAO 的作用域, 参考 {@link com.simple.database.dao.AbsDAO#getQueryCacheScope()}.
+     *                同一张表的不同 DAO 解析出的对象可能不同, 不能共享缓存
+     * @param table   查询的表
+     * @param columns 查询的字段, 为null时查询所有字段
+     */
+    public static String createKey(String scope, String table, String[] columns, String selection, String[] args,
+                                   String orderBy, String limit) {
+        return scope + '\u0000' + table + '\u0000' + (columns != null ? Arrays.toString(columns) : "*") + '\u0000'
+                + selection + '\u0000' + Arrays.toString(args) + '\u0000' + orderBy + '\u0000' + limit;
+    }
+
+    /**
+     * 生成预编译查询缓存的 key, 参数的类型也是 key 的一部分 ( 整数 1 与字符串 "1" 的查询结果可能不同 )
+     *
+     * @param scope DAO 的作用域, 参考 {@link com.simple.database.dao.AbsDAO#getQueryCacheScope()}
+     * @param table 查询的表
+     * @param sql   预编译查询的 sql 语句
+     * @param args  查询参数
+     */
+    public static String createKey(String scope, String table, String sql, Object[] args) {
+        final StringBuilder key = new StringBuilder(scope.length() + table.length() + sql.length() + 32);
+        key.append(scope).append('\u0000').append(table).append('\u0000').append(sql);
+        if (args != null) {
+            for (Object arg : args) {
+                key.append('\u0000');
+                if (arg == null) {
+                    key.append("null");
+                } else if (arg instanceof byte[]) {
+                    key.append('b').append(Arrays.toString((byte[]) arg));
+                } else if (arg instanceof Double || arg instanceof Float) {
+                    key.append('d').append(arg);
+                } else if (arg instanceof Number || arg instanceof Boolean) {
+                    key.append('i').append(arg);
+                } else {
+                    key.append('s').append(arg);
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * 获取缓存的查询结果
+     *
+     * @param key 通过 {@link #createKey(String, String, String[], String, String[], String, String)} 生成的 key
+     * @param <T> 数据类型
+     * @return 查询结果的拷贝, 没有缓存或者已过期时返回null
+     */
+    public synchronized <T> List<T> get(String key) {
+        final Entry entry = mEntries.get(key);
+        if (entry != null && mTtlMillis > 0 && uptimeMillis() - entry.createTime > mTtlMillis) {
+            removeEntry(key);
+            mMissCount++;
+            return null;
+        }
+        if (entry == null) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        return new ArrayList<T>((List<T>) entry.result);
+    }
+
+    /**
+     * @param table 表名
+     * @return 表的当前版本号, 作为 {@link #put(String, String, List, long, long)} 的参数
+     */
+    public synchronized long version(String table) {
+        final Long version = mTableVersions.get(table);
+        return (version != null ? version : 0) + mClearVersion;
+    }
+
+    /**
+     * 查询结果依赖多张表时使用, 各表的版本号只会递增, 因此任何一张表发生变化都会使返回值变化
+     *
+     * @param tables 查询结果依赖的表
+     * @return 这些表的当前版本号之和, 作为 {@link #put(Collection, String, List, long, long)} 的参数
+     */
+    public synchronized long version(Collection<String> tables) {
+        long sum = mClearVersion;
+        for (String table : tables) {
+            final Long version = mTableVersions.get(table);
+            sum += version != null ? version : 0;
+        }
+        return sum;
+    }
+
+    /**
+     * 缓存查询结果, 如果查询期间表中数据发生了变化则放弃缓存
+     *
+     * @param table   表名
+     * @param key     缓存的 key
+     * @param result  查询结果
+     * @param bytes   查询结果的估算大小
+     * @param version 开始查询之前通过 {@link #version(String)} 获取的版本号
+     */
+    public synchronized void put(String table, String key, List<?> result, long bytes, long version) {
+        put(Collections.singleton(table), key, result, bytes, version);
+    }
+
+    /**
+     * 缓存依赖多张表的查询结果, 其中任何一张表发生变化时缓存都会失效
+     *
+     * @param tables  查询结果依赖的表
+     * @param key     缓存的 key
+     * @param result  查询结果
+     * @param bytes   查询结果的估算大小
+     * @param version 开始查询之前通过 {@link #version(Collection)} 获取的版本号
+     */
+    public synchronized void put(Collection<String> tables, String key, List<?> result, long bytes, long version) {
+        if (mMaxEntries <= 0 || result == null || bytes > mMaxBytes || version != version(tables)) {
+            return;
+        }
+        removeEntry(key);
+        mEntries.put(key, new Entry(tables, new ArrayList<>(result), bytes, uptimeMillis()));
+        mTotalBytes += bytes;
+        trim();
+    }
+
+    /**
+     * 使某张表的所有缓存失效
+     *
+     * @param table 表名
+     */
+    public synchronized void invalidate(String table) {
+        final Long version = mTableVersions.get(table);
+        mTableVersions.put(table, (version != null ? version : 0) + 1);
+        final Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Entry entry = iterator.next().getValue();
+            if (entry.tables.contains(table)) {
+                mTotalBytes -= entry.bytes;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 清空所有缓存
+     */
+    public synchronized void clear() {
+        mClearVersion++;
+        mEntries.clear();
+        mTotalBytes = 0;
+    }
+
+    private void removeEntry(String key) {
+        final Entry entry = mEntries.remove(key);
+        if (entry != null) {
+            mTotalBytes -= entry.bytes;
+        }
+    }
+
+    private void trim() {
+        final Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext() && (mEntries.size() > mMaxEntries || mTotalBytes > mMaxBytes)) {
+            mTotalBytes -= iterator.next().getValue().bytes;
+            iterator.remove();
+            mEvictionCount++;
+        }
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    public synchronized long sizeInBytes() {
+        return mTotalBytes;
+    }
+
+    public synchronized long hitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long missCount() {
+        return mMissCount;
+    }
+
+    public synchronized long evictionCount() {
+        return mEvictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "QueryCache[size=" + mEntries.size() + ",maxEntries=" + mMaxEntries + ",bytes=" + mTotalBytes
+                + ",hits=" + mHitCount + ",misses=" + mMissCount + ",evictions=" + mEvictionCount + "]";
+    }
+
+    /**
+     * 单调递增的时间, 单位为毫秒, 不依赖 SystemClock 以便在 JVM 上运行
+     */
+    private static long uptimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private static final class Entry {
+        final Collection<String> tables;
+        final List<?> result;
+        final long bytes;
+        final long createTime;
+
+        Entry(Collection<String> tables, List<?> result, long bytes, long createTime) {
+            this.tables = tables;
+            this.result = result;
+            this.bytes = bytes;
+            this.createTime = createTime;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.simple.database.crud;
 
 import com.simple.database.crud.base.WhereBuilder;
 import com.simple.database.listeners.DbListener;
+import com.simple.database.task.DbFuture;
+import com.simple.database.task.Priority;
 
 /**
  * 查询数量的Builder, 可以设置 where 参数
@@ -10,11 +12,49 @@ import com.simple.database.listeners.DbListener;
 public class CountBuilder extends WhereBuilder<Integer> {
 
     private DbListener<Integer> mCountListener ;
+    /**
+     * 要统计的字段, 为空时统计所有记录
+     */
+    private String mColumn;
+    /**
+     * 是否只统计不重复的值
+     */
+    private boolean mDistinct;
 
     public CountBuilder(Class daoClass) {
         super(daoClass);
     }
 
+    @Override
+    public CountBuilder where(String selection, String[] selectionArgs) {
+        super.where(selection, selectionArgs);
+        return this;
+    }
+
+    /**
+     * 统计某个字段非空值的数量, 即 COUNT(column)
+     *
+     * @param column 字段名
+     * @return
+     */
+    public CountBuilder column(String column) {
+        this.mColumn = column;
+        this.mDistinct = false;
+        return this;
+    }
+
+    /**
+     * 统计某个字段不重复值的数量, 即 COUNT(DISTINCT column)
+     *
+     * @param column 字段名
+     * @return
+     */
+    public CountBuilder distinct(String column) {
+        this.mColumn = column;
+        this.mDistinct = true;
+        return this;
+    }
+
     /**
      * 查询单个数据的listener
      *
@@ -27,8 +67,28 @@ public class CountBuilder extends WhereBuilder<Integer> {
     }
 
 
+    /**
+     * 设置本次操作的优先级
+     *
+     * @param priority 任务优先级, 默认为 {@link Priority#USER_VISIBLE}
+     * @return
+     */
+    public CountBuilder priority(Priority priority) {
+        setPriority(priority);
+        return this;
+    }
+
     @Override
     public void execute() {
-        mAsyncDao.count(selection, selectionArgs, mCountListener);
+        submit();
+    }
+
+    /**
+     * 提交操作
+     *
+     * @return 操作的结果, 可以用于组合多个操作、等待结果或者获取异常
+     */
+    public DbFuture<Integer> submit() {
+        return mAsyncDao.count(mColumn, mDistinct, selection, selectionArgs, mCountListener);
     }
 }
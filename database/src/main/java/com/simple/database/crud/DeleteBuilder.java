@@ -1,6 +1,8 @@
 package com.simple.database.crud;
 
 import com.simple.database.crud.base.WhereBuilder;
+import com.simple.database.task.DbFuture;
+import com.simple.database.task.Priority;
 
 /**
  * 删除数据的Builder, 只能设置 where 参数.
@@ -13,9 +15,44 @@ public class DeleteBuilder<T> extends WhereBuilder<T> {
         super(daoClass);
     }
 
+    @Override
+    public DeleteBuilder<T> where(String selection, String[] selectionArgs) {
+        super.where(selection, selectionArgs);
+        return this;
+    }
+
+    /**
+     * 设置本次操作的优先级
+     *
+     * @param priority 任务优先级, 默认为 {@link Priority#USER_VISIBLE}
+     * @return
+     */
+    public DeleteBuilder<T> priority(Priority priority) {
+        setPriority(priority);
+        return this;
+    }
+
+    /**
+     * 将当前的 where 语句编译成可以重复执行的删除语句, 参数在每次执行时按照实际类型传入,
+     * 通过 {@link #where(String, String[])} 设置的参数会被忽略
+     *
+     * @return 可以重复执行的删除语句
+     */
+    public PreparedDelete<T> compile() {
+        return new PreparedDelete<>(mAsyncDao, mAsyncDao.getSyncDao().compileDelete(selection));
+    }
 
     @Override
     public void execute() {
-        mAsyncDao.delete(selection, selectionArgs);
+        submit();
+    }
+
+    /**
+     * 提交操作
+     *
+     * @return 操作的结果, 可以用于组合多个操作、等待结果或者获取异常
+     */
+    public DbFuture<Void> submit() {
+        return mAsyncDao.delete(selection, selectionArgs);
     }
 }
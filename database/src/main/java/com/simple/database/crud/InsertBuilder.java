@@ -1,6 +1,8 @@
 package com.simple.database.crud;
 
 import com.simple.database.crud.base.BaseSQLBuilder;
+import com.simple.database.task.DbFuture;
+import com.simple.database.task.Priority;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -27,8 +29,28 @@ public class InsertBuilder<T> extends BaseSQLBuilder<T> {
         return this;
     }
 
+    /**
+     * 设置本次操作的优先级
+     *
+     * @param priority 任务优先级, 默认为 {@link Priority#USER_VISIBLE}
+     * @return
+     */
+    public InsertBuilder<T> priority(Priority priority) {
+        setPriority(priority);
+        return this;
+    }
+
     @Override
     public void execute() {
-        mAsyncDao.insert(mItems);
+        submit();
+    }
+
+    /**
+     * 提交操作
+     *
+     * @return 操作的结果, 可以用于组合多个操作、等待结果或者获取异常
+     */
+    public DbFuture<Void> submit() {
+        return mAsyncDao.insert(mItems);
     }
 }
@@ -0,0 +1,30 @@
+package com.simple.database.crud;
+
+import com.simple.database.dao.CompiledDelete;
+import com.simple.database.dao.async.AsyncDAO;
+import com.simple.database.task.DbFuture;
+
+/**
+ * 通过 {@link DeleteBuilder#compile()} 创建的删除语句, 构建一次之后可以重复执行, 编译后的语句缓存在DAO中.
+ *
+ * @param <T> 数据类型
+ */
+public final class PreparedDelete<T> {
+    private final AsyncDAO<T> mAsyncDao;
+    private final CompiledDelete mDelete;
+
+    PreparedDelete(AsyncDAO<T> asyncDao, CompiledDelete delete) {
+        mAsyncDao = asyncDao;
+        mDelete = delete;
+    }
+
+    /**
+     * 执行删除
+     *
+     * @param args where 参数, 按照实际类型绑定
+     * @return 删除的行数
+     */
+    public DbFuture<Integer> submit(Object... args) {
+        return mAsyncDao.delete(mDelete, args);
+    }
+}
@@ -0,0 +1,67 @@
+package com.simple.database.crud;
+
+import com.simple.database.cursor.RowMapper;
+import com.simple.database.dao.CompiledQuery;
+import com.simple.database.dao.async.AsyncDAO;
+import com.simple.database.task.DbFuture;
+
+import java.util.List;
+
+/**
+ * 通过 {@link QueryBuilder#compile()} 创建的查询, 构建一次之后可以用不同的参数重复执行.
+ * 参数按照实际类型绑定, 参考 {@link CompiledQuery}.
+ *
+ * @param <T> 要返回的数据类型
+ */
+public final class PreparedQuery<T> {
+    private final AsyncDAO<T> mAsyncDao;
+    private final CompiledQuery mQuery;
+
+    PreparedQuery(AsyncDAO<T> asyncDao, CompiledQuery query) {
+        mAsyncDao = asyncDao;
+        mQuery = query;
+    }
+
+    /**
+     * 执行查询
+     *
+     * @param args 查询参数, 按照 where 语句中 ? 的顺序传入, 支持 long、int、double、boolean、byte[]、String 以及 null
+     * @return 查询结果, 通过 {@link DbFuture#onSuccess(com.simple.database.listeners.DbListener)} 在UI线程中接收
+     */
+    public DbFuture<List<T>> submit(Object... args) {
+        return mAsyncDao.query(mQuery, args, null);
+    }
+
+    /**
+     * 执行查询, 只需要第一条数据
+     *
+     * @param args 查询参数
+     * @return 第一条数据, 没有数据时为null
+     */
+    public DbFuture<T> queryOne(Object... args) {
+        return submit(args).map(new DbFuture.Transformer<List<T>, T>() {
+            @Override
+            public T apply(List<T> result) {
+                return result != null && result.size() > 0 ? result.get(0) : null;
+            }
+        });
+    }
+
+    /**
+     * 执行查询, 并通过 mapper 将每一行转换为其他类型
+     *
+     * @param mapper 行转换器, 在数据库线程中执行, 返回null时忽略该行
+     * @param args   查询参数
+     * @return 转换之后的数据
+     */
+    public <R> DbFuture<List<R>> queryRows(RowMapper<R> mapper, Object... args) {
+        return mAsyncDao.queryRows(mQuery, args, mapper, null);
+    }
+
+    /**
+     * @return 编译好的查询
+     */
+    public CompiledQuery getCompiledQuery() {
+        return mQuery;
+    }
+}
@@ -0,0 +1,31 @@
+package com.simple.database.crud;
+
+import com.simple.database.dao.CompiledUpdate;
+import com.simple.database.dao.async.AsyncDAO;
+import com.simple.database.task.DbFuture;
+
+/**
+ * 通过 {@link UpdateBuilder#compile()} 创建的更新语句, 构建一次之后可以重复执行, 编译后的语句缓存在DAO中.
+ *
+ * @param <T> 数据类型
+ */
+public final class PreparedUpdate<T> {
+    private final AsyncDAO<T> mAsyncDao;
+    private final CompiledUpdate mUpdate;
+
+    PreparedUpdate(AsyncDAO<T> asyncDao, CompiledUpdate update) {
+        mAsyncDao = asyncDao;
+        mUpdate = update;
+    }
+
+    /**
+     * 执行更新
+     *
+     * @param item 要更新的对象
+     * @param args where 参数, 按照实际类型绑定
+     * @return 更新的行数
+     */
+    public DbFuture<Integer> submit(T item, Object... args) {
+        return mAsyncDao.update(mUpdate, item, args);
+    }
+}
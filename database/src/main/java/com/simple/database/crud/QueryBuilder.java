@@ -1,7 +1,15 @@
 package com.simple.database.crud;
 
 import com.simple.database.crud.base.WhereBuilder;
+import com.simple.database.cursor.RowMapper;
+import com.simple.database.dao.Page;
+import com.simple.database.dao.PageKey;
+import com.simple.database.dao.async.AsyncDAO;
+import com.simple.database.dao.async.Subscription;
 import com.simple.database.listeners.DbListener;
+import com.simple.database.listeners.DiffListener;
+import com.simple.database.task.DbFuture;
+import com.simple.database.task.Priority;
 
 import java.util.List;
 
@@ -10,7 +18,8 @@ import java.util.List;
  *
  * @param <T> 要返回的数据类型
  */
-public class QueryBuilder<T> extends WhereBuilder {
+public class QueryBuilder<T> extends WhereBuilder<T> {
+    private String[] columns = null;
     private String orderBy = null;
     private String limit = null;
     private DbListener<List<T>> mDbListListener;
@@ -32,6 +41,17 @@ public class QueryBuilder<T> extends WhereBuilder {
         return this;
     }
 
+    /**
+     * 只查询部分字段, 未查询的字段保持默认值, 也不会加载关联数据. 默认查询所有字段
+     *
+     * @param columns 要查询的字段
+     * @return
+     */
+    public QueryBuilder<T> columns(String... columns) {
+        this.columns = columns != null && columns.length > 0 ? columns : null;
+        return this;
+    }
+
     public QueryBuilder<T> orderBy(String orderBy) {
         this.orderBy = orderBy;
         return this;
@@ -42,6 +62,17 @@ public class QueryBuilder<T> extends WhereBuilder {
         return this;
     }
 
+    /**
+     * 设置本次操作的优先级
+     *
+     * @param priority 任务优先级, 默认为 {@link Priority#USER_VISIBLE}
+     * @return
+     */
+    public QueryBuilder<T> priority(Priority priority) {
+        setPriority(priority);
+        return this;
+    }
+
     /**
      * 返回的数据是 列表类型的Listener
      *
@@ -53,25 +84,121 @@ public class QueryBuilder<T> extends WhereBuilder {
         return this;
     }
 
+    /**
+     * 观察查询结果, 查询依赖的表发生变化时自动重新查询并回调 listener, 用于代替定时轮询
+     *
+     * @param listener 在UI线程中接收每次查询的结果
+     * @return 订阅, 不再需要结果时调用 {@link Subscription#dispose()}
+     */
+    public Subscription observe(DbListener<List<T>> listener) {
+        return observe(AsyncDAO.DEFAULT_OBSERVE_DEBOUNCE_MILLIS, listener);
+    }
+
+    /**
+     * 观察查询结果, 参考 {@link AsyncDAO#observe(String, String[], String, String, long, DbListener)}
+     *
+     * @param debounceMillis 合并修改通知的时间窗口, 单位为毫秒
+     * @param listener       在UI线程中接收每次查询的结果
+     * @return 订阅, 不再需要结果时调用 {@link Subscription#dispose()}
+     */
+    public Subscription observe(long debounceMillis, DbListener<List<T>> listener) {
+        return mAsyncDao.observe(columns, selection, selectionArgs, orderBy, limit, debounceMillis, listener);
+    }
+
+    /**
+     * 观察查询结果的增量变化, 变化在后台线程中按照主键计算, 可以直接转发给 RecyclerView.Adapter
+     *
+     * @param listener 在UI线程中接收新的结果和变化
+     * @return 订阅, 不再需要结果时调用 {@link Subscription#dispose()}
+     */
+    public Subscription observeChanges(DiffListener<T> listener) {
+        return mAsyncDao.observeChanges(columns, selection, selectionArgs, orderBy, limit,
+                AsyncDAO.DEFAULT_OBSERVE_DEBOUNCE_MILLIS, listener);
+    }
+
     /**
      * 只需要单个数据
+     *
+     * @param listener 查询到数据时回调第一条数据, 可以为null
+     * @return 第一条数据, 没有数据时为null
      */
-    public void queryOne(final DbListener<T> listener) {
-        mAsyncDao.query(selection, selectionArgs, orderBy, limit, new DbListener<List<T>>() {
+    public DbFuture<T> queryOne(final DbListener<T> listener) {
+        return mAsyncDao.query(columns, selection, selectionArgs, orderBy, limit, new DbListener<List<T>>() {
             @Override
             public void onComplete(List<T> result) {
                 if (result != null && result.size() > 0 && listener != null) {
                     listener.onComplete(result.get(0));
                 }
             }
+        }).map(new DbFuture.Transformer<List<T>, T>() {
+            @Override
+            public T apply(List<T> result) {
+                return result != null && result.size() > 0 ? result.get(0) : null;
+            }
         });
     }
 
+    /**
+     * 查询 {@link #columns(String...)} 指定的字段, 并通过 mapper 将每一行转换为其他类型, 例如只需要 id 和名字的列表,
+     * 避免创建完整的实体对象
+     *
+     * @param mapper   行转换器, 在数据库线程中执行, 返回null时忽略该行
+     * @param listener 转换之后的数据
+     * @return 转换之后的数据
+     */
+    public <R> DbFuture<List<R>> queryRows(RowMapper<R> mapper, DbListener<List<R>> listener) {
+        return mAsyncDao.queryRows(columns, selection, selectionArgs, orderBy, limit, mapper, listener);
+    }
+
+    /**
+     * keyset 分页, 查询 key 之后的一页数据, 需要先通过 {@link #orderBy(String)} 指定排序字段
+     *
+     * @param key      上一页的 {@link Page#getNextKey()}, 为null时查询第一页
+     * @param pageSize 每页的数据条数
+     * @param listener 分页结果的listener
+     * @return 分页结果
+     */
+    public DbFuture<Page<T>> pageAfter(PageKey key, int pageSize, DbListener<Page<T>> listener) {
+        return mAsyncDao.queryPage(selection, selectionArgs, orderBy, key, false, pageSize, listener);
+    }
+
+    /**
+     * keyset 分页, 查询 key 之前的一页数据, 需要先通过 {@link #orderBy(String)} 指定排序字段
+     *
+     * @param key      当前页的 {@link Page#getPreviousKey()}, 为null时查询最后一页
+     * @param pageSize 每页的数据条数
+     * @param listener 分页结果的listener
+     * @return 分页结果
+     */
+    public DbFuture<Page<T>> pageBefore(PageKey key, int pageSize, DbListener<Page<T>> listener) {
+        return mAsyncDao.queryPage(selection, selectionArgs, orderBy, key, true, pageSize, listener);
+    }
+
     /**
      * 查询列表数据
      */
     @Override
     public void execute() {
-        mAsyncDao.query(selection, selectionArgs, orderBy, limit, mDbListListener);
+        submit();
+    }
+
+    /**
+     * 将当前的字段、where 语句、orderBy 和 limit 编译成可以重复执行的查询, 参数在每次执行时按照实际类型传入,
+     * 通过 {@link #where(String, String[])} 设置的参数会被忽略
+     *
+     * @return 可以重复执行的查询
+     */
+    public PreparedQuery<T> compile() {
+        return new PreparedQuery<>(mAsyncDao,
+                mAsyncDao.getSyncDao().compileQuery(columns, selection, orderBy, limit));
+    }
+
+    /**
+     * 提交操作
+     *
+     * @return 操作的结果, 可以用于组合多个操作、等待结果或者获取异常
+     */
+    public DbFuture<List<T>> submit() {
+        return mAsyncDao.query(columns, selection, selectionArgs, orderBy, limit, mDbListListener);
     }
 }
@@ -1,6 +1,8 @@
 package com.simple.database.crud;
 
 import com.simple.database.crud.base.WhereBuilder;
+import com.simple.database.task.DbFuture;
+import com.simple.database.task.Priority;
 
 /**
  * 更新数据的Builder, 只能设置 where 参数.
@@ -27,7 +29,38 @@ public class UpdateBuilder<T> extends WhereBuilder<T> {
         return this;
     }
 
+    /**
+     * 设置本次操作的优先级
+     *
+     * @param priority 任务优先级, 默认为 {@link Priority#USER_VISIBLE}
+     * @return
+     */
+    public UpdateBuilder<T> priority(Priority priority) {
+        setPriority(priority);
+        return this;
+    }
+
+    /**
+     * 将当前的 where 语句编译成可以重复执行的更新语句, 参数在每次执行时按照实际类型传入,
+     * 通过 {@link #where(String, String[])} 设置的参数以及 {@link #withItem(Object)} 设置的对象会被忽略
+     *
+     * @return 可以重复执行的更新语句
+     */
+    public PreparedUpdate<T> compile() {
+        return new PreparedUpdate<>(mAsyncDao, mAsyncDao.getSyncDao().compileUpdate(selection));
+    }
+
+    @Override
     public void execute() {
-        mAsyncDao.update(mItem, selection, selectionArgs);
+        submit();
+    }
+
+    /**
+     * 提交操作
+     *
+     * @return 操作的结果, 可以用于组合多个操作、等待结果或者获取异常
+     */
+    public DbFuture<Void> submit() {
+        return mAsyncDao.update(mItem, selection, selectionArgs);
     }
 }
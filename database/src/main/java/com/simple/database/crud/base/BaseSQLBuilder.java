@@ -1,6 +1,7 @@
 package com.simple.database.crud.base;
 
 import com.simple.database.dao.async.AsyncDAO;
+import com.simple.database.task.Priority;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -31,4 +32,13 @@ public abstract class BaseSQLBuilder<T> implements Executable {
             DAO_CACHE.put(syncDaoClzName, mAsyncDao);
         }
     }
+
+    /**
+     * 设置本次操作的优先级
+     *
+     * @param priority 任务优先级
+     */
+    protected void setPriority(Priority priority) {
+        mAsyncDao = mAsyncDao.withPriority(priority);
+    }
 }
@@ -0,0 +1,34 @@
+package com.simple.database.cursor;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+
+import com.simple.database.utils.IOUtils;
+
+/**
+ * 按照参数的实际类型绑定查询参数的 CursorFactory. SQLiteDatabase 的 query 函数只能以字符串绑定参数,
+ * 通过 {@link SQLiteDatabase#rawQueryWithFactory(SQLiteDatabase.CursorFactory, String, String[], String)} 传入该工厂,
+ * 在创建 Cursor 之前按照类型绑定参数.
+ */
+public class BindArgsCursorFactory extends CloseCursorFactory {
+    private final Object[] mArgs;
+
+    /**
+     * @param args 查询参数, 参考 {@link IOUtils#bindValue(android.database.sqlite.SQLiteProgram, int, Object)}
+     */
+    public BindArgsCursorFactory(Object[] args) {
+        mArgs = args;
+    }
+
+    @Override
+    public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery, String editTable, SQLiteQuery query) {
+        if (mArgs != null) {
+            for (int i = 0; i < mArgs.length; i++) {
+                IOUtils.bindValue(query, i + 1, mArgs[i]);
+            }
+        }
+        return super.newCursor(db, masterQuery, editTable, query);
+    }
+}
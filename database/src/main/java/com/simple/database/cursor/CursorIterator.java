@@ -0,0 +1,134 @@
+package com.simple.database.cursor;
+
+import android.database.Cursor;
+
+import com.simple.database.utils.IOUtils;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 逐行解析 Cursor 的迭代器, 默认同一时刻只持有一条数据. 遍历结束后自动关闭 Cursor,
+ * 提前结束遍历时需要调用 {@link #close()} 关闭 Cursor.
+ * <p>
+ * 指定了 chunkSize 时每次预先解析 chunkSize 条数据, 并通过 {@link #onChunkParsed(List)} 批量处理 ( 例如加载关联数据 ),
+ * 同一时刻最多持有 chunkSize 条数据.
+ *
+ * @param <T> 数据类型
+ */
+public abstract class CursorIterator<T> implements Iterator<T>, Iterable<T>, Closeable {
+
+    private final Cursor mCursor;
+    private final int mChunkSize;
+    private final ArrayDeque<T> mBuffer;
+    private T mNext;
+    private boolean mClosed;
+
+    public CursorIterator(Cursor cursor) {
+        this(cursor, 1);
+    }
+
+    /**
+     * @param cursor    Cursor对象
+     * @param chunkSize 每次预先解析的数据条数, 大于1时解析之后调用 {@link #onChunkParsed(List)}
+     */
+    public CursorIterator(Cursor cursor, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be greater than 0");
+        }
+        mCursor = cursor;
+        mClosed = cursor == null;
+        mChunkSize = chunkSize;
+        mBuffer = chunkSize > 1 ? new ArrayDeque<T>(chunkSize) : null;
+    }
+
+    /**
+     * 从Cursor 当前行解析单条数据
+     *
+     * @param cursor Cursor对象
+     * @return 解析得到的数据, 为null时跳过该行
+     */
+    protected abstract T parse(Cursor cursor);
+
+    /**
+     * 预先解析了一块数据, 只在 chunkSize 大于1时调用, 在返回这些数据之前执行
+     *
+     * @param chunk 按顺序解析得到的数据, 不为空
+     */
+    protected void onChunkParsed(List<T> chunk) {
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (mBuffer != null) {
+            if (mNext == null && mBuffer.isEmpty()) {
+                fillBuffer();
+            }
+            if (mNext == null) {
+                mNext = mBuffer.pollFirst();
+            }
+            return mNext != null;
+        }
+        while (mNext == null && !mClosed) {
+            if (mCursor.moveToNext()) {
+                mNext = parse(mCursor);
+            } else {
+                close();
+            }
+        }
+        return mNext != null;
+    }
+
+    private void fillBuffer() {
+        final List<T> chunk = new ArrayList<>(mChunkSize);
+        while (chunk.size() < mChunkSize && !mClosed) {
+            if (mCursor.moveToNext()) {
+                final T item = parse(mCursor);
+                if (item != null) {
+                    chunk.add(item);
+                }
+            } else {
+                close();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            onChunkParsed(chunk);
+            mBuffer.addAll(chunk);
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final T item = mNext;
+        mNext = null;
+        return item;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+
+    /**
+     * 关闭 Cursor, 已经预先解析的数据仍然可以继续遍历
+     */
+    @Override
+    public void close() {
+        if (!mClosed) {
+            mClosed = true;
+            IOUtils.closeCursor(mCursor);
+        }
+    }
+}
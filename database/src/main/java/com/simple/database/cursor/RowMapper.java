@@ -0,0 +1,16 @@
+package com.simple.database.cursor;
+
+import android.database.Cursor;
+
+/**
+ * 将 Cursor 的当前行转换为任意类型, 用于只查询部分字段的场景, 在执行查询的线程中调用
+ *
+ * @param <R> 转换之后的类型
+ */
+public interface RowMapper<R> {
+    /**
+     * @param cursor 指向当前行的Cursor, 只包含查询时指定的字段
+     * @return 转换之后的数据, 为null时跳过该行
+     */
+    R map(Cursor cursor);
+}
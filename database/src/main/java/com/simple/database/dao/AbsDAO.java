@@ -27,13 +27,35 @@ package com.simple.database.dao;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.text.TextUtils;
 
-import com.simple.database.DatabaseHelper;
+import com.simple.database.cache.EntityCache;
+import com.simple.database.cache.InvalidationTracker;
+import com.simple.database.cursor.CursorIterator;
+import com.simple.database.cursor.RowMapper;
+import com.simple.database.listeners.ChunkListener;
+import com.simple.database.listeners.RowVisitor;
+import com.simple.database.metrics.DbMetrics;
+import com.simple.database.metrics.Operation;
+import com.simple.database.metrics.OperationMetrics;
+import com.simple.database.metrics.SlowQueryLog;
+import com.simple.database.storage.DbStorage;
+import com.simple.database.storage.SqlConnection;
+import com.simple.database.storage.SqlStatement;
+import com.simple.database.task.DbTask;
 import com.simple.database.utils.IOUtils;
+import com.simple.database.utils.Platform;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * 数据库操作接口, 所有操作均为同步操作. 异步的数据库操作类需要使用 {@link com.simple.database.dao.async.AsyncDAO}.
@@ -46,18 +68,43 @@ import java.util.List;
  * @author mrsimple
  */
 public abstract class AbsDAO<T> {
+    /**
+     * 批量插入时默认每个事务插入的数据条数
+     */
+    public static final int DEFAULT_BULK_CHUNK_SIZE = 500;
+    /**
+     * {@link #iterate(String, String[], String, String)} 每次预先解析的数据条数
+     */
+    public static final int ITERATE_CHUNK_SIZE = 100;
+    /**
+     * 冲突策略对应的sql语句, 索引与 {@link SQLiteDatabase#CONFLICT_NONE} 等常量的值一致
+     */
+    private static final String[] CONFLICT_VALUES = new String[]
+            {"", " OR ROLLBACK ", " OR ABORT ", " OR FAIL ", " OR IGNORE ", " OR REPLACE "};
+    /**
+     * 实体缓存, key 为表名, 同一张表的 DAO 对象共享同一个缓存
+     */
+    private static final Map<String, EntityCache<?>> ENTITY_CACHES = new HashMap<>();
+    /**
+     * IN 查询中每条语句最多包含的参数数量, SQLite 默认最多支持 999 个参数
+     */
+    private static final int MAX_IN_ARGS = 500;
+    /**
+     * 每个DAO缓存的预编译语句数量
+     */
+    private static final int MAX_CACHED_STATEMENTS = 16;
     /**
      * 表名
      */
     protected String mTableName;
     /**
-     * 数据库对象
+     * 执行写操作的数据库连接
      */
-    protected SQLiteDatabase mWritableDatabase;
+    protected SqlConnection mWritableConnection;
     /**
-     * 数据库对象
+     * 执行查询的数据库连接
      */
-    protected SQLiteDatabase mReadableDatabase;
+    protected SqlConnection mReadableConnection;
     /**
      * 插入冲突时的处理策略
      */
@@ -66,15 +113,37 @@ public abstract class AbsDAO<T> {
      * 是否需要去重
      */
     private boolean removeRedundantItems = false;
+    /**
+     * 查询时是否使用 SELECT DISTINCT
+     */
+    private boolean mDistinct = false;
+    /**
+     * 批量插入时每个事务插入的数据条数
+     */
+    private int mBulkChunkSize = DEFAULT_BULK_CHUNK_SIZE;
+    /**
+     * 参考 {@link #getColumnIndexes(Cursor, String[])}
+     */
+    private volatile ColumnIndexes mColumnIndexes;
+    /**
+     * 预编译的更新、删除语句
+     */
+    private final StatementCache mStatements = new StatementCache(MAX_CACHED_STATEMENTS);
+    /**
+     * 子类是否覆写了 {@link #insert(Object)}, 参考 {@link #insert(List)}
+     */
+    private volatile Boolean mSingleInsertOverridden;
 
     public AbsDAO(String table) {
         mTableName = table;
-        mWritableDatabase = DatabaseHelper.getInstance().getWritableDatabase();
-        mReadableDatabase = DatabaseHelper.getInstance().getReadableDatabase();
+        mWritableConnection = DbStorage.get().getWritableConnection();
+        mReadableConnection = DbStorage.get().getReadableConnection();
     }
 
     /**
-     * 保存数据到数据库 [ 注意这里 没有直接调用saveItem是为了实现多个插入只开启一次事物 ]
+     * 保存数据到数据库. 默认使用 {@link #bulkInsert(List)} 批量插入; 子类覆写了 {@link #insert(Object)} 时
+     * ( 例如同时插入关联表 ) 逐条调用 {@link #insert(Object)}, 保证覆写的逻辑对列表同样生效.
+     * 子类可以覆写该函数, 调用 {@link #bulkInsert(List)} 之后再批量处理额外的逻辑.
      *
      * @param datas 要存储的数据列表
      */
@@ -82,13 +151,207 @@ public abstract class AbsDAO<T> {
         if (datas == null) {
             return;
         }
+        if (!isSingleInsertOverridden()) {
+            bulkInsert(datas);
+            return;
+        }
         for (T item : datas) {
             insert(item);
         }
     }
 
     /**
-     * 保存数据
+     * 子类是否覆写了 {@link #insert(Object)}, 结果在第一次调用时计算
+     */
+    private boolean isSingleInsertOverridden() {
+        Boolean overridden = mSingleInsertOverridden;
+        if (overridden == null) {
+            try {
+                // 泛型子类覆写时会生成参数为 Object 的桥接函数, 声明在子类中
+                overridden = getClass().getMethod("insert", Object.class).getDeclaringClass() != AbsDAO.class;
+            } catch (NoSuchMethodException e) {
+                overridden = false;
+            }
+            mSingleInsertOverridden = overridden;
+        }
+        return overridden;
+    }
+
+    /**
+     * 批量插入数据. insert 语句只编译一次成 {@link SqlStatement}, 每条数据直接绑定参数后执行,
+     * 并且每 {@link #setBulkChunkSize(int)} 条数据提交一次事务.
+     * <p>
+     * 注意 : 不会调用 {@link #insert(Object)}, 子类在 {@link #insert(Object)} 中添加的逻辑不会执行.
+     * <p>
+     * 子类覆写了 {@link #getInsertColumns()} 与 {@link #bindInsertValues(SqlStatement, Object)} 时直接绑定参数,
+     * 否则使用 {@link #convert(Object)} 得到的 ContentValues 进行绑定.
+     * <p>
+     * 开启操作统计时, 插入的行数与耗时记录在 {@link Operation#INSERT} 中, 吞吐量参考
+     * {@link OperationMetrics.Snapshot#rowsPerSecond()}.
+     *
+     * @param datas 要存储的数据列表
+     * @return 成功插入的数据条数, 不包括失败并回滚的事务中的数据
+     */
+    public int bulkInsert(final List<T> datas) {
+        if (datas == null || datas.isEmpty()) {
+            return 0;
+        }
+        final long metricsStart = startOperation();
+        String[] columns = getInsertColumns();
+        final boolean directBind = columns != null;
+        SqlStatement statement = directBind ? mWritableConnection.compileStatement(buildInsertSql(columns)) : null;
+        final EntityCache<T> cache = getEntityCache();
+        final String primaryKey = getPrimaryKeyColumn();
+        int count = 0;
+        boolean failed = true;
+        try {
+            final Iterator<T> iterator = datas.iterator();
+            while (iterator.hasNext()) {
+                // 事务提交之后才计入插入的行数, 失败回滚的数据不计入
+                int inserted = 0;
+                beginTransaction();
+                try {
+                    for (int i = 0; i < mBulkChunkSize && iterator.hasNext(); i++) {
+                        final T item = iterator.next();
+                        if (isInvalid(item)) {
+                            continue;
+                        }
+                        if (directBind) {
+                            if (cache != null) {
+                                cache.remove(getPrimaryKey(item));
+                            }
+                            statement.clearBindings();
+                            bindInsertValues(statement, item);
+                            inserted += statement.executeInsert() != -1 ? 1 : 0;
+                            continue;
+                        }
+                        final ContentValues values = convert(item);
+                        if (cache != null) {
+                            cache.remove(values.get(primaryKey));
+                        }
+                        if (statement == null) {
+                            columns = values.keySet().toArray(new String[values.size()]);
+                            statement = mWritableConnection.compileStatement(buildInsertSql(columns));
+                        }
+                        if (bindContentValues(statement, columns, values)) {
+                            inserted += statement.executeInsert() != -1 ? 1 : 0;
+                        } else {
+                            // 字段与编译的语句不一致, 退化为普通插入
+                            inserted += insertValues(values) != -1 ? 1 : 0;
+                        }
+                    }
+                    mWritableConnection.setTransactionSuccessful();
+                    count += inserted;
+                } finally {
+                    mWritableConnection.endTransaction();
+                }
+                notifyTableChanged();
+            }
+            failed = false;
+        } finally {
+            IOUtils.closeSilently(statement);
+            endOperation(Operation.INSERT, metricsStart, count, failed);
+        }
+        return count;
+    }
+
+    /**
+     * 开启事务, WAL 模式下使用非独占事务
+     */
+    private void beginTransaction() {
+        mWritableConnection.beginTransaction(null);
+    }
+
+    /**
+     * 生成插入的sql语句, 使用当前的冲突策略
+     *
+     * @param columns 要插入的字段, 为空时所有字段使用默认值
+     * @return insert 语句
+     */
+    private String buildInsertSql(String[] columns) {
+        final StringBuilder sql = new StringBuilder(128);
+        sql.append("INSERT").append(CONFLICT_VALUES[mConflictAlgorithm]).append(" INTO ").append(mTableName);
+        if (columns.length == 0) {
+            return sql.append(" DEFAULT VALUES").toString();
+        }
+        sql.append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? "," : "").append(columns[i]);
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? ",?" : "?");
+        }
+        sql.append(')');
+        return sql.toString();
+    }
+
+    /**
+     * 插入一条数据, 语句从缓存中获取
+     *
+     * @param values 要插入的数据
+     * @return 插入数据的 rowid, 没有插入时返回 -1
+     */
+    private long insertValues(ContentValues values) {
+        final String[] columns = values.keySet().toArray(new String[values.size()]);
+        final String sql = buildInsertSql(columns);
+        final SqlStatement statement = mStatements.acquire(mWritableConnection, sql);
+        try {
+            for (int i = 0; i < columns.length; i++) {
+                IOUtils.bindValue(statement, i + 1, values.get(columns[i]));
+            }
+            return statement.executeInsert();
+        } finally {
+            mStatements.release(sql, statement);
+        }
+    }
+
+    /**
+     * 将 ContentValues 中的数据按照字段顺序绑定到 statement 中
+     *
+     * @param statement 编译好的 insert 语句
+     * @param columns   语句中的字段
+     * @param values    要绑定的数据
+     * @return 字段一致时返回 true, 否则返回 false 且不进行绑定
+     */
+    private static boolean bindContentValues(SqlStatement statement, String[] columns, ContentValues values) {
+        if (values.size() != columns.length) {
+            return false;
+        }
+        for (String column : columns) {
+            if (!values.containsKey(column)) {
+                return false;
+            }
+        }
+        statement.clearBindings();
+        for (int i = 0; i < columns.length; i++) {
+            IOUtils.bindValue(statement, i + 1, values.get(columns[i]));
+        }
+        return true;
+    }
+
+    /**
+     * 批量插入时直接绑定参数所使用的字段, 需要与 {@link #bindInsertValues(SqlStatement, Object)} 配合使用.
+     * 默认返回 null, 表示使用 {@link #convert(Object)} 的结果进行绑定.
+     *
+     * @return 插入的字段
+     */
+    protected String[] getInsertColumns() {
+        return null;
+    }
+
+    /**
+     * 将 item 的数据直接绑定到 insert 语句中, 参数索引从1开始, 顺序与 {@link #getInsertColumns()} 一致
+     *
+     * @param statement 编译好的 insert 语句
+     * @param item      要插入的对象
+     */
+    protected void bindInsertValues(SqlStatement statement, T item) {
+        throw new UnsupportedOperationException(getClass().getName() + " must override bindInsertValues when getInsertColumns is not null");
+    }
+
+    /**
+     * 保存数据. 子类覆写该函数之后 {@link #insert(List)} 会逐条调用该函数, 不再批量插入
      *
      * @param item 要插入的对象
      */
@@ -96,7 +359,20 @@ public abstract class AbsDAO<T> {
         if (isInvalid(item)) {
             return;
         }
-        mWritableDatabase.insertWithOnConflict(mTableName, null, convert(item), mConflictAlgorithm);
+        final long metricsStart = startOperation();
+        boolean failed = true;
+        try {
+            final ContentValues values = convert(item);
+            final EntityCache<T> cache = getEntityCache();
+            if (cache != null) {
+                cache.remove(values.get(getPrimaryKeyColumn()));
+            }
+            insertValues(values);
+            failed = false;
+        } finally {
+            endOperation(Operation.INSERT, metricsStart, 1, failed);
+        }
+        notifyTableChanged();
     }
 
     /**
@@ -124,21 +400,30 @@ public abstract class AbsDAO<T> {
      * @return
      */
     protected List<T> parseResult(Cursor cursor) {
-        List<T> result = new ArrayList<>();
+        List<T> result = new ArrayList<>(Math.max(cursor.getCount(), 0));
+        // 去重,防止在list中含有相同的item, 按照 key 做哈希查找, 保留第一次出现的数据
+        final Set<Object> keys = removeRedundantItems ? new HashSet<>() : null;
         while (cursor.moveToNext()) {
             T item = parseOneItem(cursor);
-            if (item != null) {
-                // 去重,防止在list中含有相同的item
-                if (removeRedundantItems && !result.contains(item)) {
-                    result.add(item);
-                } else {
-                    result.add(item);
-                }
+            if (item != null && (keys == null || keys.add(getRedundancyKey(item)))) {
+                result.add(item);
             }
         }
         return result;
     }
 
+    /**
+     * 去重时判断两条数据是否重复的 key, 参考 {@link #setRemoveRedundantItems(boolean)}.
+     * 默认使用主键, 没有主键时使用数据本身 ( 需要实体覆写 equals 和 hashCode ).
+     *
+     * @param item 解析出的数据
+     * @return 重复数据的 key 相同
+     */
+    protected Object getRedundancyKey(T item) {
+        final Object key = getPrimaryKeyColumn() != null ? getPrimaryKey(item) : null;
+        return key != null ? key : item;
+    }
+
     /**
      * 从Cursor 解析单条数据
      *
@@ -147,6 +432,41 @@ public abstract class AbsDAO<T> {
      */
     protected abstract T parseOneItem(Cursor cursor);
 
+    /**
+     * 获取字段在 Cursor 中的索引, 同一个 Cursor 只查找一次, 用于在 {@link #parseOneItem(Cursor)} 中按照字段名读取数据.
+     *
+     * @param cursor  Cursor对象
+     * @param columns 字段名
+     * @return 与 columns 一一对应的索引, Cursor 中不存在的字段为 -1
+     */
+    protected final int[] getColumnIndexes(Cursor cursor, String[] columns) {
+        final ColumnIndexes cached = mColumnIndexes;
+        if (cached != null && cached.cursor == cursor && cached.columns == columns) {
+            return cached.indexes;
+        }
+        final int[] indexes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            indexes[i] = cursor.getColumnIndex(columns[i]);
+        }
+        mColumnIndexes = new ColumnIndexes(cursor, columns, indexes);
+        return indexes;
+    }
+
+    /**
+     * 上一个 Cursor 的字段索引, 多个线程同时查询时只是重复查找, 不影响正确性
+     */
+    private static final class ColumnIndexes {
+        final Cursor cursor;
+        final String[] columns;
+        final int[] indexes;
+
+        ColumnIndexes(Cursor cursor, String[] columns, int[] indexes) {
+            this.cursor = cursor;
+            this.columns = columns;
+            this.indexes = indexes;
+        }
+    }
+
     /**
      * 获取表中的记录数量
      *
@@ -164,15 +484,65 @@ public abstract class AbsDAO<T> {
      * @return 数据表中的数据
      */
     public int count(String where, String[] args) {
-        Cursor cursor = null;
-        int count = 0;
+        return count(null, false, where, args);
+    }
+
+    /**
+     * 获取符合条件的表中记录数量, 通过 SELECT COUNT 语句在数据库中完成统计, 不会加载数据行
+     *
+     * @param column   要统计的字段, 为空时统计所有记录 ( COUNT(*) )
+     * @param distinct 是否只统计 column 中不重复的值 ( COUNT(DISTINCT column) )
+     * @param where    where 语句
+     * @param args     where 参数
+     * @return 记录数量
+     */
+    public int count(String column, boolean distinct, String where, String[] args) {
+        final StringBuilder sql = new StringBuilder(64);
+        sql.append("SELECT COUNT(");
+        if (TextUtils.isEmpty(column)) {
+            sql.append('*');
+        } else {
+            sql.append(distinct ? "DISTINCT " : "").append(column);
+        }
+        sql.append(") FROM ").append(mTableName);
+        final String selection = stripWhereKeyword(where);
+        if (!TextUtils.isEmpty(selection)) {
+            sql.append(" WHERE ").append(selection);
+        }
+        final long metricsStart = startOperation();
+        SqlStatement statement = null;
+        boolean failed = true;
         try {
-            cursor = mReadableDatabase.rawQuery("select * from " + mTableName + " " + where, args);
-            count = cursor.getCount();
+            statement = mReadableConnection.compileStatement(sql.toString());
+            bindArgs(statement, 0, args);
+            final int count = (int) statement.simpleQueryForLong();
+            failed = false;
+            return count;
         } finally {
-            closeCursor(cursor);
+            IOUtils.closeSilently(statement);
+            final long elapsed = endOperation(Operation.COUNT, metricsStart, 1, failed);
+            if (!failed && SlowQueryLog.getInstance().isSlow(elapsed)) {
+                logSlowQuery(sql.toString(), args, elapsed, 1);
+            }
         }
-        return count;
+    }
+
+    /**
+     * 兼容以 "where" 开头的条件语句
+     *
+     * @param where where 语句
+     * @return 去掉 where 关键字之后的条件语句
+     */
+    private static String stripWhereKeyword(String where) {
+        if (where == null) {
+            return null;
+        }
+        final String selection = where.trim();
+        if (selection.length() > 5 && selection.regionMatches(true, 0, "where", 0, 5)
+                && Character.isWhitespace(selection.charAt(5))) {
+            return selection.substring(6).trim();
+        }
+        return selection;
     }
 
     /**
@@ -183,10 +553,41 @@ public abstract class AbsDAO<T> {
      * @return 返回查询到的单个数据
      */
     public T queryOne(String where, String[] args) {
+        // 按主键查询时使用实体缓存
+        if (getEntityCache() != null && isPrimaryKeySelection(where, args)) {
+            return queryById(args[0]);
+        }
         List<T> result = query(where, args);
         return result.size() > 0 ? result.get(0) : null;
     }
 
+    /**
+     * 按主键查询单个数据, 开启了实体缓存时优先从缓存中获取 ( 参考 {@link #enableEntityCache(int)} )
+     *
+     * @param id 主键的值
+     * @return 返回查询到的单个数据
+     */
+    public T queryById(Object id) {
+        final String primaryKey = getPrimaryKeyColumn();
+        if (primaryKey == null) {
+            throw new UnsupportedOperationException(getClass().getName() + " does not declare a primary key column");
+        }
+        final EntityCache<T> cache = getEntityCache();
+        if (cache == null) {
+            List<T> result = query(primaryKey + "=?", new String[]{String.valueOf(id)});
+            return result.size() > 0 ? result.get(0) : null;
+        }
+        T item = cache.get(id);
+        if (item != null) {
+            return item;
+        }
+        final long version = cache.version();
+        List<T> result = query(primaryKey + "=?", new String[]{String.valueOf(id)});
+        item = result.size() > 0 ? result.get(0) : null;
+        cache.put(id, item, version);
+        return item;
+    }
+
     /**
      * 加载所有数据
      *
@@ -217,19 +618,414 @@ public abstract class AbsDAO<T> {
      * @return
      */
     public List<T> query(String where, String[] args, String orderBy, String limit) {
+        return query(null, where, args, orderBy, limit);
+    }
+
+    /**
+     * 只查询部分字段, 得到只填充了这些字段的实体. 列表页面不需要的大字段 ( 长文本、BLOB ) 不会被读取到 CursorWindow 中.
+     * <p>
+     * 注意 : {@link #parseOneItem(Cursor)} 需要按照字段名读取数据 ( 例如通过 {@link #getColumnIndexes(Cursor, String[])} ,
+     * 注解处理器生成的DAO已经支持 ), 并且投影查询不会调用 {@link #onItemsLoaded(List)} 加载关联数据.
+     *
+     * @param columns 要查询的字段, 为null时查询所有字段
+     * @param where   where 语句
+     * @param args    where 参数
+     * @param orderBy order by 参数
+     * @param limit   limit 参数
+     * @return 查询结果
+     * @throws RuntimeException 查询失败或者被取消时抛出, 在 {@link DbTask} 中执行时传递给任务的 {@link com.simple.database.task.DbFuture}
+     */
+    public List<T> query(String[] columns, String where, String[] args, String orderBy, String limit) {
+        final long metricsStart = startOperation();
         Cursor cursor = null;
-        List<T> result = Collections.EMPTY_LIST;
+        List<T> result = null;
         try {
-            cursor = mReadableDatabase.query(mTableName, null, where, args, null, null, orderBy, limit);
+            cursor = queryCursor(columns, where, args, orderBy, limit);
+            result = parseResult(cursor);
+        } finally {
+            closeCursor(cursor);
+            final int rows = result != null ? result.size() : 0;
+            final long elapsed = endOperation(Operation.QUERY, metricsStart, rows, result == null);
+            if (result != null && SlowQueryLog.getInstance().isSlow(elapsed)) {
+                logSlowQuery(buildQuerySql(columns, where, orderBy, limit), args, elapsed, rows);
+            }
+        }
+        if (columns == null && !result.isEmpty()) {
+            onItemsLoaded(result);
+        }
+        return result;
+    }
+
+    /**
+     * 只查询部分字段, 并通过 mapper 将每一行转换为其他类型, 例如列表页面使用的轻量对象
+     *
+     * @param columns 要查询的字段
+     * @param where   where 语句
+     * @param args    where 参数
+     * @param orderBy order by 参数
+     * @param limit   limit 参数
+     * @param mapper  行转换器
+     * @param <R>     转换之后的类型
+     * @return 转换之后的数据
+     */
+    public <R> List<R> queryRows(String[] columns, String where, String[] args, String orderBy, String limit,
+                                 RowMapper<R> mapper) {
+        final long metricsStart = startOperation();
+        Cursor cursor = null;
+        final List<R> result = new ArrayList<>();
+        boolean failed = true;
+        try {
+            cursor = queryCursor(columns, where, args, orderBy, limit);
+            while (cursor.moveToNext()) {
+                final R row = mapper.map(cursor);
+                if (row != null) {
+                    result.add(row);
+                }
+            }
+            failed = false;
+        } finally {
+            closeCursor(cursor);
+            final long elapsed = endOperation(Operation.QUERY, metricsStart, result.size(), failed);
+            if (!failed && SlowQueryLog.getInstance().isSlow(elapsed)) {
+                logSlowQuery(buildQuerySql(columns, where, orderBy, limit), args, elapsed, result.size());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 创建预编译的查询, 参数在执行时传入, 参考 {@link #queryCompiled(CompiledQuery, Object...)}
+     *
+     * @param columns 要查询的字段, 为null时查询所有字段
+     * @param where   where 语句
+     * @param orderBy order by 参数
+     * @param limit   limit 参数
+     * @return 可以重复执行的查询
+     */
+    public CompiledQuery compileQuery(String[] columns, String where, String orderBy, String limit) {
+        return new CompiledQuery(mTableName, columns, buildQuerySql(columns, where, orderBy, limit));
+    }
+
+    private String buildQuerySql(String[] columns, String where, String orderBy, String limit) {
+        return SQLiteQueryBuilder.buildQueryString(mDistinct, mTableName, columns, where, null, null, orderBy, limit);
+    }
+
+    /**
+     * 执行预编译的查询. 只查询部分字段时不会调用 {@link #onItemsLoaded(List)}
+     *
+     * @param query 通过 {@link #compileQuery(String[], String, String, String)} 创建的查询
+     * @param args  查询参数, 按照实际类型绑定, 支持 long、int、double、boolean、byte[]、String 以及 null
+     * @return 查询结果
+     * @throws RuntimeException 查询失败或者被取消时抛出
+     */
+    public List<T> queryCompiled(CompiledQuery query, Object... args) {
+        checkTable(query.table);
+        return querySql(query.sql, query.columns == null, args);
+    }
+
+    /**
+     * 执行查询语句并解析结果, 参数按照实际类型绑定
+     *
+     * @param sql      查询语句
+     * @param allItems 是否查询了所有字段, 为 true 时调用 {@link #onItemsLoaded(List)}
+     * @param args     查询参数
+     * @return 查询结果
+     */
+    private List<T> querySql(String sql, boolean allItems, Object[] args) {
+        final long metricsStart = startOperation();
+        Cursor cursor = null;
+        List<T> result = null;
+        try {
+            cursor = rawQuery(sql, args);
             result = parseResult(cursor);
-        } catch (Exception e) {
-            e.printStackTrace();
         } finally {
             closeCursor(cursor);
+            final int rows = result != null ? result.size() : 0;
+            final long elapsed = endOperation(Operation.QUERY, metricsStart, rows, result == null);
+            if (result != null && SlowQueryLog.getInstance().isSlow(elapsed)) {
+                logSlowQuery(sql, args, elapsed, rows);
+            }
+        }
+        if (allItems && !result.isEmpty()) {
+            onItemsLoaded(result);
         }
         return result;
     }
 
+    /**
+     * 执行预编译的查询, 并通过 mapper 将每一行转换为其他类型
+     *
+     * @param query  通过 {@link #compileQuery(String[], String, String, String)} 创建的查询
+     * @param mapper 行转换器
+     * @param args   查询参数, 按照实际类型绑定
+     * @param <R>    转换之后的类型
+     * @return 转换之后的数据
+     */
+    public <R> List<R> queryRowsCompiled(CompiledQuery query, RowMapper<R> mapper, Object... args) {
+        checkTable(query.table);
+        final long metricsStart = startOperation();
+        Cursor cursor = null;
+        final List<R> result = new ArrayList<>();
+        boolean failed = true;
+        try {
+            cursor = rawQuery(query.sql, args);
+            while (cursor.moveToNext()) {
+                final R row = mapper.map(cursor);
+                if (row != null) {
+                    result.add(row);
+                }
+            }
+            failed = false;
+        } finally {
+            closeCursor(cursor);
+            final long elapsed = endOperation(Operation.QUERY, metricsStart, result.size(), failed);
+            if (!failed && SlowQueryLog.getInstance().isSlow(elapsed)) {
+                logSlowQuery(query.sql, args, elapsed, result.size());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 执行 sql 查询, 参数按照实际类型绑定
+     */
+    private Cursor rawQuery(String sql, Object[] args) {
+        return mReadableConnection.query(sql, args, DbTask.currentCancellationSignal());
+    }
+
+    private void checkTable(String table) {
+        if (!mTableName.equals(table)) {
+            throw new IllegalArgumentException("statement is compiled for table " + table + ", not " + mTableName);
+        }
+    }
+
+    /**
+     * 执行查询并返回Cursor. 在 {@link DbTask} 中执行时会传入任务的 CancellationSignal, 任务被取消时查询会被中断.
+     *
+     * @param columns 要查询的字段, 为null时查询所有字段
+     * @param where   where 语句
+     * @param args    where 参数
+     * @param orderBy order by 参数
+     * @param limit   limit 参数
+     * @return 查询结果的Cursor
+     */
+    protected Cursor queryCursor(String[] columns, String where, String[] args, String orderBy, String limit) {
+        return rawQuery(buildQuerySql(columns, where, orderBy, limit), args);
+    }
+
+    /**
+     * 查询 column 的值在 values 中的所有数据, 即 column IN (...). 参数较多时会分成多条语句查询, 用于批量加载关联数据.
+     * 如果 column 为主键并且开启了实体缓存, 则优先从缓存中获取.
+     *
+     * @param column 字段名
+     * @param values 字段的值
+     * @return 查询结果, 顺序不保证与 values 一致
+     */
+    public List<T> queryIn(String column, Collection<?> values) {
+        final List<T> result = new ArrayList<>();
+        if (values == null || values.isEmpty()) {
+            return result;
+        }
+        final EntityCache<T> cache = column.equals(getPrimaryKeyColumn()) ? getEntityCache() : null;
+        final long version = cache != null ? cache.version() : 0;
+        final List<String> args = new ArrayList<>(Math.min(values.size(), MAX_IN_ARGS));
+        final Iterator<?> iterator = values.iterator();
+        while (iterator.hasNext()) {
+            final Object value = iterator.next();
+            final T cached = cache != null ? cache.get(value) : null;
+            if (cached != null) {
+                result.add(cached);
+            } else {
+                args.add(String.valueOf(value));
+            }
+            if (args.size() == MAX_IN_ARGS || (!iterator.hasNext() && args.size() > 0)) {
+                final StringBuilder where = new StringBuilder(column.length() + args.size() * 2 + 8);
+                where.append(column).append(" IN (");
+                for (int i = 0; i < args.size(); i++) {
+                    where.append(i > 0 ? ",?" : "?");
+                }
+                where.append(')');
+                final List<T> items = query(where.toString(), args.toArray(new String[args.size()]));
+                if (cache != null) {
+                    for (T item : items) {
+                        cache.put(getPrimaryKey(item), item, version);
+                    }
+                }
+                result.addAll(items);
+                args.clear();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 一批数据从数据库中解析完成之后调用, 默认为空实现. 子类可以在这里批量加载关联数据, 例如:
+     * <pre>
+     * protected void onItemsLoaded(List&lt;User&gt; users) {
+     *     Set&lt;Object&gt; ids = Relations.collectKeys(users, USER_ID);
+     *     Map&lt;Object, List&lt;BorrowRecord&gt;&gt; records = Relations.groupBy(mBorrowDao.queryIn("user_id", ids), RECORD_USER_ID);
+     *     for (User user : users) {
+     *         user.records = records.get(user.id);
+     *     }
+     * }
+     * </pre>
+     * 这样一页数据只需要固定数量的查询, 而不是在 {@link #parseOneItem(Cursor)} 中每一行都执行一次查询.
+     *
+     * @param items 解析出的数据, 不为空
+     */
+    protected void onItemsLoaded(List<T> items) {
+    }
+
+
+    /**
+     * keyset 分页查询. 与 limit/offset 分页不同, 通过上一页最后一条数据的排序字段值生成查询条件 ( 例如 WHERE ts > ? ),
+     * 因此查询耗时与页码无关.
+     *
+     * @param where    where 语句
+     * @param args     where 参数
+     * @param orderBy  order by 参数, 不能为空, 支持多个字段以及 ASC/DESC, 字段组合需要唯一且非空
+     * @param key      游标, 为null时查询第一页 ( reverse 为 true 时为最后一页 )
+     * @param reverse  为 false 时查询 key 之后的数据, 为 true 时查询 key 之前的数据
+     * @param pageSize 每页的数据条数
+     * @return 分页结果, 数据顺序始终与 orderBy 一致
+     */
+    public Page<T> queryPage(String where, String[] args, String orderBy, PageKey key, boolean reverse, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be greater than 0");
+        }
+        final SortOrder sortOrder = SortOrder.parse(orderBy);
+        String selection = where;
+        Object[] selectionArgs = args;
+        if (key != null) {
+            final List<Object> keyArgs = new ArrayList<>();
+            final String predicate = sortOrder.buildPredicate(key, reverse, keyArgs);
+            selection = TextUtils.isEmpty(where) ? predicate : "(" + where + ") AND (" + predicate + ")";
+            selectionArgs = SortOrder.concat(args, keyArgs);
+        }
+        // 多查询一条用于判断是否还有更多数据, 游标中的值按照实际类型绑定
+        final List<T> items = new ArrayList<>(querySql(buildQuerySql(null, selection, sortOrder.toOrderBy(reverse),
+                String.valueOf(pageSize + 1)), true, selectionArgs));
+        final boolean hasMore = items.size() > pageSize;
+        if (hasMore) {
+            items.remove(pageSize);
+        }
+        if (reverse) {
+            Collections.reverse(items);
+        }
+        if (items.isEmpty()) {
+            return new Page<>(items, null, null, false);
+        }
+        final PageKey firstKey = sortOrder.keyOf(convert(items.get(0)));
+        final PageKey lastKey = sortOrder.keyOf(convert(items.get(items.size() - 1)));
+        return new Page<>(items, firstKey, lastKey, hasMore);
+    }
+
+    /**
+     * 逐行遍历查询结果, 同一时刻最多持有 {@link #ITERATE_CHUNK_SIZE} 条数据, 不会将所有结果加载到内存中
+     *
+     * @param where   where 语句
+     * @param args    where 参数
+     * @param visitor 数据访问者, 返回 false 时停止遍历
+     * @return 访问过的数据条数
+     */
+    public int forEach(String where, String[] args, RowVisitor<T> visitor) {
+        return forEach(where, args, null, null, visitor);
+    }
+
+    /**
+     * 逐行遍历查询结果, 同一时刻最多持有 {@link #ITERATE_CHUNK_SIZE} 条数据, 不会将所有结果加载到内存中
+     *
+     * @param where   where 语句
+     * @param args    where 参数
+     * @param orderBy order by 参数
+     * @param limit   limit 参数
+     * @param visitor 数据访问者, 返回 false 时停止遍历
+     * @return 访问过的数据条数
+     */
+    public int forEach(String where, String[] args, String orderBy, String limit, RowVisitor<T> visitor) {
+        CursorIterator<T> iterator = iterate(where, args, orderBy, limit);
+        int count = 0;
+        try {
+            while (iterator.hasNext()) {
+                count++;
+                if (!visitor.visit(iterator.next())) {
+                    break;
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+        return count;
+    }
+
+    /**
+     * 以迭代器的形式返回查询结果, 数据在迭代时才从Cursor中解析. 每次预先解析 {@link #ITERATE_CHUNK_SIZE} 条数据,
+     * 并通过 {@link #onItemsLoaded(List)} 批量加载这些数据的关联数据, 避免每条数据单独查询一次关联表.
+     * 需要控制每块数据的大小时使用 {@link #forEachChunk(String, String[], String, int, ChunkListener)}.
+     * 注意 : 没有遍历完成时需要调用 {@link CursorIterator#close()} 关闭Cursor.
+     *
+     * @param where   where 语句
+     * @param args    where 参数
+     * @param orderBy order by 参数
+     * @param limit   limit 参数
+     * @return 查询结果的迭代器
+     */
+    public CursorIterator<T> iterate(String where, String[] args, String orderBy, String limit) {
+        Cursor cursor = queryCursor(null, where, args, orderBy, limit);
+        return new CursorIterator<T>(cursor, ITERATE_CHUNK_SIZE) {
+            @Override
+            protected T parse(Cursor cursor) {
+                return parseOneItem(cursor);
+            }
+
+            @Override
+            protected void onChunkParsed(List<T> chunk) {
+                onItemsLoaded(chunk);
+            }
+        };
+    }
+
+    /**
+     * 分块遍历查询结果, 每读取 chunkSize 条数据调用一次 {@link #onItemsLoaded(List)} 和 listener,
+     * 因此关联数据也是按块批量加载的.
+     *
+     * @param where     where 语句
+     * @param args      where 参数
+     * @param orderBy   order by 参数
+     * @param chunkSize 每块数据的条数
+     * @param listener  接收每块数据, 返回 false 时停止遍历
+     * @return 读取到的数据条数
+     */
+    public int forEachChunk(String where, String[] args, String orderBy, int chunkSize, ChunkListener<T> listener) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be greater than 0");
+        }
+        Cursor cursor = null;
+        int count = 0;
+        try {
+            cursor = queryCursor(null, where, args, orderBy, null);
+            List<T> chunk = new ArrayList<>(chunkSize);
+            boolean hasNext = cursor.moveToNext();
+            while (hasNext) {
+                final T item = parseOneItem(cursor);
+                if (item != null) {
+                    chunk.add(item);
+                    count++;
+                }
+                hasNext = cursor.moveToNext();
+                if (chunk.size() == chunkSize || (!hasNext && chunk.size() > 0)) {
+                    onItemsLoaded(chunk);
+                    if (!listener.onChunk(chunk)) {
+                        break;
+                    }
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        } finally {
+            closeCursor(cursor);
+        }
+        return count;
+    }
 
     /**
      * 更新实体
@@ -239,7 +1035,32 @@ public abstract class AbsDAO<T> {
      * @param args  where 参数
      */
     public void update(T item, String where, String[] args) {
-        mWritableDatabase.update(mTableName, convert(item), where, args);
+        final long metricsStart = startOperation();
+        int count = 0;
+        boolean failed = true;
+        try {
+            final ContentValues values = convert(item);
+            if (values == null || values.size() == 0) {
+                throw new IllegalArgumentException("Empty values");
+            }
+            final String[] keys = values.keySet().toArray(new String[values.size()]);
+            final String sql = buildUpdateSql(keys, where);
+            final SqlStatement statement = mStatements.acquire(mWritableConnection, sql);
+            try {
+                for (int i = 0; i < keys.length; i++) {
+                    IOUtils.bindValue(statement, i + 1, values.get(keys[i]));
+                }
+                bindArgs(statement, keys.length, args);
+                count = statement.executeUpdateDelete();
+            } finally {
+                mStatements.release(sql, statement);
+            }
+            failed = false;
+        } finally {
+            endOperation(Operation.UPDATE, metricsStart, count, failed);
+        }
+        invalidateEntities(where, args);
+        notifyTableChanged();
     }
 
     /**
@@ -249,7 +1070,140 @@ public abstract class AbsDAO<T> {
      * @param whereArgs   where 参数
      */
     public void delete(String whereClause, String[] whereArgs) {
-        mWritableDatabase.delete(mTableName, whereClause, whereArgs);
+        final long metricsStart = startOperation();
+        int count = 0;
+        boolean failed = true;
+        try {
+            final String sql = "DELETE FROM " + mTableName + (!TextUtils.isEmpty(whereClause) ? " WHERE " + whereClause : "");
+            final SqlStatement statement = mStatements.acquire(mWritableConnection, sql);
+            try {
+                bindArgs(statement, 0, whereArgs);
+                count = statement.executeUpdateDelete();
+            } finally {
+                mStatements.release(sql, statement);
+            }
+            failed = false;
+        } finally {
+            endOperation(Operation.DELETE, metricsStart, count, failed);
+        }
+        invalidateEntities(whereClause, whereArgs);
+        notifyTableChanged();
+    }
+
+    /**
+     * 创建预编译的更新语句, 参考 {@link #updateCompiled(CompiledUpdate, Object, Object...)}
+     *
+     * @param where where 语句
+     * @return 可以重复执行的更新语句
+     */
+    public CompiledUpdate compileUpdate(String where) {
+        final String[] columns = getInsertColumns();
+        return new CompiledUpdate(mTableName, where, columns != null ? buildUpdateSql(columns, where) : null);
+    }
+
+    /**
+     * 执行预编译的更新语句
+     *
+     * @param update 通过 {@link #compileUpdate(String)} 创建的更新语句
+     * @param item   要更新的对象
+     * @param args   where 参数, 按照实际类型绑定
+     * @return 更新的行数
+     */
+    public int updateCompiled(CompiledUpdate update, T item, Object... args) {
+        checkTable(update.table);
+        final String[] columns = update.sql != null ? getInsertColumns() : null;
+        final ContentValues values = columns == null ? convert(item) : null;
+        final String[] keys = values != null ? values.keySet().toArray(new String[values.size()]) : null;
+        final String sql = columns != null ? update.sql : buildUpdateSql(keys, update.where);
+        final long metricsStart = startOperation();
+        final SqlStatement statement = mStatements.acquire(mWritableConnection, sql);
+        int count = 0;
+        boolean failed = true;
+        try {
+            final int offset;
+            if (columns != null) {
+                bindInsertValues(statement, item);
+                offset = columns.length;
+            } else {
+                for (int i = 0; i < keys.length; i++) {
+                    IOUtils.bindValue(statement, i + 1, values.get(keys[i]));
+                }
+                offset = keys.length;
+            }
+            bindArgs(statement, offset, args);
+            count = statement.executeUpdateDelete();
+            failed = false;
+        } finally {
+            mStatements.release(sql, statement);
+            endOperation(Operation.UPDATE, metricsStart, count, failed);
+        }
+        invalidateEntities(update.where, args);
+        notifyTableChanged();
+        return count;
+    }
+
+    private String buildUpdateSql(String[] columns, String where) {
+        final StringBuilder sql = new StringBuilder(128);
+        sql.append("UPDATE ").append(mTableName).append(" SET ");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? "," : "").append(columns[i]).append("=?");
+        }
+        if (!TextUtils.isEmpty(where)) {
+            sql.append(" WHERE ").append(where);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * 创建预编译的删除语句, 参考 {@link #deleteCompiled(CompiledDelete, Object...)}
+     *
+     * @param where where 语句
+     * @return 可以重复执行的删除语句
+     */
+    public CompiledDelete compileDelete(String where) {
+        return new CompiledDelete(mTableName, where,
+                "DELETE FROM " + mTableName + (!TextUtils.isEmpty(where) ? " WHERE " + where : ""));
+    }
+
+    /**
+     * 执行预编译的删除语句
+     *
+     * @param delete 通过 {@link #compileDelete(String)} 创建的删除语句
+     * @param args   where 参数, 按照实际类型绑定
+     * @return 删除的行数
+     */
+    public int deleteCompiled(CompiledDelete delete, Object... args) {
+        checkTable(delete.table);
+        final long metricsStart = startOperation();
+        final SqlStatement statement = mStatements.acquire(mWritableConnection, delete.sql);
+        int count = 0;
+        boolean failed = true;
+        try {
+            bindArgs(statement, 0, args);
+            count = statement.executeUpdateDelete();
+            failed = false;
+        } finally {
+            mStatements.release(delete.sql, statement);
+            endOperation(Operation.DELETE, metricsStart, count, failed);
+        }
+        invalidateEntities(delete.where, args);
+        notifyTableChanged();
+        return count;
+    }
+
+    private static void bindArgs(SqlStatement statement, int offset, Object[] args) {
+        if (args != null) {
+            for (int i = 0; i < args.length; i++) {
+                IOUtils.bindValue(statement, offset + i + 1, args[i]);
+            }
+        }
+    }
+
+    /**
+     * 关闭DAO缓存的预编译语句, 数据库关闭之前调用
+     */
+    public void clearStatementCache() {
+        mStatements.clear();
     }
 
     /**
@@ -269,7 +1223,180 @@ public abstract class AbsDAO<T> {
     }
 
     /**
-     * 设置是否移除重复的Item
+     * 通知 {@link InvalidationTracker} 该表的数据发生了变化, 使查询缓存失效. 子类通过其他方式修改了数据时需要调用该函数.
+     */
+    protected void notifyTableChanged() {
+        final InvalidationTracker tracker = InvalidationTracker.getInstance();
+        tracker.notifyTableChanged(mWritableConnection, mTableName);
+        tracker.flushPending(mWritableConnection);
+    }
+
+    /**
+     * 估算实体占用的内存大小, 用于限制查询缓存的大小. 默认按照每个实体 128 字节估算, 含有大字段的子类可以覆写该函数.
+     *
+     * @param item 实体
+     * @return 估算的字节数
+     */
+    public int estimateSize(T item) {
+        return 128;
+    }
+
+    /**
+     * @return 表名
+     */
+    public String getTableName() {
+        return mTableName;
+    }
+
+    /**
+     * 查询缓存的作用域, 由 DAO 类型以及影响查询结果的设置 ( distinct、去重 ) 组成. 同一张表的不同 DAO ( 例如生成的DAO与
+     * 在 {@link #onItemsLoaded(List)} 中加载关联数据的子类 ) 解析出的对象不同, 因此不共享缓存.
+     *
+     * @return 作为 {@link com.simple.database.cache.QueryCache} key 的一部分
+     */
+    public String getQueryCacheScope() {
+        return getClass().getName() + (mDistinct ? "|distinct" : "") + (removeRedundantItems ? "|dedup" : "");
+    }
+
+    /**
+     * 查询结果依赖的表, 其中任何一张表发生变化时查询缓存都会失效, 被观察的查询也会重新执行. 默认只有当前表,
+     * 在 {@link #onItemsLoaded(List)} 中加载了其他表的数据的子类需要覆写该函数.
+     *
+     * @return 查询结果依赖的表
+     */
+    public Set<String> getObservedTables() {
+        return Collections.singleton(mTableName);
+    }
+
+    /**
+     * 主键字段名, 用于实体缓存等按主键进行的操作. 默认为null, 表示没有主键.
+     *
+     * @return 主键字段名
+     */
+    protected String getPrimaryKeyColumn() {
+        return null;
+    }
+
+    /**
+     * 获取实体的主键值, 默认从 {@link #convert(Object)} 的结果中读取 {@link #getPrimaryKeyColumn()} 字段,
+     * 子类可以覆写该函数直接返回主键字段以减少转换.
+     *
+     * @param item 实体
+     * @return 主键的值
+     */
+    protected Object getPrimaryKey(T item) {
+        final String primaryKey = getPrimaryKeyColumn();
+        return primaryKey != null ? convert(item).get(primaryKey) : null;
+    }
+
+    /**
+     * 计算差异时判断同一主键的新旧数据内容是否相同, 默认比较 {@link #convert(Object)} 的结果.
+     * 在 {@link #onItemsLoaded(List)} 中加载了关联数据的子类需要覆写该函数.
+     *
+     * @param oldItem 旧数据
+     * @param newItem 新数据
+     * @return 内容相同时返回 true
+     */
+    protected boolean areContentsTheSame(T oldItem, T newItem) {
+        return convert(oldItem).equals(convert(newItem));
+    }
+
+    /**
+     * 按照主键计算两次查询结果之间的差异, 数据量较大时应该在后台线程中调用. 需要覆写 {@link #getPrimaryKeyColumn()}
+     * 或者 {@link #getPrimaryKey(Object)}.
+     *
+     * @param oldItems 旧的查询结果
+     * @param newItems 新的查询结果
+     * @return 从旧结果变为新结果的变化
+     */
+    public ChangeSet diff(List<T> oldItems, List<T> newItems) {
+        return ChangeSet.calculate(oldItems, newItems, this);
+    }
+
+    /**
+     * 开启按主键缓存实体的 LRU 缓存, 同一张表的所有 DAO 共享该缓存. 通过该表的 DAO 插入、更新、删除数据时会使对应的缓存失效.
+     * <p>
+     * 注意 : 子类需要覆写 {@link #getPrimaryKeyColumn()}, 并且缓存的对象会被共享, 不要修改获取到的对象.
+     *
+     * @param maxSize 最多缓存的实体数量
+     */
+    public void enableEntityCache(int maxSize) {
+        if (getPrimaryKeyColumn() == null) {
+            throw new UnsupportedOperationException(getClass().getName() + " does not declare a primary key column");
+        }
+        synchronized (ENTITY_CACHES) {
+            final EntityCache<?> cache = ENTITY_CACHES.get(mTableName);
+            if (cache == null) {
+                ENTITY_CACHES.put(mTableName, new EntityCache<T>(maxSize));
+            } else {
+                cache.setMaxSize(maxSize);
+            }
+        }
+    }
+
+    /**
+     * 关闭该表的实体缓存
+     */
+    public void disableEntityCache() {
+        synchronized (ENTITY_CACHES) {
+            ENTITY_CACHES.remove(mTableName);
+        }
+    }
+
+    /**
+     * 获取该表的实体缓存, 可以通过它获取命中率、淘汰次数等统计数据
+     *
+     * @return 实体缓存, 没有开启时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public EntityCache<T> getEntityCache() {
+        synchronized (ENTITY_CACHES) {
+            // 缓存只通过 enableEntityCache 以当前 DAO 的实体类型创建
+            return (EntityCache<T>) ENTITY_CACHES.get(mTableName);
+        }
+    }
+
+    /**
+     * 更新、删除之后使实体缓存失效. 条件为按主键操作时只失效对应的实体, 否则清空该表的缓存.
+     *
+     * @param where where 语句
+     * @param args  where 参数
+     */
+    private void invalidateEntities(String where, Object[] args) {
+        final EntityCache<T> cache = getEntityCache();
+        if (cache == null) {
+            return;
+        }
+        if (isPrimaryKeySelection(where, args)) {
+            cache.remove(args[0]);
+        } else {
+            cache.clear();
+        }
+    }
+
+    /**
+     * 判断条件语句是否为 "主键=?" 的形式
+     */
+    private boolean isPrimaryKeySelection(String where, Object[] args) {
+        final String primaryKey = getPrimaryKeyColumn();
+        return primaryKey != null && where != null && args != null && args.length == 1
+                && where.replace(" ", "").equalsIgnoreCase(primaryKey + "=?");
+    }
+
+    /**
+     * 设置批量插入时每个事务插入的数据条数
+     *
+     * @param chunkSize 每个事务插入的数据条数, 必须大于0
+     */
+    public void setBulkChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be greater than 0");
+        }
+        this.mBulkChunkSize = chunkSize;
+    }
+
+    /**
+     * 设置是否移除重复的Item. 解析结果时按照 {@link #getRedundancyKey(Object)} 做哈希去重, 耗时与数据量成线性关系.
      *
      * @param remove 是否移除重复的数据
      */
@@ -277,6 +1404,73 @@ public abstract class AbsDAO<T> {
         this.removeRedundantItems = remove;
     }
 
+    /**
+     * 设置查询时是否使用 SELECT DISTINCT, 在 SQLite 中去掉所有字段都相同的行, 重复的行不会被读取和解析.
+     * 只有部分字段相同的数据需要通过 {@link #setRemoveRedundantItems(boolean)} 去重.
+     *
+     * @param distinct 是否使用 SELECT DISTINCT
+     */
+    public void setDistinct(boolean distinct) {
+        this.mDistinct = distinct;
+    }
+
+    /**
+     * 开始统计一次操作, 参考 {@link DbMetrics} 和 {@link SlowQueryLog}
+     *
+     * @return 开始时间, 没有开启统计和慢查询日志时返回0
+     */
+    private static long startOperation() {
+        return DbMetrics.getInstance().isEnabled() || SlowQueryLog.getInstance().isEnabled() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * 结束统计一次操作, 并将统计数据关联到正在执行的任务
+     *
+     * @param operation  操作类型
+     * @param startNanos {@link #startOperation()} 的返回值
+     * @param rows       读取或者写入的行数
+     * @param failed     是否失败
+     * @return 操作耗时, 单位为纳秒, 没有计时时返回0
+     */
+    private long endOperation(Operation operation, long startNanos, int rows, boolean failed) {
+        if (startNanos == 0) {
+            return 0;
+        }
+        final long elapsed = System.nanoTime() - startNanos;
+        final DbMetrics dbMetrics = DbMetrics.getInstance();
+        if (dbMetrics.isEnabled()) {
+            final OperationMetrics metrics = dbMetrics.of(getClass(), operation);
+            metrics.recordExecution(elapsed, rows, failed);
+            DbTask.attachMetrics(metrics);
+        }
+        return elapsed;
+    }
+
+    /**
+     * 记录慢查询, 同时获取查询计划. 在执行查询的线程中调用
+     *
+     * @param sql          查询语句
+     * @param args         查询参数
+     * @param elapsedNanos 查询耗时, 单位为纳秒
+     * @param rows         读取的行数
+     */
+    private void logSlowQuery(String sql, Object[] args, long elapsedNanos, int rows) {
+        final List<String> plan = new ArrayList<>();
+        Cursor cursor = null;
+        try {
+            cursor = mReadableConnection.query("EXPLAIN QUERY PLAN " + sql, args, null);
+            final int detail = cursor.getColumnIndex("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detail >= 0 ? detail : cursor.getColumnCount() - 1));
+            }
+        } catch (Exception e) {
+            Platform.w(getClass().getSimpleName(), "### explain query plan failed : " + sql, e);
+        } finally {
+            closeCursor(cursor);
+        }
+        SlowQueryLog.getInstance().add(getClass().getName(), sql, args, elapsedNanos, rows, plan);
+    }
+
     protected void closeCursor(Cursor cursor) {
         IOUtils.closeCursor(cursor);
     }
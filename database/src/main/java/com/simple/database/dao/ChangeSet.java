@@ -0,0 +1,297 @@
+package com.simple.database.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 两次查询结果之间的差异, 按照主键 ( 参考 {@link AbsDAO#getPrimaryKey(Object)} ) 匹配新旧数据.
+ * <p>
+ * 变化按照 删除、移动、插入、修改 的顺序排列, 每个变化中的位置都是在应用了前面所有变化之后的列表中的位置,
+ * 因此可以按顺序直接转发给 RecyclerView.Adapter 的 notifyItemRangeRemoved、notifyItemMoved 等函数.
+ * 数据没有主键或者主键重复时无法计算差异, 此时 {@link #isReset()} 返回 true, 需要整体刷新.
+ * <p>
+ * 计算删除、插入、修改的耗时与列表长度成正比; 每次移动需要 O(n) 的时间, 移动的数量与列表长度的乘积超过
+ * {@link #MAX_MOVE_COST} 时 ( 例如列表被整体倒序 ) 不再计算移动, 同样返回需要整体刷新的结果.
+ */
+public final class ChangeSet {
+    public static final int TYPE_REMOVE = 1;
+    public static final int TYPE_MOVE = 2;
+    public static final int TYPE_INSERT = 3;
+    public static final int TYPE_CHANGE = 4;
+    /**
+     * 计算移动时允许的最大耗时, 单位为 移动数量 × 列表长度. 大约对应 1000 条数据中移动 1000 条
+     */
+    public static final long MAX_MOVE_COST = 1000000;
+
+    private static final ChangeSet RESET = new ChangeSet(Collections.<Change>emptyList(), true);
+
+    private final List<Change> mChanges;
+    private final boolean mReset;
+
+    private ChangeSet(List<Change> changes, boolean reset) {
+        mChanges = Collections.unmodifiableList(changes);
+        mReset = reset;
+    }
+
+    /**
+     * 接收变化的回调, 与 RecyclerView 的 ListUpdateCallback 一致
+     */
+    public interface Callback {
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        void onMoved(int fromPosition, int toPosition);
+
+        void onChanged(int position, int count);
+    }
+
+    /**
+     * 一项变化
+     */
+    public static final class Change {
+        /**
+         * 变化类型, {@link #TYPE_REMOVE} 、{@link #TYPE_MOVE} 、{@link #TYPE_INSERT} 或者 {@link #TYPE_CHANGE}
+         */
+        public final int type;
+        /**
+         * 起始位置, 移动时为移动前的位置
+         */
+        public final int position;
+        /**
+         * 移动之后的位置, 其他类型为 -1
+         */
+        public final int toPosition;
+        /**
+         * 连续变化的数量, 移动时为 1
+         */
+        public final int count;
+
+        Change(int type, int position, int toPosition, int count) {
+            this.type = type;
+            this.position = position;
+            this.toPosition = toPosition;
+            this.count = count;
+        }
+
+        @Override
+        public String toString() {
+            return "Change[type=" + type + ",position=" + position + ",toPosition=" + toPosition + ",count=" + count + "]";
+        }
+    }
+
+    /**
+     * @return 按顺序排列的变化
+     */
+    public List<Change> getChanges() {
+        return mChanges;
+    }
+
+    /**
+     * @return 是否没有任何变化
+     */
+    public boolean isEmpty() {
+        return !mReset && mChanges.isEmpty();
+    }
+
+    /**
+     * @return 是否无法计算差异, 需要整体刷新
+     */
+    public boolean isReset() {
+        return mReset;
+    }
+
+    /**
+     * 按顺序将变化转发给 callback
+     *
+     * @param callback 接收变化的回调
+     */
+    public void dispatchTo(Callback callback) {
+        for (Change change : mChanges) {
+            switch (change.type) {
+                case TYPE_REMOVE:
+                    callback.onRemoved(change.position, change.count);
+                    break;
+                case TYPE_MOVE:
+                    callback.onMoved(change.position, change.toPosition);
+                    break;
+                case TYPE_INSERT:
+                    callback.onInserted(change.position, change.count);
+                    break;
+                default:
+                    callback.onChanged(change.position, change.count);
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return mReset ? "ChangeSet[reset]" : "ChangeSet" + mChanges;
+    }
+
+    /**
+     * 计算差异. 先从后往前删除新列表中不存在的数据, 再按照最长递增子序列保留位置不变的数据, 其余数据各移动一次,
+     * 然后插入新的数据, 最后标记内容发生变化的数据.
+     */
+    static <T> ChangeSet calculate(List<T> oldItems, List<T> newItems, AbsDAO<T> dao) {
+        final int newSize = newItems.size();
+        final Map<Object, Integer> newIndexes = new HashMap<>(newSize * 2);
+        for (int i = 0; i < newSize; i++) {
+            final Object key = dao.getPrimaryKey(newItems.get(i));
+            if (key == null || newIndexes.put(key, i) != null) {
+                return RESET;
+            }
+        }
+        final List<Change> changes = new ArrayList<>();
+        // 旧数据在新列表中的位置, -1 表示被删除
+        final int oldSize = oldItems.size();
+        final int[] targets = new int[oldSize];
+        final boolean[] survived = new boolean[newSize];
+        for (int i = 0; i < oldSize; i++) {
+            final Object key = dao.getPrimaryKey(oldItems.get(i));
+            final Integer target = key != null ? newIndexes.get(key) : null;
+            if (key == null || (target != null && survived[target])) {
+                return RESET;
+            }
+            targets[i] = target != null ? target : -1;
+            if (target != null) {
+                survived[target] = true;
+            }
+        }
+
+        // 删除, 从后往前保证前面的位置不变
+        int end = oldSize - 1;
+        while (end >= 0) {
+            if (targets[end] >= 0) {
+                end--;
+                continue;
+            }
+            int start = end;
+            while (start > 0 && targets[start - 1] < 0) {
+                start--;
+            }
+            changes.add(new Change(TYPE_REMOVE, start, -1, end - start + 1));
+            end = start - 1;
+        }
+
+        // 移动, 最长递增子序列中的数据位置不变
+        final List<Integer> working = new ArrayList<>(oldSize);
+        for (int target : targets) {
+            if (target >= 0) {
+                working.add(target);
+            }
+        }
+        final boolean[] settled = markLongestIncreasing(working, newSize);
+        int moves = 0;
+        for (int target : working) {
+            if (!settled[target]) {
+                moves++;
+            }
+        }
+        if ((long) moves * working.size() > MAX_MOVE_COST) {
+            return RESET;
+        }
+        for (int i = 0; i < working.size(); i++) {
+            final int target = working.get(i);
+            if (settled[target]) {
+                continue;
+            }
+            working.remove(i);
+            int to = 0;
+            while (to < working.size() && !(settled[working.get(to)] && working.get(to) > target)) {
+                to++;
+            }
+            working.add(to, target);
+            settled[target] = true;
+            if (to != i) {
+                changes.add(new Change(TYPE_MOVE, i, to, 1));
+            }
+            if (to > i) {
+                // 后面的数据前移了一位, 重新检查当前位置
+                i--;
+            }
+        }
+
+        // 插入, 此时所有保留的数据已经按照新列表的顺序排列
+        int start = 0;
+        while (start < newSize) {
+            if (survived[start]) {
+                start++;
+                continue;
+            }
+            int stop = start;
+            while (stop + 1 < newSize && !survived[stop + 1]) {
+                stop++;
+            }
+            changes.add(new Change(TYPE_INSERT, start, -1, stop - start + 1));
+            start = stop + 1;
+        }
+
+        // 修改
+        final boolean[] changed = new boolean[newSize];
+        for (int i = 0; i < oldSize; i++) {
+            final int target = targets[i];
+            if (target >= 0 && !dao.areContentsTheSame(oldItems.get(i), newItems.get(target))) {
+                changed[target] = true;
+            }
+        }
+        start = 0;
+        while (start < newSize) {
+            if (!changed[start]) {
+                start++;
+                continue;
+            }
+            int stop = start;
+            while (stop + 1 < newSize && changed[stop + 1]) {
+                stop++;
+            }
+            changes.add(new Change(TYPE_CHANGE, start, -1, stop - start + 1));
+            start = stop + 1;
+        }
+        return new ChangeSet(changes, false);
+    }
+
+    /**
+     * 标记 sequence 的一个最长递增子序列
+     *
+     * @param sequence 新列表中的位置
+     * @param size     新列表的大小
+     * @return 以新列表中的位置为下标, 属于最长递增子序列时为 true
+     */
+    private static boolean[] markLongestIncreasing(List<Integer> sequence, int size) {
+        final int length = sequence.size();
+        // tails[k] 为长度为 k + 1 的递增子序列中末尾最小的元素在 sequence 中的下标
+        final int[] tails = new int[length];
+        final int[] previous = new int[length];
+        int longest = 0;
+        for (int i = 0; i < length; i++) {
+            final int value = sequence.get(i);
+            int low = 0;
+            int high = longest;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (sequence.get(tails[mid]) < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == longest) {
+                longest++;
+            }
+        }
+        final boolean[] marked = new boolean[size];
+        int index = longest > 0 ? tails[longest - 1] : -1;
+        while (index >= 0) {
+            marked[sequence.get(index)] = true;
+            index = previous[index];
+        }
+        return marked;
+    }
+}
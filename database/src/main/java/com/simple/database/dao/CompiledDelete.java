@@ -0,0 +1,36 @@
+package com.simple.database.dao;
+
+/**
+ * 预编译的删除语句, 通过 {@link AbsDAO#compileDelete(String)} 创建. 编译后的语句缓存在DAO中, 重复执行时不会重新编译,
+ * 参数按照实际类型绑定.
+ */
+public final class CompiledDelete {
+    final String table;
+    final String where;
+    final String sql;
+
+    CompiledDelete(String table, String where, String sql) {
+        this.table = table;
+        this.where = where;
+        this.sql = sql;
+    }
+
+    /**
+     * @return 删除数据的表
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @return 生成的 sql 语句
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledDelete[" + sql + "]";
+    }
+}
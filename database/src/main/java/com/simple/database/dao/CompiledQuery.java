@@ -0,0 +1,46 @@
+package com.simple.database.dao;
+
+/**
+ * 预编译的查询, 通过 {@link AbsDAO#compileQuery(String[], String, String, String)} 创建.
+ * <p>
+ * sql 语句只生成一次, 每次执行时按照参数的实际类型绑定 ( long、double、byte[]、String ), 整数参数不会被转换成字符串,
+ * SQLite 可以正常使用整数类型的索引. 相同的 sql 语句会命中 SQLite 连接内部的预编译语句缓存, 不会重复解析.
+ * 对象不可变, 可以在多个线程中重复执行.
+ */
+public final class CompiledQuery {
+    final String table;
+    final String[] columns;
+    final String sql;
+
+    CompiledQuery(String table, String[] columns, String sql) {
+        this.table = table;
+        this.columns = columns;
+        this.sql = sql;
+    }
+
+    /**
+     * @return 查询的表
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @return 查询的字段, 为null时查询所有字段
+     */
+    public String[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return 生成的 sql 语句
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledQuery[" + sql + "]";
+    }
+}
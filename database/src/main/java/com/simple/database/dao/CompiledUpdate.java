@@ -0,0 +1,42 @@
+package com.simple.database.dao;
+
+/**
+ * 预编译的更新语句, 通过 {@link AbsDAO#compileUpdate(String)} 创建.
+ * <p>
+ * DAO覆写了 {@link AbsDAO#getInsertColumns()} 时 ( 注解处理器生成的DAO ), sql 语句在创建时生成, 执行时通过
+ * {@link AbsDAO#bindInsertValues(com.simple.database.storage.SqlStatement, Object)} 直接绑定字段, 不需要转换成 ContentValues;
+ * 否则按照 {@link AbsDAO#convert(Object)} 的字段生成 sql 语句. 编译后的语句缓存在DAO中, 重复执行时不会重新编译.
+ */
+public final class CompiledUpdate {
+    final String table;
+    final String where;
+    /**
+     * 字段固定时的 sql 语句, 否则为 null
+     */
+    final String sql;
+
+    CompiledUpdate(String table, String where, String sql) {
+        this.table = table;
+        this.where = where;
+        this.sql = sql;
+    }
+
+    /**
+     * @return 更新的表
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @return where 语句
+     */
+    public String getWhere() {
+        return where;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledUpdate[" + (sql != null ? sql : table + " WHERE " + where) + "]";
+    }
+}
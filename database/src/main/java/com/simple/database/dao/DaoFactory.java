@@ -0,0 +1,17 @@
+package com.simple.database.dao;
+
+/**
+ * 创建DAO对象的工厂, 通过 {@link com.simple.database.Builder#addDaoFactory(DaoFactory)} 注册之后,
+ * {@link com.simple.database.dao.async.AsyncDAO#createDAO(Class)} 会优先使用它创建DAO, 避免反射.
+ * 注解处理器会为所有 {@code @Entity} 生成一个实现.
+ */
+public interface DaoFactory {
+    /**
+     * 创建DAO对象
+     *
+     * @param daoClass  DAO类型
+     * @param tableName 表名, 为null时使用默认的表名
+     * @return DAO对象, 不支持该类型时返回null
+     */
+    AbsDAO<?> create(Class<?> daoClass, String tableName);
+}
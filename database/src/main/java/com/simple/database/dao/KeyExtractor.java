@@ -0,0 +1,14 @@
+package com.simple.database.dao;
+
+/**
+ * 从实体中获取 key ( 例如主键、外键 )
+ *
+ * @param <T> 实体类型
+ */
+public interface KeyExtractor<T> {
+    /**
+     * @param item 实体
+     * @return 实体的 key
+     */
+    Object keyOf(T item);
+}
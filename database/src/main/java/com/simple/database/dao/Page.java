@@ -0,0 +1,51 @@
+package com.simple.database.dao;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * keyset 分页查询的结果
+ *
+ * @param <T> 数据类型
+ */
+public final class Page<T> {
+    private final List<T> mItems;
+    private final PageKey mFirstKey;
+    private final PageKey mLastKey;
+    private final boolean mHasMore;
+
+    Page(List<T> items, PageKey firstKey, PageKey lastKey, boolean hasMore) {
+        mItems = Collections.unmodifiableList(items);
+        mFirstKey = firstKey;
+        mLastKey = lastKey;
+        mHasMore = hasMore;
+    }
+
+    /**
+     * @return 本页数据, 顺序与 order by 一致
+     */
+    public List<T> getItems() {
+        return mItems;
+    }
+
+    /**
+     * @return 本页最后一条数据的游标, 作为下一页 pageAfter 的参数; 本页为空时返回null
+     */
+    public PageKey getNextKey() {
+        return mLastKey;
+    }
+
+    /**
+     * @return 本页第一条数据的游标, 作为上一页 pageBefore 的参数; 本页为空时返回null
+     */
+    public PageKey getPreviousKey() {
+        return mFirstKey;
+    }
+
+    /**
+     * @return 在查询方向上是否还有更多数据
+     */
+    public boolean hasMore() {
+        return mHasMore;
+    }
+}
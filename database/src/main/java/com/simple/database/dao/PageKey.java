@@ -0,0 +1,190 @@
+package com.simple.database.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 分页游标, 保存某一行数据在排序字段上的值, 用于生成 keyset 分页的查询条件 ( 例如 WHERE ts > ? ).
+ * <p>
+ * 值保持原来的类型 ( 整数、浮点数、字符串、byte[] ), 查询时按照实际类型绑定, 这样 REAL、BLOB 字段按照 SQLite 对应类型的规则比较.
+ * 可以通过 {@link #toToken()} 转换为字符串保存, 再通过 {@link #fromToken(String)} 恢复, 类型不会丢失.
+ */
+public final class PageKey {
+    private static final char TYPE_NULL = 'N';
+    private static final char TYPE_LONG = 'L';
+    private static final char TYPE_DOUBLE = 'D';
+    private static final char TYPE_STRING = 'S';
+    private static final char TYPE_BLOB = 'B';
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * 排序字段的值, 顺序与 order by 中的字段顺序一致. 整数统一为 Long, 浮点数统一为 Double
+     */
+    private final Object[] mValues;
+
+    /**
+     * @param values 排序字段的值, 支持 null、整数、浮点数、boolean、String 以及 byte[]
+     */
+    public PageKey(Object... values) {
+        if (values == null || values.length == 0) {
+            throw new IllegalArgumentException("PageKey values is empty");
+        }
+        mValues = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            mValues[i] = normalize(values[i]);
+        }
+    }
+
+    /**
+     * 转换为与 SQLite 存储类型一致的值
+     */
+    private static Object normalize(Object value) {
+        if (value == null || value instanceof Long || value instanceof Double || value instanceof String) {
+            return value;
+        }
+        if (value instanceof Float) {
+            return ((Float) value).doubleValue();
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1L : 0L;
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).clone();
+        }
+        throw new IllegalArgumentException("unsupported PageKey value type : " + value.getClass().getName());
+    }
+
+    public Object[] getValues() {
+        final Object[] values = mValues.clone();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] instanceof byte[]) {
+                values[i] = ((byte[]) values[i]).clone();
+            }
+        }
+        return values;
+    }
+
+    int size() {
+        return mValues.length;
+    }
+
+    Object valueAt(int index) {
+        return mValues[index];
+    }
+
+    /**
+     * 转换为字符串形式的游标. 每个值的格式为 "类型长度:值", byte[] 转换为十六进制, 因此值中可以包含任意字符
+     *
+     * @return 游标字符串
+     */
+    public String toToken() {
+        final StringBuilder token = new StringBuilder();
+        for (Object value : mValues) {
+            final String text;
+            final char type;
+            if (value == null) {
+                token.append(TYPE_NULL);
+                continue;
+            } else if (value instanceof Long) {
+                type = TYPE_LONG;
+                text = value.toString();
+            } else if (value instanceof Double) {
+                type = TYPE_DOUBLE;
+                text = value.toString();
+            } else if (value instanceof String) {
+                type = TYPE_STRING;
+                text = (String) value;
+            } else {
+                type = TYPE_BLOB;
+                text = toHex((byte[]) value);
+            }
+            token.append(type).append(text.length()).append(':').append(text);
+        }
+        return token.toString();
+    }
+
+    /**
+     * 从 {@link #toToken()} 生成的字符串中恢复游标
+     *
+     * @param token 游标字符串
+     * @return 游标对象
+     */
+    public static PageKey fromToken(String token) {
+        if (token == null || token.length() == 0) {
+            throw new IllegalArgumentException("page token is empty");
+        }
+        final List<Object> values = new ArrayList<>();
+        int index = 0;
+        try {
+            while (index < token.length()) {
+                final char type = token.charAt(index++);
+                if (type == TYPE_NULL) {
+                    values.add(null);
+                    continue;
+                }
+                final int colon = token.indexOf(':', index);
+                final int length = Integer.parseInt(token.substring(index, colon));
+                final String text = token.substring(colon + 1, colon + 1 + length);
+                index = colon + 1 + length;
+                switch (type) {
+                    case TYPE_LONG:
+                        values.add(Long.parseLong(text));
+                        break;
+                    case TYPE_DOUBLE:
+                        values.add(Double.parseDouble(text));
+                        break;
+                    case TYPE_STRING:
+                        values.add(text);
+                        break;
+                    case TYPE_BLOB:
+                        values.add(fromHex(text));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown value type " + type);
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("invalid page token : " + token, e);
+        }
+        return new PageKey(values.toArray());
+    }
+
+    private static String toHex(byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    private static byte[] fromHex(String text) {
+        if (text.length() % 2 != 0) {
+            throw new IllegalArgumentException("odd hex length");
+        }
+        final byte[] bytes = new byte[text.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(text.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PageKey && Arrays.deepEquals(mValues, ((PageKey) o).mValues);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.deepHashCode(mValues);
+    }
+
+    @Override
+    public String toString() {
+        return "PageKey" + Arrays.deepToString(mValues);
+    }
+}
@@ -0,0 +1,78 @@
+package com.simple.database.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 批量加载关联数据的工具函数. 配合 {@link AbsDAO#queryIn(String, Collection)} 使用, 先收集一页数据中的外键,
+ * 再通过少量的 IN 查询加载关联数据, 最后按照 key 关联到父实体上, 避免每一行数据执行一次查询 ( N+1 查询 ).
+ * <p>
+ * 使用示例参考 {@link AbsDAO#onItemsLoaded(List)}.
+ */
+public final class Relations {
+
+    private Relations() {
+    }
+
+    /**
+     * 收集所有实体的 key, 去重并保持顺序, 忽略为null的 key
+     *
+     * @param items     实体列表
+     * @param extractor key 的获取方式
+     * @param <T>       实体类型
+     * @return key 集合
+     */
+    public static <T> Set<Object> collectKeys(Collection<T> items, KeyExtractor<T> extractor) {
+        final Set<Object> keys = new LinkedHashSet<>();
+        for (T item : items) {
+            final Object key = extractor.keyOf(item);
+            if (key != null) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 按照 key 对实体分组, 用于一对多关系
+     *
+     * @param items     实体列表
+     * @param extractor key 的获取方式
+     * @param <T>       实体类型
+     * @return key 到实体列表的映射
+     */
+    public static <T> Map<Object, List<T>> groupBy(Collection<T> items, KeyExtractor<T> extractor) {
+        final Map<Object, List<T>> groups = new HashMap<>();
+        for (T item : items) {
+            final Object key = extractor.keyOf(item);
+            List<T> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(key, group);
+            }
+            group.add(item);
+        }
+        return groups;
+    }
+
+    /**
+     * 按照 key 建立索引, 用于一对一关系. key 重复时保留最后一个实体.
+     *
+     * @param items     实体列表
+     * @param extractor key 的获取方式
+     * @param <T>       实体类型
+     * @return key 到实体的映射
+     */
+    public static <T> Map<Object, T> indexBy(Collection<T> items, KeyExtractor<T> extractor) {
+        final Map<Object, T> index = new HashMap<>();
+        for (T item : items) {
+            index.put(extractor.keyOf(item), item);
+        }
+        return index;
+    }
+}
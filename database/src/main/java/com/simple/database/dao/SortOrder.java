@@ -0,0 +1,114 @@
+package com.simple.database.dao;
+
+import android.content.ContentValues;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 解析后的 order by 语句, 用于生成 keyset 分页的查询条件. 支持多个排序字段以及 ASC/DESC.
+ * <p>
+ * 注意 : 排序字段的组合需要能唯一确定一行数据 ( 例如最后加上主键 ), 并且不能为 NULL, 否则分页时会遗漏数据.
+ */
+final class SortOrder {
+    final String[] columns;
+    final boolean[] descending;
+
+    private SortOrder(String[] columns, boolean[] descending) {
+        this.columns = columns;
+        this.descending = descending;
+    }
+
+    static SortOrder parse(String orderBy) {
+        if (TextUtils.isEmpty(orderBy)) {
+            throw new IllegalArgumentException("keyset paging requires an orderBy clause");
+        }
+        final String[] terms = orderBy.split(",");
+        final String[] columns = new String[terms.length];
+        final boolean[] descending = new boolean[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            final String[] parts = terms[i].trim().split("\\s+");
+            if (parts[0].length() == 0 || parts.length > 2) {
+                throw new IllegalArgumentException("unsupported orderBy term for keyset paging : " + terms[i]);
+            }
+            columns[i] = parts[0];
+            if (parts.length == 2) {
+                if ("DESC".equalsIgnoreCase(parts[1])) {
+                    descending[i] = true;
+                } else if (!"ASC".equalsIgnoreCase(parts[1])) {
+                    throw new IllegalArgumentException("unsupported orderBy term for keyset paging : " + terms[i]);
+                }
+            }
+        }
+        return new SortOrder(columns, descending);
+    }
+
+    /**
+     * @param reverse 是否反向
+     * @return order by 语句
+     */
+    String toOrderBy(boolean reverse) {
+        final StringBuilder orderBy = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            orderBy.append(i > 0 ? ", " : "").append(columns[i])
+                    .append(descending[i] != reverse ? " DESC" : " ASC");
+        }
+        return orderBy.toString();
+    }
+
+    /**
+     * 生成位于 key 之后 ( reverse 为 true 时为之前 ) 的查询条件, 例如两个字段时为
+     * (a > ?) OR (a = ? AND b > ?)
+     *
+     * @param key     游标
+     * @param reverse 是否反向
+     * @param args    输出参数, 条件语句中的参数会按顺序加入该列表, 保持游标中值的类型
+     * @return where 语句
+     */
+    String buildPredicate(PageKey key, boolean reverse, List<Object> args) {
+        if (key.size() != columns.length) {
+            throw new IllegalArgumentException("PageKey has " + key.size() + " values but orderBy has "
+                    + columns.length + " columns");
+        }
+        final StringBuilder where = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            where.append(i > 0 ? " OR (" : "(");
+            for (int j = 0; j < i; j++) {
+                where.append(columns[j]).append(" = ? AND ");
+                args.add(key.valueAt(j));
+            }
+            where.append(columns[i]).append(descending[i] != reverse ? " < ?" : " > ?").append(')');
+            args.add(key.valueAt(i));
+        }
+        return where.toString();
+    }
+
+    /**
+     * 从实体转换得到的 ContentValues 中读取排序字段的值, 保持原来的类型
+     *
+     * @param values 实体对应的数据
+     * @return 游标
+     */
+    PageKey keyOf(ContentValues values) {
+        final Object[] keys = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            if (!values.containsKey(columns[i])) {
+                throw new IllegalArgumentException("convert() does not provide sort column " + columns[i]);
+            }
+            keys[i] = values.get(columns[i]);
+        }
+        return new PageKey(keys);
+    }
+
+    static Object[] concat(String[] args, List<Object> extraArgs) {
+        final List<Object> all = new ArrayList<>();
+        if (args != null) {
+            for (String arg : args) {
+                all.add(arg);
+            }
+        }
+        all.addAll(extraArgs);
+        return all.toArray();
+    }
+}
@@ -0,0 +1,74 @@
+package com.simple.database.dao;
+
+import com.simple.database.storage.SqlConnection;
+import com.simple.database.storage.SqlStatement;
+import com.simple.database.utils.IOUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * DAO中编译好的 {@link SqlStatement} 的 LRU 缓存. 语句在使用期间从缓存中取出, 使用完之后再放回,
+ * 多个线程同时执行相同的语句时各自使用不同的 SqlStatement, 不会互相覆盖绑定的参数.
+ */
+final class StatementCache {
+    private final Map<String, SqlStatement> mStatements;
+
+    StatementCache(final int maxSize) {
+        mStatements = new LinkedHashMap<String, SqlStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SqlStatement> eldest) {
+                if (size() > maxSize) {
+                    IOUtils.closeSilently(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 取出 sql 对应的语句, 缓存中没有时重新编译. 使用完之后需要调用 {@link #release(String, SqlStatement)}
+     *
+     * @param db  编译语句的连接
+     * @param sql sql 语句
+     * @return 编译好的语句
+     */
+    SqlStatement acquire(SqlConnection db, String sql) {
+        synchronized (this) {
+            final SqlStatement statement = mStatements.remove(sql);
+            if (statement != null) {
+                return statement;
+            }
+        }
+        return db.compileStatement(sql);
+    }
+
+    /**
+     * 将语句放回缓存
+     *
+     * @param sql       sql 语句
+     * @param statement 通过 {@link #acquire(SqlConnection, String)} 得到的语句
+     */
+    void release(String sql, SqlStatement statement) {
+        statement.clearBindings();
+        final SqlStatement previous;
+        synchronized (this) {
+            previous = mStatements.put(sql, statement);
+        }
+        // 其他线程同时编译了相同的语句
+        if (previous != null && previous != statement) {
+            IOUtils.closeSilently(previous);
+        }
+    }
+
+    /**
+     * 关闭所有缓存的语句
+     */
+    synchronized void clear() {
+        for (SqlStatement statement : mStatements.values()) {
+            IOUtils.closeSilently(statement);
+        }
+        mStatements.clear();
+    }
+}
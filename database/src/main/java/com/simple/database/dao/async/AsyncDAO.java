@@ -1,23 +1,65 @@
 package com.simple.database.dao.async;
 
+import com.simple.database.cache.QueryCache;
+import com.simple.database.cursor.RowMapper;
 import com.simple.database.dao.AbsDAO;
+import com.simple.database.dao.CompiledDelete;
+import com.simple.database.dao.CompiledQuery;
+import com.simple.database.dao.CompiledUpdate;
+import com.simple.database.dao.DaoFactory;
+import com.simple.database.dao.Page;
+import com.simple.database.dao.PageKey;
+import com.simple.database.listeners.ChunkListener;
 import com.simple.database.listeners.DbListener;
+import com.simple.database.listeners.DiffListener;
+import com.simple.database.task.DbFuture;
 import com.simple.database.task.DbTask;
 import com.simple.database.task.NoReturnTask;
+import com.simple.database.task.Priority;
+import com.simple.database.task.ReadTask;
 
-import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 /**
- * 异步数据库操作基类, 读数据库可以使用并发,写时只能是单线程写. 使用方式为:
+ * 异步数据库操作基类, 读数据库可以使用并发,写时只能是单线程写.
+ * 所有操作都返回 {@link DbFuture}, listener 可以为null, 通过 {@link DbFuture} 组合多个操作或者获取异常. 使用方式为:
  *
  * @param <T> 要操作的实体类型
  */
 public class AsyncDAO<T> {
+    /**
+     * 观察查询时合并修改通知的默认时间窗口, 单位为毫秒
+     */
+    public static final long DEFAULT_OBSERVE_DEBOUNCE_MILLIS = 50;
+    /**
+     * 创建同步DAO的工厂, 参考 {@link #setDaoFactories(List)}
+     */
+    private static volatile List<DaoFactory> sDaoFactories = Collections.emptyList();
     /**
      * 同步的DAO对象
      */
     protected AbsDAO<T> mDao;
+    /**
+     * 查询任务的超时时间, 单位为毫秒, 为0时不超时
+     */
+    private volatile long mQueryTimeout = 0;
+    /**
+     * 提交任务时使用的优先级
+     */
+    private Priority mPriority = Priority.USER_VISIBLE;
+
+    /**
+     * 设置创建同步DAO的工厂, 一般通过 {@link com.simple.database.Builder#addDaoFactory(DaoFactory)} 配置
+     *
+     * @param factories DAO工厂
+     */
+    public static void setDaoFactories(List<DaoFactory> factories) {
+        sDaoFactories = factories != null
+                ? Collections.unmodifiableList(new ArrayList<>(factories)) : Collections.<DaoFactory>emptyList();
+    }
 
     /**
      * 创建异步的DAO类
@@ -27,30 +69,31 @@ public class AsyncDAO<T> {
      * @return 返回异步的DAO操作类型
      */
     public static <T> AsyncDAO<T> createDAO(Class daoClz) {
-        try {
-            AbsDAO<T> syncDao = (AbsDAO<T>) daoClz.newInstance();
-            AsyncDAO<T> instance = new AsyncDAO<>();
-            instance.mDao = syncDao;
-            return instance;
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return null;
+        return createDAO(daoClz, null);
     }
 
     /**
-     * 创建异步的DAO类
+     * 创建异步的DAO类. 优先使用 {@link com.simple.database.Builder#addDaoFactory(DaoFactory)} 注册的工厂创建同步的dao,
+     * 没有对应的工厂时通过反射创建.
      *
      * @param daoClz    同步的dao类型
-     * @param tableName 表名
+     * @param tableName 表名, 为null时使用dao的默认表名
      * @param <T>       数据类型T
      * @return 返回异步的DAO操作类型
      */
     public static <T> AsyncDAO<T> createDAO(Class daoClz, String tableName) {
         try {
-            Constructor constructor = daoClz.getConstructor(String.class);
-            // 创建同步的dao对象
-            AbsDAO<T> syncDao = (AbsDAO<T>) constructor.newInstance(tableName);
+            AbsDAO<T> syncDao = null;
+            for (DaoFactory factory : sDaoFactories) {
+                syncDao = (AbsDAO<T>) factory.create(daoClz, tableName);
+                if (syncDao != null) {
+                    break;
+                }
+            }
+            if (syncDao == null) {
+                syncDao = (AbsDAO<T>) (tableName != null
+                        ? daoClz.getConstructor(String.class).newInstance(tableName) : daoClz.newInstance());
+            }
             // 创建异步的dao对象
             AsyncDAO<T> instance = new AsyncDAO<>();
             instance.mDao = syncDao;
@@ -70,18 +113,53 @@ public class AsyncDAO<T> {
         return mDao;
     }
 
+    Priority getPriority() {
+        return mPriority;
+    }
+
+    /**
+     * 返回一个使用指定优先级提交任务的 AsyncDAO, 与当前对象共享同一个同步DAO, 例如 :
+     * <pre>
+     * asyncDao.withPriority(Priority.BACKGROUND).insert(items);
+     * </pre>
+     * 写操作在串行通道中按照提交顺序执行, 优先级只影响并发通道中只读任务的执行顺序; 没有开启 WAL 时查询也在串行通道中执行,
+     * 优先级不生效.
+     *
+     * @param priority 任务优先级
+     * @return 使用该优先级的 AsyncDAO
+     */
+    public AsyncDAO<T> withPriority(Priority priority) {
+        if (priority == mPriority) {
+            return this;
+        }
+        AsyncDAO<T> instance = new AsyncDAO<>();
+        instance.mDao = mDao;
+        instance.mQueryTimeout = mQueryTimeout;
+        instance.mPriority = priority != null ? priority : Priority.USER_VISIBLE;
+        return instance;
+    }
+
+    /**
+     * 设置查询任务的超时时间, 超时之后查询会被取消, 并且不再回调 listener
+     *
+     * @param timeoutMillis 超时时间, 单位为毫秒, 为0时不超时
+     */
+    public void setQueryTimeout(long timeoutMillis) {
+        this.mQueryTimeout = timeoutMillis;
+    }
+
     /**
      * 插入单项数据
      *
      * @param item 要插入的数据
      */
-    public void insert(final T item) {
-        new NoReturnTask() {
+    public DbFuture<Void> insert(final T item) {
+        return new NoReturnTask() {
             protected Void doInBackground() {
                 mDao.insert(item);
                 return null;
             }
-        }.execute();
+        }.setPriority(mPriority).execute();
     }
 
     /**
@@ -89,13 +167,13 @@ public class AsyncDAO<T> {
      *
      * @param items 要插入的数据列表
      */
-    public void insert(final List<T> items) {
-        new NoReturnTask() {
+    public DbFuture<Void> insert(final List<T> items) {
+        return new NoReturnTask() {
             protected Void doInBackground() {
                 mDao.insert(items);
                 return null;
             }
-        }.execute();
+        }.setPriority(mPriority).execute();
     }
 
     /**
@@ -103,13 +181,13 @@ public class AsyncDAO<T> {
      *
      * @param item
      */
-    public void update(final T item, final String where, final String[] args) {
-        new NoReturnTask() {
+    public DbFuture<Void> update(final T item, final String where, final String[] args) {
+        return new NoReturnTask() {
             protected Void doInBackground() {
                 mDao.update(item, where, args);
                 return null;
             }
-        }.execute();
+        }.setPriority(mPriority).execute();
     }
 
     /**
@@ -117,13 +195,13 @@ public class AsyncDAO<T> {
      *
      * @param item
      */
-    public void updateWithId(final T item, final String id) {
-        new NoReturnTask() {
+    public DbFuture<Void> updateWithId(final T item, final String id) {
+        return new NoReturnTask() {
             protected Void doInBackground() {
                 mDao.update(item, "id=?", new String[]{id});
                 return null;
             }
-        }.execute();
+        }.setPriority(mPriority).execute();
     }
 
     /**
@@ -131,13 +209,8 @@ public class AsyncDAO<T> {
      *
      * @param listener
      */
-    public void queryAll(final DbListener<List<T>> listener) {
-        // 构建命令
-        new DbTask<List<T>>(listener) {
-            protected List<T> doInBackground() {
-                return mDao.queryAll();
-            }
-        }.executeConcurrent();
+    public DbFuture<List<T>> queryAll(final DbListener<List<T>> listener) {
+        return query(null, null, null, null, listener);
     }
 
     /**
@@ -145,13 +218,13 @@ public class AsyncDAO<T> {
      *
      * @param listener
      */
-    public void queryOne(final String where, final String[] args, final DbListener<T> listener) {
+    public DbFuture<T> queryOne(final String where, final String[] args, final DbListener<T> listener) {
         // 构建命令
-        new DbTask<T>(listener) {
+        return new ReadTask<T>(listener) {
             protected T doInBackground() {
                 return mDao.queryOne(where, args);
             }
-        }.executeConcurrent();
+        }.setPriority(mPriority).setTimeout(mQueryTimeout).executeConcurrent();
     }
 
     /**
@@ -159,8 +232,8 @@ public class AsyncDAO<T> {
      *
      * @param listener
      */
-    public void query(final String where, final String[] args, final DbListener<List<T>> listener) {
-        query(where, args, null, null, listener);
+    public DbFuture<List<T>> query(final String where, final String[] args, final DbListener<List<T>> listener) {
+        return query(where, args, null, null, listener);
     }
 
     /**
@@ -170,13 +243,279 @@ public class AsyncDAO<T> {
      * @param limit
      * @param listener
      */
-    public void query(final String where, final String[] args, final String orderBy, final String limit, final DbListener<List<T>> listener) {
+    public DbFuture<List<T>> query(final String where, final String[] args, final String orderBy, final String limit, final DbListener<List<T>> listener) {
+        return query(null, where, args, orderBy, limit, listener);
+    }
+
+    /**
+     * 只查询部分字段, 参考 {@link AbsDAO#query(String[], String, String[], String, String)}
+     *
+     * @param columns  要查询的字段, 为null时查询所有字段
+     * @param where
+     * @param args
+     * @param orderBy
+     * @param limit
+     * @param listener
+     */
+    public DbFuture<List<T>> query(final String[] columns, final String where, final String[] args, final String orderBy,
+                                   final String limit, final DbListener<List<T>> listener) {
+        final QueryCache cache = QueryCache.getInstance();
+        // 投影查询不会加载关联数据, 只依赖当前表
+        final Set<String> tables = columns == null
+                ? mDao.getObservedTables() : Collections.singleton(mDao.getTableName());
+        final String cacheKey = cache.isEnabled()
+                ? QueryCache.createKey(mDao.getQueryCacheScope(), mDao.getTableName(), columns, where, args, orderBy, limit)
+                : null;
+        if (cacheKey != null) {
+            // 命中缓存时直接投递结果
+            final List<T> cached = cache.get(cacheKey);
+            if (cached != null) {
+                DbTask.postToCallbackThread(cached, listener);
+                return DbFuture.completed(cached);
+            }
+        }
         // 构建命令
-        new DbTask<List<T>>(listener) {
+        return new ReadTask<List<T>>(listener) {
+            protected List<T> doInBackground() {
+                final long version = cacheKey != null ? cache.version(tables) : 0;
+                final List<T> result = mDao.query(columns, where, args, orderBy, limit);
+                // 查询失败时抛出异常, 不会执行到这里; 被取消 ( 包括超时 ) 的查询结果不缓存
+                if (cacheKey != null && !isCancelled()) {
+                    long bytes = 0;
+                    for (T item : result) {
+                        bytes += mDao.estimateSize(item);
+                    }
+                    cache.put(tables, cacheKey, result, bytes, version);
+                }
+                return result;
+            }
+        }.setPriority(mPriority).setTimeout(mQueryTimeout).executeConcurrent();
+    }
+
+    /**
+     * 只查询部分字段, 并通过 mapper 将每一行转换为其他类型, 参考
+     * {@link AbsDAO#queryRows(String[], String, String[], String, String, RowMapper)}
+     *
+     * @param columns  要查询的字段
+     * @param where    where 语句
+     * @param args     where 参数
+     * @param orderBy  order by 参数
+     * @param limit    limit 参数
+     * @param mapper   行转换器, 在数据库线程中执行
+     * @param listener 转换之后的数据
+     */
+    public <R> DbFuture<List<R>> queryRows(final String[] columns, final String where, final String[] args,
+                                           final String orderBy, final String limit, final RowMapper<R> mapper,
+                                           final DbListener<List<R>> listener) {
+        return new ReadTask<List<R>>(listener) {
+            protected List<R> doInBackground() {
+                return mDao.queryRows(columns, where, args, orderBy, limit, mapper);
+            }
+        }.setPriority(mPriority).setTimeout(mQueryTimeout).executeConcurrent();
+    }
+
+    /**
+     * 执行预编译的查询, 参考 {@link AbsDAO#queryCompiled(CompiledQuery, Object...)}
+     *
+     * @param query    通过 {@link AbsDAO#compileQuery(String[], String, String, String)} 创建的查询
+     * @param args     查询参数, 按照实际类型绑定
+     * @param listener 查询结果
+     */
+    public DbFuture<List<T>> query(final CompiledQuery query, final Object[] args, final DbListener<List<T>> listener) {
+        final QueryCache cache = QueryCache.getInstance();
+        final Set<String> tables = query.getColumns() == null
+                ? mDao.getObservedTables() : Collections.singleton(mDao.getTableName());
+        final String cacheKey = cache.isEnabled()
+                ? QueryCache.createKey(mDao.getQueryCacheScope(), mDao.getTableName(), query.getSql(), args) : null;
+        if (cacheKey != null) {
+            final List<T> cached = cache.get(cacheKey);
+            if (cached != null) {
+                DbTask.postToCallbackThread(cached, listener);
+                return DbFuture.completed(cached);
+            }
+        }
+        return new ReadTask<List<T>>(listener) {
             protected List<T> doInBackground() {
-                return mDao.query(where, args, orderBy, limit);
+                final long version = cacheKey != null ? cache.version(tables) : 0;
+                final List<T> result = mDao.queryCompiled(query, args);
+                // 查询失败时抛出异常, 不会执行到这里; 被取消 ( 包括超时 ) 的查询结果不缓存
+                if (cacheKey != null && !isCancelled()) {
+                    long bytes = 0;
+                    for (T item : result) {
+                        bytes += mDao.estimateSize(item);
+                    }
+                    cache.put(tables, cacheKey, result, bytes, version);
+                }
+                return result;
             }
-        }.executeConcurrent();
+        }.setPriority(mPriority).setTimeout(mQueryTimeout).executeConcurrent();
+    }
+
+    /**
+     * 执行预编译的查询, 并通过 mapper 将每一行转换为其他类型
+     *
+     * @param query    通过 {@link AbsDAO#compileQuery(String[], String, String, String)} 创建的查询
+     * @param args     查询参数, 按照实际类型绑定
+     * @param mapper   行转换器, 在数据库线程中执行
+     * @param listener 转换之后的数据
+     */
+    public <R> DbFuture<List<R>> queryRows(final CompiledQuery query, final Object[] args, final RowMapper<R> mapper,
+                                           final DbListener<List<R>> listener) {
+        return new ReadTask<List<R>>(listener) {
+            protected List<R> doInBackground() {
+                return mDao.queryRowsCompiled(query, mapper, args);
+            }
+        }.setPriority(mPriority).setTimeout(mQueryTimeout).executeConcurrent();
+    }
+
+    /**
+     * 执行预编译的更新语句, 参考 {@link AbsDAO#updateCompiled(CompiledUpdate, Object, Object...)}
+     *
+     * @param update 通过 {@link AbsDAO#compileUpdate(String)} 创建的更新语句
+     * @param item   要更新的对象
+     * @param args   where 参数, 按照实际类型绑定
+     * @return 更新的行数
+     */
+    public DbFuture<Integer> update(final CompiledUpdate update, final T item, final Object[] args) {
+        return new DbTask<Integer>() {
+            protected Integer doInBackground() {
+                return mDao.updateCompiled(update, item, args);
+            }
+        }.setPriority(mPriority).execute();
+    }
+
+    /**
+     * 执行预编译的删除语句, 参考 {@link AbsDAO#deleteCompiled(CompiledDelete, Object...)}
+     *
+     * @param delete 通过 {@link AbsDAO#compileDelete(String)} 创建的删除语句
+     * @param args   where 参数, 按照实际类型绑定
+     * @return 删除的行数
+     */
+    public DbFuture<Integer> delete(final CompiledDelete delete, final Object[] args) {
+        return new DbTask<Integer>() {
+            protected Integer doInBackground() {
+                return mDao.deleteCompiled(delete, args);
+            }
+        }.setPriority(mPriority).execute();
+    }
+
+    /**
+     * 观察查询结果. 立即执行一次查询, 之后每当查询依赖的表 ( 参考 {@link AbsDAO#getObservedTables()} ) 发生变化时重新查询,
+     * debounceMillis 毫秒内的多次修改只会触发一次查询. 不再需要结果时调用 {@link Subscription#dispose()}.
+     *
+     * @param where          where 语句
+     * @param args           where 参数
+     * @param orderBy        order by 参数
+     * @param limit          limit 参数
+     * @param debounceMillis 合并修改通知的时间窗口, 单位为毫秒
+     * @param listener       在UI线程中接收每次查询的结果
+     * @return 订阅, 用于停止观察
+     */
+    public Subscription observe(String where, String[] args, String orderBy, String limit, long debounceMillis,
+                                DbListener<List<T>> listener) {
+        return observe(null, where, args, orderBy, limit, debounceMillis, listener);
+    }
+
+    /**
+     * 只观察部分字段, 参考 {@link #observe(String, String[], String, String, long, DbListener)}
+     *
+     * @param columns        要查询的字段, 为null时查询所有字段
+     * @param where          where 语句
+     * @param args           where 参数
+     * @param orderBy        order by 参数
+     * @param limit          limit 参数
+     * @param debounceMillis 合并修改通知的时间窗口, 单位为毫秒
+     * @param listener       在UI线程中接收每次查询的结果
+     * @return 订阅, 用于停止观察
+     */
+    public Subscription observe(String[] columns, String where, String[] args, String orderBy, String limit,
+                                long debounceMillis, DbListener<List<T>> listener) {
+        final LiveQuery<T> liveQuery = new LiveQuery<>(this, columns, where, args, orderBy, limit, debounceMillis,
+                listener, null);
+        liveQuery.start();
+        return liveQuery;
+    }
+
+    /**
+     * 观察查询结果的增量变化, 规则同 {@link #observe(String, String[], String, String, long, DbListener)}.
+     * 与上一次结果之间的差异按照主键在数据库线程中计算, 需要DAO覆写 {@link AbsDAO#getPrimaryKeyColumn()}.
+     *
+     * @param where          where 语句
+     * @param args           where 参数
+     * @param orderBy        order by 参数
+     * @param limit          limit 参数
+     * @param debounceMillis 合并修改通知的时间窗口, 单位为毫秒
+     * @param listener       在UI线程中接收新的结果和变化
+     * @return 订阅, 用于停止观察
+     */
+    public Subscription observeChanges(String where, String[] args, String orderBy, String limit, long debounceMillis,
+                                       DiffListener<T> listener) {
+        return observeChanges(null, where, args, orderBy, limit, debounceMillis, listener);
+    }
+
+    /**
+     * 只观察部分字段的增量变化, 参考 {@link #observeChanges(String, String[], String, String, long, DiffListener)}.
+     * columns 中需要包含主键字段.
+     *
+     * @param columns        要查询的字段, 为null时查询所有字段
+     * @param where          where 语句
+     * @param args           where 参数
+     * @param orderBy        order by 参数
+     * @param limit          limit 参数
+     * @param debounceMillis 合并修改通知的时间窗口, 单位为毫秒
+     * @param listener       在UI线程中接收新的结果和变化
+     * @return 订阅, 用于停止观察
+     */
+    public Subscription observeChanges(String[] columns, String where, String[] args, String orderBy, String limit,
+                                       long debounceMillis, DiffListener<T> listener) {
+        final LiveQuery<T> liveQuery = new LiveQuery<>(this, columns, where, args, orderBy, limit, debounceMillis,
+                null, listener);
+        liveQuery.start();
+        return liveQuery;
+    }
+
+    /**
+     * keyset 分页查询, 参数说明见 {@link AbsDAO#queryPage(String, String[], String, PageKey, boolean, int)}
+     *
+     * @param where
+     * @param args
+     * @param orderBy
+     * @param key
+     * @param reverse
+     * @param pageSize
+     * @param listener
+     */
+    public DbFuture<Page<T>> queryPage(final String where, final String[] args, final String orderBy, final PageKey key,
+                          final boolean reverse, final int pageSize, final DbListener<Page<T>> listener) {
+        return new ReadTask<Page<T>>(listener) {
+            protected Page<T> doInBackground() {
+                return mDao.queryPage(where, args, orderBy, key, reverse, pageSize);
+            }
+        }.setPriority(mPriority).setTimeout(mQueryTimeout).executeConcurrent();
+    }
+
+    /**
+     * 分块读取查询结果, 每读取 chunkSize 条数据就通过 chunkListener 投递一次, 适用于导出、后台扫描等大数据量的场景.
+     * <p>
+     * 注意 : chunkListener 在数据库线程中执行, completeListener 在UI线程中执行.
+     *
+     * @param where            where 语句
+     * @param args             where 参数
+     * @param orderBy          order by 参数
+     * @param chunkSize        每块数据的条数
+     * @param chunkListener    接收每块数据, 返回 false 时停止读取
+     * @param completeListener 读取结束时回调读取到的数据总数, 可以为null
+     */
+    public DbFuture<Integer> queryInChunks(final String where, final String[] args, final String orderBy, final int chunkSize,
+                              final ChunkListener<T> chunkListener, final DbListener<Integer> completeListener) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be greater than 0");
+        }
+        return new ReadTask<Integer>(completeListener) {
+            protected Integer doInBackground() {
+                return mDao.forEachChunk(where, args, orderBy, chunkSize, chunkListener);
+            }
+        }.setPriority(mPriority).setTimeout(mQueryTimeout).executeConcurrent();
     }
 
     /**
@@ -184,41 +523,55 @@ public class AsyncDAO<T> {
      *
      * @param whereArgs
      */
-    public void delete(final String where, final String[] whereArgs) {
-        new NoReturnTask() {
+    public DbFuture<Void> delete(final String where, final String[] whereArgs) {
+        return new NoReturnTask() {
 
             @Override
             protected Void doInBackground() {
                 mDao.delete(where, whereArgs);
                 return null;
             }
-        }.execute();
+        }.setPriority(mPriority).execute();
     }
 
     /**
      * 删除所有数据
      */
-    public void deleteAll() {
-        new NoReturnTask() {
+    public DbFuture<Void> deleteAll() {
+        return new NoReturnTask() {
             protected Void doInBackground() {
                 mDao.deleteAll();
                 return null;
             }
-        }.execute();
+        }.setPriority(mPriority).execute();
+    }
+
+    /**
+     * 查询数量
+     *
+     * @param where
+     * @param whereArgs
+     * @param listener
+     */
+    public DbFuture<Integer> count(final String where, final String[] whereArgs, final DbListener<Integer> listener) {
+        return count(null, false, where, whereArgs, listener);
     }
 
     /**
      * 查询数量
      *
+     * @param column    要统计的字段, 为空时统计所有记录
+     * @param distinct  是否只统计不重复的值
      * @param where
      * @param whereArgs
      * @param listener
      */
-    public void count(final String where, final String[] whereArgs, final DbListener<Integer> listener) {
-        new DbTask<Integer>(listener) {
+    public DbFuture<Integer> count(final String column, final boolean distinct, final String where, final String[] whereArgs,
+                      final DbListener<Integer> listener) {
+        return new ReadTask<Integer>(listener) {
             protected Integer doInBackground() {
-                return mDao.count(where, whereArgs);
+                return mDao.count(column, distinct, where, whereArgs);
             }
-        }.execute();
+        }.setPriority(mPriority).setTimeout(mQueryTimeout).executeConcurrent();
     }
 }
@@ -0,0 +1,210 @@
+package com.simple.database.dao.async;
+
+import com.simple.database.cache.InvalidationTracker;
+import com.simple.database.dao.ChangeSet;
+import com.simple.database.listeners.DbListener;
+import com.simple.database.listeners.DiffListener;
+import com.simple.database.task.CallbackDispatcher;
+import com.simple.database.task.DbFuture;
+import com.simple.database.task.DbTask;
+import com.simple.database.task.ReadTask;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 被观察的查询. 只有查询依赖的表 ( 参考 {@link com.simple.database.dao.AbsDAO#getObservedTables()} ) 发生变化时才会重新查询,
+ * 短时间内的多次修改只会触发一次查询. 同一时刻最多只有一个查询在执行 : 查询期间发生的修改不会取消正在执行的查询,
+ * 而是在它结束之后合并为一次重新查询, 因此连续写入时也能持续收到结果, 并且结果按照查询的先后顺序回调.
+ * <p>
+ * 使用 {@link DiffListener} 时, 与上一次回调的结果之间的差异总是在数据库线程中计算 ( 包括命中查询缓存的情况 ), 没有变化时不会回调.
+ *
+ * @param <T> 数据类型
+ */
+final class LiveQuery<T> implements InvalidationTracker.Observer, Subscription {
+    private final AsyncDAO<T> mAsyncDao;
+    private final String[] mColumns;
+    private final String mWhere;
+    private final String[] mArgs;
+    private final String mOrderBy;
+    private final String mLimit;
+    private final Set<String> mTables;
+    private final long mDebounceMillis;
+    private final DbListener<List<T>> mListener;
+    private final DiffListener<T> mDiffListener;
+    private final AtomicBoolean mRequeryScheduled = new AtomicBoolean(false);
+    private volatile boolean mDisposed;
+    /**
+     * 正在执行的查询, 只在UI线程中访问
+     */
+    private DbFuture<?> mRunningQuery;
+    /**
+     * 查询期间依赖的表发生了变化, 当前查询结束之后需要重新查询, 只在UI线程中访问
+     */
+    private boolean mRequeryPending;
+    /**
+     * 上一次回调给 mDiffListener 的结果, 只在UI线程中访问
+     */
+    private List<T> mDeliveredItems = Collections.emptyList();
+    private boolean mDelivered;
+
+    private final Runnable mRequeryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mRequeryScheduled.set(false);
+            requery();
+        }
+    };
+
+    private final Runnable mQueryFinishedRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mRunningQuery = null;
+            if (mRequeryPending && !mDisposed) {
+                mRequeryPending = false;
+                requery();
+            }
+        }
+    };
+
+    private final DbListener<List<T>> mResultListener = new DbListener<List<T>>() {
+        @Override
+        public void onComplete(List<T> result) {
+            if (!mDisposed) {
+                mListener.onComplete(result);
+            }
+        }
+    };
+
+    LiveQuery(AsyncDAO<T> asyncDao, String[] columns, String where, String[] args, String orderBy, String limit,
+              long debounceMillis, DbListener<List<T>> listener, DiffListener<T> diffListener) {
+        mAsyncDao = asyncDao;
+        mColumns = columns;
+        mWhere = where;
+        mArgs = args;
+        mOrderBy = orderBy;
+        mLimit = limit;
+        // 投影查询不会加载关联数据, 只依赖当前表
+        mTables = columns == null ? asyncDao.getSyncDao().getObservedTables()
+                : Collections.singleton(asyncDao.getSyncDao().getTableName());
+        mDebounceMillis = Math.max(debounceMillis, 0);
+        mListener = listener;
+        mDiffListener = diffListener;
+    }
+
+    /**
+     * 开始观察并执行第一次查询
+     */
+    void start() {
+        InvalidationTracker.getInstance().addObserver(this);
+        mRequeryScheduled.set(true);
+        DbTask.getCallbackDispatcher().post(mRequeryRunnable);
+    }
+
+    @Override
+    public void onTablesChanged(Set<String> tables) {
+        if (mDisposed) {
+            return;
+        }
+        for (String table : tables) {
+            if (mTables.contains(table)) {
+                scheduleRequery();
+                return;
+            }
+        }
+    }
+
+    private void scheduleRequery() {
+        // 已经安排了查询时合并到这次查询中
+        if (mRequeryScheduled.compareAndSet(false, true)) {
+            DbTask.getCallbackDispatcher().postDelayed(mRequeryRunnable, mDebounceMillis);
+        }
+    }
+
+    private void requery() {
+        if (mDisposed) {
+            return;
+        }
+        if (mRunningQuery != null) {
+            // 等待正在执行的查询结束之后再查询一次
+            mRequeryPending = true;
+            return;
+        }
+        final DbFuture<?> query;
+        if (mDiffListener == null) {
+            query = mAsyncDao.query(mColumns, mWhere, mArgs, mOrderBy, mLimit, mResultListener);
+        } else {
+            final List<T> base = mDeliveredItems;
+            query = mAsyncDao.query(mColumns, mWhere, mArgs, mOrderBy, mLimit, null)
+                    .then(new DbFuture.Continuation<List<T>, Diff<T>>() {
+                        @Override
+                        public DbFuture<Diff<T>> apply(final List<T> items) {
+                            // 命中缓存时该函数在UI线程中执行, 因此通过单独的任务计算差异
+                            return new ReadTask<Diff<T>>() {
+                                @Override
+                                protected Diff<T> doInBackground() {
+                                    return new Diff<>(items, mAsyncDao.getSyncDao().diff(base, items));
+                                }
+                            }.setPriority(mAsyncDao.getPriority()).executeConcurrent();
+                        }
+                    })
+                    .onSuccess(new DbListener<Diff<T>>() {
+                        @Override
+                        public void onComplete(Diff<T> diff) {
+                            deliverDiff(diff);
+                        }
+                    });
+        }
+        mRunningQuery = query;
+        query.onDone(mQueryFinishedRunnable);
+    }
+
+    private void deliverDiff(Diff<T> diff) {
+        if (mDisposed) {
+            return;
+        }
+        mDeliveredItems = diff.items;
+        if (mDelivered && diff.changes.isEmpty()) {
+            return;
+        }
+        mDelivered = true;
+        mDiffListener.onChanged(diff.items, diff.changes);
+    }
+
+    @Override
+    public void dispose() {
+        if (mDisposed) {
+            return;
+        }
+        mDisposed = true;
+        InvalidationTracker.getInstance().removeObserver(this);
+        final CallbackDispatcher dispatcher = DbTask.getCallbackDispatcher();
+        dispatcher.removeCallbacks(mRequeryRunnable);
+        dispatcher.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mRunningQuery != null) {
+                    mRunningQuery.cancel();
+                    mRunningQuery = null;
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return mDisposed;
+    }
+
+    private static final class Diff<T> {
+        final List<T> items;
+        final ChangeSet changes;
+
+        Diff(List<T> items, ChangeSet changes) {
+            this.items = items;
+            this.changes = changes;
+        }
+    }
+}
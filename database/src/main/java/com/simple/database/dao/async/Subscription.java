@@ -0,0 +1,17 @@
+package com.simple.database.dao.async;
+
+/**
+ * 被观察的查询, 参考 {@link AsyncDAO#observe(String, String[], String, String, long, com.simple.database.listeners.DbListener)}.
+ * 不再需要结果时 ( 例如 Activity 销毁时 ) 必须调用 {@link #dispose()}, 否则会一直持有 listener.
+ */
+public interface Subscription {
+    /**
+     * 停止观察, 正在执行的查询会被取消, 之后不会再回调 listener
+     */
+    void dispose();
+
+    /**
+     * @return 是否已经停止观察
+     */
+    boolean isDisposed();
+}
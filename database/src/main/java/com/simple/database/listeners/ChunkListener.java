@@ -0,0 +1,18 @@
+package com.simple.database.listeners;
+
+import java.util.List;
+
+/**
+ * 分块获取查询结果时的Listener, 在数据库线程中调用, 因此每次只需要持有一块数据
+ *
+ * @param <T> 数据类型
+ */
+public interface ChunkListener<T> {
+    /**
+     * 接收一块数据
+     *
+     * @param chunk 本次读取到的数据
+     * @return 返回 true 继续读取, 返回 false 停止读取并关闭Cursor
+     */
+    boolean onChunk(List<T> chunk);
+}
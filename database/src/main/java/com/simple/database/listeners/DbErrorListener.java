@@ -0,0 +1,11 @@
+package com.simple.database.listeners;
+
+/**
+ * 数据库任务执行失败时的回调, 在UI线程中调用
+ */
+public interface DbErrorListener {
+    /**
+     * @param error 任务执行过程中抛出的异常
+     */
+    void onError(Throwable error);
+}
@@ -0,0 +1,20 @@
+package com.simple.database.listeners;
+
+import com.simple.database.dao.ChangeSet;
+
+import java.util.List;
+
+/**
+ * 观察查询时接收增量变化的Listener, 变化在后台线程中计算, 在UI线程中回调
+ *
+ * @param <T> 数据类型
+ */
+public interface DiffListener<T> {
+    /**
+     * 查询结果发生了变化
+     *
+     * @param items   新的查询结果
+     * @param changes 相对于上一次回调的结果的变化, 第一次回调时为插入全部数据
+     */
+    void onChanged(List<T> items, ChangeSet changes);
+}
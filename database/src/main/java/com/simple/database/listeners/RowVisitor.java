@@ -0,0 +1,16 @@
+package com.simple.database.listeners;
+
+/**
+ * 逐行遍历查询结果时的回调, 在执行查询的线程中调用
+ *
+ * @param <T> 数据类型
+ */
+public interface RowVisitor<T> {
+    /**
+     * 访问一条数据
+     *
+     * @param item 从Cursor中解析出的数据
+     * @return 返回 true 继续遍历, 返回 false 停止遍历并关闭Cursor
+     */
+    boolean visit(T item);
+}
@@ -0,0 +1,135 @@
+package com.simple.database.metrics;
+
+import com.simple.database.utils.Platform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按照DAO类型和操作类型统计数据库操作, 通过 {@link com.simple.database.Builder#setMetricsEnabled(boolean)} 开启.
+ * 没有开启时DAO和任务只会读取一次 volatile 变量, 不会记录任何数据.
+ */
+public final class DbMetrics {
+    private static final String TAG = DbMetrics.class.getSimpleName();
+    private static final DbMetrics INSTANCE = new DbMetrics();
+
+    private volatile boolean mEnabled;
+    private final ConcurrentMap<String, OperationMetrics[]> mMetrics = new ConcurrentHashMap<>();
+    private ScheduledExecutorService mReportExecutor;
+    private ScheduledFuture<?> mReportFuture;
+
+    private DbMetrics() {
+    }
+
+    public static DbMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    /**
+     * 获取某个DAO某种操作的统计数据, 第一次获取时创建
+     *
+     * @param daoClass  DAO类型
+     * @param operation 操作类型
+     * @return 统计数据
+     */
+    public OperationMetrics of(Class<?> daoClass, Operation operation) {
+        final String name = daoClass.getName();
+        OperationMetrics[] metrics = mMetrics.get(name);
+        if (metrics == null) {
+            final OperationMetrics[] created = new OperationMetrics[Operation.values().length];
+            for (Operation op : Operation.values()) {
+                created[op.ordinal()] = new OperationMetrics(name, op);
+            }
+            metrics = mMetrics.putIfAbsent(name, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics[operation.ordinal()];
+    }
+
+    /**
+     * 获取所有发生过的操作的统计数据
+     *
+     * @param reset 是否在获取之后清空数据, 用于按时间段上报
+     * @return 统计数据的快照
+     */
+    public List<OperationMetrics.Snapshot> snapshot(boolean reset) {
+        final List<OperationMetrics.Snapshot> snapshots = new ArrayList<>();
+        for (OperationMetrics[] metrics : mMetrics.values()) {
+            for (OperationMetrics operation : metrics) {
+                final OperationMetrics.Snapshot snapshot = operation.snapshot(reset);
+                if (snapshot.execution.count() > 0 || snapshot.queueWait.count() > 0) {
+                    snapshots.add(snapshot);
+                }
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * 清空所有统计数据
+     */
+    public void reset() {
+        snapshot(true);
+    }
+
+    /**
+     * 设置定期上报统计数据的 reporter, 每次上报之后清空数据
+     *
+     * @param reporter       上报接口, 为null时停止上报
+     * @param intervalMillis 上报间隔, 单位为毫秒
+     */
+    public synchronized void setReporter(final MetricsReporter reporter, long intervalMillis) {
+        if (mReportFuture != null) {
+            mReportFuture.cancel(false);
+            mReportFuture = null;
+        }
+        if (reporter == null) {
+            return;
+        }
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("intervalMillis must be greater than 0");
+        }
+        if (mReportExecutor == null) {
+            mReportExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "simpledb-metrics");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        mReportFuture = mReportExecutor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                final List<OperationMetrics.Snapshot> snapshots = snapshot(true);
+                if (snapshots.isEmpty()) {
+                    return;
+                }
+                try {
+                    reporter.report(snapshots);
+                } catch (RuntimeException e) {
+                    // 异常会终止定时任务
+                    Platform.e(TAG, "### metrics reporter failed", e);
+                }
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+}
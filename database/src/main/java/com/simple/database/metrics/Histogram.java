@@ -0,0 +1,145 @@
+package com.simple.database.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 耗时的直方图, 单位为微秒. 每个 2 的幂区间再均分为 4 个桶, 记录时只需要几次位运算和原子加法, 不分配内存;
+ * 分位数的相对误差不超过 25%. 超过 2^41 微秒 ( 约25天 ) 的值计入最后一个桶.
+ */
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + SUB_BUCKETS;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotal = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 耗时, 单位为纳秒
+     */
+    public void recordNanos(long nanos) {
+        final long micros = Math.max(nanos / 1000, 0);
+        mBuckets.incrementAndGet(indexOf(micros));
+        mCount.incrementAndGet();
+        mTotal.addAndGet(micros);
+        long current = mMax.get();
+        while (micros > current && !mMax.compareAndSet(current, micros)) {
+            current = mMax.get();
+        }
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+        final int sub = value >= (1L << (MAX_EXPONENT + 1)) ? SUB_BUCKETS - 1
+                : (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return 第 index 个桶中最大的值
+     */
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final int sub = index % SUB_BUCKETS;
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+
+    /**
+     * 获取当前数据的快照, 并发记录时快照中的各项数据之间可能有微小的偏差
+     *
+     * @param reset 是否在获取快照之后清空数据
+     * @return 快照
+     */
+    public Snapshot snapshot(boolean reset) {
+        final long[] buckets = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = reset ? mBuckets.getAndSet(i, 0) : mBuckets.get(i);
+            count += buckets[i];
+        }
+        final long total = reset ? mTotal.getAndSet(0) : mTotal.get();
+        final long max = reset ? mMax.getAndSet(0) : mMax.get();
+        if (reset) {
+            mCount.set(0);
+        }
+        return new Snapshot(buckets, count, total, max);
+    }
+
+    /**
+     * @return 记录的次数
+     */
+    public long count() {
+        return mCount.get();
+    }
+
+    /**
+     * 直方图的快照, 时间单位均为毫秒
+     */
+    public static final class Snapshot {
+        private final long[] mBuckets;
+        private final long mCount;
+        private final long mTotalMicros;
+        private final long mMaxMicros;
+
+        Snapshot(long[] buckets, long count, long totalMicros, long maxMicros) {
+            mBuckets = buckets;
+            mCount = count;
+            mTotalMicros = totalMicros;
+            mMaxMicros = maxMicros;
+        }
+
+        public long count() {
+            return mCount;
+        }
+
+        public double meanMillis() {
+            return mCount > 0 ? mTotalMicros / 1e3 / mCount : 0;
+        }
+
+        public double totalMillis() {
+            return mTotalMicros / 1e3;
+        }
+
+        public double maxMillis() {
+            return mMaxMicros / 1e3;
+        }
+
+        /**
+         * @param quantile 分位, 取值范围为 [0, 1], 例如 0.99
+         * @return 对应分位的耗时, 没有数据时为0
+         */
+        public double percentileMillis(double quantile) {
+            if (mCount == 0) {
+                return 0;
+            }
+            final long rank = Math.max((long) Math.ceil(quantile * mCount), 1);
+            long seen = 0;
+            for (int i = 0; i < mBuckets.length; i++) {
+                seen += mBuckets[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), mMaxMicros) / 1e3;
+                }
+            }
+            return maxMillis();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[count=%d,mean=%.2fms,p50=%.2fms,p90=%.2fms,p99=%.2fms,max=%.2fms]", mCount,
+                    meanMillis(), percentileMillis(0.5), percentileMillis(0.9), percentileMillis(0.99), maxMillis());
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.simple.database.metrics;
+
+import java.util.List;
+
+/**
+ * 统计数据的上报接口, 通过 {@link com.simple.database.Builder#setMetricsReporter(MetricsReporter, long)} 注册,
+ * 用于将数据发送到自己的监控系统.
+ */
+public interface MetricsReporter {
+    /**
+     * 定期在后台线程中调用
+     *
+     * @param snapshots 上一次上报之后各个DAO各种操作的统计数据, 不包含没有发生过的操作
+     */
+    void report(List<OperationMetrics.Snapshot> snapshots);
+}
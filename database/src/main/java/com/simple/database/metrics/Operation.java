@@ -0,0 +1,12 @@
+package com.simple.database.metrics;
+
+/**
+ * 统计的数据库操作类型
+ */
+public enum Operation {
+    INSERT,
+    QUERY,
+    UPDATE,
+    DELETE,
+    COUNT
+}
@@ -0,0 +1,127 @@
+package com.simple.database.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 某个DAO的某种操作的统计数据, 包括排队等待时间、执行时间、回调投递延迟、读写的行数以及失败次数.
+ * <p>
+ * 执行时间、行数与失败次数由 {@link com.simple.database.dao.AbsDAO} 记录, 同步调用DAO时同样会被统计;
+ * 排队等待时间与回调投递延迟由执行该操作的 {@link com.simple.database.task.DbTask} 记录.
+ */
+public final class OperationMetrics {
+    private final String mDaoName;
+    private final Operation mOperation;
+    private final Histogram mQueueWait = new Histogram();
+    private final Histogram mExecution = new Histogram();
+    private final Histogram mDelivery = new Histogram();
+    private final AtomicLong mRows = new AtomicLong();
+    private final AtomicLong mErrors = new AtomicLong();
+
+    OperationMetrics(String daoName, Operation operation) {
+        mDaoName = daoName;
+        mOperation = operation;
+    }
+
+    /**
+     * 记录一次操作的执行结果
+     *
+     * @param nanos  执行时间, 单位为纳秒
+     * @param rows   读取或者写入的行数
+     * @param failed 是否失败
+     */
+    public void recordExecution(long nanos, int rows, boolean failed) {
+        mExecution.recordNanos(nanos);
+        if (rows > 0) {
+            mRows.addAndGet(rows);
+        }
+        if (failed) {
+            mErrors.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param nanos 任务从提交到开始执行的时间, 单位为纳秒
+     */
+    public void recordQueueWait(long nanos) {
+        mQueueWait.recordNanos(nanos);
+    }
+
+    /**
+     * @param nanos 结果从投递到在UI线程中回调的时间, 单位为纳秒
+     */
+    public void recordDelivery(long nanos) {
+        mDelivery.recordNanos(nanos);
+    }
+
+    public String getDaoName() {
+        return mDaoName;
+    }
+
+    public Operation getOperation() {
+        return mOperation;
+    }
+
+    /**
+     * @param reset 是否在获取快照之后清空数据
+     * @return 当前数据的快照
+     */
+    public Snapshot snapshot(boolean reset) {
+        return new Snapshot(mDaoName, mOperation,
+                mQueueWait.snapshot(reset), mExecution.snapshot(reset), mDelivery.snapshot(reset),
+                reset ? mRows.getAndSet(0) : mRows.get(), reset ? mErrors.getAndSet(0) : mErrors.get());
+    }
+
+    /**
+     * 统计数据的快照
+     */
+    public static final class Snapshot {
+        public final String daoName;
+        public final Operation operation;
+        /**
+         * 排队等待时间, 只统计异步执行的操作
+         */
+        public final Histogram.Snapshot queueWait;
+        /**
+         * 执行时间, 其中的 count 为执行次数
+         */
+        public final Histogram.Snapshot execution;
+        /**
+         * 回调投递延迟, 只统计设置了 listener 的异步操作
+         */
+        public final Histogram.Snapshot delivery;
+        /**
+         * 读取或者写入的行数
+         */
+        public final long rows;
+        /**
+         * 失败次数
+         */
+        public final long errors;
+
+        Snapshot(String daoName, Operation operation, Histogram.Snapshot queueWait, Histogram.Snapshot execution,
+                 Histogram.Snapshot delivery, long rows, long errors) {
+            this.daoName = daoName;
+            this.operation = operation;
+            this.queueWait = queueWait;
+            this.execution = execution;
+            this.delivery = delivery;
+            this.rows = rows;
+            this.errors = errors;
+        }
+
+        /**
+         * @return 每秒读取或者写入的行数, 按照执行时间计算, 例如批量插入的吞吐量. 没有数据时为0
+         */
+        public double rowsPerSecond() {
+            final double totalMillis = execution.totalMillis();
+            return totalMillis > 0 ? rows * 1000 / totalMillis : 0;
+        }
+
+        @Override
+        public String toString() {
+            return daoName + "." + operation + "[rows=" + rows + String.format(",rows/s=%.0f", rowsPerSecond())
+                    + ",errors=" + errors + ",wait=" + queueWait
+                    + ",execution=" + execution + ",delivery=" + delivery + "]";
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.simple.database.metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 一条慢查询记录, 参考 {@link SlowQueryLog}
+ */
+public final class SlowQuery {
+    /**
+     * 执行查询的DAO类名
+     */
+    public final String daoName;
+    /**
+     * 查询语句
+     */
+    public final String sql;
+    /**
+     * 查询参数, 开启了参数脱敏时为null
+     */
+    public final String[] args;
+    /**
+     * 查询耗时, 单位为毫秒
+     */
+    public final double durationMillis;
+    /**
+     * 读取的行数
+     */
+    public final int rows;
+    /**
+     * EXPLAIN QUERY PLAN 的 detail 字段, 获取失败时为空
+     */
+    public final List<String> plan;
+    /**
+     * 查询计划中是否含有没有使用索引的全表扫描
+     */
+    public final boolean fullScan;
+    /**
+     * 记录的时间
+     */
+    public final long timestamp;
+
+    SlowQuery(String daoName, String sql, String[] args, double durationMillis, int rows, List<String> plan,
+              long timestamp) {
+        this.daoName = daoName;
+        this.sql = sql;
+        this.args = args;
+        this.durationMillis = durationMillis;
+        this.rows = rows;
+        this.plan = Collections.unmodifiableList(plan);
+        this.fullScan = hasFullScan(plan);
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * 判断查询计划中是否含有全表扫描. 旧版本 SQLite 输出 "SCAN TABLE t", 3.24 之后输出 "SCAN t",
+     * 使用了索引时会带有 "USING INDEX"、"USING COVERING INDEX" 或者 "USING INTEGER PRIMARY KEY".
+     * 扫描子查询的结果 ( 旧版本为 "SCAN SUBQUERY 1", 新版本为 "SCAN (subquery-1)" ) 不算全表扫描
+     */
+    static boolean hasFullScan(List<String> plan) {
+        for (String detail : plan) {
+            if (detail == null) {
+                continue;
+            }
+            final String upper = detail.trim().toUpperCase(Locale.US);
+            if (upper.startsWith("SCAN ") && !upper.contains(" USING ")
+                    && !upper.startsWith("SCAN SUBQUERY") && !upper.startsWith("SCAN (SUBQUERY")
+                    && !upper.startsWith("SCAN CONSTANT ROW")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%.2fms rows=%d%s %s args=%s dao=%s plan=%s", durationMillis, rows,
+                fullScan ? " FULL_SCAN" : "", sql, args != null ? Arrays.toString(args) : "<redacted>", daoName, plan);
+    }
+}
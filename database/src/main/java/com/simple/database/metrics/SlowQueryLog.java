@@ -0,0 +1,160 @@
+package com.simple.database.metrics;
+
+import com.simple.database.utils.IOUtils;
+import com.simple.database.utils.Platform;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 慢查询日志. 通过 {@link com.simple.database.Builder#setSlowQueryLog(long, int, boolean)} 开启之后,
+ * AbsDAO 的查询和 count 耗时超过阈值时会记录 sql 语句、参数、耗时以及 EXPLAIN QUERY PLAN 的结果,
+ * 并标记没有使用索引的全表扫描. 记录保存在固定大小的环形缓冲区中, 写满之后覆盖最早的记录.
+ */
+public final class SlowQueryLog {
+    private static final String TAG = SlowQueryLog.class.getSimpleName();
+    private static final SlowQueryLog INSTANCE = new SlowQueryLog();
+
+    private volatile long mThresholdNanos;
+    private volatile boolean mRedactArgs;
+    private SlowQuery[] mEntries = new SlowQuery[0];
+    /**
+     * 下一条记录的位置
+     */
+    private int mNext;
+    private int mSize;
+
+    private SlowQueryLog() {
+    }
+
+    public static SlowQueryLog getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 配置慢查询日志, 会清空已有的记录
+     *
+     * @param thresholdMillis 慢查询的阈值, 单位为毫秒, 小于等于0时关闭
+     * @param capacity        最多保存的记录数量
+     * @param redactArgs      是否不记录查询参数, 参数中含有用户数据时开启
+     */
+    public synchronized void configure(long thresholdMillis, int capacity, boolean redactArgs) {
+        mThresholdNanos = thresholdMillis > 0 ? thresholdMillis * 1000000L : 0;
+        mRedactArgs = redactArgs;
+        mEntries = new SlowQuery[thresholdMillis > 0 ? Math.max(capacity, 1) : 0];
+        mNext = 0;
+        mSize = 0;
+    }
+
+    public boolean isEnabled() {
+        return mThresholdNanos > 0;
+    }
+
+    /**
+     * @param elapsedNanos 查询耗时, 单位为纳秒
+     * @return 是否超过了慢查询的阈值
+     */
+    public boolean isSlow(long elapsedNanos) {
+        final long threshold = mThresholdNanos;
+        return threshold > 0 && elapsedNanos >= threshold;
+    }
+
+    /**
+     * 添加一条慢查询记录
+     *
+     * @param daoName      执行查询的DAO类名
+     * @param sql          查询语句
+     * @param args         查询参数
+     * @param elapsedNanos 查询耗时, 单位为纳秒
+     * @param rows         读取的行数
+     * @param plan         EXPLAIN QUERY PLAN 的结果
+     */
+    public void add(String daoName, String sql, Object[] args, long elapsedNanos, int rows, List<String> plan) {
+        String[] argStrings = null;
+        if (!mRedactArgs) {
+            argStrings = new String[args != null ? args.length : 0];
+            for (int i = 0; i < argStrings.length; i++) {
+                final Object arg = args[i];
+                argStrings[i] = arg instanceof byte[] ? "<blob " + ((byte[]) arg).length + " bytes>" : String.valueOf(arg);
+            }
+        }
+        final SlowQuery query = new SlowQuery(daoName, sql, argStrings, elapsedNanos / 1e6, rows, plan,
+                System.currentTimeMillis());
+        Platform.w(TAG, "### slow query : " + query, null);
+        synchronized (this) {
+            if (mEntries.length == 0) {
+                return;
+            }
+            mEntries[mNext] = query;
+            mNext = (mNext + 1) % mEntries.length;
+            mSize = Math.min(mSize + 1, mEntries.length);
+        }
+    }
+
+    /**
+     * @return 所有记录, 按照记录的时间排列
+     */
+    public synchronized List<SlowQuery> getEntries() {
+        final List<SlowQuery> entries = new ArrayList<>(mSize);
+        final int start = (mNext - mSize + mEntries.length) % Math.max(mEntries.length, 1);
+        for (int i = 0; i < mSize; i++) {
+            entries.add(mEntries[(start + i) % mEntries.length]);
+        }
+        return entries;
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public synchronized void clear() {
+        Arrays.fill(mEntries, null);
+        mNext = 0;
+        mSize = 0;
+    }
+
+    /**
+     * 将所有记录写入到 writer 中, 每条记录占一行, 查询计划在其后缩进显示
+     *
+     * @param writer 输出
+     * @throws IOException 写入失败
+     */
+    public void dump(Writer writer) throws IOException {
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+        for (SlowQuery query : getEntries()) {
+            writer.write(format.format(new Date(query.timestamp)));
+            writer.write(String.format(Locale.US, " %.2fms rows=%d%s dao=%s\n", query.durationMillis, query.rows,
+                    query.fullScan ? " FULL_SCAN" : "", query.daoName));
+            writer.write("    sql : " + query.sql + "\n");
+            writer.write("    args : " + (query.args != null ? Arrays.toString(query.args) : "<redacted>") + "\n");
+            for (String detail : query.plan) {
+                writer.write("    plan : " + detail + "\n");
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * 将所有记录写入到文件中, 文件已经存在时覆盖
+     *
+     * @param file 输出文件
+     * @throws IOException 写入失败
+     */
+    public void dumpTo(File file) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            dump(writer);
+        } finally {
+            IOUtils.closeSilently(writer);
+        }
+    }
+}
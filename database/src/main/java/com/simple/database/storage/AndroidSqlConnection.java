@@ -0,0 +1,95 @@
+package com.simple.database.storage;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteTransactionListener;
+import android.os.Build;
+import android.os.CancellationSignal;
+
+import com.simple.database.cursor.BindArgsCursorFactory;
+
+/**
+ * 基于 SQLiteDatabase 的 {@link SqlConnection}
+ */
+public class AndroidSqlConnection implements SqlConnection {
+    private final SQLiteDatabase mDatabase;
+    private final boolean mWalEnabled;
+
+    /**
+     * @param database   数据库
+     * @param walEnabled 是否开启了 WAL 模式, 开启时使用非独占事务
+     */
+    public AndroidSqlConnection(SQLiteDatabase database, boolean walEnabled) {
+        mDatabase = database;
+        mWalEnabled = walEnabled;
+    }
+
+    /**
+     * @return 实际执行操作的 SQLiteDatabase
+     */
+    public SQLiteDatabase getDatabase() {
+        return mDatabase;
+    }
+
+    @Override
+    public void beginTransaction(final TransactionListener listener) {
+        final SQLiteTransactionListener transactionListener = listener == null ? null : new SQLiteTransactionListener() {
+            @Override
+            public void onBegin() {
+            }
+
+            @Override
+            public void onCommit() {
+                listener.onCommit();
+            }
+
+            @Override
+            public void onRollback() {
+                listener.onRollback();
+            }
+        };
+        if (mWalEnabled) {
+            mDatabase.beginTransactionWithListenerNonExclusive(transactionListener);
+        } else {
+            mDatabase.beginTransactionWithListener(transactionListener);
+        }
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        mDatabase.setTransactionSuccessful();
+    }
+
+    @Override
+    public void endTransaction() {
+        mDatabase.endTransaction();
+    }
+
+    @Override
+    public boolean inTransaction() {
+        return mDatabase.inTransaction();
+    }
+
+    @Override
+    public void execSQL(String sql, Object[] args) {
+        if (args == null || args.length == 0) {
+            mDatabase.execSQL(sql);
+        } else {
+            mDatabase.execSQL(sql, args);
+        }
+    }
+
+    @Override
+    public Cursor query(String sql, Object[] args, CancellationSignal signal) {
+        final BindArgsCursorFactory factory = new BindArgsCursorFactory(args);
+        if (signal != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return mDatabase.rawQueryWithFactory(factory, sql, null, null, signal);
+        }
+        return mDatabase.rawQueryWithFactory(factory, sql, null, null);
+    }
+
+    @Override
+    public SqlStatement compileStatement(String sql) {
+        return new AndroidSqlStatement(mDatabase.compileStatement(sql));
+    }
+}
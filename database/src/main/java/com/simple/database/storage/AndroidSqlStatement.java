@@ -0,0 +1,76 @@
+package com.simple.database.storage;
+
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * 基于 SQLiteStatement 的 {@link SqlStatement}
+ */
+public class AndroidSqlStatement implements SqlStatement {
+    private final SQLiteStatement mStatement;
+
+    public AndroidSqlStatement(SQLiteStatement statement) {
+        mStatement = statement;
+    }
+
+    /**
+     * @return 实际执行的 SQLiteStatement
+     */
+    public SQLiteStatement getStatement() {
+        return mStatement;
+    }
+
+    @Override
+    public void bindNull(int index) {
+        mStatement.bindNull(index);
+    }
+
+    @Override
+    public void bindLong(int index, long value) {
+        mStatement.bindLong(index, value);
+    }
+
+    @Override
+    public void bindDouble(int index, double value) {
+        mStatement.bindDouble(index, value);
+    }
+
+    @Override
+    public void bindString(int index, String value) {
+        mStatement.bindString(index, value);
+    }
+
+    @Override
+    public void bindBlob(int index, byte[] value) {
+        mStatement.bindBlob(index, value);
+    }
+
+    @Override
+    public void clearBindings() {
+        mStatement.clearBindings();
+    }
+
+    @Override
+    public void execute() {
+        mStatement.execute();
+    }
+
+    @Override
+    public long executeInsert() {
+        return mStatement.executeInsert();
+    }
+
+    @Override
+    public int executeUpdateDelete() {
+        return mStatement.executeUpdateDelete();
+    }
+
+    @Override
+    public long simpleQueryForLong() {
+        return mStatement.simpleQueryForLong();
+    }
+
+    @Override
+    public void close() {
+        mStatement.close();
+    }
+}
@@ -0,0 +1,41 @@
+package com.simple.database.storage;
+
+/**
+ * 当前使用的存储后端. DAO 和数据库任务都通过它获取连接.
+ */
+public final class DbStorage {
+    private static volatile SqlStorage sStorage;
+
+    private DbStorage() {
+    }
+
+    /**
+     * 安装存储后端, 需要在创建 DAO 之前调用. Android 上创建 {@link com.simple.database.DatabaseHelper} 时会自动安装.
+     *
+     * @param storage 存储后端
+     */
+    public static void install(SqlStorage storage) {
+        if (storage == null) {
+            throw new NullPointerException("storage is null");
+        }
+        sStorage = storage;
+    }
+
+    /**
+     * @return 是否已经安装了存储后端
+     */
+    public static boolean isInstalled() {
+        return sStorage != null;
+    }
+
+    /**
+     * @return 当前的存储后端
+     */
+    public static SqlStorage get() {
+        final SqlStorage storage = sStorage;
+        if (storage == null) {
+            throw new IllegalStateException("storage is not installed, create DatabaseHelper or call DbStorage.install first");
+        }
+        return storage;
+    }
+}
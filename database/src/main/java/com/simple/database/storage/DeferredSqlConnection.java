@@ -0,0 +1,68 @@
+package com.simple.database.storage;
+
+import android.database.Cursor;
+import android.os.CancellationSignal;
+
+/**
+ * 第一次使用时才获取实际连接的 {@link SqlConnection}. 数据库在后台打开期间创建的 DAO 持有这种连接,
+ * 创建 DAO 时不需要等待数据库打开, 第一次执行 sql 时才会等待.
+ */
+public abstract class DeferredSqlConnection implements SqlConnection {
+    private volatile SqlConnection mDelegate;
+
+    /**
+     * 获取实际的连接, 只会调用一次, 可以阻塞到数据库打开完成
+     *
+     * @return 实际的连接
+     */
+    protected abstract SqlConnection open();
+
+    private SqlConnection delegate() {
+        SqlConnection delegate = mDelegate;
+        if (delegate == null) {
+            synchronized (this) {
+                delegate = mDelegate;
+                if (delegate == null) {
+                    delegate = open();
+                    mDelegate = delegate;
+                }
+            }
+        }
+        return delegate;
+    }
+
+    @Override
+    public void beginTransaction(TransactionListener listener) {
+        delegate().beginTransaction(listener);
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        delegate().setTransactionSuccessful();
+    }
+
+    @Override
+    public void endTransaction() {
+        delegate().endTransaction();
+    }
+
+    @Override
+    public boolean inTransaction() {
+        return delegate().inTransaction();
+    }
+
+    @Override
+    public void execSQL(String sql, Object[] args) {
+        delegate().execSQL(sql, args);
+    }
+
+    @Override
+    public Cursor query(String sql, Object[] args, CancellationSignal signal) {
+        return delegate().query(sql, args, signal);
+    }
+
+    @Override
+    public SqlStatement compileStatement(String sql) {
+        return delegate().compileStatement(sql);
+    }
+}
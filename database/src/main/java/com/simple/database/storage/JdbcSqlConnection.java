@@ -0,0 +1,309 @@
+package com.simple.database.storage;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.SQLException;
+import android.os.CancellationSignal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 基于 JDBC 的 {@link SqlConnection}, 用于在桌面 JVM 上通过 SQLite 的 JDBC 驱动执行 DAO 操作.
+ * <p>
+ * 查询结果会全部读取到 MatrixCursor 中, 读取时检查 CancellationSignal.
+ * <p>
+ * 与 SQLiteDatabase 一致, 事务属于开启它的线程 : 从最外层的 {@link #beginTransaction(TransactionListener)}
+ * 到对应的 {@link #endTransaction()} 期间该线程独占连接, 其他线程的事务以及语句会阻塞到事务结束, 不会加入到该事务中.
+ */
+public class JdbcSqlConnection implements SqlConnection {
+    private final Connection mConnection;
+    /**
+     * 嵌套的事务, 栈顶为当前事务
+     */
+    private final ArrayDeque<Transaction> mTransactions = new ArrayDeque<>();
+    /**
+     * 独占连接的锁, 每层事务持有一次, 每条语句执行期间持有一次
+     */
+    private final ReentrantLock mLock = new ReentrantLock();
+    private PreparedStatement mLastRowIdStatement;
+
+    public JdbcSqlConnection(Connection connection) {
+        mConnection = connection;
+    }
+
+    /**
+     * @return 实际执行操作的 JDBC 连接
+     */
+    public Connection getConnection() {
+        return mConnection;
+    }
+
+    /**
+     * 一层事务
+     */
+    private static final class Transaction {
+        final TransactionListener listener;
+        boolean successful;
+        boolean childFailed;
+
+        Transaction(TransactionListener listener) {
+            this.listener = listener;
+        }
+    }
+
+    @Override
+    public void beginTransaction(TransactionListener listener) {
+        mLock.lock();
+        boolean started = false;
+        try {
+            if (mTransactions.isEmpty()) {
+                mConnection.setAutoCommit(false);
+            }
+            mTransactions.push(new Transaction(listener));
+            started = true;
+        } catch (java.sql.SQLException e) {
+            throw wrap(e);
+        } finally {
+            if (!started) {
+                mLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return 当前线程的事务
+     */
+    private Transaction currentTransaction() {
+        final Transaction transaction = mLock.isHeldByCurrentThread() ? mTransactions.peek() : null;
+        if (transaction == null) {
+            throw new IllegalStateException("no transaction pending");
+        }
+        return transaction;
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        final Transaction transaction = currentTransaction();
+        if (transaction.successful) {
+            throw new IllegalStateException("setTransactionSuccessful may only be called once per call to beginTransaction");
+        }
+        transaction.successful = true;
+    }
+
+    @Override
+    public void endTransaction() {
+        final Transaction transaction = currentTransaction();
+        try {
+            mTransactions.pop();
+            endTransaction(transaction);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    private void endTransaction(Transaction transaction) {
+        boolean successful = transaction.successful && !transaction.childFailed;
+        RuntimeException listenerError = null;
+        if (transaction.listener != null) {
+            try {
+                if (successful) {
+                    transaction.listener.onCommit();
+                } else {
+                    transaction.listener.onRollback();
+                }
+            } catch (RuntimeException e) {
+                listenerError = e;
+                successful = false;
+            }
+        }
+        final Transaction parent = mTransactions.peek();
+        if (parent != null) {
+            // 嵌套事务失败时整个事务都会回滚
+            parent.childFailed |= !successful;
+        } else {
+            try {
+                if (successful) {
+                    mConnection.commit();
+                } else {
+                    mConnection.rollback();
+                }
+            } catch (java.sql.SQLException e) {
+                throw wrap(e);
+            } finally {
+                try {
+                    mConnection.setAutoCommit(true);
+                } catch (java.sql.SQLException e) {
+                    // 连接已经不可用, 后续操作会抛出异常
+                }
+            }
+        }
+        if (listenerError != null) {
+            throw listenerError;
+        }
+    }
+
+    /**
+     * @return 当前线程是否有未结束的事务
+     */
+    @Override
+    public boolean inTransaction() {
+        return mLock.isHeldByCurrentThread() && !mTransactions.isEmpty();
+    }
+
+    /**
+     * 执行语句之前获取连接, 其他线程有未结束的事务时阻塞. 需要与 {@link #release()} 成对调用
+     */
+    void acquire() {
+        mLock.lock();
+    }
+
+    void release() {
+        mLock.unlock();
+    }
+
+    @Override
+    public void execSQL(String sql, Object[] args) {
+        PreparedStatement statement = null;
+        acquire();
+        try {
+            statement = prepare(sql, args);
+            statement.execute();
+        } catch (java.sql.SQLException e) {
+            throw wrap(e);
+        } finally {
+            closeQuietly(statement);
+            release();
+        }
+    }
+
+    @Override
+    public Cursor query(String sql, Object[] args, CancellationSignal signal) {
+        PreparedStatement statement = null;
+        acquire();
+        try {
+            statement = prepare(sql, args);
+            throwIfCanceled(signal);
+            final ResultSet resultSet = statement.executeQuery();
+            final ResultSetMetaData metaData = resultSet.getMetaData();
+            final int columnCount = metaData.getColumnCount();
+            final String[] columns = new String[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                columns[i] = metaData.getColumnLabel(i + 1);
+            }
+            final MatrixCursor cursor = new MatrixCursor(columns);
+            while (resultSet.next()) {
+                throwIfCanceled(signal);
+                final Object[] row = new Object[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    row[i] = resultSet.getObject(i + 1);
+                }
+                cursor.addRow(row);
+            }
+            return cursor;
+        } catch (java.sql.SQLException e) {
+            throw wrap(e);
+        } finally {
+            closeQuietly(statement);
+            release();
+        }
+    }
+
+    private static void throwIfCanceled(CancellationSignal signal) {
+        if (signal != null) {
+            signal.throwIfCanceled();
+        }
+    }
+
+    @Override
+    public SqlStatement compileStatement(String sql) {
+        acquire();
+        try {
+            return new JdbcSqlStatement(this, mConnection.prepareStatement(sql));
+        } catch (java.sql.SQLException e) {
+            throw wrap(e);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * 关闭连接
+     */
+    public void close() {
+        acquire();
+        try {
+            closeQuietly(mLastRowIdStatement);
+            mLastRowIdStatement = null;
+            mConnection.close();
+        } catch (java.sql.SQLException e) {
+            throw wrap(e);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * @return 该连接最后插入的数据的 rowid, 需要在 {@link #acquire()} 之后调用
+     */
+    long lastInsertRowId() throws java.sql.SQLException {
+        if (mLastRowIdStatement == null) {
+            mLastRowIdStatement = mConnection.prepareStatement("SELECT last_insert_rowid()");
+        }
+        final ResultSet resultSet = mLastRowIdStatement.executeQuery();
+        try {
+            return resultSet.next() ? resultSet.getLong(1) : -1;
+        } finally {
+            closeQuietly(resultSet);
+        }
+    }
+
+    private PreparedStatement prepare(String sql, Object[] args) throws java.sql.SQLException {
+        final PreparedStatement statement = mConnection.prepareStatement(sql);
+        if (args != null) {
+            try {
+                for (int i = 0; i < args.length; i++) {
+                    JdbcSqlStatement.bindValue(statement, i + 1, args[i]);
+                }
+            } catch (java.sql.SQLException e) {
+                closeQuietly(statement);
+                throw e;
+            }
+        }
+        return statement;
+    }
+
+    /**
+     * 将 JDBC 的异常转换为与 Android 一致的 {@link SQLException}
+     */
+    static SQLException wrap(java.sql.SQLException e) {
+        final SQLException exception = new SQLException(e.getMessage());
+        exception.initCause(e);
+        return exception;
+    }
+
+    static void closeQuietly(Statement statement) {
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (java.sql.SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    static void closeQuietly(ResultSet resultSet) {
+        if (resultSet != null) {
+            try {
+                resultSet.close();
+            } catch (java.sql.SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
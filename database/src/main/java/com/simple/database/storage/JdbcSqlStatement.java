@@ -0,0 +1,145 @@
+package com.simple.database.storage;
+
+import android.database.SQLException;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+
+/**
+ * 基于 JDBC PreparedStatement 的 {@link SqlStatement}
+ */
+public class JdbcSqlStatement implements SqlStatement {
+    private final JdbcSqlConnection mConnection;
+    private final PreparedStatement mStatement;
+
+    JdbcSqlStatement(JdbcSqlConnection connection, PreparedStatement statement) {
+        mConnection = connection;
+        mStatement = statement;
+    }
+
+    /**
+     * 按照数据类型将参数绑定到 statement 中, 与 {@link com.simple.database.utils.IOUtils#bindValue(SqlStatement, int, Object)} 一致
+     *
+     * @param statement 编译好的语句
+     * @param index     参数索引, 从1开始
+     * @param value     参数值
+     * @throws java.sql.SQLException 绑定失败
+     */
+    static void bindValue(PreparedStatement statement, int index, Object value) throws java.sql.SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.NULL);
+        } else if (value instanceof Double || value instanceof Float) {
+            statement.setDouble(index, ((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            statement.setLong(index, ((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            statement.setLong(index, (Boolean) value ? 1 : 0);
+        } else if (value instanceof byte[]) {
+            statement.setBytes(index, (byte[]) value);
+        } else {
+            statement.setString(index, value.toString());
+        }
+    }
+
+    @Override
+    public void bindNull(int index) {
+        bind(index, null);
+    }
+
+    @Override
+    public void bindLong(int index, long value) {
+        bind(index, value);
+    }
+
+    @Override
+    public void bindDouble(int index, double value) {
+        bind(index, value);
+    }
+
+    @Override
+    public void bindString(int index, String value) {
+        bind(index, value);
+    }
+
+    @Override
+    public void bindBlob(int index, byte[] value) {
+        bind(index, value);
+    }
+
+    private void bind(int index, Object value) {
+        try {
+            bindValue(mStatement, index, value);
+        } catch (java.sql.SQLException e) {
+            throw JdbcSqlConnection.wrap(e);
+        }
+    }
+
+    @Override
+    public void clearBindings() {
+        try {
+            mStatement.clearParameters();
+        } catch (java.sql.SQLException e) {
+            throw JdbcSqlConnection.wrap(e);
+        }
+    }
+
+    @Override
+    public void execute() {
+        mConnection.acquire();
+        try {
+            mStatement.execute();
+        } catch (java.sql.SQLException e) {
+            throw JdbcSqlConnection.wrap(e);
+        } finally {
+            mConnection.release();
+        }
+    }
+
+    @Override
+    public long executeInsert() {
+        mConnection.acquire();
+        try {
+            return mStatement.executeUpdate() > 0 ? mConnection.lastInsertRowId() : -1;
+        } catch (java.sql.SQLException e) {
+            throw JdbcSqlConnection.wrap(e);
+        } finally {
+            mConnection.release();
+        }
+    }
+
+    @Override
+    public int executeUpdateDelete() {
+        mConnection.acquire();
+        try {
+            return mStatement.executeUpdate();
+        } catch (java.sql.SQLException e) {
+            throw JdbcSqlConnection.wrap(e);
+        } finally {
+            mConnection.release();
+        }
+    }
+
+    @Override
+    public long simpleQueryForLong() {
+        ResultSet resultSet = null;
+        mConnection.acquire();
+        try {
+            resultSet = mStatement.executeQuery();
+            if (!resultSet.next()) {
+                throw new SQLException("query returned no rows");
+            }
+            return resultSet.getLong(1);
+        } catch (java.sql.SQLException e) {
+            throw JdbcSqlConnection.wrap(e);
+        } finally {
+            JdbcSqlConnection.closeQuietly(resultSet);
+            mConnection.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        JdbcSqlConnection.closeQuietly(mStatement);
+    }
+}
@@ -0,0 +1,109 @@
+package com.simple.database.storage;
+
+import android.database.SQLException;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * 基于 JDBC 的 {@link SqlStorage}, 用于在桌面 JVM 的批处理工具或者性能分析中复用 DAO. 例如 :
+ * <pre>
+ * DbStorage.install(JdbcSqlStorage.open("jdbc:sqlite:/tmp/app.db"));
+ * DbTask.setCallbackDispatcher(new ExecutorCallbackDispatcher());
+ * </pre>
+ * 需要自行将 SQLite 的 JDBC 驱动添加到 classpath 中, 表结构可以通过 {@link SqlConnection#execSQL(String, Object[])} 创建.
+ */
+public class JdbcSqlStorage implements SqlStorage {
+    private final JdbcSqlConnection mWritableConnection;
+    private final JdbcSqlConnection mReadableConnection;
+    private final boolean mWalEnabled;
+
+    /**
+     * 读写使用同一个连接, 所有任务都在串行通道中执行
+     *
+     * @param connection JDBC 连接
+     */
+    public JdbcSqlStorage(Connection connection) {
+        mWritableConnection = new JdbcSqlConnection(connection);
+        mReadableConnection = mWritableConnection;
+        mWalEnabled = false;
+    }
+
+    /**
+     * 读写使用不同的连接. 两个连接需要指向同一个数据库文件, 只有通过 PRAGMA journal_mode 确认数据库处于 WAL 模式时,
+     * 只读任务才会在并发通道中执行, 否则所有任务仍在串行通道中执行
+     *
+     * @param writable 执行写操作的连接
+     * @param readable 执行查询的连接
+     */
+    public JdbcSqlStorage(Connection writable, Connection readable) {
+        mWritableConnection = new JdbcSqlConnection(writable);
+        mReadableConnection = new JdbcSqlConnection(readable);
+        mWalEnabled = "wal".equalsIgnoreCase(queryJournalMode(writable));
+    }
+
+    /**
+     * @return 数据库的日志模式, 例如 wal, delete
+     */
+    private static String queryJournalMode(Connection connection) {
+        Statement statement = null;
+        ResultSet resultSet = null;
+        try {
+            statement = connection.createStatement();
+            resultSet = statement.executeQuery("PRAGMA journal_mode");
+            return resultSet.next() ? resultSet.getString(1) : null;
+        } catch (java.sql.SQLException e) {
+            throw JdbcSqlConnection.wrap(e);
+        } finally {
+            JdbcSqlConnection.closeQuietly(resultSet);
+            JdbcSqlConnection.closeQuietly(statement);
+        }
+    }
+
+    /**
+     * 打开 JDBC 连接并创建存储, 读写使用同一个连接
+     *
+     * @param url JDBC 地址, 例如 jdbc:sqlite:/tmp/app.db
+     * @return 存储后端
+     */
+    public static JdbcSqlStorage open(String url) {
+        try {
+            return new JdbcSqlStorage(DriverManager.getConnection(url));
+        } catch (java.sql.SQLException e) {
+            throw JdbcSqlConnection.wrap(e);
+        }
+    }
+
+    @Override
+    public SqlConnection getWritableConnection() {
+        return mWritableConnection;
+    }
+
+    @Override
+    public SqlConnection getReadableConnection() {
+        return mReadableConnection;
+    }
+
+    @Override
+    public boolean isWriteAheadLoggingEnabled() {
+        return mWalEnabled;
+    }
+
+    @Override
+    public void close() {
+        SQLException error = null;
+        try {
+            mWritableConnection.close();
+        } catch (SQLException e) {
+            error = e;
+        }
+        if (mReadableConnection != mWritableConnection) {
+            mReadableConnection.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
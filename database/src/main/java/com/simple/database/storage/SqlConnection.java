@@ -0,0 +1,77 @@
+package com.simple.database.storage;
+
+import android.database.Cursor;
+import android.os.CancellationSignal;
+
+/**
+ * 数据库连接, DAO 与任务通过它执行 sql 语句, 不直接依赖 SQLiteDatabase. 默认实现参考 {@link AndroidSqlConnection},
+ * 在桌面 JVM 上可以使用 {@link JdbcSqlConnection}.
+ * <p>
+ * 事务的语义与 SQLiteDatabase 一致 : 事务可以嵌套, 任何一层没有调用 {@link #setTransactionSuccessful()} 就结束时,
+ * 最外层事务结束时会回滚.
+ */
+public interface SqlConnection {
+
+    /**
+     * 事务结束时的回调
+     */
+    interface TransactionListener {
+        /**
+         * 事务提交之前调用
+         */
+        void onCommit();
+
+        /**
+         * 事务回滚之前调用
+         */
+        void onRollback();
+    }
+
+    /**
+     * 开启事务, WAL 模式下使用非独占事务
+     *
+     * @param listener 事务结束时的回调, 可以为null
+     */
+    void beginTransaction(TransactionListener listener);
+
+    /**
+     * 将当前事务标记为成功, 结束事务时提交
+     */
+    void setTransactionSuccessful();
+
+    /**
+     * 结束当前事务
+     */
+    void endTransaction();
+
+    /**
+     * @return 当前线程是否处于事务中
+     */
+    boolean inTransaction();
+
+    /**
+     * 执行不返回数据的 sql 语句
+     *
+     * @param sql  sql 语句
+     * @param args 参数, 按照实际类型绑定, 可以为null
+     */
+    void execSQL(String sql, Object[] args);
+
+    /**
+     * 执行查询
+     *
+     * @param sql    查询语句
+     * @param args   参数, 按照实际类型绑定, 可以为null
+     * @param signal 用于中断查询, 可以为null
+     * @return 查询结果, 使用完之后需要关闭
+     */
+    Cursor query(String sql, Object[] args, CancellationSignal signal);
+
+    /**
+     * 编译 sql 语句
+     *
+     * @param sql sql 语句
+     * @return 编译好的语句, 使用完之后需要关闭
+     */
+    SqlStatement compileStatement(String sql);
+}
@@ -0,0 +1,56 @@
+package com.simple.database.storage;
+
+import java.io.Closeable;
+
+/**
+ * 编译好的 sql 语句, 函数与 Android 的 SQLiteStatement 一致. 参数索引从1开始, 同一个语句不能在多个线程中同时使用.
+ */
+public interface SqlStatement extends Closeable {
+
+    void bindNull(int index);
+
+    void bindLong(int index, long value);
+
+    void bindDouble(int index, double value);
+
+    void bindString(int index, String value);
+
+    void bindBlob(int index, byte[] value);
+
+    /**
+     * 清除所有绑定的参数
+     */
+    void clearBindings();
+
+    /**
+     * 执行不返回数据的语句
+     */
+    void execute();
+
+    /**
+     * 执行 insert 语句
+     *
+     * @return 插入数据的 rowid, 没有插入数据时返回 -1
+     */
+    long executeInsert();
+
+    /**
+     * 执行 update 或者 delete 语句
+     *
+     * @return 修改的行数
+     */
+    int executeUpdateDelete();
+
+    /**
+     * 执行只返回一行一列的查询, 例如 SELECT COUNT(*)
+     *
+     * @return 第一行第一列的值
+     */
+    long simpleQueryForLong();
+
+    /**
+     * 关闭语句, 关闭之后不能再使用
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,28 @@
+package com.simple.database.storage;
+
+/**
+ * 存储后端, 提供读写连接. Android 上由 {@link com.simple.database.DatabaseHelper} 实现, 创建时自动安装到 {@link DbStorage};
+ * 在桌面 JVM 上可以通过 {@link DbStorage#install(SqlStorage)} 安装 {@link JdbcSqlStorage}.
+ */
+public interface SqlStorage {
+
+    /**
+     * @return 执行写操作的连接
+     */
+    SqlConnection getWritableConnection();
+
+    /**
+     * @return 执行查询的连接, 没有开启 WAL 时与写连接相同
+     */
+    SqlConnection getReadableConnection();
+
+    /**
+     * @return 是否开启了 WAL 模式, 开启时只读任务会在并发通道中执行
+     */
+    boolean isWriteAheadLoggingEnabled();
+
+    /**
+     * 关闭存储
+     */
+    void close();
+}
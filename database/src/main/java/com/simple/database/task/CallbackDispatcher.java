@@ -0,0 +1,36 @@
+package com.simple.database.task;
+
+/**
+ * 回调线程的调度器, 任务结果、{@link DbFuture} 的回调以及超时检查都通过它执行. 默认实现为
+ * {@link MainThreadCallbackDispatcher}, 在 UI 线程中回调; 在桌面 JVM 上没有主线程 Looper 时使用 {@link ExecutorCallbackDispatcher}.
+ * 可以通过 {@link com.simple.database.Builder#setCallbackDispatcher(CallbackDispatcher)} 或者
+ * {@link DbTask#setCallbackDispatcher(CallbackDispatcher)} 替换.
+ */
+public interface CallbackDispatcher {
+    /**
+     * 在回调线程中执行
+     *
+     * @param runnable 要执行的操作
+     */
+    void post(Runnable runnable);
+
+    /**
+     * 延迟一段时间之后在回调线程中执行
+     *
+     * @param runnable    要执行的操作
+     * @param delayMillis 延迟时间, 单位为毫秒
+     */
+    void postDelayed(Runnable runnable, long delayMillis);
+
+    /**
+     * 移除还没有执行的 runnable
+     *
+     * @param runnable 通过 {@link #post(Runnable)} 或者 {@link #postDelayed(Runnable, long)} 提交的操作
+     */
+    void removeCallbacks(Runnable runnable);
+
+    /**
+     * @return 当前线程是否为回调线程, 在回调线程中阻塞等待任务结果会抛出异常
+     */
+    boolean isDispatchThread();
+}
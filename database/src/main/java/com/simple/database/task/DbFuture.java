@@ -0,0 +1,471 @@
+package com.simple.database.task;
+
+import com.simple.database.listeners.DbErrorListener;
+import com.simple.database.listeners.DbListener;
+import com.simple.database.utils.Platform;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 数据库任务的结果. 除了 {@link DbListener} 回调之外, 还可以通过它组合多个任务、在工作线程中阻塞等待结果, 并拿到任务执行时抛出的异常. 例如 :
+ * <pre>
+ * DbFuture.all(userDao.count(null, null, null), bookDao.count(null, null, null))
+ *         .onSuccess(new DbListener&lt;List&lt;Object&gt;&gt;() { ... })
+ *         .onError(new DbErrorListener() { ... });
+ * </pre>
+ * <p>
+ * {@link #onSuccess(DbListener)} 与 {@link #onError(DbErrorListener)} 在回调线程 ( 参考 {@link DbTask#getCallbackDispatcher()},
+ * 默认为UI线程 ) 中回调; {@link #map(Transformer)} 与 {@link #then(Continuation)} 在任务完成的线程中执行 ( 通常是数据库线程 ), 不要在其中执行耗时操作.
+ * <p>
+ * 注意 : 不要在数据库任务中调用 {@link #get()} 等待另一个串行任务, 串行通道只有一个线程, 这样会造成死锁.
+ *
+ * @param <T> 任务结果的类型
+ */
+public class DbFuture<T> implements TaskHandle, Future<T> {
+    private static final String TAG = DbFuture.class.getSimpleName();
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_SUCCESS = 1;
+    private static final int STATE_FAILED = 2;
+    private static final int STATE_CANCELLED = 3;
+
+    private final AtomicInteger mState = new AtomicInteger(STATE_PENDING);
+    private final CountDownLatch mLatch = new CountDownLatch(1);
+    private volatile T mResult;
+    private volatile Throwable mError;
+    /**
+     * 取消时要通知的上游任务, 为null时直接取消当前 future
+     */
+    private volatile TaskHandle mSource;
+    /**
+     * 任务完成时要执行的操作, 完成之后置为null
+     */
+    private List<Runnable> mCompletions = new ArrayList<>();
+
+    DbFuture() {
+    }
+
+    DbFuture(TaskHandle source) {
+        mSource = source;
+    }
+
+    /**
+     * 结果转换, 在任务完成的线程中执行
+     *
+     * @param <A> 输入类型
+     * @param <B> 输出类型
+     */
+    public interface Transformer<A, B> {
+        B apply(A input) throws Exception;
+    }
+
+    /**
+     * 根据上一个任务的结果提交下一个任务, 在任务完成的线程中执行
+     *
+     * @param <A> 上一个任务的结果类型
+     * @param <B> 下一个任务的结果类型
+     */
+    public interface Continuation<A, B> {
+        DbFuture<B> apply(A input) throws Exception;
+    }
+
+    /**
+     * @param result 结果
+     * @return 已经成功完成的 future
+     */
+    public static <T> DbFuture<T> completed(T result) {
+        DbFuture<T> future = new DbFuture<>();
+        future.complete(result);
+        return future;
+    }
+
+    /**
+     * @param error 异常
+     * @return 已经失败的 future
+     */
+    public static <T> DbFuture<T> failed(Throwable error) {
+        DbFuture<T> future = new DbFuture<>();
+        future.fail(error);
+        return future;
+    }
+
+    /**
+     * 合并多个 future, 所有任务都成功时按照参数顺序返回结果列表. 任何一个任务失败或者被取消时, 合并后的 future 也随之失败或者取消;
+     * 取消合并后的 future 会取消所有任务.
+     *
+     * @param futures 要合并的任务
+     * @return 合并后的 future
+     */
+    public static DbFuture<List<Object>> all(DbFuture<?>... futures) {
+        return all(Arrays.<DbFuture<?>>asList(futures));
+    }
+
+    /**
+     * 合并多个同类型的 future, 规则同 {@link #all(DbFuture[])}
+     *
+     * @param futures 要合并的任务
+     * @return 合并后的 future
+     */
+    public static <T> DbFuture<List<T>> all(final List<? extends DbFuture<? extends T>> futures) {
+        final int size = futures.size();
+        final DbFuture<List<T>> combined = new DbFuture<>();
+        if (size == 0) {
+            combined.complete(new ArrayList<T>());
+            return combined;
+        }
+        combined.mSource = new TaskHandle() {
+            @Override
+            public boolean cancel() {
+                boolean cancelled = false;
+                for (DbFuture<? extends T> future : futures) {
+                    cancelled |= future.cancel();
+                }
+                return cancelled;
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return combined.isCancelled();
+            }
+
+            @Override
+            public boolean isDone() {
+                return combined.isDone();
+            }
+        };
+        final Object[] results = new Object[size];
+        final AtomicInteger remaining = new AtomicInteger(size);
+        for (int i = 0; i < size; i++) {
+            final int index = i;
+            final DbFuture<? extends T> future = futures.get(i);
+            future.addCompletion(new Runnable() {
+                @Override
+                public void run() {
+                    switch (future.mState.get()) {
+                        case STATE_SUCCESS:
+                            results[index] = future.mResult;
+                            if (remaining.decrementAndGet() == 0) {
+                                final List<T> list = new ArrayList<>(size);
+                                for (Object item : results) {
+                                    list.add((T) item);
+                                }
+                                combined.complete(list);
+                            }
+                            break;
+                        case STATE_FAILED:
+                            combined.fail(future.mError);
+                            break;
+                        default:
+                            combined.markCancelled();
+                            break;
+                    }
+                }
+            });
+        }
+        return combined;
+    }
+
+    /**
+     * 任务成功时在UI线程中回调
+     *
+     * @param listener 结果回调
+     * @return 当前 future
+     */
+    public DbFuture<T> onSuccess(final DbListener<? super T> listener) {
+        addCompletion(new Runnable() {
+            @Override
+            public void run() {
+                if (mState.get() != STATE_SUCCESS) {
+                    return;
+                }
+                final T result = mResult;
+                DbTask.getCallbackDispatcher().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onComplete(result);
+                    }
+                });
+            }
+        });
+        return this;
+    }
+
+    /**
+     * 任务失败时在UI线程中回调, 任务被取消时不会回调
+     *
+     * @param listener 异常回调
+     * @return 当前 future
+     */
+    public DbFuture<T> onError(final DbErrorListener listener) {
+        addCompletion(new Runnable() {
+            @Override
+            public void run() {
+                if (mState.get() != STATE_FAILED) {
+                    return;
+                }
+                final Throwable error = mError;
+                DbTask.getCallbackDispatcher().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onError(error);
+                    }
+                });
+            }
+        });
+        return this;
+    }
+
+    /**
+     * 任务结束 ( 成功、失败或者被取消 ) 之后在UI线程中回调
+     *
+     * @param callback 结束回调
+     * @return 当前 future
+     */
+    public DbFuture<T> onDone(final Runnable callback) {
+        addCompletion(new Runnable() {
+            @Override
+            public void run() {
+                DbTask.getCallbackDispatcher().post(callback);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * 转换任务的结果, transformer 抛出的异常会传递给返回的 future
+     *
+     * @param transformer 结果转换
+     * @return 转换之后的 future
+     */
+    public <R> DbFuture<R> map(final Transformer<? super T, ? extends R> transformer) {
+        final DbFuture<R> next = new DbFuture<>(this);
+        addCompletion(new Runnable() {
+            @Override
+            public void run() {
+                switch (mState.get()) {
+                    case STATE_SUCCESS:
+                        try {
+                            next.complete(transformer.apply(mResult));
+                        } catch (Exception e) {
+                            next.fail(e);
+                        }
+                        break;
+                    case STATE_FAILED:
+                        next.fail(mError);
+                        break;
+                    default:
+                        next.markCancelled();
+                        break;
+                }
+            }
+        });
+        return next;
+    }
+
+    /**
+     * 当前任务成功之后再提交下一个任务, 用于依赖上一个查询结果的操作; 相互独立的操作请使用 {@link #all(DbFuture[])} 并发执行.
+     *
+     * @param continuation 提交下一个任务
+     * @return 下一个任务的 future
+     */
+    public <R> DbFuture<R> then(final Continuation<? super T, R> continuation) {
+        final DbFuture<R> next = new DbFuture<>(this);
+        addCompletion(new Runnable() {
+            @Override
+            public void run() {
+                switch (mState.get()) {
+                    case STATE_SUCCESS:
+                        final DbFuture<R> inner;
+                        try {
+                            inner = continuation.apply(mResult);
+                        } catch (Exception e) {
+                            next.fail(e);
+                            return;
+                        }
+                        if (inner == null) {
+                            next.complete(null);
+                            return;
+                        }
+                        next.mSource = inner;
+                        if (next.isCancelled()) {
+                            inner.cancel();
+                        }
+                        inner.addCompletion(new Runnable() {
+                            @Override
+                            public void run() {
+                                forward(inner, next);
+                            }
+                        });
+                        break;
+                    case STATE_FAILED:
+                        next.fail(mError);
+                        break;
+                    default:
+                        next.markCancelled();
+                        break;
+                }
+            }
+        });
+        return next;
+    }
+
+    private static <V> void forward(DbFuture<V> from, DbFuture<V> to) {
+        switch (from.mState.get()) {
+            case STATE_SUCCESS:
+                to.complete(from.mResult);
+                break;
+            case STATE_FAILED:
+                to.fail(from.mError);
+                break;
+            default:
+                to.markCancelled();
+                break;
+        }
+    }
+
+    /**
+     * 阻塞等待任务的结果, 不能在UI线程中调用
+     *
+     * @return 任务的结果
+     * @throws ExecutionException    任务执行失败, 通过 {@link ExecutionException#getCause()} 获取原始异常
+     * @throws CancellationException 任务被取消或者超时
+     */
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        checkNotMainThread();
+        mLatch.await();
+        return getResult();
+    }
+
+    /**
+     * 阻塞等待任务的结果, 最多等待指定的时间, 不能在UI线程中调用. 等待超时不会取消任务.
+     *
+     * @return 任务的结果
+     * @throws ExecutionException    任务执行失败, 通过 {@link ExecutionException#getCause()} 获取原始异常
+     * @throws CancellationException 任务被取消或者超时
+     * @throws TimeoutException      等待超时
+     */
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        checkNotMainThread();
+        if (!mLatch.await(timeout, unit)) {
+            throw new TimeoutException("db task not completed in " + timeout + " " + unit);
+        }
+        return getResult();
+    }
+
+    private T getResult() throws ExecutionException {
+        switch (mState.get()) {
+            case STATE_SUCCESS:
+                return mResult;
+            case STATE_FAILED:
+                throw new ExecutionException(mError);
+            default:
+                throw new CancellationException("db task cancelled");
+        }
+    }
+
+    private void checkNotMainThread() {
+        if (!isDone() && DbTask.getCallbackDispatcher().isDispatchThread()) {
+            throw new IllegalStateException("can not block on a db task in the main thread");
+        }
+    }
+
+    /**
+     * 取消任务, 参考 {@link TaskHandle#cancel()}
+     */
+    @Override
+    public boolean cancel() {
+        final TaskHandle source = mSource;
+        return source != null ? source.cancel() : markCancelled();
+    }
+
+    /**
+     * 取消任务, 正在执行的任务通过 {@link android.os.CancellationSignal} 中断, 不会中断线程
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return cancel();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return mState.get() == STATE_CANCELLED;
+    }
+
+    @Override
+    public boolean isDone() {
+        return mState.get() != STATE_PENDING;
+    }
+
+    /**
+     * @return 任务是否执行失败
+     */
+    public boolean isFailed() {
+        return mState.get() == STATE_FAILED;
+    }
+
+    boolean complete(T result) {
+        if (!mState.compareAndSet(STATE_PENDING, STATE_SUCCESS)) {
+            return false;
+        }
+        mResult = result;
+        finish();
+        return true;
+    }
+
+    boolean fail(Throwable error) {
+        if (!mState.compareAndSet(STATE_PENDING, STATE_FAILED)) {
+            return false;
+        }
+        mError = error;
+        finish();
+        return true;
+    }
+
+    boolean markCancelled() {
+        if (!mState.compareAndSet(STATE_PENDING, STATE_CANCELLED)) {
+            return false;
+        }
+        finish();
+        return true;
+    }
+
+    private void addCompletion(Runnable completion) {
+        synchronized (this) {
+            if (mCompletions != null) {
+                mCompletions.add(completion);
+                return;
+            }
+        }
+        runCompletion(completion);
+    }
+
+    private void finish() {
+        mLatch.countDown();
+        final List<Runnable> completions;
+        synchronized (this) {
+            completions = mCompletions;
+            mCompletions = null;
+        }
+        for (Runnable completion : completions) {
+            runCompletion(completion);
+        }
+    }
+
+    private static void runCompletion(Runnable completion) {
+        try {
+            completion.run();
+        } catch (RuntimeException e) {
+            Platform.e(TAG, "### future completion failed", e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.simple.database.task;
+
+/**
+ * 数据库任务的调度器. 默认实现为 {@link DefaultDbScheduler}, 可以通过
+ * {@link com.simple.database.Builder#setScheduler(DbScheduler)} 替换为自定义的实现.
+ * <p>
+ * 注意 : 串行通道必须保证同一时刻只执行一个任务, 写操作依赖这一点保证顺序.
+ */
+public interface DbScheduler {
+    /**
+     * 串行通道, 写操作以及未开启WAL时的读操作在这里执行
+     *
+     * @param task 要执行的任务
+     */
+    void executeSerial(Runnable task);
+
+    /**
+     * 并发通道, 开启了WAL之后读操作在这里并发执行
+     *
+     * @param task 要执行的任务
+     */
+    void executeConcurrent(Runnable task);
+
+    /**
+     * @return 串行通道的运行状态
+     */
+    LaneStats getSerialStats();
+
+    /**
+     * @return 并发通道的运行状态
+     */
+    LaneStats getConcurrentStats();
+}
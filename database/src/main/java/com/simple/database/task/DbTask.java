@@ -24,39 +24,118 @@
 
 package com.simple.database.task;
 
-import android.database.sqlite.SQLiteDatabase;
-import android.os.Handler;
+import android.os.CancellationSignal;
 import android.os.Looper;
 
-import com.simple.database.DatabaseHelper;
+import com.simple.database.cache.InvalidationTracker;
 import com.simple.database.listeners.DbListener;
+import com.simple.database.metrics.OperationMetrics;
+import com.simple.database.storage.DbStorage;
+import com.simple.database.storage.SqlConnection;
+import com.simple.database.utils.Platform;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
- * 数据库操作抽象类,该对象将数据库操作提交给线程池进行异步执行, 得到结果之后通过回调将结果投递给 ui 线程.
+ * 数据库操作抽象类,该对象将数据库操作提交给线程池进行异步执行, 得到结果之后通过 {@link CallbackDispatcher} 将结果投递给 ui 线程.
+ * <p>
+ * 任务提交之后返回 {@link DbFuture}, 可以通过它取消任务、组合多个任务或者在工作线程中等待结果, 也可以通过 {@link #setTimeout(long)}
+ * 设置超时时间. 任务执行时抛出的异常会传递给 {@link DbFuture}, 为了兼容, listener 此时仍然会收到 null.
  *
  * @param <T> 返回的数据类型
  */
-public abstract class DbTask<T> {
+public abstract class DbTask<T> implements TaskHandle {
+    private static final String TAG = DbTask.class.getSimpleName();
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_RUNNING = 1;
+    private static final int STATE_DONE = 2;
+    private static final int STATE_CANCELLED = 3;
     /**
-     * 单线程的数据库线程池
+     * 任务调度器, 包含串行和并发两个通道
      */
-    private static final ExecutorService SERIAL_EXECUTOR = Executors.newSingleThreadExecutor();
+    private static volatile DbScheduler sScheduler;
     /**
-     * 并发线程池的数据库线程池,在启动了WAL模式之后使用
+     * 回调线程的调度器, 默认在UI线程中回调
      */
-    private static final ExecutorService CONCURRENT_EXECUTOR = Executors.newFixedThreadPool(2);
+    private static volatile CallbackDispatcher sCallbackDispatcher;
     /**
-     * 关联UI线程消息队列的Handler
+     * 串行线程池的组提交, 参考 {@link com.simple.database.Builder#setGroupCommit(int, long)}
      */
-    private final static Handler mUIHandler = new Handler(Looper.getMainLooper());
+    private static final GroupCommitter GROUP_COMMITTER = new GroupCommitter();
+    /**
+     * 当前线程正在执行的任务
+     */
+    private static final ThreadLocal<DbTask<?>> CURRENT_TASK = new ThreadLocal<>();
+    /**
+     * 每个优先级的耗时统计
+     */
+    private static final LatencyStats[] LATENCY_STATS = new LatencyStats[Priority.values().length];
+    /**
+     * 是否暂停提交任务, 数据库在后台打开期间为 true
+     */
+    private static volatile boolean sDispatchPaused;
+    /**
+     * 暂停期间提交的任务, 按照提交顺序保存, 由 DbTask.class 保护
+     */
+    private static List<DbTask<?>> sHeldTasks;
+    /**
+     * 保证同一时刻只有一个线程在恢复提交, 避免多个线程同时提交保存的任务打乱顺序
+     */
+    private static final Object RESUME_LOCK = new Object();
+
+    static {
+        for (int i = 0; i < LATENCY_STATS.length; i++) {
+            LATENCY_STATS[i] = new LatencyStats();
+        }
+    }
     /**
      * 数据回调
      */
     public DbListener<T> dbListener;
+    /**
+     * 任务状态
+     */
+    private final AtomicInteger mState = new AtomicInteger(STATE_PENDING);
+    /**
+     * 用于中断正在执行的查询, api 16 及以上才有
+     */
+    private volatile CancellationSignal mCancellationSignal;
+    /**
+     * 超时时间, 单位为毫秒, 为0时不超时
+     */
+    private long mTimeoutMillis;
+    /**
+     * 任务的优先级
+     */
+    private Priority mPriority = Priority.USER_VISIBLE;
+    /**
+     * 提交任务的时间, 用于统计排队时间
+     */
+    private long mSubmitTime;
+    /**
+     * 排队等待的时间, 单位为纳秒
+     */
+    private long mWaitNanos;
+    /**
+     * 任务中第一个DAO操作的统计数据, 用于记录排队时间和回调延迟, 参考 {@link #attachMetrics(OperationMetrics)}
+     */
+    private volatile OperationMetrics mMetrics;
+    /**
+     * 任务执行时抛出的异常
+     */
+    private volatile Throwable mError;
+    /**
+     * 任务的结果
+     */
+    private final DbFuture<T> mFuture = new DbFuture<>(this);
+    /**
+     * 是否通过 {@link #executeConcurrent()} 提交
+     */
+    private boolean mConcurrent;
 
     public DbTask() {
     }
@@ -70,66 +149,474 @@ public abstract class DbTask<T> {
         dbListener = listener;
     }
 
+    /**
+     * 设置任务调度器, 一般通过 {@link com.simple.database.Builder} 配置
+     *
+     * @param scheduler 任务调度器
+     */
+    public static void setScheduler(DbScheduler scheduler) {
+        sScheduler = scheduler;
+    }
+
+    /**
+     * 获取任务调度器, 可以通过它获取串行通道、并发通道的排队数量以及活跃线程数
+     *
+     * @return 任务调度器
+     */
+    public static DbScheduler getScheduler() {
+        if (sScheduler == null) {
+            synchronized (DbTask.class) {
+                if (sScheduler == null) {
+                    sScheduler = new DefaultDbScheduler();
+                }
+            }
+        }
+        return sScheduler;
+    }
+
+    /**
+     * 设置回调线程的调度器, 一般通过 {@link com.simple.database.Builder} 配置
+     *
+     * @param dispatcher 回调线程的调度器
+     */
+    public static void setCallbackDispatcher(CallbackDispatcher dispatcher) {
+        sCallbackDispatcher = dispatcher;
+    }
+
+    /**
+     * 获取回调线程的调度器, 没有设置时存在主线程 Looper 则在UI线程中回调, 否则在单独的回调线程中回调
+     *
+     * @return 回调线程的调度器
+     */
+    public static CallbackDispatcher getCallbackDispatcher() {
+        if (sCallbackDispatcher == null) {
+            synchronized (DbTask.class) {
+                if (sCallbackDispatcher == null) {
+                    sCallbackDispatcher = Looper.getMainLooper() != null
+                            ? new MainThreadCallbackDispatcher() : new ExecutorCallbackDispatcher();
+                }
+            }
+        }
+        return sCallbackDispatcher;
+    }
+
+    /**
+     * 设置串行通道的组提交, 一般通过 {@link com.simple.database.Builder#setGroupCommit(int, long)} 配置
+     *
+     * @param maxBatchSize 每个事务最多合并的任务数量, 小于等于1时不合并
+     * @param windowMillis 等待后续任务的最长时间, 单位为毫秒
+     */
+    public static void setGroupCommit(int maxBatchSize, long windowMillis) {
+        GROUP_COMMITTER.configure(maxBatchSize, windowMillis);
+    }
+
+    /**
+     * 暂停提交任务, 之后提交的任务会先保存起来, 调用 {@link #resumeDispatch()} 之后再按提交顺序交给调度器.
+     * DatabaseHelper 在后台打开数据库时调用, 这样在数据库打开之前提交的任务不会阻塞工作线程.
+     */
+    public static void pauseDispatch() {
+        synchronized (DbTask.class) {
+            if (sHeldTasks == null) {
+                sHeldTasks = new ArrayList<>();
+            }
+            sDispatchPaused = true;
+        }
+    }
+
+    /**
+     * 恢复提交任务, 暂停期间提交的任务按照提交顺序交给调度器. 恢复过程中新提交的任务同样先保存起来,
+     * 直到保存的任务全部交给调度器之后才取消暂停, 因此新提交的任务不会排在暂停期间提交的任务之前.
+     */
+    public static void resumeDispatch() {
+        synchronized (RESUME_LOCK) {
+            while (true) {
+                final List<DbTask<?>> tasks;
+                synchronized (DbTask.class) {
+                    tasks = sHeldTasks;
+                    if (tasks == null || tasks.isEmpty()) {
+                        sHeldTasks = null;
+                        sDispatchPaused = false;
+                        return;
+                    }
+                    sHeldTasks = new ArrayList<>();
+                }
+                for (DbTask<?> task : tasks) {
+                    task.dispatch();
+                }
+            }
+        }
+    }
+
+    /**
+     * 暂停提交时保存任务
+     *
+     * @return 任务被保存时返回 true
+     */
+    private static boolean holdIfPaused(DbTask<?> task) {
+        if (!sDispatchPaused) {
+            return false;
+        }
+        synchronized (DbTask.class) {
+            if (sHeldTasks == null) {
+                return false;
+            }
+            sHeldTasks.add(task);
+            return true;
+        }
+    }
+
+    /**
+     * 获取当前线程正在执行的任务的 CancellationSignal, DAO 在执行查询时传给 {@link SqlConnection} 以支持中断查询
+     *
+     * @return CancellationSignal, 不在任务中执行或者 api 16 以下时返回null
+     */
+    public static CancellationSignal currentCancellationSignal() {
+        final DbTask<?> task = CURRENT_TASK.get();
+        return task != null ? task.mCancellationSignal : null;
+    }
+
+    /**
+     * DAO执行操作时将统计数据关联到当前线程正在执行的任务, 任务结束时记录排队时间和回调延迟.
+     * 一个任务中有多个DAO操作时, 只关联第一个操作.
+     *
+     * @param metrics 操作的统计数据
+     */
+    public static void attachMetrics(OperationMetrics metrics) {
+        final DbTask<?> task = CURRENT_TASK.get();
+        if (task != null && task.mMetrics == null) {
+            task.mMetrics = metrics;
+        }
+    }
+
+    /**
+     * 获取某个优先级的任务耗时统计, 包括排队等待时间和执行时间
+     *
+     * @param priority 优先级
+     * @return 耗时统计
+     */
+    public static LatencyStats getLatencyStats(Priority priority) {
+        return LATENCY_STATS[priority.ordinal()];
+    }
+
+    /**
+     * 设置任务的优先级, 需要在提交任务之前设置. 优先级只影响并发通道中的执行顺序, 串行通道中的任务始终按照提交顺序执行.
+     * <p>
+     * 注意 : 没有开启 WAL 时 {@link #executeConcurrent()} 提交的查询也在串行通道中执行, 此时优先级不生效,
+     * 高优先级的查询同样需要等待之前提交的写操作 ( 例如耗时较长的批量插入 ) 完成.
+     *
+     * @param priority 优先级, 默认为 {@link Priority#USER_VISIBLE}
+     * @return 当前任务
+     */
+    public DbTask<T> setPriority(Priority priority) {
+        this.mPriority = priority != null ? priority : Priority.USER_VISIBLE;
+        return this;
+    }
+
+    public Priority getPriority() {
+        return mPriority;
+    }
+
+    /**
+     * 设置超时时间, 从提交任务开始计时, 超时之后任务会被取消. 需要在提交任务之前设置.
+     *
+     * @param timeoutMillis 超时时间, 单位为毫秒, 为0时不超时
+     * @return 当前任务
+     */
+    public DbTask<T> setTimeout(long timeoutMillis) {
+        this.mTimeoutMillis = timeoutMillis;
+        return this;
+    }
+
     /**
      * 提交到单线程的线程池
+     *
+     * @return 任务的结果, 可用于取消任务或者等待结果
      */
-    public void execute() {
-        SERIAL_EXECUTOR.submit(mDbRunnable);
+    public DbFuture<T> execute() {
+        scheduleTimeout();
+        mConcurrent = false;
+        if (!holdIfPaused(this)) {
+            dispatch();
+        }
+        return mFuture;
     }
 
     /**
-     * 提交到指定的引擎中, 在WAL模式下并发执行
+     * 提交到指定的引擎中, 在WAL模式下并发执行并且按照优先级调度; 没有开启 WAL 时提交到串行通道, 按照提交顺序执行
+     *
+     * @return 任务的结果, 可用于取消任务或者等待结果
      */
-    public void executeConcurrent() {
-        // 判断WAL是否启动成功
-        if (DatabaseHelper.getInstance().isWALEnable()) {
-            // 提交到含有2个线程的线程池
-            CONCURRENT_EXECUTOR.submit(mDbRunnable);
-        } else {
-            // 提交请求到单线程池
-            SERIAL_EXECUTOR.submit(mDbRunnable);
+    public DbFuture<T> executeConcurrent() {
+        scheduleTimeout();
+        mConcurrent = true;
+        if (!holdIfPaused(this)) {
+            dispatch();
         }
+        return mFuture;
     }
 
     /**
-     * 数据库异步runnable
+     * 将任务交给调度器. 调度器的队列已满时任务以 {@link RejectedExecutionException} 失败
+     */
+    private void dispatch() {
+        try {
+            if (mConcurrent && DbStorage.get().isWriteAheadLoggingEnabled()) {
+                // WAL启动成功, 提交到并发线程池
+                getScheduler().executeConcurrent(mDbRunnable);
+            } else if (GROUP_COMMITTER.isEnabled()) {
+                // 开启组提交时串行通道的所有任务都经过同一个队列, 写任务与相邻的写任务合并到一个事务中提交
+                GROUP_COMMITTER.enqueue(this);
+            } else {
+                // 提交请求到单线程池
+                getScheduler().executeSerial(mDbRunnable);
+            }
+        } catch (RejectedExecutionException e) {
+            reject(e);
+        }
+    }
+
+    /**
+     * 任务没有被调度器接收时结束任务, 异常传递给 {@link DbFuture}, 为了兼容 listener 仍然会收到 null
+     *
+     * @param error 调度器抛出的异常
      */
-    private Runnable mDbRunnable = new Runnable() {
+    final void reject(Throwable error) {
+        if (mState.compareAndSet(STATE_PENDING, STATE_RUNNING)) {
+            recordError(error);
+            deliverResult(null);
+        }
+    }
+
+    private void scheduleTimeout() {
+        mSubmitTime = System.nanoTime();
+        if (mTimeoutMillis > 0) {
+            getCallbackDispatcher().postDelayed(mTimeoutRunnable, mTimeoutMillis);
+        }
+    }
+
+    /**
+     * 超时之后取消任务
+     */
+    private final Runnable mTimeoutRunnable = new Runnable() {
         @Override
         public void run() {
-            // 执行数据库操作
-            final T result = doSqlAction();
-            if (dbListener != null) {
-                // 执行数据库操作请求,将结果投递到UI线程
-                postResultToUiThread(result, dbListener);
+            if (cancel()) {
+                Platform.w(TAG, "### task timeout after " + mTimeoutMillis + " ms : " + DbTask.this, null);
+            }
+        }
+    };
+
+    @Override
+    public boolean cancel() {
+        while (true) {
+            final int state = mState.get();
+            if (state == STATE_DONE || state == STATE_CANCELLED) {
+                return false;
+            }
+            if (mState.compareAndSet(state, STATE_CANCELLED)) {
+                final CancellationSignal signal = mCancellationSignal;
+                if (signal != null) {
+                    signal.cancel();
+                }
+                getCallbackDispatcher().removeCallbacks(mTimeoutRunnable);
+                mFuture.markCancelled();
+                return true;
             }
         }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return mState.get() == STATE_CANCELLED;
+    }
+
+    @Override
+    public boolean isDone() {
+        final int state = mState.get();
+        return state == STATE_DONE || state == STATE_CANCELLED;
+    }
+
+    /**
+     * 数据库异步runnable
+     */
+    private Runnable mDbRunnable = new PrioritizedRunnable() {
+        @Override
+        public void run() {
+            runAndDeliver();
+        }
+
+        @Override
+        public Priority getPriority() {
+            return mPriority;
+        }
     };
 
+    /**
+     * 带有优先级的 Runnable
+     */
+    private abstract static class PrioritizedRunnable implements Runnable, Prioritized {
+    }
+
+    /**
+     * 在单独的事务中执行数据库操作, 并将结果投递到UI线程. 已经取消的任务直接丢弃.
+     */
+    final void runAndDeliver() {
+        if (!markRunning()) {
+            return;
+        }
+        T result = null;
+        try {
+            // 执行数据库操作
+            result = doSqlAction();
+        } catch (RuntimeException e) {
+            // 提交或者回滚事务时出错
+            recordError(e);
+        }
+        deliverResult(result);
+    }
+
+    /**
+     * 将任务标记为执行中
+     *
+     * @return 任务已经被取消时返回 false
+     */
+    final boolean markRunning() {
+        if (!mState.compareAndSet(STATE_PENDING, STATE_RUNNING)) {
+            return mState.get() == STATE_RUNNING;
+        }
+        if (Platform.isCancellationSupported()) {
+            mCancellationSignal = new CancellationSignal();
+        }
+        if (mSubmitTime > 0) {
+            mWaitNanos = System.nanoTime() - mSubmitTime;
+            LATENCY_STATS[mPriority.ordinal()].recordWait(mWaitNanos);
+        }
+        return true;
+    }
+
+    /**
+     * 执行 {@link #doInBackground()}, 执行期间可以通过 {@link #currentCancellationSignal()} 获取当前任务的 CancellationSignal
+     *
+     * @return 执行结果
+     */
+    final T runInBackground() {
+        final DbTask<?> previous = CURRENT_TASK.get();
+        CURRENT_TASK.set(this);
+        final long startTime = System.nanoTime();
+        try {
+            return doInBackground();
+        } finally {
+            LATENCY_STATS[mPriority.ordinal()].recordRun(System.nanoTime() - startTime);
+            CURRENT_TASK.set(previous);
+        }
+    }
+
+    /**
+     * 执行数据库操作请求,将结果投递到UI线程. 任务被取消之后不再投递.
+     *
+     * @param result 数据库返回的结果
+     */
+    final void deliverResult(final T result) {
+        final CallbackDispatcher dispatcher = getCallbackDispatcher();
+        dispatcher.removeCallbacks(mTimeoutRunnable);
+        if (!mState.compareAndSet(STATE_RUNNING, STATE_DONE)) {
+            return;
+        }
+        final Throwable error = mError;
+        if (error != null) {
+            mFuture.fail(error);
+        } else {
+            mFuture.complete(result);
+        }
+        final OperationMetrics metrics = mMetrics;
+        if (metrics != null) {
+            metrics.recordQueueWait(mWaitNanos);
+        }
+        if (dbListener == null) {
+            return;
+        }
+        if (metrics == null) {
+            postResultToUiThread(result, dbListener);
+            return;
+        }
+        final long postTime = System.nanoTime();
+        postResultToUiThread(result, new DbListener<T>() {
+            @Override
+            public void onComplete(T data) {
+                metrics.recordDelivery(System.nanoTime() - postTime);
+                dbListener.onComplete(data);
+            }
+        });
+    }
+
     /**
      * 执行数据库请求的模板方法,在该函数中开启事务
      *
      * @return
      */
     private final T doSqlAction() {
-        SQLiteDatabase database = DatabaseHelper.getInstance().getWritableDatabase();
+        if (isReadOnly()) {
+            return doReadAction();
+        }
+        final SqlConnection database = DbStorage.get().getWritableConnection();
         T result = null;
         try {
-            if (DatabaseHelper.getInstance().isWALEnable()) {
-                database.beginTransactionNonExclusive();
-            } else {
-                database.beginTransaction();
+            database.beginTransaction(null);
+            result = runInBackground();
+            // 执行期间被取消时回滚
+            if (!isCancelled()) {
+                database.setTransactionSuccessful();
             }
-            result = doInBackground();
-            database.setTransactionSuccessful();
         } catch (Exception e) {
-            e.printStackTrace();
+            recordError(e);
         } finally {
             database.endTransaction();
+            // 事务结束之后通知数据表的变化
+            InvalidationTracker.getInstance().flushPending(database);
         }
         return result;
     }
 
+    /**
+     * 执行只读的数据库请求, 不开启事务, 这样查询可以使用 WAL 模式下的读连接
+     *
+     * @return
+     */
+    private T doReadAction() {
+        try {
+            return runInBackground();
+        } catch (Exception e) {
+            if (!isCancelled()) {
+                recordError(e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 记录任务执行时抛出的异常, 结束时传递给 {@link DbFuture}
+     */
+    final void recordError(Throwable error) {
+        Platform.e(TAG, "### db task failed : " + this, error);
+        mError = error;
+    }
+
+    /**
+     * @return 任务的结果, 与 {@link #execute()} 的返回值相同
+     */
+    public DbFuture<T> getFuture() {
+        return mFuture;
+    }
+
+    /**
+     * 是否为只读任务, 只读任务不会开启写事务, 也不会参与组提交. 参考 {@link ReadTask}
+     *
+     * @return 默认返回 false
+     */
+    protected boolean isReadOnly() {
+        return false;
+    }
+
     /**
      * 在后台执行数据库操作,并且返回结果,如果dataListener不会空,则将返回的结果通过回调执行在UI线程
      *
@@ -138,16 +625,26 @@ public abstract class DbTask<T> {
     protected abstract T doInBackground();
 
     /**
-     * 将结果投递到UI线程
+     * 将结果投递到UI线程, 默认通过 {@link #getCallbackDispatcher()} 投递. 子类可以覆写该方法改变投递方式
      *
      * @param result   数据库返回的结果
      * @param listener 结果监听器
      */
     public <T> void postResultToUiThread(final T result, final DbListener<T> listener) {
+        postToCallbackThread(result, listener);
+    }
+
+    /**
+     * 将结果投递到回调线程, 参考 {@link #getCallbackDispatcher()}. 用于没有任务对象时直接返回结果, 例如缓存命中
+     *
+     * @param result   数据库返回的结果
+     * @param listener 结果监听器
+     */
+    public static <T> void postToCallbackThread(final T result, final DbListener<T> listener) {
         if (listener == null) {
             return;
         }
-        mUIHandler.post(new Runnable() {
+        getCallbackDispatcher().post(new Runnable() {
 
             @Override
             public void run() {
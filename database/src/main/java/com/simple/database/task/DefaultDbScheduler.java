@@ -0,0 +1,118 @@
+package com.simple.database.task;
+
+import android.os.Process;
+
+import com.simple.database.utils.Platform;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 默认的任务调度器, 串行通道为单线程的线程池, 并发通道为固定线程数的线程池.
+ * 串行通道的队列先进先出, 写操作严格按照提交顺序执行, 不受任务优先级影响; 并发通道 ( 只读任务 ) 的队列为
+ * {@link PriorityTaskQueue}, 按照任务的优先级执行.
+ * 队列设置了容量时, 队列满了之后提交任务会抛出 {@link java.util.concurrent.RejectedExecutionException},
+ * 通过 {@link DbTask} 提交的任务会以该异常失败.
+ */
+public class DefaultDbScheduler implements DbScheduler {
+    /**
+     * 默认的并发线程数
+     */
+    public static final int DEFAULT_READ_POOL_SIZE = 2;
+    /**
+     * 默认每等待 2 秒提升一级优先级
+     */
+    public static final long DEFAULT_AGING_MILLIS = 2000;
+
+    private final ThreadPoolExecutor mSerialExecutor;
+    private final ThreadPoolExecutor mConcurrentExecutor;
+
+    public DefaultDbScheduler() {
+        this(DEFAULT_READ_POOL_SIZE, Process.THREAD_PRIORITY_DEFAULT, "simpledb", 0, DEFAULT_AGING_MILLIS);
+    }
+
+    /**
+     * @param readPoolSize   并发通道的线程数
+     * @param threadPriority 线程优先级, 取值为 {@link Process#THREAD_PRIORITY_BACKGROUND} 等
+     * @param threadName     线程名前缀
+     * @param queueCapacity  每个通道的队列容量, 为0时不限制
+     * @param agingMillis    并发通道中低优先级任务每等待多长时间提升一级优先级, 为0时不提升
+     */
+    public DefaultDbScheduler(int readPoolSize, int threadPriority, String threadName, int queueCapacity,
+                              long agingMillis) {
+        if (readPoolSize <= 0) {
+            throw new IllegalArgumentException("readPoolSize must be greater than 0");
+        }
+        mSerialExecutor = createExecutor(1,
+                new LinkedBlockingQueue<Runnable>(queueCapacity > 0 ? queueCapacity : Integer.MAX_VALUE),
+                new DbThreadFactory(threadName + "-serial", threadPriority));
+        mConcurrentExecutor = createExecutor(readPoolSize, new PriorityTaskQueue(queueCapacity, agingMillis),
+                new DbThreadFactory(threadName + "-read", threadPriority));
+    }
+
+    /**
+     * 创建线程池, 子类可以覆写该函数以替换队列等实现
+     *
+     * @param poolSize      线程数
+     * @param queue         任务队列
+     * @param threadFactory 线程工厂
+     * @return 线程池
+     */
+    protected ThreadPoolExecutor createExecutor(int poolSize, BlockingQueue<Runnable> queue, ThreadFactory threadFactory) {
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, queue, threadFactory);
+    }
+
+    @Override
+    public void executeSerial(Runnable task) {
+        mSerialExecutor.execute(task);
+    }
+
+    @Override
+    public void executeConcurrent(Runnable task) {
+        mConcurrentExecutor.execute(task);
+    }
+
+    @Override
+    public LaneStats getSerialStats() {
+        return statsOf(mSerialExecutor);
+    }
+
+    @Override
+    public LaneStats getConcurrentStats() {
+        return statsOf(mConcurrentExecutor);
+    }
+
+    private static LaneStats statsOf(ThreadPoolExecutor executor) {
+        return new LaneStats(executor.getQueue().size(), executor.getActiveCount(),
+                executor.getPoolSize(), executor.getCompletedTaskCount());
+    }
+
+    /**
+     * 设置线程名和线程优先级的线程工厂
+     */
+    private static final class DbThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger(1);
+        private final String mName;
+        private final int mPriority;
+
+        DbThreadFactory(String name, int priority) {
+            mName = name;
+            mPriority = priority;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Platform.setThreadPriority(mPriority);
+                    runnable.run();
+                }
+            }, mName + "-" + mCount.getAndIncrement());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.simple.database.task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在单独的回调线程中按顺序执行回调的 {@link CallbackDispatcher}, 用于没有 UI 线程的桌面 JVM 等环境.
+ */
+public class ExecutorCallbackDispatcher implements CallbackDispatcher {
+    private final ScheduledExecutorService mExecutor;
+    private volatile Thread mThread;
+    /**
+     * 还没有执行的 runnable, 用于 {@link #removeCallbacks(Runnable)}
+     */
+    private final Map<Runnable, List<Future<?>>> mPending = new HashMap<>();
+
+    public ExecutorCallbackDispatcher() {
+        this("simpledb-callback");
+    }
+
+    /**
+     * @param threadName 回调线程的名字
+     */
+    public ExecutorCallbackDispatcher(final String threadName) {
+        mExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                mThread = thread;
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public void post(Runnable runnable) {
+        postDelayed(runnable, 0);
+    }
+
+    @Override
+    public void postDelayed(final Runnable runnable, long delayMillis) {
+        final Future<?>[] holder = new Future<?>[1];
+        synchronized (mPending) {
+            holder[0] = mExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (mPending) {
+                        final List<Future<?>> futures = mPending.get(runnable);
+                        if (futures == null || !futures.remove(holder[0])) {
+                            // 已经被移除
+                            return;
+                        }
+                        if (futures.isEmpty()) {
+                            mPending.remove(runnable);
+                        }
+                    }
+                    runnable.run();
+                }
+            }, Math.max(delayMillis, 0), TimeUnit.MILLISECONDS);
+            List<Future<?>> futures = mPending.get(runnable);
+            if (futures == null) {
+                futures = new ArrayList<>(1);
+                mPending.put(runnable, futures);
+            }
+            futures.add(holder[0]);
+        }
+    }
+
+    @Override
+    public void removeCallbacks(Runnable runnable) {
+        final List<Future<?>> futures;
+        synchronized (mPending) {
+            futures = mPending.remove(runnable);
+        }
+        if (futures != null) {
+            for (Future<?> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    @Override
+    public boolean isDispatchThread() {
+        return Thread.currentThread() == mThread;
+    }
+
+    /**
+     * 停止回调线程, 还没有执行的回调会被丢弃
+     */
+    public void shutdown() {
+        mExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,237 @@
+package com.simple.database.task;
+
+import com.simple.database.cache.InvalidationTracker;
+import com.simple.database.storage.DbStorage;
+import com.simple.database.storage.SqlConnection;
+import com.simple.database.utils.Platform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 串行线程池的组提交 ( group commit ). 将排队中的多个任务合并到一个事务中执行, 每个任务使用单独的 SAVEPOINT,
+ * 某个任务失败时只回滚该任务的修改, 其他任务照常提交. 这样多次写操作只需要一次事务提交 ( fsync ).
+ * <p>
+ * 任务内部自行开启的嵌套事务失败时, 整个外层事务会被标记为回滚 ( 参考 {@link SqlConnection} ), 此时会退化为每个任务单独执行一次.
+ * <p>
+ * 开启组提交之后, 所有提交到串行通道的 {@link DbTask} ( 包括只读任务以及未开启 WAL 时的并发任务 ) 都进入同一个队列,
+ * 只有相邻的写任务会被合并, 只读任务单独执行. 一次调度会执行完队列中的所有任务, 因此任务严格按照提交顺序执行,
+ * 写操作之后提交的查询一定能读到写入的数据.
+ */
+final class GroupCommitter {
+    private static final String TAG = GroupCommitter.class.getSimpleName();
+    private static final String SAVEPOINT = "group_commit_task";
+    /**
+     * 回滚到 SAVEPOINT 的语句以注释开头 : Android 4.1 ~ 8.1 ( api 16 ~ 27 ) 的 DatabaseUtils.getSqlStatementType 会把以 "ROL"
+     * 开头的语句识别为 ABORT, SQLiteSession 会直接结束整个外层事务, 而不是回滚到 SAVEPOINT. SQLite 编译时会忽略注释.
+     */
+    private static final String ROLLBACK_TO_SAVEPOINT = "/* savepoint */ ROLLBACK TO " + SAVEPOINT;
+
+    private final LinkedBlockingQueue<DbTask<?>> mPendingTasks = new LinkedBlockingQueue<>();
+    private final AtomicBoolean mDrainScheduled = new AtomicBoolean(false);
+    /**
+     * 取一批写任务时取到的只读任务, 在这一批提交之后执行. 只在串行线程中修改
+     */
+    private volatile DbTask<?> mNextTask;
+    private volatile int mBatchSize;
+    private volatile long mWindowMillis;
+
+    private final Runnable mDrainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                drain();
+            } finally {
+                mDrainScheduled.set(false);
+                scheduleDrainIfNeeded();
+            }
+        }
+    };
+
+    /**
+     * 设置组提交的参数
+     *
+     * @param batchSize    每个事务最多合并的任务数量, 小于等于1时不合并
+     * @param windowMillis 第一个任务之后等待后续任务的最长时间, 单位为毫秒
+     */
+    void configure(int batchSize, long windowMillis) {
+        mBatchSize = batchSize;
+        mWindowMillis = Math.max(windowMillis, 0);
+    }
+
+    /**
+     * @return 是否开启了组提交
+     */
+    boolean isEnabled() {
+        return mBatchSize > 1;
+    }
+
+    /**
+     * 提交任务, 任务会在下一次组提交时按照提交顺序执行, 写任务与相邻的写任务合并到一个事务中
+     *
+     * @param task 数据库任务
+     */
+    void enqueue(DbTask<?> task) {
+        mPendingTasks.offer(task);
+        scheduleDrainIfNeeded();
+    }
+
+    private void scheduleDrainIfNeeded() {
+        if ((mNextTask != null || !mPendingTasks.isEmpty()) && mDrainScheduled.compareAndSet(false, true)) {
+            try {
+                DbTask.getScheduler().executeSerial(mDrainRunnable);
+            } catch (RejectedExecutionException e) {
+                // 串行通道的队列已满, 排队中的任务不会再被执行, 直接失败; 之后提交的任务会重新调度
+                mDrainScheduled.set(false);
+                rejectPending(e);
+            }
+        }
+    }
+
+    private void rejectPending(RejectedExecutionException error) {
+        DbTask<?> task = mNextTask;
+        mNextTask = null;
+        if (task != null) {
+            task.reject(error);
+        }
+        while ((task = mPendingTasks.poll()) != null) {
+            task.reject(error);
+        }
+    }
+
+    /**
+     * 只有写任务可以合并到同一个事务中
+     */
+    private static boolean canGroup(DbTask<?> task) {
+        return !task.isReadOnly();
+    }
+
+    /**
+     * 从写任务 first 开始取出一批相邻的写任务, 最多 batchSize 个, 第一个任务之后最多等待 windowMillis 毫秒.
+     * 取到只读任务时结束这一批, 该任务保存在 mNextTask 中
+     */
+    private List<DbTask<?>> takeBatch(DbTask<?> first, int batchSize, long windowMillis) {
+        final List<DbTask<?>> batch = new ArrayList<>(batchSize);
+        batch.add(first);
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        try {
+            while (batch.size() < batchSize) {
+                final long remaining = deadline - System.nanoTime();
+                final DbTask<?> task = remaining > 0
+                        ? mPendingTasks.poll(remaining, TimeUnit.NANOSECONDS) : mPendingTasks.poll();
+                if (task == null) {
+                    break;
+                }
+                if (!canGroup(task)) {
+                    mNextTask = task;
+                    break;
+                }
+                batch.add(task);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return batch;
+    }
+
+    /**
+     * 按照提交顺序执行队列中的所有任务, 直到队列为空
+     */
+    private void drain() {
+        while (true) {
+            DbTask<?> task = mNextTask;
+            mNextTask = null;
+            if (task == null) {
+                task = mPendingTasks.poll();
+            }
+            if (task == null) {
+                return;
+            }
+            if (canGroup(task)) {
+                commit(takeBatch(task, Math.max(mBatchSize, 1), mWindowMillis));
+            } else {
+                task.runAndDeliver();
+            }
+        }
+    }
+
+    /**
+     * 在一个事务中执行一批写任务
+     */
+    private void commit(List<DbTask<?>> batch) {
+        final SqlConnection database = DbStorage.get().getWritableConnection();
+        // 丢弃已经取消的任务
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            if (!batch.get(i).markRunning()) {
+                batch.remove(i);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        final Object[] results = new Object[batch.size()];
+        final boolean[] failed = new boolean[batch.size()];
+        final boolean[] rolledBack = new boolean[1];
+        final SqlConnection.TransactionListener listener = new SqlConnection.TransactionListener() {
+            @Override
+            public void onCommit() {
+            }
+
+            @Override
+            public void onRollback() {
+                rolledBack[0] = true;
+            }
+        };
+        try {
+            database.beginTransaction(listener);
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    database.execSQL("SAVEPOINT " + SAVEPOINT, null);
+                    try {
+                        results[i] = batch.get(i).runInBackground();
+                        if (batch.get(i).isCancelled()) {
+                            throw new IllegalStateException("task cancelled");
+                        }
+                        database.execSQL("RELEASE " + SAVEPOINT, null);
+                    } catch (Exception e) {
+                        if (!batch.get(i).isCancelled()) {
+                            batch.get(i).recordError(e);
+                        }
+                        failed[i] = true;
+                        database.execSQL(ROLLBACK_TO_SAVEPOINT, null);
+                        database.execSQL("RELEASE " + SAVEPOINT, null);
+                    }
+                }
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+                InvalidationTracker.getInstance().flushPending(database);
+            }
+        } catch (Exception e) {
+            Platform.e(TAG, "### group commit failed, retry tasks one by one", e);
+            rolledBack[0] = true;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            final DbTask<?> task = batch.get(i);
+            if (rolledBack[0] && !failed[i]) {
+                // 整个事务被回滚了, 单独执行成功过的任务
+                task.runAndDeliver();
+            } else {
+                deliver(task, failed[i] ? null : results[i]);
+            }
+        }
+    }
+
+    /**
+     * result 为该任务 {@link DbTask#runInBackground()} 的返回值, 类型一致
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> void deliver(DbTask<T> task, Object result) {
+        task.deliverResult((T) result);
+    }
+}
@@ -0,0 +1,36 @@
+package com.simple.database.task;
+
+/**
+ * 任务通道在某一时刻的运行状态
+ */
+public final class LaneStats {
+    /**
+     * 排队等待执行的任务数量
+     */
+    public final int queueDepth;
+    /**
+     * 正在执行任务的线程数量
+     */
+    public final int activeThreads;
+    /**
+     * 通道中的线程数量
+     */
+    public final int poolSize;
+    /**
+     * 已经执行完成的任务数量
+     */
+    public final long completedTasks;
+
+    public LaneStats(int queueDepth, int activeThreads, int poolSize, long completedTasks) {
+        this.queueDepth = queueDepth;
+        this.activeThreads = activeThreads;
+        this.poolSize = poolSize;
+        this.completedTasks = completedTasks;
+    }
+
+    @Override
+    public String toString() {
+        return "LaneStats[queueDepth=" + queueDepth + ",activeThreads=" + activeThreads
+                + ",poolSize=" + poolSize + ",completedTasks=" + completedTasks + "]";
+    }
+}
@@ -0,0 +1,83 @@
+package com.simple.database.task;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 某个优先级的任务耗时统计, 包括排队等待时间与执行时间
+ */
+public final class LatencyStats {
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotalWaitNanos = new AtomicLong();
+    private final AtomicLong mMaxWaitNanos = new AtomicLong();
+    private final AtomicLong mTotalRunNanos = new AtomicLong();
+    private final AtomicLong mMaxRunNanos = new AtomicLong();
+
+    void recordWait(long nanos) {
+        mCount.incrementAndGet();
+        mTotalWaitNanos.addAndGet(nanos);
+        updateMax(mMaxWaitNanos, nanos);
+    }
+
+    void recordRun(long nanos) {
+        mTotalRunNanos.addAndGet(nanos);
+        updateMax(mMaxRunNanos, nanos);
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * @return 已经开始执行的任务数量
+     */
+    public long count() {
+        return mCount.get();
+    }
+
+    /**
+     * @return 平均排队等待时间, 单位为毫秒
+     */
+    public double averageWaitMillis() {
+        final long count = mCount.get();
+        return count > 0 ? mTotalWaitNanos.get() / 1e6 / count : 0;
+    }
+
+    /**
+     * @return 最长排队等待时间, 单位为毫秒
+     */
+    public double maxWaitMillis() {
+        return mMaxWaitNanos.get() / 1e6;
+    }
+
+    /**
+     * @return 平均执行时间, 单位为毫秒
+     */
+    public double averageRunMillis() {
+        final long count = mCount.get();
+        return count > 0 ? mTotalRunNanos.get() / 1e6 / count : 0;
+    }
+
+    /**
+     * @return 最长执行时间, 单位为毫秒
+     */
+    public double maxRunMillis() {
+        return mMaxRunNanos.get() / 1e6;
+    }
+
+    public void reset() {
+        mCount.set(0);
+        mTotalWaitNanos.set(0);
+        mMaxWaitNanos.set(0);
+        mTotalRunNanos.set(0);
+        mMaxRunNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LatencyStats[count=%d,avgWait=%.2fms,maxWait=%.2fms,avgRun=%.2fms,maxRun=%.2fms]",
+                count(), averageWaitMillis(), maxWaitMillis(), averageRunMillis(), maxRunMillis());
+    }
+}
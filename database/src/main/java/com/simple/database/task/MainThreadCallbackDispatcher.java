@@ -0,0 +1,31 @@
+package com.simple.database.task;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * 在 UI 线程中执行回调的 {@link CallbackDispatcher}
+ */
+public class MainThreadCallbackDispatcher implements CallbackDispatcher {
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    @Override
+    public void post(Runnable runnable) {
+        mHandler.post(runnable);
+    }
+
+    @Override
+    public void postDelayed(Runnable runnable, long delayMillis) {
+        mHandler.postDelayed(runnable, delayMillis);
+    }
+
+    @Override
+    public void removeCallbacks(Runnable runnable) {
+        mHandler.removeCallbacks(runnable);
+    }
+
+    @Override
+    public boolean isDispatchThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+}
@@ -0,0 +1,11 @@
+package com.simple.database.task;
+
+/**
+ * 带有优先级的任务, {@link PriorityTaskQueue} 根据优先级决定执行顺序
+ */
+public interface Prioritized {
+    /**
+     * @return 任务的优先级
+     */
+    Priority getPriority();
+}
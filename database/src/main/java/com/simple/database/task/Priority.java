@@ -0,0 +1,21 @@
+package com.simple.database.task;
+
+/**
+ * 数据库任务的优先级. 并发通道 ( 只读任务 ) 中优先执行优先级高的任务, 等待时间过长的低优先级任务会逐步提升优先级, 避免饿死.
+ * 串行通道中的任务始终按照提交顺序执行, 优先级只用于统计排队延迟. 没有开启 WAL 时查询也在串行通道中执行, 因此优先级只在 WAL 模式下生效,
+ * 此时高优先级的查询仍然需要等待之前提交的写操作完成.
+ */
+public enum Priority {
+    /**
+     * 最高优先级, 用于阻塞当前界面展示的查询
+     */
+    IMMEDIATE,
+    /**
+     * 默认优先级, 用户可见的操作
+     */
+    USER_VISIBLE,
+    /**
+     * 后台任务, 例如同步、批量导入
+     */
+    BACKGROUND
+}
@@ -0,0 +1,315 @@
+package com.simple.database.task;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按照 {@link Priority} 排序的任务队列, 同一优先级内先进先出. 队列会改变任务的执行顺序, 因此只用于只读任务的并发通道. 没有实现 {@link Prioritized} 的任务按照
+ * {@link Priority#USER_VISIBLE} 处理.
+ * <p>
+ * 防止饿死 : 任务每等待 agingMillis 毫秒, 其优先级提升一级, 因此后台任务最终也会被执行.
+ */
+public class PriorityTaskQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private final ReentrantLock mLock = new ReentrantLock();
+    private final Condition mNotEmpty = mLock.newCondition();
+    private final Condition mNotFull = mLock.newCondition();
+    private final ArrayDeque<Entry>[] mQueues;
+    private final int mCapacity;
+    private final long mAgingNanos;
+    private int mCount;
+
+    /**
+     * @param capacity    队列容量, 为0时不限制
+     * @param agingMillis 每等待多长时间提升一级优先级, 为0时不提升
+     */
+    @SuppressWarnings("unchecked")
+    public PriorityTaskQueue(int capacity, long agingMillis) {
+        mCapacity = capacity > 0 ? capacity : Integer.MAX_VALUE;
+        mAgingNanos = TimeUnit.MILLISECONDS.toNanos(agingMillis);
+        mQueues = new ArrayDeque[PRIORITIES.length];
+        for (int i = 0; i < mQueues.length; i++) {
+            mQueues[i] = new ArrayDeque<>();
+        }
+    }
+
+    private static Priority priorityOf(Runnable runnable) {
+        if (runnable instanceof Prioritized) {
+            final Priority priority = ((Prioritized) runnable).getPriority();
+            if (priority != null) {
+                return priority;
+            }
+        }
+        return Priority.USER_VISIBLE;
+    }
+
+    /**
+     * 选出下一个要执行的任务所在的队列, 比较每个队列的队首任务在提升之后的优先级, 相同时取原始优先级高的
+     */
+    private ArrayDeque<Entry> nextQueue() {
+        final long now = System.nanoTime();
+        ArrayDeque<Entry> best = null;
+        long bestRank = Long.MAX_VALUE;
+        for (int i = 0; i < mQueues.length; i++) {
+            final Entry head = mQueues[i].peekFirst();
+            if (head == null) {
+                continue;
+            }
+            final long boost = mAgingNanos > 0 ? (now - head.enqueueTime) / mAgingNanos : 0;
+            final long rank = i - boost;
+            if (rank < bestRank) {
+                bestRank = rank;
+                best = mQueues[i];
+            }
+        }
+        return best;
+    }
+
+    private void enqueue(Runnable runnable) {
+        mQueues[priorityOf(runnable).ordinal()].addLast(new Entry(runnable, System.nanoTime()));
+        mCount++;
+        mNotEmpty.signal();
+    }
+
+    private Runnable dequeue() {
+        final Runnable runnable = nextQueue().pollFirst().runnable;
+        mCount--;
+        mNotFull.signal();
+        return runnable;
+    }
+
+    @Override
+    public boolean offer(Runnable runnable) {
+        if (runnable == null) {
+            throw new NullPointerException();
+        }
+        mLock.lock();
+        try {
+            if (mCount >= mCapacity) {
+                return false;
+            }
+            enqueue(runnable);
+            return true;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable runnable) throws InterruptedException {
+        if (runnable == null) {
+            throw new NullPointerException();
+        }
+        mLock.lockInterruptibly();
+        try {
+            while (mCount >= mCapacity) {
+                mNotFull.await();
+            }
+            enqueue(runnable);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable runnable, long timeout, TimeUnit unit) throws InterruptedException {
+        if (runnable == null) {
+            throw new NullPointerException();
+        }
+        long nanos = unit.toNanos(timeout);
+        mLock.lockInterruptibly();
+        try {
+            while (mCount >= mCapacity) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = mNotFull.awaitNanos(nanos);
+            }
+            enqueue(runnable);
+            return true;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        mLock.lock();
+        try {
+            return mCount > 0 ? dequeue() : null;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        mLock.lockInterruptibly();
+        try {
+            while (mCount == 0) {
+                mNotEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        mLock.lockInterruptibly();
+        try {
+            while (mCount == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = mNotEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        mLock.lock();
+        try {
+            return mCount > 0 ? nextQueue().peekFirst().runnable : null;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        mLock.lock();
+        try {
+            for (ArrayDeque<Entry> queue : mQueues) {
+                final Iterator<Entry> iterator = queue.iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next().runnable.equals(o)) {
+                        iterator.remove();
+                        mCount--;
+                        mNotFull.signal();
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        mLock.lock();
+        try {
+            return mCount;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * @param priority 优先级
+     * @return 某个优先级排队中的任务数量
+     */
+    public int size(Priority priority) {
+        mLock.lock();
+        try {
+            return mQueues[priority.ordinal()].size();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        mLock.lock();
+        try {
+            return mCapacity == Integer.MAX_VALUE ? Integer.MAX_VALUE : mCapacity - mCount;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        mLock.lock();
+        try {
+            int n = 0;
+            while (n < maxElements && mCount > 0) {
+                c.add(dequeue());
+                n++;
+            }
+            return n;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * 返回当前队列的快照, 不支持通过迭代器删除元素
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        mLock.lock();
+        try {
+            final List<Runnable> snapshot = new ArrayList<>(mCount);
+            for (ArrayDeque<Entry> queue : mQueues) {
+                for (Entry entry : queue) {
+                    snapshot.add(entry.runnable);
+                }
+            }
+            final Iterator<Runnable> iterator = snapshot.iterator();
+            return new Iterator<Runnable>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Runnable next() {
+                    return iterator.next();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("remove");
+                }
+            };
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    private static final class Entry {
+        final Runnable runnable;
+        final long enqueueTime;
+
+        Entry(Runnable runnable, long enqueueTime) {
+            this.runnable = runnable;
+            this.enqueueTime = enqueueTime;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.simple.database.task;
+
+import com.simple.database.listeners.DbListener;
+
+/**
+ * 只读的数据库任务. 不会开启写事务, 开启了WAL之后查询在 SQLite 的读连接上执行, 不会与写操作竞争写连接.
+ * <p>
+ * 注意 : {@link #doInBackground()} 中不能修改数据.
+ *
+ * @param <T> 返回的数据类型
+ */
+public abstract class ReadTask<T> extends DbTask<T> {
+
+    public ReadTask() {
+    }
+
+    public ReadTask(DbListener<T> listener) {
+        super(listener);
+    }
+
+    @Override
+    protected final boolean isReadOnly() {
+        return true;
+    }
+}
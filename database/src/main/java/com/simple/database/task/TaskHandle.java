@@ -0,0 +1,24 @@
+package com.simple.database.task;
+
+/**
+ * 已提交的数据库任务的句柄, 用于取消任务
+ */
+public interface TaskHandle {
+    /**
+     * 取消任务. 还在排队的任务不会再执行; 正在执行的查询会通过 {@link android.os.CancellationSignal} 中断 ( api 16 及以上 ),
+     * 正在执行的写操作如果还没有提交则会回滚. 取消之后不会再回调 listener.
+     *
+     * @return 任务还没有结束并且成功取消时返回 true
+     */
+    boolean cancel();
+
+    /**
+     * @return 任务是否被取消
+     */
+    boolean isCancelled();
+
+    /**
+     * @return 任务是否已经结束 ( 执行完成或者被取消 )
+     */
+    boolean isDone();
+}
@@ -2,13 +2,21 @@ package com.simple.database.upgrade;
 
 import com.simple.database.utils.IOUtils;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
+ * 将 sql 脚本解析为一条条的 sql 语句. 脚本按照 UTF-8 解码后以字符块为单位解析, 每解析出一条完整的语句就交给
+ * {@link StatementHandler} 执行, 不需要先把整个脚本的语句收集到列表中.
+ * <p>
+ * 注释会被去掉, 引号之外连续的空白字符合并为一个空格. 单引号字符串、双引号 / 反引号 / 方括号标识符中的内容保持不变,
+ * CREATE TRIGGER 中 BEGIN...END 之间的分号不会结束语句. 空语句会被忽略.
+ *
  * Created by mrsimple on 26/10/15.
  */
 public class SqlParser {
@@ -17,81 +25,355 @@ public class SqlParser {
     public final static int STATE_STRING        = 1;
     public final static int STATE_COMMENT       = 2;
     public final static int STATE_COMMENT_BLOCK = 3;
+    /**
+     * 双引号、反引号或者方括号中的标识符
+     */
+    private final static int STATE_IDENTIFIER   = 4;
 
-    public static List<String> parse(final InputStream stream) throws IOException {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * 接收解析出的 sql 语句
+     */
+    public interface StatementHandler {
+        /**
+         * 解析出了一条完整的语句, 在解析的线程中调用
+         *
+         * @param statement sql 语句, 不包含结尾的分号
+         */
+        void onStatement(String statement);
+    }
+
+    private final StatementHandler mHandler;
+    /**
+     * 当前语句, 所有语句复用同一个 StringBuilder
+     */
+    private final StringBuilder mStatement = new StringBuilder(256);
+    private int mState = STATE_NONE;
+    /**
+     * 引号中的结束字符
+     */
+    private char mQuoteEnd;
+    /**
+     * 上一个字符为 '-' 或者 '/' 时暂存该字符, 用于识别注释的开始; 块注释中上一个字符为 '*' 时为 '*'
+     */
+    private char mPending;
+    /**
+     * 当前单词在 mStatement 中的起始位置, 不在单词中时为 -1
+     */
+    private int mWordStart = -1;
+    /**
+     * 当前语句中已经结束的单词数量
+     */
+    private int mWordCount;
+    /**
+     * 当前语句的第一个单词为 CREATE
+     */
+    private boolean mCreate;
+    /**
+     * 上一个单词为 CREATE 之后的 TEMP 或者 TEMPORARY
+     */
+    private boolean mTemp;
+    /**
+     * 当前语句为 CREATE TRIGGER
+     */
+    private boolean mTrigger;
+    /**
+     * 触发器中 BEGIN...END 的嵌套层数, 大于0时分号不结束语句
+     */
+    private int mBlockDepth;
+    /**
+     * 触发器中 CASE...END 的嵌套层数, 避免把 CASE 表达式的 END 当作触发器的结束
+     */
+    private int mCaseDepth;
+    private int mCount;
 
-        final BufferedInputStream buffer = new BufferedInputStream(stream);
+    private SqlParser(StatementHandler handler) {
+        mHandler = handler;
+    }
+
+    /**
+     * 解析 UTF-8 编码的 sql 脚本, 解析完成之后关闭 stream
+     *
+     * @param stream sql 脚本
+     * @return 所有的 sql 语句
+     * @throws IOException 读取失败
+     */
+    public static List<String> parse(final InputStream stream) throws IOException {
         final List<String> commands = new ArrayList<String>();
-        final StringBuffer sb = new StringBuffer();
+        parse(stream, new StatementHandler() {
+            @Override
+            public void onStatement(String statement) {
+                commands.add(statement);
+            }
+        });
+        return commands;
+    }
 
+    /**
+     * 解析 UTF-8 编码的 sql 脚本, 每解析出一条语句就交给 handler 处理, 解析完成之后关闭 stream
+     *
+     * @param stream  sql 脚本
+     * @param handler 接收 sql 语句
+     * @return 语句的数量
+     * @throws IOException 读取失败
+     */
+    public static int parse(final InputStream stream, final StatementHandler handler) throws IOException {
         try {
-            final Tokenizer tokenizer = new Tokenizer(buffer);
-            int state = STATE_NONE;
+            return parse(new InputStreamReader(stream, UTF_8), handler);
+        } finally {
+            IOUtils.closeSilently(stream);
+        }
+    }
 
-            while (tokenizer.hasNext()) {
-                final char c = (char) tokenizer.next();
+    /**
+     * 解析 sql 脚本, 每解析出一条语句就交给 handler 处理. 不会关闭 reader
+     *
+     * @param reader  sql 脚本
+     * @param handler 接收 sql 语句
+     * @return 语句的数量
+     * @throws IOException 读取失败
+     */
+    public static int parse(final Reader reader, final StatementHandler handler) throws IOException {
+        final SqlParser parser = new SqlParser(handler);
+        final char[] buffer = new char[BUFFER_SIZE];
+        boolean first = true;
+        int length;
+        while ((length = reader.read(buffer)) != -1) {
+            int offset = 0;
+            if (first && length > 0) {
+                first = false;
+                // 跳过 BOM
+                if (buffer[0] == '\uFEFF') {
+                    offset = 1;
+                }
+            }
+            parser.feed(buffer, offset, length);
+        }
+        parser.finish();
+        return parser.mCount;
+    }
 
-                if (state == STATE_COMMENT_BLOCK) {
-                    if (tokenizer.skip("*/")) {
-                        state = STATE_NONE;
+    private void feed(final char[] buffer, final int offset, final int end) {
+        int i = offset;
+        while (i < end) {
+            switch (mState) {
+                case STATE_STRING:
+                case STATE_IDENTIFIER: {
+                    // 一次复制到结束引号为止的内容
+                    int stop = i;
+                    while (stop < end && buffer[stop] != mQuoteEnd) {
+                        stop++;
                     }
-                    continue;
-
-                } else if (state == STATE_COMMENT) {
-                    if (isNewLine(c)) {
-                        state = STATE_NONE;
+                    if (stop < end) {
+                        stop++;
+                        mState = STATE_NONE;
                     }
-                    continue;
-
-                } else if (state == STATE_NONE && tokenizer.skip("/*")) {
-                    state = STATE_COMMENT_BLOCK;
-                    continue;
+                    mStatement.append(buffer, i, stop - i);
+                    i = stop;
+                    break;
+                }
+                case STATE_COMMENT:
+                    while (i < end && !isNewLine(buffer[i])) {
+                        i++;
+                    }
+                    if (i < end) {
+                        mState = STATE_NONE;
+                        i++;
+                    }
+                    break;
+                case STATE_COMMENT_BLOCK:
+                    while (i < end) {
+                        final char c = buffer[i++];
+                        if (c == '/' && mPending == '*') {
+                            mPending = 0;
+                            mState = STATE_NONE;
+                            break;
+                        }
+                        mPending = c == '*' ? '*' : 0;
+                    }
+                    break;
+                default:
+                    onChar(buffer[i++]);
+                    break;
+            }
+        }
+    }
 
-                } else if (state == STATE_NONE && tokenizer.skip("--")) {
-                    state = STATE_COMMENT;
-                    continue;
+    private void onChar(final char c) {
+        if (mPending != 0) {
+            final char pending = mPending;
+            mPending = 0;
+            if (pending == '-' && c == '-') {
+                startComment(STATE_COMMENT);
+                return;
+            }
+            if (pending == '/' && c == '*') {
+                startComment(STATE_COMMENT_BLOCK);
+                return;
+            }
+            mStatement.append(pending);
+        }
+        if (isWordChar(c)) {
+            if (mWordStart < 0) {
+                mWordStart = mStatement.length();
+            }
+            mStatement.append(c);
+            return;
+        }
+        endWord();
+        switch (c) {
+            case '-':
+            case '/':
+                mPending = c;
+                break;
+            case ';':
+                if (mBlockDepth > 0) {
+                    mStatement.append(c);
+                } else {
+                    emit();
+                }
+                break;
+            case '\'':
+                startQuote(c, '\'', STATE_STRING);
+                break;
+            case '"':
+                startQuote(c, '"', STATE_IDENTIFIER);
+                break;
+            case '`':
+                startQuote(c, '`', STATE_IDENTIFIER);
+                break;
+            case '[':
+                startQuote(c, ']', STATE_IDENTIFIER);
+                break;
+            case ' ':
+            case '\t':
+            case '\r':
+            case '\n':
+            case '\f':
+                appendSpace();
+                break;
+            default:
+                mStatement.append(c);
+                break;
+        }
+    }
 
-                } else if (state == STATE_NONE && c == ';') {
-                    final String command = sb.toString().trim();
-                    commands.add(command);
-                    sb.setLength(0);
-                    continue;
+    private void startComment(int state) {
+        // 注释相当于空白字符
+        appendSpace();
+        mState = state;
+    }
 
-                } else if (state == STATE_NONE && c == '\'') {
-                    state = STATE_STRING;
+    private void startQuote(char open, char close, int state) {
+        mStatement.append(open);
+        mQuoteEnd = close;
+        mState = state;
+    }
 
-                } else if (state == STATE_STRING && c == '\'') {
-                    state = STATE_NONE;
+    private void appendSpace() {
+        final int length = mStatement.length();
+        if (length > 0 && mStatement.charAt(length - 1) != ' ') {
+            mStatement.append(' ');
+        }
+    }
 
-                }
+    /**
+     * 单词结束, 识别 CREATE TRIGGER 以及触发器中的 BEGIN、CASE、END
+     */
+    private void endWord() {
+        final int start = mWordStart;
+        if (start < 0) {
+            return;
+        }
+        mWordStart = -1;
+        mWordCount++;
+        if (mWordCount == 1) {
+            mCreate = isKeyword(start, "CREATE");
+            return;
+        }
+        if (!mTrigger) {
+            if (mCreate && (mWordCount == 2 || (mWordCount == 3 && mTemp)) && isKeyword(start, "TRIGGER")) {
+                mTrigger = true;
+            } else {
+                mTemp = mCreate && mWordCount == 2 && (isKeyword(start, "TEMP") || isKeyword(start, "TEMPORARY"));
+            }
+            return;
+        }
+        if (isKeyword(start, "BEGIN")) {
+            mBlockDepth++;
+        } else if (isKeyword(start, "CASE")) {
+            mCaseDepth++;
+        } else if (isKeyword(start, "END")) {
+            if (mCaseDepth > 0) {
+                mCaseDepth--;
+            } else if (mBlockDepth > 0) {
+                mBlockDepth--;
+            }
+        }
+    }
 
-                if (state == STATE_NONE || state == STATE_STRING) {
-                    if (state == STATE_NONE && isWhitespace(c)) {
-                        if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') {
-                            sb.append(' ');
-                        }
-                    } else {
-                        sb.append(c);
-                    }
-                }
+    /**
+     * 从 start 开始到 mStatement 结尾的单词是否为 keyword, 不区分大小写
+     */
+    private boolean isKeyword(int start, String keyword) {
+        final int length = keyword.length();
+        if (mStatement.length() - start != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = mStatement.charAt(start + i);
+            if (c >= 'a' && c <= 'z') {
+                c -= 'a' - 'A';
+            }
+            if (c != keyword.charAt(i)) {
+                return false;
             }
-        } finally {
-            IOUtils.closeSilently(buffer);
         }
+        return true;
+    }
 
-        if (sb.length() > 0) {
-            commands.add(sb.toString().trim());
+    /**
+     * 一条语句结束, 去掉结尾的空格后交给 handler
+     */
+    private void emit() {
+        int length = mStatement.length();
+        while (length > 0 && mStatement.charAt(length - 1) == ' ') {
+            length--;
         }
+        if (length > 0) {
+            mStatement.setLength(length);
+            mCount++;
+            mHandler.onStatement(mStatement.toString());
+        }
+        mStatement.setLength(0);
+        mWordCount = 0;
+        mCreate = false;
+        mTemp = false;
+        mTrigger = false;
+        mBlockDepth = 0;
+        mCaseDepth = 0;
+    }
 
-        return commands;
+    /**
+     * 脚本结束, 最后一条语句可以没有分号
+     */
+    private void finish() {
+        if (mState == STATE_NONE && mPending != 0) {
+            mStatement.append(mPending);
+            mPending = 0;
+        }
+        endWord();
+        emit();
     }
 
+    private static boolean isWordChar(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '_' || c == '$' || c >= 0x80;
+    }
 
     private static boolean isNewLine(final char c) {
         return c == '\r' || c == '\n';
     }
-
-    private static boolean isWhitespace(final char c) {
-        return c == '\r' || c == '\n' || c == '\t' || c == ' ';
-    }
 }
@@ -1,6 +1,9 @@
 package com.simple.database.utils;
 
 import android.database.Cursor;
+import android.database.sqlite.SQLiteProgram;
+
+import com.simple.database.storage.SqlStatement;
 
 import java.io.Closeable;
 
@@ -36,4 +39,64 @@ public final class IOUtils {
             }
         }
     }
+
+    /**
+     * 关闭编译好的sql语句, 在api 16之前 SQLiteProgram 对象没有实现 Closeable 接口
+     * @param program 要关闭的sql语句
+     */
+    public static void closeProgram(SQLiteProgram program) {
+        if (program != null) {
+            try {
+                program.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 按照数据类型将参数绑定到 sql 语句中
+     *
+     * @param program 编译好的sql语句
+     * @param index   参数索引, 从1开始
+     * @param value   参数值
+     */
+    public static void bindValue(SQLiteProgram program, int index, Object value) {
+        if (value == null) {
+            program.bindNull(index);
+        } else if (value instanceof Double || value instanceof Float) {
+            program.bindDouble(index, ((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            program.bindLong(index, ((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            program.bindLong(index, (Boolean) value ? 1 : 0);
+        } else if (value instanceof byte[]) {
+            program.bindBlob(index, (byte[]) value);
+        } else {
+            program.bindString(index, value.toString());
+        }
+    }
+
+    /**
+     * 按照数据类型将参数绑定到 sql 语句中, 与 {@link #bindValue(SQLiteProgram, int, Object)} 一致
+     *
+     * @param statement 编译好的sql语句
+     * @param index     参数索引, 从1开始
+     * @param value     参数值
+     */
+    public static void bindValue(SqlStatement statement, int index, Object value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else if (value instanceof Double || value instanceof Float) {
+            statement.bindDouble(index, ((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            statement.bindLong(index, ((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            statement.bindLong(index, (Boolean) value ? 1 : 0);
+        } else if (value instanceof byte[]) {
+            statement.bindBlob(index, (byte[]) value);
+        } else {
+            statement.bindString(index, value.toString());
+        }
+    }
 }
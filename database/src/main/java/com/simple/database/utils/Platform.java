@@ -0,0 +1,77 @@
+package com.simple.database.utils;
+
+import android.os.Build;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 封装依赖 Android native 实现的函数. 在桌面 JVM 上使用 android.jar 的 java 实现运行时, Log、Build 等类的 native 函数不可用,
+ * 第一次调用失败之后改用 JVM 上的实现.
+ */
+public final class Platform {
+    private static volatile boolean sAndroidLog = true;
+    private static volatile boolean sAndroidProcess = true;
+    private static final boolean CANCELLATION_SUPPORTED = checkCancellationSupported();
+
+    private Platform() {
+    }
+
+    private static boolean checkCancellationSupported() {
+        try {
+            return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+        } catch (LinkageError e) {
+            // 不在 Android 上运行, CancellationSignal 是纯 java 实现
+            return true;
+        }
+    }
+
+    /**
+     * @return 是否支持 CancellationSignal, Android 上需要 api 16 及以上
+     */
+    public static boolean isCancellationSupported() {
+        return CANCELLATION_SUPPORTED;
+    }
+
+    /**
+     * 设置当前线程的优先级
+     *
+     * @param priority 线程优先级, 取值为 {@link Process#THREAD_PRIORITY_BACKGROUND} 等
+     */
+    public static void setThreadPriority(int priority) {
+        if (sAndroidProcess) {
+            try {
+                Process.setThreadPriority(priority);
+            } catch (LinkageError e) {
+                sAndroidProcess = false;
+            }
+        }
+    }
+
+    public static void d(String tag, String message) {
+        log(Log.DEBUG, tag, message, null);
+    }
+
+    public static void w(String tag, String message, Throwable error) {
+        log(Log.WARN, tag, message, error);
+    }
+
+    public static void e(String tag, String message, Throwable error) {
+        log(Log.ERROR, tag, message, error);
+    }
+
+    private static void log(int priority, String tag, String message, Throwable error) {
+        if (sAndroidLog) {
+            try {
+                Log.println(priority, tag, error != null ? message + '\n' + Log.getStackTraceString(error) : message);
+                return;
+            } catch (LinkageError e) {
+                sAndroidLog = false;
+            }
+        }
+        final Level level = priority >= Log.ERROR ? Level.SEVERE : priority >= Log.WARN ? Level.WARNING : Level.FINE;
+        Logger.getLogger(tag).log(level, message, error);
+    }
+}
@@ -0,0 +1,92 @@
+package com.simple.database.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 简单的基准测试工具 : 先预热, 再多次执行并统计每次的耗时. 结果输出到标准输出并追加到
+ * build/reports/benchmark/database.txt, 用于和提交的基线数据对比.
+ * <p>
+ * 在 Robolectric 中运行, 数据库由 Robolectric 的 SQLite 实现支持, 数值只能用于同一台机器上的前后对比.
+ */
+final class Benchmark {
+    private static final File REPORT_FILE = new File("build/reports/benchmark/database.txt");
+
+    private Benchmark() {
+    }
+
+    /**
+     * 被测试的操作
+     */
+    abstract static class Body {
+        /**
+         * 每次执行之前调用, 不计入耗时
+         */
+        void setUp() throws Exception {
+        }
+
+        abstract void run() throws Exception;
+    }
+
+    /**
+     * 执行基准测试并输出结果
+     *
+     * @param name           名称
+     * @param warmup         预热次数
+     * @param iterations     统计的执行次数
+     * @param opsPerRun      每次执行包含的操作数量, 用于计算吞吐量
+     * @param body           被测试的操作
+     * @return 每次执行耗时的中位数, 单位为毫秒
+     */
+    static double measure(String name, int warmup, int iterations, int opsPerRun, Body body) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            body.setUp();
+            body.run();
+        }
+        final long[] nanos = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            body.setUp();
+            final long start = System.nanoTime();
+            body.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        long total = 0;
+        for (long value : nanos) {
+            total += value;
+        }
+        final double median = nanos[iterations / 2] / 1e6;
+        final double mean = total / 1e6 / iterations;
+        final String line = String.format(Locale.US, "%-40s median=%10.3f ms  mean=%10.3f ms  min=%10.3f ms  %12.0f ops/s",
+                name, median, mean, nanos[0] / 1e6, opsPerRun * 1000 / median);
+        System.out.println(line);
+        write(line);
+        return median;
+    }
+
+    /**
+     * 追加到报告文件, 写入失败时基准测试失败, 避免结果丢失而不被察觉
+     */
+    private static void write(String line) throws IOException {
+        final File dir = REPORT_FILE.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("can not create " + dir.getAbsolutePath());
+        }
+        Writer writer = null;
+        try {
+            writer = new FileWriter(REPORT_FILE, true);
+            writer.write(line + "\n");
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
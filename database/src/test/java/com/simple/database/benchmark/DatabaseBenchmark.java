@@ -0,0 +1,244 @@
+package com.simple.database.benchmark;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import com.simple.database.Builder;
+import com.simple.database.DatabaseHelper;
+import com.simple.database.dao.AbsDAO;
+import com.simple.database.storage.SqlStatement;
+import com.simple.database.task.NoReturnTask;
+import com.simple.database.task.ReadTask;
+import com.simple.database.upgrade.SqlParser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * database 模块的基准测试, 只在指定了 -Pbenchmark 参数时运行 :
+ * <pre>
+ * ./gradlew :database:testDebugUnitTest -Pbenchmark
+ * </pre>
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class DatabaseBenchmark {
+    private static final int ROWS = 20000;
+
+    private DatabaseHelper mHelper;
+    private ItemDao mDao;
+
+    static class Item {
+        long id;
+        String name;
+        int score;
+    }
+
+    static class ItemDao extends AbsDAO<Item> {
+        private static final String[] COLUMNS = {"id", "name", "score"};
+
+        ItemDao() {
+            super("items");
+        }
+
+        @Override
+        protected String getPrimaryKeyColumn() {
+            return "id";
+        }
+
+        @Override
+        protected Object getPrimaryKey(Item item) {
+            return item.id;
+        }
+
+        @Override
+        protected ContentValues convert(Item item) {
+            ContentValues values = new ContentValues(3);
+            values.put("id", item.id);
+            values.put("name", item.name);
+            values.put("score", item.score);
+            return values;
+        }
+
+        @Override
+        protected String[] getInsertColumns() {
+            return COLUMNS;
+        }
+
+        @Override
+        protected void bindInsertValues(SqlStatement statement, Item item) {
+            statement.bindLong(1, item.id);
+            statement.bindString(2, item.name);
+            statement.bindLong(3, item.score);
+        }
+
+        @Override
+        protected Item parseOneItem(Cursor cursor) {
+            final int[] indexes = getColumnIndexes(cursor, COLUMNS);
+            Item item = new Item();
+            item.id = cursor.getLong(indexes[0]);
+            item.name = cursor.getString(indexes[1]);
+            item.score = cursor.getInt(indexes[2]);
+            return item;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mHelper = new Builder(RuntimeEnvironment.application).setDbName("benchmark.db").create();
+        mHelper.getWritableDatabase().execSQL("CREATE TABLE IF NOT EXISTS items "
+                + "(id INTEGER PRIMARY KEY, name TEXT NOT NULL, score INTEGER NOT NULL)");
+        mHelper.getWritableDatabase().execSQL("CREATE INDEX IF NOT EXISTS items_score ON items (score)");
+        mDao = new ItemDao();
+        mDao.deleteAll();
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.shutdown();
+        RuntimeEnvironment.application.deleteDatabase("benchmark.db");
+    }
+
+    private static List<Item> createItems(int count) {
+        final List<Item> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Item item = new Item();
+            item.id = i;
+            item.name = "item-" + i;
+            item.score = i % 100;
+            items.add(item);
+        }
+        return items;
+    }
+
+    @Test
+    public void bulkInsert() throws Exception {
+        final List<Item> items = createItems(ROWS);
+        Benchmark.measure("bulkInsert " + ROWS, 2, 5, ROWS, new Benchmark.Body() {
+            @Override
+            void setUp() {
+                mDao.deleteAll();
+            }
+
+            @Override
+            void run() {
+                mDao.bulkInsert(items);
+            }
+        });
+        assertEquals(ROWS, mDao.count());
+    }
+
+    @Test
+    public void parseResult() throws Exception {
+        mDao.bulkInsert(createItems(ROWS));
+        for (final int size : new int[]{10, 1000, ROWS}) {
+            Benchmark.measure("query " + size + " rows", 3, 10, size, new Benchmark.Body() {
+                @Override
+                void run() {
+                    assertEquals(size, mDao.query(null, null, "id", String.valueOf(size)).size());
+                }
+            });
+        }
+        mDao.setRemoveRedundantItems(true);
+        Benchmark.measure("query " + ROWS + " rows, de-duplicated", 3, 10, ROWS, new Benchmark.Body() {
+            @Override
+            void run() {
+                assertEquals(ROWS, mDao.query(null, null, "id", null).size());
+            }
+        });
+    }
+
+    @Test
+    public void count() throws Exception {
+        mDao.bulkInsert(createItems(ROWS));
+        Benchmark.measure("count where score=?", 10, 200, 1, new Benchmark.Body() {
+            @Override
+            void run() {
+                assertEquals(ROWS / 100, mDao.count("score=?", new String[]{"42"}));
+            }
+        });
+    }
+
+    @Test
+    public void taskDispatch() throws Exception {
+        final int tasks = 1000;
+        Benchmark.measure("dispatch " + tasks + " read tasks", 2, 10, tasks, new Benchmark.Body() {
+            @Override
+            void run() throws Exception {
+                final CountDownLatch latch = new CountDownLatch(tasks);
+                for (int i = 0; i < tasks; i++) {
+                    new ReadTask<Void>() {
+                        @Override
+                        protected Void doInBackground() {
+                            latch.countDown();
+                            return null;
+                        }
+                    }.executeConcurrent();
+                }
+                assertTrue(latch.await(30, TimeUnit.SECONDS));
+            }
+        });
+        Benchmark.measure("dispatch " + tasks + " write tasks", 2, 10, tasks, new Benchmark.Body() {
+            @Override
+            void run() throws Exception {
+                final CountDownLatch latch = new CountDownLatch(tasks);
+                for (int i = 0; i < tasks; i++) {
+                    new NoReturnTask() {
+                        @Override
+                        protected Void doInBackground() {
+                            latch.countDown();
+                            return null;
+                        }
+                    }.execute();
+                }
+                assertTrue(latch.await(30, TimeUnit.SECONDS));
+            }
+        });
+    }
+
+    @Test
+    public void parseSqlScript() throws Exception {
+        final int statements = 10000;
+        final StringBuilder script = new StringBuilder(statements * 80);
+        script.append("/* generated script */\n");
+        script.append("CREATE TABLE IF NOT EXISTS logs (id INTEGER PRIMARY KEY, message TEXT);\n");
+        for (int i = 0; i < statements; i++) {
+            script.append("-- row ").append(i).append('\n');
+            script.append("INSERT INTO logs (id, message) VALUES (").append(i)
+                    .append(", 'message; with -- markers ").append(i).append("');\n");
+        }
+        final byte[] bytes = script.toString().getBytes("UTF-8");
+        Benchmark.measure("SqlParser.parse " + statements + " statements", 3, 10, statements + 1, new Benchmark.Body() {
+            @Override
+            void run() throws Exception {
+                assertEquals(statements + 1, SqlParser.parse(new ByteArrayInputStream(bytes)).size());
+            }
+        });
+        final SqlParser.StatementHandler handler = new SqlParser.StatementHandler() {
+            @Override
+            public void onStatement(String statement) {
+            }
+        };
+        Benchmark.measure("SqlParser.parse streaming " + statements + " statements", 3, 10, statements + 1,
+                new Benchmark.Body() {
+                    @Override
+                    void run() throws Exception {
+                        assertEquals(statements + 1, SqlParser.parse(new ByteArrayInputStream(bytes), handler));
+                    }
+                });
+    }
+}
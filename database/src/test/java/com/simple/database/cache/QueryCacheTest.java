@@ -0,0 +1,65 @@
+package com.simple.database.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class QueryCacheTest {
+    private final QueryCache mCache = QueryCache.getInstance();
+
+    @Before
+    public void setUp() {
+        mCache.configure(16, 0, 0);
+        mCache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        mCache.configure(0, 0, 0);
+        mCache.clear();
+    }
+
+    @Test
+    public void keyDependsOnScope() {
+        final String generated = QueryCache.createKey("User_Dao", "users", null, "id > ?", new String[]{"1"}, "id", "10");
+        final String subclass = QueryCache.createKey("UserDao", "users", null, "id > ?", new String[]{"1"}, "id", "10");
+        final String dedup = QueryCache.createKey("UserDao|dedup", "users", null, "id > ?", new String[]{"1"}, "id", "10");
+        assertTrue(!generated.equals(subclass));
+        assertTrue(!subclass.equals(dedup));
+        mCache.put("users", generated, Arrays.asList("a"), 1, mCache.version("users"));
+        assertNull(mCache.get(subclass));
+        assertEquals(Arrays.asList("a"), mCache.<String>get(generated));
+    }
+
+    @Test
+    public void compiledKeyDependsOnArgumentType() {
+        assertTrue(!QueryCache.createKey("Dao", "t", "SELECT * FROM t WHERE id = ?", new Object[]{1L})
+                .equals(QueryCache.createKey("Dao", "t", "SELECT * FROM t WHERE id = ?", new Object[]{"1"})));
+    }
+
+    @Test
+    public void staleResultIsDropped() {
+        final String key = QueryCache.createKey("Dao", "t", null, null, null, null, null);
+        final long version = mCache.version("t");
+        mCache.invalidate("t");
+        mCache.put("t", key, Arrays.asList("old"), 1, version);
+        assertNull(mCache.get(key));
+    }
+
+    @Test
+    public void invalidateRemovesDependentEntries() {
+        final String key = QueryCache.createKey("Dao", "t", null, null, null, null, null);
+        mCache.put(Arrays.asList("t", "u"), key, Arrays.asList("x"), 1, mCache.version(Arrays.asList("t", "u")));
+        final List<String> cached = mCache.get(key);
+        assertEquals(Arrays.asList("x"), cached);
+        mCache.invalidate("u");
+        assertNull(mCache.get(key));
+    }
+}
@@ -0,0 +1,173 @@
+package com.simple.database.cursor;
+
+import android.database.Cursor;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * CursorIterator 的遍历、分块解析以及 Cursor 的关闭
+ */
+public class CursorIteratorTest {
+
+    /**
+     * 只有一个整数字段的 Cursor, 记录 close 的次数
+     */
+    private static final class FakeCursor implements InvocationHandler {
+        final int rows;
+        int position = -1;
+        int closeCount;
+
+        FakeCursor(int rows) {
+            this.rows = rows;
+        }
+
+        Cursor create() {
+            return (Cursor) Proxy.newProxyInstance(Cursor.class.getClassLoader(), new Class<?>[]{Cursor.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "moveToNext":
+                    if (closeCount > 0) {
+                        throw new IllegalStateException("cursor is closed");
+                    }
+                    position++;
+                    return position < rows;
+                case "getInt":
+                    return position;
+                case "close":
+                    closeCount++;
+                    return null;
+                case "isClosed":
+                    return closeCount > 0;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+    }
+
+    private static class IntIterator extends CursorIterator<Integer> {
+        final List<List<Integer>> chunks = new ArrayList<>();
+
+        IntIterator(Cursor cursor, int chunkSize) {
+            super(cursor, chunkSize);
+        }
+
+        @Override
+        protected Integer parse(Cursor cursor) {
+            return cursor.getInt(0);
+        }
+
+        @Override
+        protected void onChunkParsed(List<Integer> chunk) {
+            chunks.add(new ArrayList<>(chunk));
+        }
+    }
+
+    private static List<Integer> drain(CursorIterator<Integer> iterator) {
+        final List<Integer> items = new ArrayList<>();
+        for (Integer item : iterator) {
+            items.add(item);
+        }
+        return items;
+    }
+
+    @Test
+    public void iteratesAllRowsAndClosesCursor() {
+        final FakeCursor cursor = new FakeCursor(3);
+        final IntIterator iterator = new IntIterator(cursor.create(), 1);
+
+        assertEquals(Arrays.asList(0, 1, 2), drain(iterator));
+        assertEquals(1, cursor.closeCount);
+        assertFalse(iterator.hasNext());
+        // 未分块时不会调用 onChunkParsed
+        assertTrue(iterator.chunks.isEmpty());
+    }
+
+    @Test
+    public void earlyCloseClosesCursorOnce() {
+        final FakeCursor cursor = new FakeCursor(10);
+        final IntIterator iterator = new IntIterator(cursor.create(), 1);
+        assertEquals(Integer.valueOf(0), iterator.next());
+
+        iterator.close();
+        iterator.close();
+        assertEquals(1, cursor.closeCount);
+        assertFalse(iterator.hasNext());
+        try {
+            iterator.next();
+            fail("iterator is closed");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void skipsNullItems() {
+        final FakeCursor cursor = new FakeCursor(6);
+        final CursorIterator<Integer> iterator = new CursorIterator<Integer>(cursor.create(), 4) {
+            @Override
+            protected Integer parse(Cursor cursor) {
+                final int value = cursor.getInt(0);
+                return value % 2 == 0 ? null : value;
+            }
+        };
+        assertEquals(Arrays.asList(1, 3, 5), drain(iterator));
+        assertEquals(1, cursor.closeCount);
+    }
+
+    @Test
+    public void parsesInChunks() {
+        final FakeCursor cursor = new FakeCursor(7);
+        final IntIterator iterator = new IntIterator(cursor.create(), 3);
+
+        assertEquals(Integer.valueOf(0), iterator.next());
+        // 第一块解析之后才返回第一条数据
+        assertEquals(Collections.singletonList(Arrays.asList(0, 1, 2)), iterator.chunks);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), drain(iterator));
+        assertEquals(Arrays.asList(Arrays.asList(0, 1, 2), Arrays.asList(3, 4, 5), Collections.singletonList(6)),
+                iterator.chunks);
+        assertEquals(1, cursor.closeCount);
+    }
+
+    @Test
+    public void earlyCloseWhileChunking() {
+        final FakeCursor cursor = new FakeCursor(100);
+        final IntIterator iterator = new IntIterator(cursor.create(), 10);
+        assertEquals(Integer.valueOf(0), iterator.next());
+
+        iterator.close();
+        assertEquals(1, cursor.closeCount);
+        // 已经解析的数据仍然可以读取, 不会再访问 Cursor
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9), drain(iterator));
+        assertEquals(1, iterator.chunks.size());
+        assertEquals(1, cursor.closeCount);
+    }
+
+    @Test
+    public void emptyAndNullCursor() {
+        final FakeCursor cursor = new FakeCursor(0);
+        final IntIterator iterator = new IntIterator(cursor.create(), 5);
+        assertFalse(iterator.hasNext());
+        assertTrue(iterator.chunks.isEmpty());
+        assertEquals(1, cursor.closeCount);
+
+        assertFalse(new IntIterator(null, 5).hasNext());
+        assertFalse(new IntIterator(null, 1).hasNext());
+    }
+}
@@ -0,0 +1,191 @@
+package com.simple.database.dao;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import com.simple.database.metrics.DbMetrics;
+import com.simple.database.metrics.Operation;
+import com.simple.database.storage.DbStorage;
+import com.simple.database.storage.SqlConnection;
+import com.simple.database.storage.SqlStatement;
+import com.simple.database.storage.SqlStorage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * insert(List) 的分派以及 bulkInsert 的行数统计, 使用模拟的连接, 不需要数据库
+ */
+public class AbsDAOInsertTest {
+    /**
+     * 第 failAt 次 executeInsert 时抛出异常的连接, 为0时不失败
+     */
+    private int mFailAt;
+    private int mInserts;
+    private final List<String> mTransactions = new ArrayList<>();
+
+    private final InvocationHandler mHandler = new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "compileStatement":
+                    return Proxy.newProxyInstance(SqlStatement.class.getClassLoader(),
+                            new Class<?>[]{SqlStatement.class}, this);
+                case "executeInsert":
+                    if (++mInserts == mFailAt) {
+                        throw new IllegalStateException("constraint failed");
+                    }
+                    return (long) mInserts;
+                case "beginTransaction":
+                case "setTransactionSuccessful":
+                case "endTransaction":
+                    mTransactions.add(method.getName());
+                    return null;
+                case "inTransaction":
+                    return false;
+                case "getWritableConnection":
+                case "getReadableConnection":
+                    return Proxy.newProxyInstance(SqlConnection.class.getClassLoader(),
+                            new Class<?>[]{SqlConnection.class}, this);
+                case "isWriteAheadLoggingEnabled":
+                    return false;
+                default:
+                    // bind*, clearBindings, close 等
+                    return null;
+            }
+        }
+    };
+
+    static class Item {
+        final long id;
+
+        Item(long id) {
+            this.id = id;
+        }
+    }
+
+    static class ItemDao extends AbsDAO<Item> {
+        final List<String> calls = new ArrayList<>();
+
+        ItemDao() {
+            super("items");
+        }
+
+        @Override
+        protected String[] getInsertColumns() {
+            return new String[]{"id"};
+        }
+
+        @Override
+        protected void bindInsertValues(SqlStatement statement, Item item) {
+            statement.bindLong(1, item.id);
+        }
+
+        @Override
+        protected ContentValues convert(Item item) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected Item parseOneItem(Cursor cursor) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int bulkInsert(List<Item> datas) {
+            calls.add("bulkInsert " + datas.size());
+            return super.bulkInsert(datas);
+        }
+    }
+
+    /**
+     * 覆写了 insert(T) 的 DAO, 例如同时插入关联表
+     */
+    static class RelationDao extends ItemDao {
+        @Override
+        public void insert(Item item) {
+            calls.add("insert " + item.id);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        DbStorage.install((SqlStorage) Proxy.newProxyInstance(SqlStorage.class.getClassLoader(),
+                new Class<?>[]{SqlStorage.class}, mHandler));
+        DbMetrics.getInstance().setEnabled(true);
+        DbMetrics.getInstance().reset();
+    }
+
+    @After
+    public void tearDown() {
+        DbMetrics.getInstance().setEnabled(false);
+        DbMetrics.getInstance().reset();
+    }
+
+    private static List<Item> items(int count) {
+        final List<Item> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(new Item(i));
+        }
+        return items;
+    }
+
+    private static long insertedRows(Class<?> daoClass) {
+        return DbMetrics.getInstance().of(daoClass, Operation.INSERT).snapshot(false).rows;
+    }
+
+    @Test
+    public void insertListUsesBulkInsertByDefault() {
+        final ItemDao dao = new ItemDao();
+        dao.insert(items(3));
+        assertEquals(Arrays.asList("bulkInsert 3"), dao.calls);
+        assertEquals(3, mInserts);
+    }
+
+    @Test
+    public void insertListCallsOverriddenInsert() {
+        final RelationDao dao = new RelationDao();
+        dao.insert(items(3));
+        assertEquals(Arrays.asList("insert 0", "insert 1", "insert 2"), dao.calls);
+        assertEquals(0, mInserts);
+    }
+
+    @Test
+    public void bulkInsertCountsCommittedRows() {
+        final ItemDao dao = new ItemDao();
+        dao.setBulkChunkSize(2);
+        assertEquals(5, dao.bulkInsert(items(5)));
+        assertEquals(5, insertedRows(ItemDao.class));
+    }
+
+    @Test
+    public void rolledBackChunkIsNotCounted() {
+        final ItemDao dao = new ItemDao();
+        dao.setBulkChunkSize(2);
+        // 第二个事务中的第二条数据失败, 第二个事务回滚
+        mFailAt = 4;
+        try {
+            dao.bulkInsert(items(5));
+            fail("insert should fail");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(2, insertedRows(ItemDao.class));
+        // 失败的事务没有调用 setTransactionSuccessful
+        assertEquals(Arrays.asList("beginTransaction", "setTransactionSuccessful", "endTransaction",
+                "beginTransaction", "endTransaction"), mTransactions);
+        assertTrue(DbMetrics.getInstance().of(ItemDao.class, Operation.INSERT).snapshot(false).errors > 0);
+    }
+}
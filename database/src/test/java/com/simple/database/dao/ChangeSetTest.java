@@ -0,0 +1,254 @@
+package com.simple.database.dao;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import com.simple.database.storage.DbStorage;
+import com.simple.database.storage.SqlConnection;
+import com.simple.database.storage.SqlStorage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ChangeSet 的正确性 : 把计算出的变化按顺序应用到旧列表上, 结果必须与新列表相同
+ */
+public class ChangeSetTest {
+    private ItemDao mDao;
+
+    static final class Item {
+        final int id;
+        final String name;
+
+        Item(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Item && ((Item) o).id == id && ((Item) o).name.equals(name);
+        }
+
+        @Override
+        public int hashCode() {
+            return id * 31 + name.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return id + ":" + name;
+        }
+    }
+
+    static final class ItemDao extends AbsDAO<Item> {
+        ItemDao() {
+            super("items");
+        }
+
+        @Override
+        protected Object getPrimaryKey(Item item) {
+            return item.id < 0 ? null : item.id;
+        }
+
+        @Override
+        protected boolean areContentsTheSame(Item oldItem, Item newItem) {
+            return oldItem.name.equals(newItem.name);
+        }
+
+        @Override
+        protected ContentValues convert(Item item) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected Item parseOneItem(Cursor cursor) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * 只用于创建 DAO, 计算差异不会访问数据库
+     */
+    private static final class NoStorage implements SqlStorage {
+        @Override
+        public SqlConnection getWritableConnection() {
+            return null;
+        }
+
+        @Override
+        public SqlConnection getReadableConnection() {
+            return null;
+        }
+
+        @Override
+        public boolean isWriteAheadLoggingEnabled() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Before
+    public void setUp() {
+        DbStorage.install(new NoStorage());
+        mDao = new ItemDao();
+    }
+
+    private static List<Item> items(int... ids) {
+        final List<Item> items = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            items.add(new Item(id, "item-" + id));
+        }
+        return items;
+    }
+
+    /**
+     * 按照 RecyclerView.Adapter 的方式把变化应用到旧列表上
+     */
+    private static List<Item> apply(List<Item> oldItems, final List<Item> newItems, ChangeSet changes) {
+        final List<Item> result = new ArrayList<>(oldItems);
+        changes.dispatchTo(new ChangeSet.Callback() {
+            @Override
+            public void onInserted(int position, int count) {
+                result.addAll(position, newItems.subList(position, position + count));
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                result.subList(position, position + count).clear();
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                result.add(toPosition, result.remove(fromPosition));
+            }
+
+            @Override
+            public void onChanged(int position, int count) {
+                for (int i = position; i < position + count; i++) {
+                    result.set(i, newItems.get(i));
+                }
+            }
+        });
+        return result;
+    }
+
+    private ChangeSet assertDiff(List<Item> oldItems, List<Item> newItems) {
+        final ChangeSet changes = mDao.diff(oldItems, newItems);
+        assertFalse(changes.toString(), changes.isReset());
+        assertEquals(changes.toString(), newItems, apply(oldItems, newItems, changes));
+        return changes;
+    }
+
+    @Test
+    public void sameItemsHaveNoChanges() {
+        assertTrue(assertDiff(items(1, 2, 3), items(1, 2, 3)).isEmpty());
+        assertTrue(assertDiff(items(), items()).isEmpty());
+    }
+
+    @Test
+    public void insertIntoEmptyAndRemoveAll() {
+        assertEquals(1, assertDiff(items(), items(1, 2, 3)).getChanges().size());
+        assertEquals(1, assertDiff(items(1, 2, 3), items()).getChanges().size());
+    }
+
+    @Test
+    public void removeAndInsertRanges() {
+        assertDiff(items(1, 2, 3, 4, 5, 6), items(1, 4, 6));
+        assertDiff(items(1, 4, 6), items(0, 1, 2, 3, 4, 5, 6, 7));
+        assertDiff(items(1, 2, 3, 4), items(5, 2, 6, 4, 7));
+    }
+
+    @Test
+    public void moves() {
+        assertDiff(items(1, 2, 3, 4), items(4, 1, 2, 3));
+        assertDiff(items(1, 2, 3, 4), items(2, 3, 4, 1));
+        assertDiff(items(1, 2, 3, 4, 5), items(5, 4, 3, 2, 1));
+        assertDiff(items(1, 2, 3, 4, 5, 6), items(2, 1, 4, 3, 6, 5));
+        // 只有一项移动时只产生一个移动
+        final ChangeSet changes = assertDiff(items(1, 2, 3, 4, 5), items(1, 3, 4, 5, 2));
+        assertEquals(1, changes.getChanges().size());
+        assertEquals(ChangeSet.TYPE_MOVE, changes.getChanges().get(0).type);
+    }
+
+    @Test
+    public void contentChanges() {
+        final List<Item> oldItems = items(1, 2, 3, 4);
+        final List<Item> newItems = items(3, 1, 2, 4);
+        newItems.set(0, new Item(3, "renamed"));
+        newItems.set(3, new Item(4, "renamed"));
+        assertDiff(oldItems, newItems);
+    }
+
+    @Test
+    public void randomLists() {
+        final Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            final List<Item> oldItems = randomList(random);
+            final List<Item> newItems = randomList(random);
+            for (int i = 0; i < newItems.size(); i++) {
+                if (random.nextInt(4) == 0) {
+                    newItems.set(i, new Item(newItems.get(i).id, "changed"));
+                }
+            }
+            assertDiff(oldItems, newItems);
+        }
+    }
+
+    private static List<Item> randomList(Random random) {
+        final List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < 30; id++) {
+            if (random.nextBoolean()) {
+                ids.add(id);
+            }
+        }
+        Collections.shuffle(ids, random);
+        if (random.nextBoolean()) {
+            // 部分有序, 接近实际的查询结果
+            Collections.sort(ids.subList(0, ids.size() / 2));
+        }
+        final List<Item> items = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            items.add(new Item(id, "item-" + id));
+        }
+        return items;
+    }
+
+    @Test
+    public void missingOrDuplicateKeysReset() {
+        assertTrue(mDao.diff(items(1, 2), items(1, 1)).isReset());
+        assertTrue(mDao.diff(items(1, 1), items(1, 2)).isReset());
+        assertTrue(mDao.diff(items(1, 2), items(1, -1)).isReset());
+        assertTrue(mDao.diff(items(-1, 2), items(2)).isReset());
+    }
+
+    @Test
+    public void largeReorderResets() {
+        final int size = 2000;
+        final int[] ids = new int[size];
+        final int[] reversed = new int[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = i;
+            reversed[i] = size - 1 - i;
+        }
+        assertTrue(mDao.diff(items(ids), items(reversed)).isReset());
+        // 移动较少时仍然计算差异
+        final int[] rotated = Arrays.copyOf(ids, size);
+        System.arraycopy(ids, 1, rotated, 0, size - 1);
+        rotated[size - 1] = 0;
+        assertEquals(1, assertDiff(items(ids), items(rotated)).getChanges().size());
+    }
+}
@@ -0,0 +1,66 @@
+package com.simple.database.dao;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PageKeyTest {
+
+    @Test
+    public void tokenKeepsValueTypes() {
+        final PageKey key = new PageKey(12L, 1.5, "a:b5:c", null, new byte[]{0, (byte) 0xff, 16});
+        final PageKey restored = PageKey.fromToken(key.toToken());
+        assertEquals(key, restored);
+        assertEquals(12L, restored.valueAt(0));
+        assertEquals(1.5, restored.valueAt(1));
+        assertEquals("a:b5:c", restored.valueAt(2));
+        assertNull(restored.valueAt(3));
+        assertArrayEquals(new byte[]{0, (byte) 0xff, 16}, (byte[]) restored.valueAt(4));
+    }
+
+    @Test
+    public void tokenKeepsNumberPrecision() {
+        final PageKey key = new PageKey(Long.MIN_VALUE, 0.1 + 0.2, -0.0);
+        assertEquals(key, PageKey.fromToken(key.toToken()));
+    }
+
+    @Test
+    public void normalizesToSqliteTypes() {
+        final PageKey key = new PageKey(3, (short) 4, 2.5f, true);
+        assertEquals(new PageKey(3L, 4L, 2.5, 1L), key);
+        assertTrue(key.valueAt(0) instanceof Long);
+        assertTrue(key.valueAt(2) instanceof Double);
+    }
+
+    @Test
+    public void stringAndNumberAreDifferentKeys() {
+        assertTrue(!new PageKey("10").equals(new PageKey(10L)));
+        assertTrue(!PageKey.fromToken(new PageKey("10").toToken()).equals(new PageKey(10L)));
+    }
+
+    @Test
+    public void blobValueIsCopied() {
+        final byte[] blob = {1, 2, 3};
+        final PageKey key = new PageKey((Object) blob);
+        blob[0] = 9;
+        assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) key.getValues()[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnsupportedType() {
+        new PageKey(new Object());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidToken() {
+        PageKey.fromToken("L5:12");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownType() {
+        PageKey.fromToken("X1:a");
+    }
+}
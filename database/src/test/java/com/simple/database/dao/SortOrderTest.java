@@ -0,0 +1,95 @@
+package com.simple.database.dao;
+
+import android.content.ContentValues;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * keyOf 需要 ContentValues 的实现, 因此使用 Robolectric 运行
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class SortOrderTest {
+
+    @Test
+    public void parsesColumnsAndDirections() {
+        final SortOrder order = SortOrder.parse("score DESC, id");
+        assertArrayEquals(new String[]{"score", "id"}, order.columns);
+        assertEquals("score DESC, id ASC", order.toOrderBy(false));
+        assertEquals("score ASC, id DESC", order.toOrderBy(true));
+    }
+
+    @Test
+    public void predicateUsesTieBreakColumn() {
+        final SortOrder order = SortOrder.parse("score DESC, id");
+        final List<Object> args = new ArrayList<>();
+        final String where = order.buildPredicate(new PageKey(9.5, 3L), false, args);
+        assertEquals("(score < ?) OR (score = ? AND id > ?)", where);
+        assertEquals(Arrays.<Object>asList(9.5, 9.5, 3L), args);
+    }
+
+    @Test
+    public void reversePredicateFlipsComparisons() {
+        final SortOrder order = SortOrder.parse("score DESC, id");
+        final List<Object> args = new ArrayList<>();
+        assertEquals("(score > ?) OR (score = ? AND id < ?)",
+                order.buildPredicate(new PageKey(9.5, 3L), true, args));
+    }
+
+    @Test
+    public void predicateKeepsNumericTypes() {
+        final List<Object> args = new ArrayList<>();
+        SortOrder.parse("price, id").buildPredicate(new PageKey(10.25, 7), false, args);
+        // 按照字符串绑定时 '10.25' < '9' , REAL 字段会按照文本规则比较
+        assertTrue(args.get(0) instanceof Double);
+        assertTrue(args.get(2) instanceof Long);
+    }
+
+    @Test
+    public void keyOfKeepsValueTypes() {
+        final ContentValues values = new ContentValues();
+        values.put("id", 7L);
+        values.put("price", 2.25);
+        values.put("hash", new byte[]{1, 2});
+        values.put("name", "ignored");
+        final PageKey key = SortOrder.parse("price DESC, hash, id").keyOf(values);
+        assertEquals(new PageKey(2.25, new byte[]{1, 2}, 7L), key);
+        assertTrue(key.valueAt(0) instanceof Double);
+        assertTrue(key.valueAt(1) instanceof byte[]);
+    }
+
+    @Test
+    public void concatKeepsArgumentOrder() {
+        final List<Object> extra = Arrays.<Object>asList(1.5, 2L);
+        assertArrayEquals(new Object[]{"a", 1.5, 2L}, SortOrder.concat(new String[]{"a"}, extra));
+        assertArrayEquals(new Object[]{1.5, 2L}, SortOrder.concat(null, extra));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void keyOfRequiresSortColumns() {
+        final ContentValues values = new ContentValues();
+        values.put("id", 1L);
+        SortOrder.parse("score, id").keyOf(values);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void predicateRequiresMatchingKeySize() {
+        SortOrder.parse("score, id").buildPredicate(new PageKey(1L), false, new ArrayList<Object>());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyOrderBy() {
+        SortOrder.parse("");
+    }
+}
@@ -0,0 +1,142 @@
+package com.simple.database.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 直方图的分桶以及分位数计算
+ */
+public class HistogramTest {
+    private static final long MAX_TRACKED = (1L << 41) - 1;
+    private static final int LAST_BUCKET = 159;
+
+    @Test
+    public void smallValuesHaveOwnBuckets() {
+        for (int value = 0; value < 4; value++) {
+            assertEquals(value, Histogram.indexOf(value));
+            assertEquals(value, Histogram.upperBoundOf(value));
+        }
+    }
+
+    @Test
+    public void bucketBoundaries() {
+        // [4, 8) 中每个值一个桶
+        assertEquals(4, Histogram.indexOf(4));
+        assertEquals(4, Histogram.upperBoundOf(4));
+        assertEquals(7, Histogram.indexOf(7));
+        assertEquals(7, Histogram.upperBoundOf(7));
+        // 从 8 开始每个桶包含多个值, 8 和 9 在同一个桶中
+        assertEquals(8, Histogram.indexOf(8));
+        assertEquals(8, Histogram.indexOf(9));
+        assertEquals(9, Histogram.upperBoundOf(8));
+        assertEquals(9, Histogram.indexOf(10));
+        assertEquals(11, Histogram.upperBoundOf(9));
+    }
+
+    @Test
+    public void largeValuesGoToLastBucket() {
+        assertEquals(156, Histogram.indexOf(1L << 40));
+        assertEquals(LAST_BUCKET, Histogram.indexOf(MAX_TRACKED));
+        assertEquals(MAX_TRACKED, Histogram.upperBoundOf(LAST_BUCKET));
+        assertEquals(LAST_BUCKET, Histogram.indexOf(1L << 41));
+        assertEquals(LAST_BUCKET, Histogram.indexOf(1L << 50));
+        assertEquals(LAST_BUCKET, Histogram.indexOf(Long.MAX_VALUE));
+    }
+
+    /**
+     * 每个值都落在上界不小于它、上一个桶的上界小于它的桶中, 并且上界的相对误差不超过 25%
+     */
+    private static void assertBucketContains(long value) {
+        final int index = Histogram.indexOf(value);
+        final long upper = Histogram.upperBoundOf(index);
+        assertTrue(value + " > " + upper, value <= upper);
+        if (index > 0) {
+            assertTrue(value + " in bucket " + (index - 1), Histogram.upperBoundOf(index - 1) < value);
+        }
+        assertTrue(value + " -> " + upper, upper - value <= value / 4);
+    }
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (long value = 0; value < 100000; value++) {
+            assertBucketContains(value);
+        }
+        for (int bit = 2; bit <= 41; bit++) {
+            final long power = 1L << bit;
+            assertBucketContains(power - 1);
+            if (power <= MAX_TRACKED) {
+                assertBucketContains(power);
+                assertBucketContains(power + 1);
+            }
+        }
+        for (int index = 1; index <= LAST_BUCKET; index++) {
+            assertEquals(index, Histogram.indexOf(Histogram.upperBoundOf(index)));
+            assertEquals(index, Histogram.indexOf(Histogram.upperBoundOf(index - 1) + 1));
+        }
+    }
+
+    @Test
+    public void percentileOfEmptyHistogram() {
+        final Histogram.Snapshot snapshot = new Histogram().snapshot(false);
+        assertEquals(0, snapshot.count());
+        assertEquals(0, snapshot.percentileMillis(0.5), 0);
+        assertEquals(0, snapshot.meanMillis(), 0);
+    }
+
+    @Test
+    public void percentileIsClampedToMax() {
+        final Histogram histogram = new Histogram();
+        histogram.recordNanos(5000000);
+        final Histogram.Snapshot snapshot = histogram.snapshot(false);
+        // 桶的上界大于 5 ms, 返回记录的最大值
+        assertEquals(5.0, snapshot.percentileMillis(0), 0);
+        assertEquals(5.0, snapshot.percentileMillis(0.5), 0);
+        assertEquals(5.0, snapshot.percentileMillis(1), 0);
+    }
+
+    @Test
+    public void percentileRankOnSmallCounts() {
+        final Histogram histogram = new Histogram();
+        histogram.recordNanos(1000000);
+        histogram.recordNanos(2000000);
+        histogram.recordNanos(3000000);
+        final Histogram.Snapshot snapshot = histogram.snapshot(false);
+        assertEquals(3, snapshot.count());
+        assertEquals(2.0, snapshot.meanMillis(), 1e-9);
+        assertEquals(3.0, snapshot.maxMillis(), 0);
+
+        // rank = ceil(q * count), 至少为1; 返回所在桶的上界
+        assertEquals(1.023, snapshot.percentileMillis(0), 1e-9);
+        assertEquals(1.023, snapshot.percentileMillis(0.33), 1e-9);
+        assertEquals(2.047, snapshot.percentileMillis(0.34), 1e-9);
+        assertEquals(2.047, snapshot.percentileMillis(0.5), 1e-9);
+        assertEquals(2.047, snapshot.percentileMillis(0.66), 1e-9);
+        assertEquals(3.0, snapshot.percentileMillis(0.67), 1e-9);
+        assertEquals(3.0, snapshot.percentileMillis(1), 1e-9);
+    }
+
+    @Test
+    public void negativeAndSubMicrosecondValues() {
+        final Histogram histogram = new Histogram();
+        histogram.recordNanos(-5);
+        histogram.recordNanos(999);
+        final Histogram.Snapshot snapshot = histogram.snapshot(false);
+        assertEquals(2, snapshot.count());
+        assertEquals(0, snapshot.percentileMillis(1), 0);
+        assertEquals(0, snapshot.maxMillis(), 0);
+    }
+
+    @Test
+    public void snapshotWithReset() {
+        final Histogram histogram = new Histogram();
+        histogram.recordNanos(1000000);
+        assertEquals(1, histogram.snapshot(true).count());
+        assertEquals(0, histogram.count());
+        final Histogram.Snapshot empty = histogram.snapshot(false);
+        assertEquals(0, empty.count());
+        assertEquals(0, empty.maxMillis(), 0);
+        assertEquals(0, empty.totalMillis(), 0);
+    }
+}
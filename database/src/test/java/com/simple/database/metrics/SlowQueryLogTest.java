@@ -0,0 +1,118 @@
+package com.simple.database.metrics;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 慢查询日志的环形缓冲区以及参数脱敏
+ */
+public class SlowQueryLogTest {
+    private final SlowQueryLog mLog = SlowQueryLog.getInstance();
+
+    @After
+    public void tearDown() {
+        mLog.configure(0, 0, false);
+    }
+
+    private void add(String sql, Object... args) {
+        mLog.add("TestDao", sql, args, 20000000, 1, Collections.singletonList("SCAN users"));
+    }
+
+    private List<String> sqls() {
+        final List<String> sqls = new ArrayList<>();
+        for (SlowQuery query : mLog.getEntries()) {
+            sqls.add(query.sql);
+        }
+        return sqls;
+    }
+
+    @Test
+    public void threshold() {
+        assertFalse(mLog.isEnabled());
+        assertFalse(mLog.isSlow(Long.MAX_VALUE));
+        mLog.configure(10, 4, false);
+        assertTrue(mLog.isEnabled());
+        assertFalse(mLog.isSlow(9999999));
+        assertTrue(mLog.isSlow(10000000));
+    }
+
+    @Test
+    public void entriesInOrderBeforeWrap() {
+        mLog.configure(10, 4, false);
+        add("q0");
+        add("q1");
+        assertEquals(Arrays.asList("q0", "q1"), sqls());
+    }
+
+    @Test
+    public void wrapAroundKeepsNewestInOrder() {
+        mLog.configure(10, 3, false);
+        for (int i = 0; i < 5; i++) {
+            add("q" + i);
+        }
+        assertEquals(Arrays.asList("q2", "q3", "q4"), sqls());
+        // 正好写满一圈
+        add("q5");
+        assertEquals(Arrays.asList("q3", "q4", "q5"), sqls());
+    }
+
+    @Test
+    public void capacityOfOne() {
+        mLog.configure(10, 0, false);
+        add("q0");
+        add("q1");
+        assertEquals(Collections.singletonList("q1"), sqls());
+    }
+
+    @Test
+    public void disabledLogKeepsNothing() {
+        mLog.configure(0, 8, false);
+        add("q0");
+        assertTrue(mLog.getEntries().isEmpty());
+    }
+
+    @Test
+    public void clearAndReconfigure() {
+        mLog.configure(10, 3, false);
+        add("q0");
+        add("q1");
+        mLog.clear();
+        assertTrue(mLog.getEntries().isEmpty());
+        add("q2");
+        assertEquals(Collections.singletonList("q2"), sqls());
+        mLog.configure(10, 3, false);
+        assertTrue(mLog.getEntries().isEmpty());
+    }
+
+    @Test
+    public void argsAndRedaction() throws Exception {
+        mLog.configure(10, 4, false);
+        add("q0", 42, null, new byte[3]);
+        final SlowQuery query = mLog.getEntries().get(0);
+        assertArrayEquals(new String[]{"42", "null", "<blob 3 bytes>"}, query.args);
+        assertEquals(20.0, query.durationMillis, 1e-9);
+        assertTrue(query.fullScan);
+
+        mLog.configure(10, 4, true);
+        add("q1", "secret");
+        assertNull(mLog.getEntries().get(0).args);
+        final StringWriter writer = new StringWriter();
+        mLog.dump(writer);
+        final String dump = writer.toString();
+        assertTrue(dump, dump.contains("FULL_SCAN dao=TestDao"));
+        assertTrue(dump, dump.contains("    args : <redacted>"));
+        assertFalse(dump, dump.contains("secret"));
+    }
+}
@@ -0,0 +1,66 @@
+package com.simple.database.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 从 EXPLAIN QUERY PLAN 的结果中识别全表扫描
+ */
+public class SlowQueryTest {
+
+    private static boolean fullScan(String... plan) {
+        return SlowQuery.hasFullScan(Arrays.asList(plan));
+    }
+
+    @Test
+    public void tableScan() {
+        // 3.24 之前的格式
+        assertTrue(fullScan("SCAN TABLE users"));
+        // 3.24 之后的格式
+        assertTrue(fullScan("SCAN users"));
+        assertTrue(fullScan("  scan users  "));
+    }
+
+    @Test
+    public void scanUsingIndex() {
+        assertFalse(fullScan("SCAN TABLE users USING INDEX users_age"));
+        assertFalse(fullScan("SCAN users USING INDEX users_age"));
+        assertFalse(fullScan("SCAN TABLE users USING COVERING INDEX users_age"));
+        assertFalse(fullScan("SCAN users USING COVERING INDEX users_age"));
+    }
+
+    @Test
+    public void searchIsNotScan() {
+        assertFalse(fullScan("SEARCH TABLE users USING INDEX users_age (age=?)"));
+        assertFalse(fullScan("SEARCH users USING INTEGER PRIMARY KEY (rowid=?)"));
+        assertFalse(fullScan("USE TEMP B-TREE FOR ORDER BY"));
+    }
+
+    @Test
+    public void subqueryAndConstantRow() {
+        assertFalse(fullScan("SCAN SUBQUERY 1"));
+        assertFalse(fullScan("SCAN (subquery-1)"));
+        assertFalse(fullScan("SCAN CONSTANT ROW"));
+        // 子查询内部的全表扫描仍然会被识别
+        assertTrue(fullScan("CO-ROUTINE (subquery-1)", "SCAN books", "SCAN (subquery-1)"));
+    }
+
+    @Test
+    public void emptyOrMissingPlan() {
+        assertFalse(SlowQuery.hasFullScan(Collections.<String>emptyList()));
+        assertFalse(fullScan((String) null));
+        assertTrue(fullScan(null, "SCAN users"));
+    }
+
+    @Test
+    public void anyLineWithFullScan() {
+        assertTrue(fullScan("SEARCH users USING INDEX users_age (age=?)", "SCAN books"));
+        assertFalse(fullScan("SEARCH users USING INDEX users_age (age=?)",
+                "SEARCH books USING COVERING INDEX books_owner (owner_id=?)"));
+    }
+}
@@ -0,0 +1,163 @@
+package com.simple.database.storage;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * JdbcSqlConnection 的事务归属以及 JdbcSqlStorage 的 WAL 判断, 使用模拟的 JDBC 连接, 不需要驱动
+ */
+public class JdbcSqlConnectionTest {
+    private final List<String> mLog = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * @param journalMode PRAGMA journal_mode 返回的结果
+     * @return 记录 commit, rollback 以及执行的语句的连接
+     */
+    private Connection mockConnection(final String journalMode) {
+        return proxy(Connection.class, new InvocationHandler() {
+            private String mSql;
+            private boolean mHasRow;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "commit":
+                    case "rollback":
+                        mLog.add(method.getName());
+                        return null;
+                    case "prepareStatement":
+                        mSql = (String) args[0];
+                        return proxy(PreparedStatement.class, this);
+                    case "createStatement":
+                        return proxy(Statement.class, this);
+                    case "execute":
+                        mLog.add(Thread.currentThread().getName() + ":" + mSql);
+                        return false;
+                    case "executeQuery":
+                        mHasRow = true;
+                        return proxy(ResultSet.class, this);
+                    case "next":
+                        final boolean hasRow = mHasRow;
+                        mHasRow = false;
+                        return hasRow;
+                    case "getString":
+                        return journalMode;
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            }
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    @Test
+    public void otherThreadWaitsForTransaction() throws Exception {
+        final JdbcSqlConnection connection = new JdbcSqlConnection(mockConnection("delete"));
+        connection.beginTransaction(null);
+        connection.execSQL("INSERT 1", null);
+
+        final Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                connection.execSQL("INSERT 2", null);
+            }
+        }, "writer");
+        writer.start();
+        // 等待另一个线程阻塞在连接上
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (writer.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(Thread.State.WAITING, writer.getState());
+        assertFalse(mLog.contains("writer:INSERT 2"));
+
+        connection.setTransactionSuccessful();
+        connection.endTransaction();
+        writer.join(5000);
+
+        assertEquals(Arrays.asList(Thread.currentThread().getName() + ":INSERT 1", "commit", "writer:INSERT 2"), mLog);
+    }
+
+    @Test
+    public void transactionBelongsToBeginningThread() throws Exception {
+        final JdbcSqlConnection connection = new JdbcSqlConnection(mockConnection("delete"));
+        connection.beginTransaction(null);
+        connection.beginTransaction(null);
+        assertTrue(connection.inTransaction());
+
+        final List<Object> results = new ArrayList<>();
+        final Thread other = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                results.add(connection.inTransaction());
+                try {
+                    connection.endTransaction();
+                } catch (IllegalStateException e) {
+                    results.add(e);
+                }
+            }
+        });
+        other.start();
+        other.join(5000);
+
+        assertEquals(false, results.get(0));
+        assertTrue(results.get(1) instanceof IllegalStateException);
+
+        // 嵌套事务没有标记成功, 整个事务回滚
+        connection.endTransaction();
+        connection.setTransactionSuccessful();
+        connection.endTransaction();
+        assertFalse(connection.inTransaction());
+        assertEquals(Collections.singletonList("rollback"), mLog);
+    }
+
+    @Test
+    public void endWithoutBeginFails() {
+        final JdbcSqlConnection connection = new JdbcSqlConnection(mockConnection("delete"));
+        try {
+            connection.endTransaction();
+            fail("endTransaction without beginTransaction");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void walDetectedFromJournalMode() {
+        assertTrue(new JdbcSqlStorage(mockConnection("WAL"), mockConnection("WAL")).isWriteAheadLoggingEnabled());
+        assertFalse(new JdbcSqlStorage(mockConnection("delete"), mockConnection("delete")).isWriteAheadLoggingEnabled());
+        assertFalse(new JdbcSqlStorage(mockConnection("wal")).isWriteAheadLoggingEnabled());
+    }
+}
@@ -0,0 +1,194 @@
+package com.simple.database.task;
+
+import com.simple.database.Builder;
+import com.simple.database.DatabaseHelper;
+import com.simple.database.listeners.DbListener;
+import com.simple.database.storage.DbStorage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 任务在开始之前、执行期间被取消以及超时的情况, 执行期间被取消的写任务需要回滚
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class DbTaskCancelTest {
+    private static final String DB_NAME = "task_cancel.db";
+
+    private DatabaseHelper mHelper;
+    private final AtomicInteger mDelivered = new AtomicInteger();
+    private final DbListener<Void> mListener = new DbListener<Void>() {
+        @Override
+        public void onComplete(Void result) {
+            mDelivered.incrementAndGet();
+        }
+    };
+
+    @Before
+    public void setUp() {
+        mHelper = new Builder(RuntimeEnvironment.application)
+                .setDbName(DB_NAME)
+                .setCallbackDispatcher(new ExecutorCallbackDispatcher())
+                .create();
+        mHelper.getWritableDatabase().execSQL("CREATE TABLE IF NOT EXISTS logs "
+                + "(id INTEGER PRIMARY KEY, message TEXT NOT NULL)");
+        mHelper.getWritableDatabase().execSQL("DELETE FROM logs");
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.shutdown();
+        RuntimeEnvironment.application.deleteDatabase(DB_NAME);
+    }
+
+    private static void insert(long id) {
+        DbStorage.get().getWritableConnection()
+                .execSQL("INSERT INTO logs (id, message) VALUES (?, ?)", new Object[]{id, "row " + id});
+    }
+
+    /**
+     * 在串行通道中查询行数, 返回时之前提交的写任务都已经结束, 结果也已经投递
+     */
+    private long countRows() throws Exception {
+        final CountDownLatch delivered = new CountDownLatch(1);
+        final DbFuture<Long> future = new ReadTask<Long>(new DbListener<Long>() {
+            @Override
+            public void onComplete(Long result) {
+                delivered.countDown();
+            }
+        }) {
+            @Override
+            protected Long doInBackground() {
+                return mHelper.getReadableDatabase().compileStatement("SELECT COUNT(*) FROM logs").simpleQueryForLong();
+            }
+        }.execute();
+        final long count = future.get(5, TimeUnit.SECONDS);
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        return count;
+    }
+
+    private static void assertCancelled(DbFuture<?> future) throws Exception {
+        assertTrue(future.isCancelled());
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("task should be cancelled");
+        } catch (CancellationException expected) {
+        }
+    }
+
+    @Test
+    public void cancelBeforeStart() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        // 占住串行通道, 保证被取消的任务还没有开始
+        final DbFuture<Void> blocker = new NoReturnTask() {
+            @Override
+            protected Void doInBackground() {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
+        }.execute();
+        final AtomicInteger runs = new AtomicInteger();
+        final DbFuture<Void> cancelled = new DbTask<Void>(mListener) {
+            @Override
+            protected Void doInBackground() {
+                runs.incrementAndGet();
+                insert(1);
+                return null;
+            }
+        }.execute();
+
+        assertTrue(cancelled.cancel());
+        release.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+
+        assertEquals(0, countRows());
+        assertEquals(0, runs.get());
+        assertEquals(0, mDelivered.get());
+        assertCancelled(cancelled);
+    }
+
+    @Test
+    public void cancelDuringTransactionRollsBack() throws Exception {
+        final DbFuture<Void> cancelled = new DbTask<Void>(mListener) {
+            @Override
+            protected Void doInBackground() {
+                insert(1);
+                // 已经执行了写操作之后被取消
+                cancel();
+                insert(2);
+                return null;
+            }
+        }.execute();
+
+        assertEquals(0, countRows());
+        assertEquals(0, mDelivered.get());
+        assertCancelled(cancelled);
+    }
+
+    @Test
+    public void timeoutCancelsAndRollsBack() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final DbTask<Void> task = new DbTask<Void>(mListener) {
+            @Override
+            protected Void doInBackground() {
+                insert(1);
+                started.countDown();
+                // 等待超时取消任务
+                final long deadline = System.currentTimeMillis() + 5000;
+                while (!isCancelled() && System.currentTimeMillis() < deadline) {
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                return null;
+            }
+        };
+        final DbFuture<Void> future = task.setTimeout(100).execute();
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(0, countRows());
+        assertTrue(task.isCancelled());
+        assertEquals(0, mDelivered.get());
+        assertCancelled(future);
+    }
+
+    @Test
+    public void completedTaskIsNotCancelledByTimeout() throws Exception {
+        final DbFuture<Void> future = new DbTask<Void>(mListener) {
+            @Override
+            protected Void doInBackground() {
+                insert(1);
+                return null;
+            }
+        }.setTimeout(100).execute();
+
+        future.get(5, TimeUnit.SECONDS);
+        Thread.sleep(300);
+        assertEquals(1, countRows());
+        assertEquals(1, mDelivered.get());
+        assertFalse(future.isCancelled());
+    }
+}
@@ -0,0 +1,464 @@
+package com.simple.database.task;
+
+import android.database.Cursor;
+import android.os.CancellationSignal;
+
+import com.simple.database.listeners.DbListener;
+import com.simple.database.storage.DbStorage;
+import com.simple.database.storage.SqlConnection;
+import com.simple.database.storage.SqlStatement;
+import com.simple.database.storage.SqlStorage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 任务提交到调度器的过程, 不需要数据库
+ */
+public class DbTaskDispatchTest {
+    private ExecutorCallbackDispatcher mDispatcher;
+
+    /**
+     * 队列始终已满的调度器
+     */
+    private static final class RejectingScheduler implements DbScheduler {
+        @Override
+        public void executeSerial(Runnable task) {
+            throw new RejectedExecutionException("serial lane is full");
+        }
+
+        @Override
+        public void executeConcurrent(Runnable task) {
+            throw new RejectedExecutionException("concurrent lane is full");
+        }
+
+        @Override
+        public LaneStats getSerialStats() {
+            return null;
+        }
+
+        @Override
+        public LaneStats getConcurrentStats() {
+            return null;
+        }
+    }
+
+    /**
+     * 记录提交到串行通道的任务的优先级, 不执行任务
+     */
+    private static class RecordingScheduler implements DbScheduler {
+        final List<Priority> submitted = new ArrayList<>();
+
+        @Override
+        public void executeSerial(Runnable task) {
+            submitted.add(((Prioritized) task).getPriority());
+        }
+
+        @Override
+        public void executeConcurrent(Runnable task) {
+            executeSerial(task);
+        }
+
+        @Override
+        public LaneStats getSerialStats() {
+            return null;
+        }
+
+        @Override
+        public LaneStats getConcurrentStats() {
+            return null;
+        }
+    }
+
+    /**
+     * 只记录事务边界的连接, 用于不需要数据库的调度测试
+     */
+    private static final class RecordingConnection implements SqlConnection {
+        final List<String> log;
+        int depth;
+        boolean successful;
+        /**
+         * 没有标记成功而回滚的事务数量
+         */
+        int rollbacks;
+
+        RecordingConnection(List<String> log) {
+            this.log = log;
+        }
+
+        @Override
+        public void beginTransaction(TransactionListener listener) {
+            if (depth++ == 0) {
+                log.add("BEGIN");
+                successful = false;
+            }
+        }
+
+        @Override
+        public void setTransactionSuccessful() {
+            if (depth == 1) {
+                successful = true;
+            }
+        }
+
+        @Override
+        public void endTransaction() {
+            if (--depth == 0) {
+                log.add("END");
+                if (!successful) {
+                    rollbacks++;
+                }
+            }
+        }
+
+        @Override
+        public boolean inTransaction() {
+            return depth > 0;
+        }
+
+        @Override
+        public void execSQL(String sql, Object[] args) {
+            // 组提交中单个任务的回滚
+            if (sql.contains("ROLLBACK TO")) {
+                log.add("ROLLBACK TO SAVEPOINT");
+            }
+        }
+
+        @Override
+        public Cursor query(String sql, Object[] args, CancellationSignal signal) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SqlStatement compileStatement(String sql) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class RecordingStorage implements SqlStorage {
+        final SqlConnection connection;
+
+        RecordingStorage(SqlConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public SqlConnection getWritableConnection() {
+            return connection;
+        }
+
+        @Override
+        public SqlConnection getReadableConnection() {
+            return connection;
+        }
+
+        @Override
+        public boolean isWriteAheadLoggingEnabled() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * 保存提交到串行通道的任务, 由测试线程按顺序执行
+     */
+    private static final class QueueingScheduler implements DbScheduler {
+        final List<Runnable> queue = new ArrayList<>();
+
+        @Override
+        public void executeSerial(Runnable task) {
+            queue.add(task);
+        }
+
+        @Override
+        public void executeConcurrent(Runnable task) {
+            throw new AssertionError("WAL is disabled, nothing should run concurrently");
+        }
+
+        void runAll() {
+            while (!queue.isEmpty()) {
+                queue.remove(0).run();
+            }
+        }
+
+        @Override
+        public LaneStats getSerialStats() {
+            return null;
+        }
+
+        @Override
+        public LaneStats getConcurrentStats() {
+            return null;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mDispatcher = new ExecutorCallbackDispatcher();
+        DbTask.setCallbackDispatcher(mDispatcher);
+    }
+
+    @After
+    public void tearDown() {
+        DbTask.resumeDispatch();
+        DbTask.setScheduler(null);
+        DbTask.setGroupCommit(0, 0);
+        DbTask.setCallbackDispatcher(null);
+        mDispatcher.shutdown();
+    }
+
+    private static NoReturnTask noop() {
+        return new NoReturnTask() {
+            @Override
+            protected Void doInBackground() {
+                return null;
+            }
+        };
+    }
+
+    private static void assertRejected(DbFuture<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("task should be rejected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void rejectedTaskFailsItsFuture() throws Exception {
+        DbTask.setScheduler(new RejectingScheduler());
+        assertRejected(noop().execute());
+    }
+
+    @Test
+    public void rejectedGroupCommitDoesNotHang() throws Exception {
+        DbTask.setScheduler(new RejectingScheduler());
+        DbTask.setGroupCommit(8, 0);
+        assertRejected(noop().execute());
+        // 第一次被拒绝之后仍然会重新调度
+        assertRejected(noop().execute());
+    }
+
+    @Test
+    public void resumeKeepsHeldTasksAheadOfNewSubmissions() {
+        final RecordingScheduler scheduler = new RecordingScheduler() {
+            @Override
+            public void executeSerial(Runnable task) {
+                super.executeSerial(task);
+                if (submitted.size() == 1) {
+                    // 恢复过程中提交的任务需要排在暂停期间提交的任务之后
+                    noop().setPriority(Priority.USER_VISIBLE).execute();
+                }
+            }
+        };
+        DbTask.setScheduler(scheduler);
+        DbTask.pauseDispatch();
+        noop().setPriority(Priority.BACKGROUND).execute();
+        noop().setPriority(Priority.IMMEDIATE).execute();
+        assertTrue(scheduler.submitted.isEmpty());
+
+        DbTask.resumeDispatch();
+        assertEquals(Arrays.asList(Priority.BACKGROUND, Priority.IMMEDIATE, Priority.USER_VISIBLE),
+                scheduler.submitted);
+
+        // 恢复之后直接提交给调度器
+        noop().setPriority(Priority.BACKGROUND).execute();
+        assertEquals(4, scheduler.submitted.size());
+    }
+
+    private static NoReturnTask write(final String name, final List<String> log) {
+        return new NoReturnTask() {
+            @Override
+            protected Void doInBackground() {
+                log.add(name);
+                return null;
+            }
+        };
+    }
+
+    private static ReadTask<Void> read(final String name, final List<String> log) {
+        return new ReadTask<Void>() {
+            @Override
+            protected Void doInBackground() {
+                log.add(name);
+                return null;
+            }
+        };
+    }
+
+    @Test
+    public void groupCommitKeepsSerialOrder() throws Exception {
+        final List<String> log = new ArrayList<>();
+        final QueueingScheduler scheduler = new QueueingScheduler();
+        DbStorage.install(new RecordingStorage(new RecordingConnection(log)));
+        DbTask.setScheduler(scheduler);
+        DbTask.setGroupCommit(4, 0);
+
+        for (int i = 0; i < 6; i++) {
+            write("w" + i, log).execute();
+        }
+        read("r1", log).execute();
+        // 未开启 WAL 时并发任务同样进入串行通道
+        read("r2", log).executeConcurrent();
+        write("w6", log).execute();
+        write("w7", log).execute();
+        // 所有任务只调度了一次
+        assertEquals(1, scheduler.queue.size());
+        scheduler.runAll();
+
+        assertEquals(Arrays.asList(
+                "BEGIN", "w0", "w1", "w2", "w3", "END",
+                "BEGIN", "w4", "w5", "END",
+                "r1", "r2",
+                "BEGIN", "w6", "w7", "END"), log);
+    }
+
+    @Test
+    public void overriddenPostResultReceivesResult() throws Exception {
+        final List<String> log = new ArrayList<>();
+        final QueueingScheduler scheduler = new QueueingScheduler();
+        DbStorage.install(new RecordingStorage(new RecordingConnection(log)));
+        DbTask.setScheduler(scheduler);
+
+        final List<Object> posted = new ArrayList<>();
+        final DbListener<String> listener = new DbListener<String>() {
+            @Override
+            public void onComplete(String result) {
+                log.add("listener:" + result);
+            }
+        };
+        final DbFuture<String> future = new ReadTask<String>(listener) {
+            @Override
+            protected String doInBackground() {
+                return "row";
+            }
+
+            @Override
+            public <R> void postResultToUiThread(R result, DbListener<R> target) {
+                // 直接在当前线程回调, 不经过回调分发器
+                posted.add(result);
+                target.onComplete(result);
+            }
+        }.execute();
+        scheduler.runAll();
+
+        assertEquals("row", future.get(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.<Object>asList("row"), posted);
+        assertEquals(Arrays.asList("listener:row"), log);
+    }
+
+    @Test
+    public void cancelBeforeStartSkipsTask() throws Exception {
+        final List<String> log = new ArrayList<>();
+        final QueueingScheduler scheduler = new QueueingScheduler();
+        DbStorage.install(new RecordingStorage(new RecordingConnection(log)));
+        DbTask.setScheduler(scheduler);
+
+        final DbFuture<Void> future = write("w0", log).execute();
+        assertTrue(future.cancel());
+        scheduler.runAll();
+
+        assertTrue(log.isEmpty());
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    public void cancelDuringTransactionRollsBack() throws Exception {
+        final List<String> log = new ArrayList<>();
+        final RecordingConnection connection = new RecordingConnection(log);
+        final QueueingScheduler scheduler = new QueueingScheduler();
+        DbStorage.install(new RecordingStorage(connection));
+        DbTask.setScheduler(scheduler);
+
+        final DbFuture<Void> future = new NoReturnTask() {
+            @Override
+            protected Void doInBackground() {
+                log.add("w0");
+                cancel();
+                return null;
+            }
+        }.execute();
+        scheduler.runAll();
+
+        assertEquals(Arrays.asList("BEGIN", "w0", "END"), log);
+        assertEquals(1, connection.rollbacks);
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    public void timeoutCancelsRunningTask() throws Exception {
+        final List<String> log = new ArrayList<>();
+        final RecordingConnection connection = new RecordingConnection(log);
+        final QueueingScheduler scheduler = new QueueingScheduler();
+        DbStorage.install(new RecordingStorage(connection));
+        DbTask.setScheduler(scheduler);
+
+        final DbFuture<Void> future = new NoReturnTask() {
+            @Override
+            protected Void doInBackground() {
+                // 等待回调线程上的超时取消任务
+                final long deadline = System.currentTimeMillis() + 5000;
+                while (!isCancelled() && System.currentTimeMillis() < deadline) {
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                log.add(isCancelled() ? "cancelled" : "not cancelled");
+                return null;
+            }
+        }.setTimeout(50).execute();
+        scheduler.runAll();
+
+        assertEquals(Arrays.asList("BEGIN", "cancelled", "END"), log);
+        assertEquals(1, connection.rollbacks);
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    public void cancelledTaskInBatchDoesNotFailOthers() throws Exception {
+        final List<String> log = new ArrayList<>();
+        final RecordingConnection connection = new RecordingConnection(log);
+        final QueueingScheduler scheduler = new QueueingScheduler();
+        DbStorage.install(new RecordingStorage(connection));
+        DbTask.setScheduler(scheduler);
+        DbTask.setGroupCommit(4, 0);
+
+        final DbFuture<Void> first = write("w0", log).execute();
+        final DbFuture<Void> cancelled = new NoReturnTask() {
+            @Override
+            protected Void doInBackground() {
+                log.add("w1");
+                cancel();
+                return null;
+            }
+        }.execute();
+        final DbFuture<Void> last = write("w2", log).execute();
+        scheduler.runAll();
+
+        // 被取消的任务只回滚到自己的保存点, 批次照常提交, 也不会单独重试
+        assertEquals(Arrays.asList("BEGIN", "w0", "w1", "ROLLBACK TO SAVEPOINT", "w2", "END"), log);
+        assertEquals(0, connection.rollbacks);
+        assertTrue(cancelled.isCancelled());
+        first.get(5, TimeUnit.SECONDS);
+        last.get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,150 @@
+package com.simple.database.task;
+
+import android.os.Process;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * DefaultDbScheduler 两个通道的执行顺序
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class DefaultDbSchedulerTest {
+    private DefaultDbScheduler mScheduler;
+    private final List<ThreadPoolExecutor> mExecutors = new ArrayList<>();
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+    private final List<String> mOrder = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() {
+        mScheduler = new DefaultDbScheduler(1, Process.THREAD_PRIORITY_DEFAULT, "test", 3, 0) {
+            @Override
+            protected ThreadPoolExecutor createExecutor(int poolSize, BlockingQueue<Runnable> queue,
+                                                        ThreadFactory threadFactory) {
+                final ThreadPoolExecutor executor = super.createExecutor(poolSize, queue, threadFactory);
+                mExecutors.add(executor);
+                return executor;
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mRelease.countDown();
+        for (ThreadPoolExecutor executor : mExecutors) {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private final class Task implements Runnable, Prioritized {
+        final String name;
+        final Priority priority;
+        final CountDownLatch done;
+
+        Task(String name, Priority priority, CountDownLatch done) {
+            this.name = name;
+            this.priority = priority;
+            this.done = done;
+        }
+
+        @Override
+        public Priority getPriority() {
+            return priority;
+        }
+
+        @Override
+        public void run() {
+            mOrder.add(name);
+            done.countDown();
+        }
+    }
+
+    /**
+     * 占住通道唯一的线程, 直到 mRelease 被释放
+     */
+    private Runnable blocker(final CountDownLatch started) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    mRelease.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    @Test
+    public void serialLaneKeepsSubmissionOrder() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        mScheduler.executeSerial(blocker(started));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        mScheduler.executeSerial(new Task("delete", Priority.BACKGROUND, done));
+        mScheduler.executeSerial(new Task("insert", Priority.USER_VISIBLE, done));
+        mScheduler.executeSerial(new Task("update", Priority.IMMEDIATE, done));
+        mRelease.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("delete", "insert", "update"), mOrder);
+    }
+
+    @Test
+    public void concurrentLaneRunsHigherPriorityFirst() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        mScheduler.executeConcurrent(blocker(started));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        mScheduler.executeConcurrent(new Task("prefetch", Priority.BACKGROUND, done));
+        mScheduler.executeConcurrent(new Task("list", Priority.USER_VISIBLE, done));
+        mScheduler.executeConcurrent(new Task("detail", Priority.IMMEDIATE, done));
+        mRelease.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("detail", "list", "prefetch"), mOrder);
+    }
+
+    @Test
+    public void serialLaneRejectsWhenFull() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        mScheduler.executeSerial(blocker(started));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 3; i++) {
+            mScheduler.executeSerial(new Task("write" + i, Priority.USER_VISIBLE, done));
+        }
+        assertEquals(3, mScheduler.getSerialStats().queueDepth);
+        try {
+            mScheduler.executeSerial(new Task("overflow", Priority.IMMEDIATE, done));
+            fail("serial lane is full, task should be rejected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+}
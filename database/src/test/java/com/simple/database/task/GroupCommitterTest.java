@@ -0,0 +1,149 @@
+package com.simple.database.task;
+
+import com.simple.database.Builder;
+import com.simple.database.DatabaseHelper;
+import com.simple.database.storage.DbStorage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 组提交中某个任务失败或者被取消时, 只回滚该任务的修改, 同一批次中的其他任务照常提交并且只执行一次
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class GroupCommitterTest {
+    private static final String DB_NAME = "group_commit.db";
+
+    private DatabaseHelper mHelper;
+
+    @Before
+    public void setUp() {
+        mHelper = new Builder(RuntimeEnvironment.application)
+                .setDbName(DB_NAME)
+                .setGroupCommit(16, 500)
+                .setCallbackDispatcher(new ExecutorCallbackDispatcher())
+                .create();
+        mHelper.getWritableDatabase().execSQL("CREATE TABLE IF NOT EXISTS logs "
+                + "(id INTEGER PRIMARY KEY, message TEXT NOT NULL)");
+        mHelper.getWritableDatabase().execSQL("DELETE FROM logs");
+    }
+
+    @After
+    public void tearDown() {
+        DbTask.setGroupCommit(0, 0);
+        mHelper.shutdown();
+        RuntimeEnvironment.application.deleteDatabase(DB_NAME);
+    }
+
+    private static DbTask<Void> insert(final long id, final String message, final AtomicInteger runs) {
+        return new NoReturnTask() {
+            @Override
+            protected Void doInBackground() {
+                runs.incrementAndGet();
+                DbStorage.get().getWritableConnection()
+                        .execSQL("INSERT INTO logs (id, message) VALUES (?, ?)", new Object[]{id, message});
+                return null;
+            }
+        };
+    }
+
+    @Test
+    public void failedTaskDoesNotRollBackBatch() throws Exception {
+        final AtomicInteger firstRuns = new AtomicInteger();
+        final AtomicInteger failedRuns = new AtomicInteger();
+        final AtomicInteger lastRuns = new AtomicInteger();
+        final DbFuture<Void> first = insert(1, "first", firstRuns).execute();
+        // message 不能为 NULL, 该任务会失败
+        final DbFuture<Void> failed = insert(2, null, failedRuns).execute();
+        final DbFuture<Void> last = insert(3, "last", lastRuns).execute();
+
+        first.get(5, TimeUnit.SECONDS);
+        last.get(5, TimeUnit.SECONDS);
+        try {
+            failed.get(5, TimeUnit.SECONDS);
+            fail("insert with null message should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() != null);
+        }
+
+        assertEquals(2, mHelper.getReadableDatabase().compileStatement("SELECT COUNT(*) FROM logs").simpleQueryForLong());
+        assertEquals(0, mHelper.getReadableDatabase()
+                .compileStatement("SELECT COUNT(*) FROM logs WHERE id = 2").simpleQueryForLong());
+        // 批次没有整体回滚, 成功的任务不需要单独重试
+        assertEquals(1, firstRuns.get());
+        assertEquals(1, lastRuns.get());
+        assertEquals(1, failedRuns.get());
+    }
+
+    @Test
+    public void readAfterWritesSeesEveryBatch() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        // 超过一个批次的写任务, 需要分多个事务提交
+        for (int i = 0; i < 40; i++) {
+            insert(100 + i, "row " + i, runs).execute();
+        }
+        final long count = new ReadTask<Long>() {
+            @Override
+            protected Long doInBackground() {
+                return mHelper.getReadableDatabase().compileStatement("SELECT COUNT(*) FROM logs").simpleQueryForLong();
+            }
+        }.execute().get(10, TimeUnit.SECONDS);
+
+        assertEquals(40, count);
+        assertEquals(40, runs.get());
+    }
+
+    @Test
+    public void cancelledTaskInBatchIsRolledBack() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final DbFuture<Void> first = insert(1, "first", runs).execute();
+        final DbFuture<Void> cancelled = new NoReturnTask() {
+            @Override
+            protected Void doInBackground() {
+                DbStorage.get().getWritableConnection()
+                        .execSQL("INSERT INTO logs (id, message) VALUES (?, ?)", new Object[]{2, "cancelled"});
+                // 执行之后被取消, 只回滚到该任务的保存点
+                cancel();
+                return null;
+            }
+        }.execute();
+        final DbFuture<Void> last = insert(3, "last", runs).execute();
+
+        first.get(5, TimeUnit.SECONDS);
+        last.get(5, TimeUnit.SECONDS);
+        assertTrue(cancelled.isCancelled());
+        assertEquals(2, mHelper.getReadableDatabase().compileStatement("SELECT COUNT(*) FROM logs").simpleQueryForLong());
+        assertEquals(0, mHelper.getReadableDatabase()
+                .compileStatement("SELECT COUNT(*) FROM logs WHERE id = 2").simpleQueryForLong());
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    public void taskCancelledBeforeBatchIsSkipped() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final AtomicInteger skippedRuns = new AtomicInteger();
+        insert(1, "first", runs).execute();
+        // 批次在收集窗口结束之后才开始执行, 此时该任务已经被取消
+        final DbFuture<Void> skipped = insert(2, "skipped", skippedRuns).execute();
+        assertTrue(skipped.cancel());
+        insert(3, "last", runs).execute().get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, mHelper.getReadableDatabase().compileStatement("SELECT COUNT(*) FROM logs").simpleQueryForLong());
+        assertEquals(2, runs.get());
+        assertEquals(0, skippedRuns.get());
+    }
+}
@@ -0,0 +1,153 @@
+package com.simple.database.task;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * PriorityTaskQueue 的执行顺序、优先级提升以及容量限制
+ */
+public class PriorityTaskQueueTest {
+
+    private static final class Task implements Runnable, Prioritized {
+        final String name;
+        final Priority priority;
+
+        Task(String name, Priority priority) {
+            this.name = name;
+            this.priority = priority;
+        }
+
+        @Override
+        public Priority getPriority() {
+            return priority;
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+
+    private static List<String> drain(PriorityTaskQueue queue) {
+        final List<String> names = new ArrayList<>();
+        Runnable runnable;
+        while ((runnable = queue.poll()) != null) {
+            names.add(((Task) runnable).name);
+        }
+        return names;
+    }
+
+    @Test
+    public void higherPriorityFirstAndFifoWithinPriority() {
+        final PriorityTaskQueue queue = new PriorityTaskQueue(0, 0);
+        queue.offer(new Task("b1", Priority.BACKGROUND));
+        queue.offer(new Task("u1", Priority.USER_VISIBLE));
+        queue.offer(new Task("i1", Priority.IMMEDIATE));
+        queue.offer(new Task("b2", Priority.BACKGROUND));
+        queue.offer(new Task("u2", Priority.USER_VISIBLE));
+        queue.offer(new Task("i2", Priority.IMMEDIATE));
+
+        assertEquals(6, queue.size());
+        assertEquals(Arrays.asList("i1", "i2", "u1", "u2", "b1", "b2"), drain(queue));
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void plainRunnableIsUserVisible() {
+        final PriorityTaskQueue queue = new PriorityTaskQueue(0, 0);
+        final Runnable plain = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        queue.offer(new Task("b", Priority.BACKGROUND));
+        queue.offer(plain);
+        queue.offer(new Task("i", Priority.IMMEDIATE));
+
+        assertEquals(1, queue.size(Priority.USER_VISIBLE));
+        assertEquals("i", ((Task) queue.poll()).name);
+        assertTrue(queue.poll() == plain);
+        assertEquals("b", ((Task) queue.poll()).name);
+    }
+
+    @Test
+    public void agingPromotesWaitingBackgroundTask() throws Exception {
+        final PriorityTaskQueue queue = new PriorityTaskQueue(0, 1);
+        queue.offer(new Task("old", Priority.BACKGROUND));
+        // 等待超过两个提升间隔, 后台任务提升到 IMMEDIATE 之上
+        Thread.sleep(20);
+        queue.offer(new Task("new", Priority.IMMEDIATE));
+
+        assertEquals(Arrays.asList("old", "new"), drain(queue));
+    }
+
+    @Test
+    public void noAgingKeepsPriorityOrder() throws Exception {
+        final PriorityTaskQueue queue = new PriorityTaskQueue(0, 0);
+        queue.offer(new Task("old", Priority.BACKGROUND));
+        Thread.sleep(20);
+        queue.offer(new Task("new", Priority.IMMEDIATE));
+
+        assertEquals(Arrays.asList("new", "old"), drain(queue));
+    }
+
+    @Test
+    public void offerFailsWhenFull() throws Exception {
+        final PriorityTaskQueue queue = new PriorityTaskQueue(2, 0);
+        assertTrue(queue.offer(new Task("a", Priority.BACKGROUND)));
+        assertTrue(queue.offer(new Task("b", Priority.BACKGROUND)));
+        assertFalse(queue.offer(new Task("c", Priority.IMMEDIATE)));
+        assertFalse(queue.offer(new Task("d", Priority.IMMEDIATE), 10, TimeUnit.MILLISECONDS));
+        assertEquals(0, queue.remainingCapacity());
+
+        queue.poll();
+        assertTrue(queue.offer(new Task("e", Priority.IMMEDIATE)));
+        assertEquals(Arrays.asList("e", "b"), drain(queue));
+    }
+
+    @Test
+    public void executorRejectsWhenQueueIsFull() throws Exception {
+        final PriorityTaskQueue queue = new PriorityTaskQueue(1, 0);
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, queue);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            executor.execute(new Task("queued", Priority.USER_VISIBLE));
+            try {
+                executor.execute(new Task("rejected", Priority.IMMEDIATE));
+                fail("queue is full, task should be rejected");
+            } catch (RejectedExecutionException e) {
+                // expected
+            }
+            assertEquals(1, queue.size());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.simple.database.upgrade;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * SqlParser 的语句拆分
+ */
+public class SqlParserTest {
+
+    /**
+     * 每次最多读取 chunkSize 个字符的 Reader, 用于测试跨越缓冲区边界的语句
+     */
+    private static final class ChunkedReader extends Reader {
+        private final String mText;
+        private final int mChunkSize;
+        private int mPosition;
+
+        ChunkedReader(String text, int chunkSize) {
+            mText = text;
+            mChunkSize = chunkSize;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (mPosition >= mText.length()) {
+                return -1;
+            }
+            final int count = Math.min(Math.min(length, mChunkSize), mText.length() - mPosition);
+            mText.getChars(mPosition, mPosition + count, buffer, offset);
+            mPosition += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static List<String> parse(Reader reader) throws IOException {
+        final List<String> statements = new ArrayList<>();
+        final int count = SqlParser.parse(reader, new SqlParser.StatementHandler() {
+            @Override
+            public void onStatement(String statement) {
+                statements.add(statement);
+            }
+        });
+        assertEquals(statements.size(), count);
+        return statements;
+    }
+
+    private static List<String> parse(String script) throws IOException {
+        return parse(new StringReader(script));
+    }
+
+    @Test
+    public void splitsStatementsAndCollapsesWhitespace() throws Exception {
+        assertEquals(Arrays.asList(
+                "CREATE TABLE users ( id TEXT unique , name TEXT not null )",
+                "INSERT INTO users VALUES ('1', 'a')"),
+                parse("CREATE TABLE users (\n\t id TEXT unique ,\n\t name TEXT not null\n) ;\r\n"
+                        + "  INSERT INTO users VALUES ('1', 'a');\n"));
+    }
+
+    @Test
+    public void keepsQuotedContent() throws Exception {
+        assertEquals(Arrays.asList(
+                "INSERT INTO t VALUES ('a;b', 'it''s', '--x', '/* y */', '  spaced  ')",
+                "SELECT \"col;1\", `col--2`, [col /* 3 */] FROM t"),
+                parse("INSERT INTO t VALUES ('a;b', 'it''s', '--x', '/* y */', '  spaced  ');"
+                        + "SELECT \"col;1\", `col--2`, [col /* 3 */] FROM t;"));
+    }
+
+    @Test
+    public void removesComments() throws Exception {
+        assertEquals(Arrays.asList(
+                "CREATE TABLE t ( id INTEGER )",
+                "SELECT 1 - 2, 4 / 2 FROM t",
+                "SELECT 1"),
+                parse("-- header; not a statement\n"
+                        + "/* block ; comment\n over lines **/ CREATE TABLE t ( -- column\n id INTEGER /* id */ );\n"
+                        + "SELECT 1 - 2, 4 / 2 FROM t; /* trailing */\n"
+                        + "SELECT/*inline*/1;"
+                        + "-- comment at end of script"));
+    }
+
+    @Test
+    public void keepsTriggerBody() throws Exception {
+        final String trigger = "create temp trigger if not exists books_au after update on books "
+                + "BEGIN UPDATE stats SET total = CASE WHEN total > 0 THEN total ELSE 0 END; "
+                + "INSERT INTO log VALUES ('end;'); END";
+        assertEquals(Arrays.asList(trigger, "SELECT 1"),
+                parse("create temp trigger if not exists books_au after update on books\nBEGIN\n"
+                        + "  UPDATE stats SET total = CASE WHEN total > 0 THEN total ELSE 0 END;\n"
+                        + "  INSERT INTO log VALUES ('end;');\nEND;\nSELECT 1;"));
+        // 不是触发器时 BEGIN 不影响语句的结束
+        assertEquals(Arrays.asList("BEGIN", "CREATE TABLE begin_end (end_at INTEGER)", "END"),
+                parse("BEGIN; CREATE TABLE begin_end (end_at INTEGER); END;"));
+    }
+
+    @Test
+    public void lastStatementWithoutSemicolon() throws Exception {
+        assertEquals(Arrays.asList("SELECT 1", "SELECT 2"), parse("SELECT 1;\nSELECT 2"));
+        assertEquals(Collections.singletonList("SELECT 2 -"), parse("SELECT 2 -"));
+        assertEquals(Collections.singletonList("SELECT 'a'"), parse("SELECT 'a' -- done"));
+    }
+
+    @Test
+    public void ignoresEmptyStatements() throws Exception {
+        assertEquals(Collections.singletonList("SELECT 1"), parse(";; \n ;SELECT 1;;\n-- only a comment\n;"));
+        assertEquals(Collections.<String>emptyList(), parse(""));
+        assertEquals(Collections.<String>emptyList(), parse("  \n /* nothing */ "));
+    }
+
+    @Test
+    public void skipsBom() throws Exception {
+        final byte[] bytes = "\uFEFFCREATE TABLE 表 (名字 TEXT);".getBytes("UTF-8");
+        assertEquals(Collections.singletonList("CREATE TABLE 表 (名字 TEXT)"),
+                SqlParser.parse(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    public void sameResultAcrossBufferBoundaries() throws Exception {
+        final String script = "/* header */ CREATE TABLE t (id INTEGER, name TEXT); -- comment ; here\n"
+                + "INSERT INTO t VALUES (1, 'semi;colon -- /* x */');\n"
+                + "CREATE TRIGGER t_ai AFTER INSERT ON t BEGIN\n"
+                + "  UPDATE t SET name = CASE WHEN name IS NULL THEN 'x' ELSE name END;\n"
+                + "END;\n"
+                + "SELECT [a]]b] , \"q\" - 1 / 2 FROM t";
+        final List<String> expected = parse(script);
+        assertEquals(4, expected.size());
+        assertEquals("CREATE TRIGGER t_ai AFTER INSERT ON t BEGIN "
+                + "UPDATE t SET name = CASE WHEN name IS NULL THEN 'x' ELSE name END; END", expected.get(2));
+        for (int chunkSize = 1; chunkSize <= 16; chunkSize++) {
+            assertEquals("chunk size " + chunkSize, expected, parse(new ChunkedReader(script, chunkSize)));
+        }
+    }
+
+    @Test
+    public void statementLongerThanBuffer() throws Exception {
+        final StringBuilder values = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            values.append(i == 0 ? "" : ", ").append('(').append(i).append(", 'v;").append(i).append("')");
+        }
+        final String insert = "INSERT INTO t VALUES " + values;
+        assertEquals(Arrays.asList(insert, "SELECT 1"), parse(insert + ";\nSELECT 1;"));
+    }
+}